@@ -3,6 +3,7 @@ package org.springframework.roo.addon.dbre.addon;
 import java.io.File;
 import java.util.Set;
 
+import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
@@ -84,10 +85,13 @@ public class DbreCommands implements CommandMarker {
       @CliOption(key = "repository", mandatory = false, specifiedDefaultValue = "true",
           unspecifiedDefaultValue = "false", help = "Generate a repository for each entity") final boolean repository,
       @CliOption(key = "service", mandatory = false, specifiedDefaultValue = "true",
-          unspecifiedDefaultValue = "false", help = "Generate a service for each entity") final boolean service) {
+          unspecifiedDefaultValue = "false", help = "Generate a service for each entity") final boolean service,
+      @CliOption(key = "parallelism", mandatory = false, unspecifiedDefaultValue = "1",
+          help = "The number of database connections to introspect the tables with at once") final int parallelism) {
 
+    Validate.isTrue(parallelism > 0, "Parallelism must be one or more");
     dbreOperations.reverseEngineerDatabase(schemas, destinationPackage, testAutomatically, view,
         includeTables, excludeTables, includeNonPortableAttributes, disableVersionFields,
-        disableGeneratedIdentifiers, repository, service);
+        disableGeneratedIdentifiers, repository, service, parallelism);
   }
 }
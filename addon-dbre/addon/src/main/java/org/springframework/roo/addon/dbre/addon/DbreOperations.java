@@ -54,10 +54,12 @@ public interface DbreOperations {
    *            identifier auto generation value
    * @param repository whether to generate a service layer for each entity
    * @param service whether to generate a repository layer for each entity
+   * @param parallelism the number of database connections to introspect
+   *            the tables with at once (at least one)
    */
   void reverseEngineerDatabase(Set<Schema> schemas, JavaPackage destinationPackage,
       boolean testAutomatically, boolean view, Set<String> includeTables,
       Set<String> excludeTables, boolean includeNonPortableAttributes,
       boolean disableVersionFields, boolean disableGeneratedIdentifiers, boolean repository,
-      boolean service);
+      boolean service, int parallelism);
 }
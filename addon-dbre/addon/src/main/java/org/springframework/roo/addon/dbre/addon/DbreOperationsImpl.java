@@ -101,10 +101,12 @@ public class DbreOperationsImpl implements DbreOperations {
       final JavaPackage destinationPackage, final boolean testAutomatically, final boolean view,
       final Set<String> includeTables, final Set<String> excludeTables,
       final boolean includeNonPortableAttributes, final boolean disableVersionFields,
-      final boolean disableGeneratedIdentifiers, final boolean repository, final boolean service) {
+      final boolean disableGeneratedIdentifiers, final boolean repository, final boolean service,
+      final int parallelism) {
     // Force it to refresh the database from the actual JDBC connection
     final Database database =
-        dbreModelService.refreshDatabase(schemas, view, includeTables, excludeTables);
+        dbreModelService.refreshDatabase(schemas, view, includeTables, excludeTables,
+            parallelism);
     database.setModuleName(projectOperations.getFocusedModuleName());
     database.setRepository(repository);
     database.setService(service);
@@ -4,22 +4,88 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.addon.dbre.addon.model.dialect.DB2400Dialect;
+import org.springframework.roo.addon.dbre.addon.model.dialect.DB2Dialect;
+import org.springframework.roo.addon.dbre.addon.model.dialect.DerbyDialect;
+import org.springframework.roo.addon.dbre.addon.model.dialect.Dialect;
+import org.springframework.roo.addon.dbre.addon.model.dialect.H2Dialect;
+import org.springframework.roo.addon.dbre.addon.model.dialect.HSQLDialect;
+import org.springframework.roo.addon.dbre.addon.model.dialect.MySQLDialect;
+import org.springframework.roo.addon.dbre.addon.model.dialect.OracleDialect;
+import org.springframework.roo.addon.dbre.addon.model.dialect.PostgreSQLDialect;
+import org.springframework.roo.addon.dbre.addon.model.dialect.SybaseDialect;
+import org.springframework.roo.support.logging.HandlerUtils;
 
 /**
  * Creates a {@link Database database} model from a live database using JDBC.
+ * <p>
+ * By default, the columns, primary keys and foreign keys of every table in a
+ * schema are read at once, rather than table by table, as each metadata
+ * query can be a round trip to the database. Databases whose JDBC drivers
+ * can't do this are queried via their {@link Dialect}, if it supports it;
+ * otherwise, if the driver rejects such a query, the tables are read one by
+ * one after all.
  * 
  * @author Alan Stewart
  * @since 1.1
  */
 public class DatabaseIntrospector extends AbstractIntrospector {
 
+  /**
+   * Reads some details of some tables on whichever introspector is free,
+   * returning how long that took, in nanoseconds
+   */
+  private abstract static class TableRead implements Callable<Long> {
+
+    private final BlockingQueue<DatabaseIntrospector> workers;
+
+    TableRead(final BlockingQueue<DatabaseIntrospector> workers) {
+      this.workers = workers;
+    }
+
+    public Long call() throws Exception {
+      final DatabaseIntrospector worker = workers.take();
+      final long start = System.nanoTime();
+      try {
+        read(worker);
+      } finally {
+        workers.add(worker);
+      }
+      return System.nanoTime() - start;
+    }
+
+    abstract void read(DatabaseIntrospector worker) throws SQLException;
+  }
+
+  private static final Logger LOGGER = HandlerUtils.getLogger(DatabaseIntrospector.class);
+
+  private boolean bulk;
+  private final Dialect dialect;
   private final Set<String> excludeTables;
   private final Set<String> includeTables;
   private final Set<Schema> schemas;
@@ -28,19 +94,266 @@ public class DatabaseIntrospector extends AbstractIntrospector {
   public DatabaseIntrospector(final Connection connection, final Set<Schema> schemas,
       final boolean view, final Set<String> includeTables, final Set<String> excludeTables)
       throws SQLException {
+    this(connection, schemas, view, includeTables, excludeTables, true);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param connection the connection to the database (required)
+   * @param schemas the schemas to introspect (required)
+   * @param view whether to include views
+   * @param includeTables the tables to include (all if <code>null</code> or
+   *            empty); may contain "*" and "?" wildcards
+   * @param excludeTables the tables to exclude (none if <code>null</code> or
+   *            empty); may contain "*" and "?" wildcards
+   * @param bulk whether to read the tables of each schema at once, rather
+   *            than one by one
+   * @throws SQLException if the database metadata can't be obtained
+   * @since 2.0
+   */
+  public DatabaseIntrospector(final Connection connection, final Set<Schema> schemas,
+      final boolean view, final Set<String> includeTables, final Set<String> excludeTables,
+      final boolean bulk) throws SQLException {
     super(connection);
+    this.bulk = bulk;
+    this.dialect = getDialect(databaseMetaData.getDatabaseProductName());
     this.schemas = schemas;
     this.view = view;
     this.includeTables = includeTables;
     this.excludeTables = excludeTables;
   }
 
+  /**
+   * Returns the dialect of the given database product
+   * 
+   * @param productName as returned by
+   *            {@link DatabaseMetaData#getDatabaseProductName()}
+   * @return <code>null</code> if it's not known
+   */
+  private static Dialect getDialect(final String productName) {
+    if (productName == null) {
+      return null;
+    }
+    if (productName.startsWith("DB2 UDB for AS/400")) {
+      return new DB2400Dialect();
+    }
+    if (productName.startsWith("DB2")) {
+      return new DB2Dialect();
+    }
+    if ("Apache Derby".equals(productName)) {
+      return new DerbyDialect();
+    }
+    if ("H2".equals(productName)) {
+      return new H2Dialect();
+    }
+    if ("HSQL Database Engine".equals(productName)) {
+      return new HSQLDialect();
+    }
+    if ("MySQL".equalsIgnoreCase(productName)) {
+      return new MySQLDialect();
+    }
+    if ("Oracle".equalsIgnoreCase(productName)) {
+      return new OracleDialect();
+    }
+    if ("PostgreSQL".equals(productName)) {
+      return new PostgreSQLDialect();
+    }
+    if (productName.startsWith("Adaptive Server") || productName.startsWith("Sybase")) {
+      return new SybaseDialect();
+    }
+    return null;
+  }
+
+  /**
+   * Returns the key by which the given table is found when reading the
+   * tables of a schema at once
+   */
+  private static String getTableKey(final String catalog, final String schemaName,
+      final String tableName) {
+    return StringUtils.defaultString(catalog) + "." + new Schema(schemaName).getName() + "."
+        + tableName;
+  }
+
+  private static String getTableKey(final Table table) {
+    return getTableKey(table.getCatalog(), table.getSchema().getName(), table.getName());
+  }
+
   public Database createDatabase() throws SQLException {
-    final Set<Table> tables = new LinkedHashSet<Table>();
+    return createDatabase(Collections.<Connection>emptyList());
+  }
+
+  /**
+   * Creates the database model, reading the details of the tables over the
+   * given connections as well as this introspector's, in parallel.
+   * <p>
+   * The connections are shared out between the schemas. The columns and
+   * keys of each schema are read on one connection, with schema-wide
+   * queries, as splitting those up would only add round trips; the indices,
+   * which are read table by table anyway, are split into as many contiguous
+   * partitions as the schema has connections (or tables, if fewer) and read
+   * on the others. If reading table by table from the start, the columns
+   * and keys are partitioned with the indices. The tables are listed on this
+   * introspector's connection and keep that order whichever connection reads
+   * them, so the model is the same as if read on one connection. The time
+   * taken by each schema is logged.
+   * 
+   * @param connections the further connections to the same database, which
+   *            are used but not closed (required, can be empty)
+   * @return a non-<code>null</code> model
+   * @throws SQLException if the metadata can't be read
+   * @since 2.0
+   */
+  public Database createDatabase(final List<Connection> connections) throws SQLException {
+    Validate.notNull(connections, "Connections required");
+    final BlockingQueue<DatabaseIntrospector> workers =
+        new LinkedBlockingQueue<DatabaseIntrospector>();
+    workers.add(this);
+    for (final Connection connection : connections) {
+      workers.add(new DatabaseIntrospector(connection, schemas, view, includeTables,
+          excludeTables, bulk));
+    }
+    final int partitionsPerSchema = Math.max(1, workers.size() / Math.max(1, schemas.size()));
+
+    // List the tables of every schema before reading any, so that the
+    // schemas are read in parallel too
+    final Map<Schema, Map<String, Table>> schemaTables =
+        new LinkedHashMap<Schema, Map<String, Table>>();
+    final Map<Schema, Long> listingTimes = new LinkedHashMap<Schema, Long>();
     for (final Schema schema : schemas) {
-      tables.addAll(getTables(schema));
+      final long start = System.nanoTime();
+      schemaTables.put(schema, getTables(getArtifact(schema.getName())));
+      listingTimes.put(schema, System.nanoTime() - start);
+    }
+
+    final ExecutorService executor =
+        workers.size() < 2 ? null : Executors.newFixedThreadPool(workers.size(),
+            new ThreadFactory() {
+              public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Roo database introspector");
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+    try {
+      final Map<Schema, List<Future<Long>>> results =
+          new LinkedHashMap<Schema, List<Future<Long>>>();
+      final boolean wholeSchema = bulk;
+      for (final Entry<Schema, Map<String, Table>> entry : schemaTables.entrySet()) {
+        final String schemaPattern = getArtifact(entry.getKey().getName());
+        final Map<String, Table> tables = entry.getValue();
+        // Each read fills in different details of the tables, so the reads
+        // of a schema can run at the same time
+        final List<Callable<Long>> reads = new ArrayList<Callable<Long>>();
+        if (wholeSchema) {
+          reads.add(new TableRead(workers) {
+            @Override
+            void read(final DatabaseIntrospector worker) throws SQLException {
+              worker.readTableDetails(schemaPattern, tables, true);
+            }
+          });
+        }
+        for (final Map<String, Table> partition : partition(tables,
+            Math.min(partitionsPerSchema, tables.size()))) {
+          reads.add(new TableRead(workers) {
+            @Override
+            void read(final DatabaseIntrospector worker) throws SQLException {
+              if (!wholeSchema) {
+                worker.readTableDetails(schemaPattern, partition, false);
+              }
+              worker.readIndices(partition);
+            }
+          });
+        }
+
+        final List<Future<Long>> schemaResults = new ArrayList<Future<Long>>();
+        for (final Callable<Long> read : reads) {
+          if (executor == null) {
+            final FutureTask<Long> task = new FutureTask<Long>(read);
+            task.run();
+            schemaResults.add(task);
+            // Stop at the first failure, as before
+            await(Collections.<Future<Long>>singletonList(task));
+          } else {
+            schemaResults.add(executor.submit(read));
+          }
+        }
+        results.put(entry.getKey(), schemaResults);
+      }
+
+      final Set<Table> tables = new LinkedHashSet<Table>();
+      for (final Entry<Schema, List<Future<Long>>> entry : results.entrySet()) {
+        // The schema took as long as its slowest read, once listed
+        long elapsed = 0;
+        for (final long readingTime : await(entry.getValue())) {
+          elapsed = Math.max(elapsed, readingTime);
+        }
+        tables.addAll(schemaTables.get(entry.getKey()).values());
+        LOGGER.info(String.format("Introspected %d table(s) of schema '%s' in %d ms%s",
+            schemaTables.get(entry.getKey()).size(), entry.getKey().getName(),
+            (listingTimes.get(entry.getKey()) + elapsed) / 1000000,
+            Math.min(entry.getValue().size(), workers.size()) > 1 ? " on "
+                + Math.min(entry.getValue().size(), workers.size()) + " connections" : ""));
+      }
+      return new Database(tables);
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Waits for the given reads of table details, throwing the first failure
+   * once all have finished
+   * 
+   * @return how long each read took, in nanoseconds
+   */
+  private List<Long> await(final List<Future<Long>> results) throws SQLException {
+    final List<Long> readingTimes = new ArrayList<Long>();
+    Throwable failure = null;
+    for (final Future<Long> result : results) {
+      try {
+        readingTimes.add(result.get());
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while introspecting the database", e);
+      } catch (final ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (failure instanceof SQLException) {
+      throw (SQLException) failure;
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure != null) {
+      throw new IllegalStateException(failure);
+    }
+    return readingTimes;
+  }
+
+  /**
+   * Splits the given tables into the given number of contiguous partitions,
+   * of as near the same size as possible
+   */
+  private List<Map<String, Table>> partition(final Map<String, Table> tables,
+      final int partitionCount) {
+    final List<Map<String, Table>> partitions = new ArrayList<Map<String, Table>>();
+    final Iterator<Entry<String, Table>> iterator = tables.entrySet().iterator();
+    for (int i = 0; i < partitionCount; i++) {
+      final Map<String, Table> partition = new LinkedHashMap<String, Table>();
+      final int end = (int) ((long) tables.size() * (i + 1) / partitionCount);
+      for (int j = (int) ((long) tables.size() * i / partitionCount); j < end; j++) {
+        final Entry<String, Table> entry = iterator.next();
+        partition.put(entry.getKey(), entry.getValue());
+      }
+      partitions.add(partition);
     }
-    return new Database(tables);
+    return partitions;
   }
 
   private Index findIndex(final String name, final Set<Index> indices) {
@@ -86,14 +399,19 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     return cascadeAction;
   }
 
-  private Set<Table> getTables(final Schema schema) throws SQLException {
-    final Set<Table> tables = new LinkedHashSet<Table>();
+  /**
+   * Lists the tables of the given schema, without their details
+   * 
+   * @return the tables keyed by catalog, schema and table name, in the order
+   *         the driver lists them
+   */
+  private Map<String, Table> getTables(final String schemaPattern) throws SQLException {
+    final Map<String, Table> tables = new LinkedHashMap<String, Table>();
 
     final String[] types =
         view ? new String[] {TableType.TABLE.name(), TableType.VIEW.name()}
             : new String[] {TableType.TABLE.name()};
-    final ResultSet rs =
-        databaseMetaData.getTables(null, getArtifact(schema.getName()), null, types);
+    final ResultSet rs = databaseMetaData.getTables(null, schemaPattern, null, types);
     try {
       while (rs.next()) {
         final String tableName = rs.getString("TABLE_NAME");
@@ -108,20 +426,7 @@ public class DatabaseIntrospector extends AbstractIntrospector {
           final Table table = new Table(tableName, new Schema(rs.getString("TABLE_SCHEM")));
           table.setCatalog(rs.getString("TABLE_CAT"));
           table.setDescription(rs.getString("REMARKS"));
-
-          readColumns(table);
-          readForeignKeys(table, false);
-          readForeignKeys(table, true);
-          readIndices(table);
-
-          for (final String columnName : readPrimaryKeyNames(table)) {
-            final Column column = table.findColumn(columnName);
-            if (column != null) {
-              column.setPrimaryKey(true);
-            }
-          }
-
-          tables.add(table);
+          tables.put(getTableKey(table), table);
         }
       }
     } finally {
@@ -131,6 +436,65 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     return tables;
   }
 
+  /**
+   * Reads the columns and keys of the given tables
+   * 
+   * @param schemaPattern the schema of the tables
+   * @param tables the tables, keyed as by {@link #getTables(String)}
+   * @param wholeSchema whether these are all the listed tables of the
+   *            schema, so can be read at once
+   */
+  private void readTableDetails(final String schemaPattern, final Map<String, Table> tables,
+      final boolean wholeSchema) throws SQLException {
+    if (tables.isEmpty()) {
+      return;
+    }
+    readColumns(schemaPattern, tables, wholeSchema);
+    readForeignKeys(schemaPattern, tables, false, wholeSchema);
+    readForeignKeys(schemaPattern, tables, true, wholeSchema);
+    readPrimaryKeys(schemaPattern, tables, wholeSchema);
+  }
+
+  /**
+   * Reads the indices of the given tables, one by one
+   */
+  private void readIndices(final Map<String, Table> tables) throws SQLException {
+    for (final Table table : tables.values()) {
+      readIndices(table);
+    }
+  }
+
+  /**
+   * Returns the catalog of all the given tables
+   * 
+   * @return <code>null</code> if they're in different catalogs
+   */
+  private String getCatalog(final Map<String, Table> tables) {
+    final String catalog = tables.values().iterator().next().getCatalog();
+    for (final Table table : tables.values()) {
+      if (!StringUtils.equals(catalog, table.getCatalog())) {
+        return null;
+      }
+    }
+    return catalog;
+  }
+
+  /**
+   * Indicates whether to read the tables of a schema at once via the given
+   * metadata query, logging why not if the driver has rejected it; once one
+   * has been rejected, the tables are read one by one from then on
+   * 
+   * @param e the exception thrown by the query, if any
+   */
+  private boolean isBulk(final SQLException e) {
+    if (e != null) {
+      LOGGER.fine("Reading tables one by one, as the JDBC driver can't read a whole schema at "
+          + "once: " + e.getMessage());
+      bulk = false;
+    }
+    return bulk;
+  }
+
   private boolean hasExcludedTable(final String tableName) {
     if (excludeTables == null || excludeTables.isEmpty()) {
       return false;
@@ -172,12 +536,40 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     return ignore;
   }
 
-  private void readColumns(final Table table) throws SQLException {
-    final ResultSet rs =
-        databaseMetaData.getColumns(table.getCatalog(), table.getSchema().getName(),
-            table.getName(), null);
+  private void readColumns(final String schemaPattern, final Map<String, Table> tables,
+      final boolean wholeSchema) throws SQLException {
+    if (wholeSchema && isBulk(null)) {
+      try {
+        readColumns(
+            databaseMetaData.getColumns(getCatalog(tables), schemaPattern, "%", null), tables);
+        return;
+      } catch (final SQLException e) {
+        isBulk(e);
+      }
+    }
+    for (final Table table : tables.values()) {
+      readColumns(
+          databaseMetaData.getColumns(table.getCatalog(), table.getSchema().getName(),
+              table.getName(), null), tables);
+    }
+  }
+
+  /**
+   * Adds the columns in the given result set to their tables, once all of
+   * them have been read
+   */
+  private void readColumns(final ResultSet rs, final Map<String, Table> tables)
+      throws SQLException {
+    final List<Entry<Table, Column>> columns = new ArrayList<Entry<Table, Column>>();
     try {
       while (rs.next()) {
+        final Table table =
+            tables.get(getTableKey(rs.getString("TABLE_CAT"), rs.getString("TABLE_SCHEM"),
+                rs.getString("TABLE_NAME")));
+        if (table == null) {
+          continue;
+        }
+
         final Column column =
             new Column(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"),
                 rs.getString("TYPE_NAME"), rs.getInt("COLUMN_SIZE"), rs.getInt("DECIMAL_DIGITS"));
@@ -185,29 +577,82 @@ public class DatabaseIntrospector extends AbstractIntrospector {
         column.setDefaultValue(rs.getString("COLUMN_DEF"));
         column.setRequired("NO".equalsIgnoreCase(rs.getString("IS_NULLABLE")));
 
-        table.addColumn(column);
+        columns.add(new SimpleImmutableEntry<Table, Column>(table, column));
       }
     } finally {
       rs.close();
     }
-  }
 
-  private void readForeignKeys(final Table table, final boolean exported) throws SQLException {
-    final Map<String, ForeignKey> foreignKeys = new LinkedHashMap<String, ForeignKey>();
+    for (final Entry<Table, Column> column : columns) {
+      column.getKey().addColumn(column.getValue());
+    }
+  }
 
-    ResultSet rs;
-    if (exported) {
-      rs =
-          databaseMetaData.getExportedKeys(table.getCatalog(), table.getSchema().getName(),
-              table.getName());
-    } else {
-      rs =
-          databaseMetaData.getImportedKeys(table.getCatalog(), table.getSchema().getName(),
-              table.getName());
+  private void readForeignKeys(final String schemaPattern, final Map<String, Table> tables,
+      final boolean exported, final boolean wholeSchema) throws SQLException {
+    if (wholeSchema && isBulk(null)) {
+      try {
+        final String query =
+            dialect == null ? null : dialect.getQueryForeignKeysString(new Schema(schemaPattern),
+                exported);
+        if (query != null) {
+          final Statement statement = databaseMetaData.getConnection().createStatement();
+          try {
+            readForeignKeys(statement.executeQuery(query), tables, exported);
+          } finally {
+            statement.close();
+          }
+        } else if (exported) {
+          readForeignKeys(databaseMetaData.getExportedKeys(getCatalog(tables), schemaPattern, null),
+              tables, exported);
+        } else {
+          readForeignKeys(databaseMetaData.getImportedKeys(getCatalog(tables), schemaPattern, null),
+              tables, exported);
+        }
+        return;
+      } catch (final SQLException e) {
+        isBulk(e);
+      }
     }
+    for (final Table table : tables.values()) {
+      ResultSet rs;
+      if (exported) {
+        rs =
+            databaseMetaData.getExportedKeys(table.getCatalog(), table.getSchema().getName(),
+                table.getName());
+      } else {
+        rs =
+            databaseMetaData.getImportedKeys(table.getCatalog(), table.getSchema().getName(),
+                table.getName());
+      }
+      readForeignKeys(rs, tables, exported);
+    }
+  }
+
+  /**
+   * Adds the foreign keys in the given result set to their tables, once all
+   * of them have been read
+   */
+  private void readForeignKeys(final ResultSet rs, final Map<String, Table> tables,
+      final boolean exported) throws SQLException {
+    final Map<Table, Map<String, ForeignKey>> foreignKeysByTable =
+        new LinkedHashMap<Table, Map<String, ForeignKey>>();
 
     try {
       while (rs.next()) {
+        final String localTablePrefix = exported ? "PKTABLE_" : "FKTABLE_";
+        final Table table =
+            tables.get(getTableKey(rs.getString(localTablePrefix + "CAT"),
+                rs.getString(localTablePrefix + "SCHEM"), rs.getString(localTablePrefix + "NAME")));
+        if (table == null) {
+          continue;
+        }
+        Map<String, ForeignKey> foreignKeys = foreignKeysByTable.get(table);
+        if (foreignKeys == null) {
+          foreignKeys = new LinkedHashMap<String, ForeignKey>();
+          foreignKeysByTable.put(table, foreignKeys);
+        }
+
         final String name = rs.getString("FK_NAME");
         final String foreignTableName = rs.getString(exported ? "FKTABLE_NAME" : "PKTABLE_NAME");
         final String key = name + "_" + foreignTableName;
@@ -238,11 +683,13 @@ public class DatabaseIntrospector extends AbstractIntrospector {
       rs.close();
     }
 
-    for (final ForeignKey foreignKey : foreignKeys.values()) {
-      if (exported) {
-        table.addExportedKey(foreignKey);
-      } else {
-        table.addImportedKey(foreignKey);
+    for (final Entry<Table, Map<String, ForeignKey>> entry : foreignKeysByTable.entrySet()) {
+      for (final ForeignKey foreignKey : entry.getValue().values()) {
+        if (exported) {
+          entry.getKey().addExportedKey(foreignKey);
+        } else {
+          entry.getKey().addImportedKey(foreignKey);
+        }
       }
     }
   }
@@ -294,20 +741,61 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     }
   }
 
-  private Set<String> readPrimaryKeyNames(final Table table) throws SQLException {
-    final Set<String> columnNames = new LinkedHashSet<String>();
+  private void readPrimaryKeys(final String schemaPattern, final Map<String, Table> tables,
+      final boolean wholeSchema) throws SQLException {
+    if (wholeSchema && isBulk(null)) {
+      try {
+        final String query =
+            dialect == null ? null : dialect.getQueryPrimaryKeysString(new Schema(schemaPattern));
+        if (query != null) {
+          final Statement statement = databaseMetaData.getConnection().createStatement();
+          try {
+            readPrimaryKeys(statement.executeQuery(query), tables);
+          } finally {
+            statement.close();
+          }
+        } else {
+          readPrimaryKeys(databaseMetaData.getPrimaryKeys(getCatalog(tables), schemaPattern, null),
+              tables);
+        }
+        return;
+      } catch (final SQLException e) {
+        isBulk(e);
+      }
+    }
+    for (final Table table : tables.values()) {
+      readPrimaryKeys(
+          databaseMetaData.getPrimaryKeys(table.getCatalog(), table.getSchema().getName(),
+              table.getName()), tables);
+    }
+  }
 
-    final ResultSet rs =
-        databaseMetaData.getPrimaryKeys(table.getCatalog(), table.getSchema().getName(),
-            table.getName());
+  /**
+   * Marks the primary key columns in the given result set as such, once all
+   * of them have been read
+   */
+  private void readPrimaryKeys(final ResultSet rs, final Map<String, Table> tables)
+      throws SQLException {
+    final List<Entry<Table, String>> columnNames = new ArrayList<Entry<Table, String>>();
     try {
       while (rs.next()) {
-        columnNames.add(rs.getString("COLUMN_NAME"));
+        final Table table =
+            tables.get(getTableKey(rs.getString("TABLE_CAT"), rs.getString("TABLE_SCHEM"),
+                rs.getString("TABLE_NAME")));
+        if (table != null) {
+          columnNames.add(new SimpleImmutableEntry<Table, String>(table, rs
+              .getString("COLUMN_NAME")));
+        }
       }
     } finally {
       rs.close();
     }
 
-    return columnNames;
+    for (final Entry<Table, String> columnName : columnNames) {
+      final Column column = columnName.getKey().findColumn(columnName.getValue());
+      if (column != null) {
+        column.setPrimaryKey(true);
+      }
+    }
   }
 }
@@ -52,6 +52,23 @@ public interface DbreModelService {
   Database refreshDatabase(Set<Schema> schemas, boolean view, Set<String> includeTables,
       Set<String> excludeTables);
 
+  /**
+   * Retrieves the database metadata from the given number of JDBC
+   * connections at once.
+   * 
+   * @param schemas the schema(s) to query (required)
+   * @param view true if database views are to be retrieved, otherwise false
+   * @param includeTables a set of table names to include
+   * @param excludeTables a set of table names to exlude
+   * @param parallelism the number of connections to open (at least one);
+   *            fewer are used if the database refuses any
+   * @return the same metadata as if retrieved from one connection
+   * @see DatabaseIntrospector#createDatabase(java.util.List)
+   * @since 2.0
+   */
+  Database refreshDatabase(Set<Schema> schemas, boolean view, Set<String> includeTables,
+      Set<String> excludeTables, int parallelism);
+
   /**
    * Determines if the database uses schemas.
    * <p>
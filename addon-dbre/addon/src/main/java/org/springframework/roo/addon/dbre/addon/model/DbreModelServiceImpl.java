@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -220,20 +221,46 @@ public class DbreModelServiceImpl implements DbreModelService {
 
   public Database refreshDatabase(final Set<Schema> schemas, final boolean view,
       final Set<String> includeTables, final Set<String> excludeTables) {
+    return refreshDatabase(schemas, view, includeTables, excludeTables, 1);
+  }
+
+  public Database refreshDatabase(final Set<Schema> schemas, final boolean view,
+      final Set<String> includeTables, final Set<String> excludeTables, final int parallelism) {
     Validate.notNull(schemas, "Schemas required");
+    Validate.isTrue(parallelism > 0, "Parallelism must be one or more");
 
     Connection connection = null;
+    final List<Connection> connections = new ArrayList<Connection>();
     try {
       connection = getConnection(true);
+      while (connections.size() < parallelism - 1) {
+        // A provider refuses a connection by throwing or returning null
+        Connection workerConnection = null;
+        String refusal = "no connection was returned";
+        try {
+          workerConnection = getConnection(true);
+        } catch (final RuntimeException e) {
+          refusal = e.getMessage();
+        }
+        if (workerConnection == null) {
+          LOGGER.warning("Introspecting the database on " + (connections.size() + 1)
+              + " connection(s), as no more could be opened: " + refusal);
+          break;
+        }
+        connections.add(workerConnection);
+      }
       final DatabaseIntrospector introspector =
           new DatabaseIntrospector(connection, schemas, view, includeTables, excludeTables);
-      final Database database = introspector.createDatabase();
+      final Database database = introspector.createDatabase(connections);
       cacheDatabase(database);
       return database;
     } catch (final Exception e) {
       throw new IllegalStateException(e);
     } finally {
       getConnectionProvider().closeConnection(connection);
+      for (final Connection workerConnection : connections) {
+        getConnectionProvider().closeConnection(workerConnection);
+      }
     }
   }
 
@@ -1,5 +1,7 @@
 package org.springframework.roo.addon.dbre.addon.model.dialect;
 
+import org.springframework.roo.addon.dbre.addon.model.Schema;
+
 /**
  * Abstract base class for database {@link Dialect}s.
  * 
@@ -12,6 +14,14 @@ public abstract class AbstractDialect {
     super();
   }
 
+  public String getQueryForeignKeysString(final Schema schema, final boolean exported) {
+    return null;
+  }
+
+  public String getQueryPrimaryKeysString(final Schema schema) {
+    return null;
+  }
+
   public boolean supportsSequences() {
     return true;
   }
@@ -5,13 +5,40 @@ import org.springframework.roo.addon.dbre.addon.model.Schema;
 /**
  * Represents a dialect of SQL implemented by a particular RDBMS.
  * <p>
- * Support for querying sequences is only provided at this stage.
+ * Support for querying sequences and, where the JDBC driver can't return
+ * them for a whole schema, keys is only provided at this stage.
  * 
  * @author Alan Stewart
  * @since 1.1
  */
 public interface Dialect {
 
+  /**
+   * Returns a query for the foreign keys of every table in the given schema,
+   * for databases whose JDBC drivers can't return them all at once via
+   * {@link java.sql.DatabaseMetaData#getImportedKeys} or
+   * {@link java.sql.DatabaseMetaData#getExportedKeys}. The query's result
+   * set has the same columns as those methods', ordered by local table and
+   * then as they order them.
+   *
+   * @param schema the schema (required)
+   * @param exported whether to query the foreign keys referencing the
+   *            tables, rather than those of the tables
+   * @return the query, or <code>null</code> to use the driver's metadata
+   */
+  String getQueryForeignKeysString(Schema schema, boolean exported);
+
+  /**
+   * Returns a query for the primary key columns of every table in the given
+   * schema, for databases whose JDBC drivers can't return them all at once
+   * via {@link java.sql.DatabaseMetaData#getPrimaryKeys}. The query's result
+   * set has the same columns as that method's.
+   *
+   * @param schema the schema (required)
+   * @return the query, or <code>null</code> to use the driver's metadata
+   */
+  String getQueryPrimaryKeysString(Schema schema);
+
   String getQuerySequencesString(Schema schema) throws RuntimeException;
 
   boolean supportsSequences();
@@ -11,6 +11,40 @@ import org.springframework.roo.addon.dbre.addon.model.Schema;
  */
 public class OracleDialect extends AbstractDialect implements Dialect {
 
+  // The Oracle driver only returns the keys of one table at a time, so
+  // these query the data dictionary as it does, but for a whole schema
+  @Override
+  public String getQueryForeignKeysString(final Schema schema, final boolean exported) {
+    Validate.notNull(schema, "Schema required");
+    return "SELECT NULL AS PKTABLE_CAT, P.OWNER AS PKTABLE_SCHEM, P.TABLE_NAME AS PKTABLE_NAME, "
+        + "PC.COLUMN_NAME AS PKCOLUMN_NAME, NULL AS FKTABLE_CAT, F.OWNER AS FKTABLE_SCHEM, "
+        + "F.TABLE_NAME AS FKTABLE_NAME, FC.COLUMN_NAME AS FKCOLUMN_NAME, "
+        + "FC.POSITION AS KEY_SEQ, NULL AS UPDATE_RULE, "
+        + "DECODE(F.DELETE_RULE, 'CASCADE', 0, 'SET NULL', 2, 1) AS DELETE_RULE, "
+        + "F.CONSTRAINT_NAME AS FK_NAME, P.CONSTRAINT_NAME AS PK_NAME "
+        + "FROM ALL_CONS_COLUMNS PC, ALL_CONSTRAINTS P, ALL_CONS_COLUMNS FC, ALL_CONSTRAINTS F "
+        + "WHERE " + (exported ? "P" : "F") + ".OWNER = '" + schema.getName() + "' "
+        + "AND F.CONSTRAINT_TYPE = 'R' AND P.OWNER = F.R_OWNER "
+        + "AND P.CONSTRAINT_NAME = F.R_CONSTRAINT_NAME AND P.CONSTRAINT_TYPE IN ('P', 'U') "
+        + "AND PC.OWNER = P.OWNER AND PC.CONSTRAINT_NAME = P.CONSTRAINT_NAME "
+        + "AND PC.TABLE_NAME = P.TABLE_NAME AND FC.OWNER = F.OWNER "
+        + "AND FC.CONSTRAINT_NAME = F.CONSTRAINT_NAME AND FC.TABLE_NAME = F.TABLE_NAME "
+        + "AND FC.POSITION = PC.POSITION ORDER BY "
+        + (exported ? "PKTABLE_SCHEM, PKTABLE_NAME, FKTABLE_SCHEM, FKTABLE_NAME"
+            : "FKTABLE_SCHEM, FKTABLE_NAME, PKTABLE_SCHEM, PKTABLE_NAME") + ", KEY_SEQ";
+  }
+
+  @Override
+  public String getQueryPrimaryKeysString(final Schema schema) {
+    Validate.notNull(schema, "Schema required");
+    return "SELECT NULL AS TABLE_CAT, C.OWNER AS TABLE_SCHEM, C.TABLE_NAME, C.COLUMN_NAME, "
+        + "C.POSITION AS KEY_SEQ, C.CONSTRAINT_NAME AS PK_NAME "
+        + "FROM ALL_CONS_COLUMNS C, ALL_CONSTRAINTS K WHERE K.CONSTRAINT_TYPE = 'P' "
+        + "AND K.OWNER = '" + schema.getName() + "' AND K.CONSTRAINT_NAME = C.CONSTRAINT_NAME "
+        + "AND K.TABLE_NAME = C.TABLE_NAME AND K.OWNER = C.OWNER "
+        + "ORDER BY TABLE_SCHEM, TABLE_NAME, COLUMN_NAME";
+  }
+
   public String getQuerySequencesString(final Schema schema) {
     Validate.notNull(schema, "Schema required");
     return "SELECT SEQUENCE_NAME FROM ALL_SEQUENCES WHERE SEQUENCE_OWNER = '" + schema.getName()
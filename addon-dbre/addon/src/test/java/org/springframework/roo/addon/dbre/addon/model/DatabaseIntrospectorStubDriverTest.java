@@ -0,0 +1,339 @@
+package org.springframework.roo.addon.dbre.addon.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.roo.support.util.XmlUtils;
+
+/**
+ * Unit test of {@link DatabaseIntrospector} against a stub JDBC driver, which
+ * counts the metadata queries and can reject those for a whole schema.
+ *
+ * @since 2.0
+ */
+public class DatabaseIntrospectorStubDriverTest {
+
+  /**
+   * A database whose schemas each hold a chain of tables, every one but the
+   * first referring to the previous one, served by proxies of the JDBC
+   * interfaces
+   */
+  private static class StubDatabase {
+
+    private final String catalog;
+    private final String productName;
+    private final AtomicInteger queries = new AtomicInteger();
+    private final Set<Integer> queryingConnections = Collections
+        .synchronizedSet(new HashSet<Integer>());
+    private final Set<String> rejectedQueries = new HashSet<String>();
+    private final List<String> schemas;
+    private final List<String> tables = new ArrayList<String>();
+
+    StubDatabase(final String productName, final String catalog, final String... schemas) {
+      this.catalog = catalog;
+      this.productName = productName;
+      this.schemas = Arrays.asList(schemas);
+      for (int i = 0; i < TABLES; i++) {
+        tables.add("T" + i);
+      }
+    }
+
+    private static Map<String, Object> row(final Object... namesAndValues) {
+      final Map<String, Object> row = new HashMap<String, Object>();
+      for (int i = 0; i < namesAndValues.length; i += 2) {
+        row.put((String) namesAndValues[i], namesAndValues[i + 1]);
+      }
+      return row;
+    }
+
+    private static ResultSet resultSet(final List<Map<String, Object>> rows) {
+      return (ResultSet) Proxy.newProxyInstance(StubDatabase.class.getClassLoader(),
+          new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+            private int index = -1;
+
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+              final String name = method.getName();
+              if ("next".equals(name)) {
+                return ++index < rows.size();
+              }
+              if ("close".equals(name)) {
+                return null;
+              }
+              final Object value = rows.get(index).get(args[0]);
+              if ("getString".equals(name)) {
+                return value == null ? null : value.toString();
+              }
+              if ("getInt".equals(name)) {
+                return value == null ? 0 : ((Number) value).intValue();
+              }
+              if ("getShort".equals(name)) {
+                return value == null ? (short) 0 : ((Number) value).shortValue();
+              }
+              if ("getBoolean".equals(name)) {
+                return Boolean.TRUE.equals(value);
+              }
+              throw new UnsupportedOperationException(name);
+            }
+          });
+    }
+
+    private static boolean matches(final String tableNamePattern, final String tableName) {
+      return tableNamePattern == null || "%".equals(tableNamePattern)
+          || tableNamePattern.equals(tableName);
+    }
+
+    Connection connect(final int id) {
+      final InvocationHandler statement = new InvocationHandler() {
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+          if ("close".equals(method.getName())) {
+            return null;
+          }
+          if ("executeQuery".equals(method.getName())) {
+            return query(id, (String) args[0]);
+          }
+          throw new UnsupportedOperationException(method.getName());
+        }
+      };
+      final InvocationHandler connection = new InvocationHandler() {
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+          if ("getMetaData".equals(method.getName())) {
+            return Proxy.newProxyInstance(StubDatabase.class.getClassLoader(),
+                new Class<?>[] {DatabaseMetaData.class}, metaData(id, (Connection) proxy));
+          }
+          if ("createStatement".equals(method.getName())) {
+            return Proxy.newProxyInstance(StubDatabase.class.getClassLoader(),
+                new Class<?>[] {Statement.class}, statement);
+          }
+          throw new UnsupportedOperationException(method.getName());
+        }
+      };
+      return (Connection) Proxy.newProxyInstance(StubDatabase.class.getClassLoader(),
+          new Class<?>[] {Connection.class}, connection);
+    }
+
+    private List<Map<String, Object>> getColumns(final String schema, final String tableName) {
+      final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+      for (final String table : tables) {
+        if (matches(tableName, table)) {
+          rows.add(row("TABLE_CAT", catalog, "TABLE_SCHEM", schema, "TABLE_NAME", table,
+              "COLUMN_NAME", "ID", "DATA_TYPE", Types.BIGINT, "TYPE_NAME", "BIGINT",
+              "COLUMN_SIZE", 19, "IS_NULLABLE", "NO"));
+          rows.add(row("TABLE_CAT", catalog, "TABLE_SCHEM", schema, "TABLE_NAME", table,
+              "COLUMN_NAME", "NAME", "DATA_TYPE", Types.VARCHAR, "TYPE_NAME", "VARCHAR",
+              "COLUMN_SIZE", 100, "IS_NULLABLE", "NO", "REMARKS", "The name of " + table));
+          rows.add(row("TABLE_CAT", catalog, "TABLE_SCHEM", schema, "TABLE_NAME", table,
+              "COLUMN_NAME", "PARENT_ID", "DATA_TYPE", Types.BIGINT, "TYPE_NAME", "BIGINT",
+              "COLUMN_SIZE", 19, "IS_NULLABLE", "YES"));
+        }
+      }
+      return rows;
+    }
+
+    private List<Map<String, Object>> getIndexInfo(final String schema, final String tableName) {
+      final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+      rows.add(row("TABLE_SCHEM", schema, "TABLE_NAME", tableName, "TYPE",
+          DatabaseMetaData.tableIndexStatistic));
+      rows.add(row("TABLE_SCHEM", schema, "TABLE_NAME", tableName, "TYPE",
+          DatabaseMetaData.tableIndexOther, "INDEX_NAME", tableName + "_NAME", "NON_UNIQUE",
+          false, "COLUMN_NAME", "NAME"));
+      return rows;
+    }
+
+    private List<Map<String, Object>> getKeys(final String schema, final String tableName,
+        final boolean exported) {
+      final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+      for (int i = 1; i < tables.size(); i++) {
+        final String primaryTable = tables.get(i - 1);
+        final String foreignTable = tables.get(i);
+        if (matches(tableName, exported ? primaryTable : foreignTable)) {
+          rows.add(row("PKTABLE_CAT", catalog, "PKTABLE_SCHEM", schema, "PKTABLE_NAME",
+              primaryTable, "PKCOLUMN_NAME", "ID", "FKTABLE_CAT", catalog, "FKTABLE_SCHEM",
+              schema, "FKTABLE_NAME", foreignTable, "FKCOLUMN_NAME", "PARENT_ID", "FK_NAME",
+              "FK_" + foreignTable, "UPDATE_RULE", DatabaseMetaData.importedKeyNoAction,
+              "DELETE_RULE", DatabaseMetaData.importedKeyCascade));
+        }
+      }
+      return rows;
+    }
+
+    private List<Map<String, Object>> getPrimaryKeys(final String schema, final String tableName) {
+      final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+      for (final String table : tables) {
+        if (matches(tableName, table)) {
+          rows.add(row("TABLE_CAT", catalog, "TABLE_SCHEM", schema, "TABLE_NAME", table,
+              "COLUMN_NAME", "ID"));
+        }
+      }
+      return rows;
+    }
+
+    private List<Map<String, Object>> getTables(final String schema) {
+      final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+      for (final String table : tables) {
+        rows.add(row("TABLE_CAT", catalog, "TABLE_SCHEM", schema, "TABLE_NAME", table));
+      }
+      if ("Oracle".equals(productName)) {
+        // A dropped table in the recycle bin, which isn't to be read
+        rows.add(row("TABLE_CAT", catalog, "TABLE_SCHEM", schema, "TABLE_NAME", "BIN$T0"));
+      }
+      return rows;
+    }
+
+    private InvocationHandler metaData(final int id, final Connection connection) {
+      return new InvocationHandler() {
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws SQLException {
+          final String name = method.getName();
+          if ("getDatabaseProductName".equals(name)) {
+            return productName;
+          }
+          if ("storesLowerCaseIdentifiers".equals(name)) {
+            return false;
+          }
+          if ("storesUpperCaseIdentifiers".equals(name)) {
+            return true;
+          }
+          if ("getConnection".equals(name)) {
+            return connection;
+          }
+
+          queries.incrementAndGet();
+          queryingConnections.add(id);
+          final String schema = (String) args[1];
+          if ("getTables".equals(name)) {
+            return resultSet(getTables(schema));
+          }
+          final String tableName = (String) args[2];
+          if ((tableName == null || "%".equals(tableName)) && rejectedQueries.contains(name)) {
+            throw new SQLException(name + " requires a table name");
+          }
+          if ("getColumns".equals(name)) {
+            return resultSet(getColumns(schema, tableName));
+          }
+          if ("getExportedKeys".equals(name) || "getImportedKeys".equals(name)) {
+            return resultSet(getKeys(schema, tableName, "getExportedKeys".equals(name)));
+          }
+          if ("getIndexInfo".equals(name)) {
+            return resultSet(getIndexInfo(schema, tableName));
+          }
+          if ("getPrimaryKeys".equals(name)) {
+            return resultSet(getPrimaryKeys(schema, tableName));
+          }
+          throw new UnsupportedOperationException(name);
+        }
+      };
+    }
+
+    /**
+     * Answers the schema-wide queries of the {@link OracleDialect}
+     */
+    private ResultSet query(final int id, final String sql) {
+      queries.incrementAndGet();
+      queryingConnections.add(id);
+      for (final String schema : schemas) {
+        if (sql.contains("OWNER = '" + schema + "'")) {
+          if (sql.contains("CONSTRAINT_TYPE = 'P'")) {
+            return resultSet(getPrimaryKeys(schema, null));
+          }
+          return resultSet(getKeys(schema, null, sql.contains("WHERE P.OWNER")));
+        }
+      }
+      throw new UnsupportedOperationException(sql);
+    }
+
+    void reject(final String... queryNames) {
+      rejectedQueries.addAll(Arrays.asList(queryNames));
+    }
+  }
+
+  private static final int TABLES = 20;
+
+  /**
+   * Introspects the given database on the given number of connections,
+   * returning its model as dbre.xml
+   */
+  private String introspect(final StubDatabase database, final boolean bulk,
+      final int connectionCount) throws SQLException {
+    database.queries.set(0);
+    database.queryingConnections.clear();
+    final Set<Schema> schemas = new LinkedHashSet<Schema>();
+    for (final String schema : database.schemas) {
+      schemas.add(new Schema(schema));
+    }
+    final List<Connection> connections = new ArrayList<Connection>();
+    for (int i = 1; i < connectionCount; i++) {
+      connections.add(database.connect(i));
+    }
+
+    final Database model =
+        new DatabaseIntrospector(database.connect(0), schemas, false, new HashSet<String>(),
+            new HashSet<String>(), bulk).createDatabase(connections);
+    assertEquals(TABLES * schemas.size(), model.getTables().size());
+    model.setModuleName("");
+    return XmlUtils.nodeToString(DatabaseXmlUtils.getDatabaseDocument(model));
+  }
+
+  @Test
+  public void testReadsInParallelWithNoMoreQueriesThanSerially() throws SQLException {
+    for (final StubDatabase database : Arrays.asList(new StubDatabase("H2", "DB", "PUBLIC"),
+        new StubDatabase("H2", "DB", "PUBLIC", "OTHER"))) {
+      final String expected = introspect(database, true, 1);
+      final int serialQueries = database.queries.get();
+
+      assertEquals(expected, introspect(database, true, 4));
+      assertTrue(database.queries.get() <= serialQueries);
+      assertTrue(database.queryingConnections.size() > 1);
+
+      database.reject("getColumns", "getExportedKeys", "getImportedKeys", "getPrimaryKeys");
+      assertEquals(expected, introspect(database, true, 4));
+    }
+  }
+
+  @Test
+  public void testReadsSameModelWhenDriverRejectsSchemaWideQueries() throws SQLException {
+    final StubDatabase database = new StubDatabase("H2", "DB", "PUBLIC");
+    final String expected = introspect(database, false, 1);
+    final int tableByTableQueries = database.queries.get();
+    assertEquals(expected, introspect(database, true, 1));
+
+    database.reject("getColumns", "getExportedKeys", "getImportedKeys", "getPrimaryKeys");
+
+    assertEquals(expected, introspect(database, true, 1));
+    // Only the first schema-wide query was tried
+    assertEquals(tableByTableQueries + 1, database.queries.get());
+  }
+
+  @Test
+  public void testReadsOracleKeysViaDialectQueries() throws SQLException {
+    final StubDatabase database = new StubDatabase("Oracle", null, "SCOTT");
+    final String expected = introspect(database, false, 1);
+
+    // Like Oracle's driver, only read keys table by table
+    database.reject("getExportedKeys", "getImportedKeys", "getPrimaryKeys");
+
+    assertEquals(expected, introspect(database, true, 1));
+    // The tables, their columns, three dialect queries and the indices
+    assertEquals(5 + TABLES, database.queries.get());
+  }
+}
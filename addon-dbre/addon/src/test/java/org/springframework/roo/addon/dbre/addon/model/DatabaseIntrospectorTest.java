@@ -0,0 +1,117 @@
+package org.springframework.roo.addon.dbre.addon.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.support.util.XmlUtils;
+
+/**
+ * Unit test of {@link DatabaseIntrospector} against an in-memory H2 database.
+ *
+ * @since 2.0
+ */
+public class DatabaseIntrospectorTest {
+
+  private static final int TABLES = 2000;
+
+  private Connection connection;
+
+  @Before
+  public void setUp() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:h2:mem:introspection", "sa", "");
+    final Statement statement = connection.createStatement();
+    try {
+      for (int i = 0; i < TABLES; i++) {
+        final String parent = i == 0 ? "" : ", PARENT_ID BIGINT REFERENCES TABLE_" + (i - 1);
+        statement.addBatch("CREATE TABLE TABLE_" + i
+            + " (ID BIGINT PRIMARY KEY, NAME VARCHAR(100) NOT NULL, CODE CHAR(3)" + parent + ")");
+        statement.addBatch("CREATE UNIQUE INDEX TABLE_" + i + "_CODE ON TABLE_" + i + " (CODE)");
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+  }
+
+  @After
+  public void tearDown() throws SQLException {
+    final Statement statement = connection.createStatement();
+    try {
+      statement.execute("DROP ALL OBJECTS");
+    } finally {
+      statement.close();
+      connection.close();
+    }
+  }
+
+  private Database introspect(final boolean bulk) throws SQLException {
+    final Set<Schema> schemas = Collections.singleton(new Schema("PUBLIC"));
+    final Database database =
+        new DatabaseIntrospector(connection, schemas, false, new HashSet<String>(),
+            new HashSet<String>(), bulk).createDatabase();
+    database.setModuleName("");
+    return database;
+  }
+
+  @Test
+  public void testReadsSchemaAtOnce() throws SQLException {
+    final Database database = introspect(true);
+
+    assertEquals(TABLES, database.getTables().size());
+    final Table table = database.getTable("TABLE_1", "PUBLIC");
+    assertEquals(4, table.getColumns().size());
+    assertEquals(1, table.getPrimaryKeyCount());
+    assertTrue(table.findColumn("ID").isPrimaryKey());
+    assertTrue(table.findColumn("NAME").isRequired());
+    assertEquals(1, table.getImportedKeys().size());
+    assertEquals("TABLE_0", table.getImportedKeys().iterator().next().getForeignTableName());
+    assertEquals(1, table.getExportedKeys().size());
+    assertEquals("TABLE_2", table.getExportedKeys().iterator().next().getForeignTableName());
+  }
+
+  @Test
+  public void testReadsSameModelOnSeveralConnections() throws SQLException {
+    final String expected =
+        XmlUtils.nodeToString(DatabaseXmlUtils.getDatabaseDocument(introspect(true)));
+
+    final List<Connection> connections = new ArrayList<Connection>();
+    try {
+      for (int i = 0; i < 3; i++) {
+        connections.add(DriverManager.getConnection("jdbc:h2:mem:introspection", "sa", ""));
+      }
+      final Database database =
+          new DatabaseIntrospector(connection, Collections.singleton(new Schema("PUBLIC")),
+              false, new HashSet<String>(), new HashSet<String>()).createDatabase(connections);
+      database.setModuleName("");
+
+      assertEquals(expected, XmlUtils.nodeToString(DatabaseXmlUtils.getDatabaseDocument(database)));
+    } finally {
+      for (final Connection workerConnection : connections) {
+        workerConnection.close();
+      }
+    }
+  }
+
+  @Test
+  public void testReadsSameModelAsOneTableAtATime() throws SQLException {
+    final String expected =
+        XmlUtils.nodeToString(DatabaseXmlUtils.getDatabaseDocument(introspect(false)));
+    final String actual =
+        XmlUtils.nodeToString(DatabaseXmlUtils.getDatabaseDocument(introspect(true)));
+
+    assertEquals(expected, actual);
+  }
+}
@@ -253,10 +253,15 @@ public class ThymeleafViewGenerator extends AbstractFreeMarkerViewGenerationServ
   public void writeDoc(Document document, String viewPath) {
     // Write doc on disk
     if (document != null && StringUtils.isNotBlank(viewPath)) {
-      getFileManager().createOrUpdateTextFileIfRequired(viewPath, document.html(), false);
+      getFileManager().createOrUpdateTextFileIfRequired(viewPath, getContent(document), false);
     }
   }
 
+  @Override
+  public String getContent(Document document) {
+    return document.html();
+  }
+
   @Override
   public void installTemplates() {
     // Getting destination where FreeMarker templates should be installed.
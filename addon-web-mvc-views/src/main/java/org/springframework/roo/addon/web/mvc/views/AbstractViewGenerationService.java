@@ -5,17 +5,30 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.addon.plural.addon.PluralService;
@@ -43,6 +56,9 @@ import org.springframework.roo.model.Jsr303JavaType;
 import org.springframework.roo.model.RooJavaType;
 import org.springframework.roo.model.SpringJavaType;
 import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.process.manager.event.ProcessManagerStatus;
+import org.springframework.roo.process.manager.event.ProcessManagerStatusListener;
+import org.springframework.roo.process.manager.event.ProcessManagerStatusProvider;
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.osgi.ServiceInstaceManager;
 
@@ -64,14 +80,57 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
 
   private static Logger LOGGER = HandlerUtils.getLogger(AbstractViewGenerationService.class);
 
+  /**
+   * The system property giving the number of views that can be generated
+   * concurrently; one or less generates them one at a time
+   */
+  static final String PARALLELISM_PROPERTY = "roo.views.parallelism";
+
   private ServiceInstaceManager serviceInstaceManager = new ServiceInstaceManager();
 
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private ExecutorService viewGenerationExecutor;
+
+  /** key: view path */
+  private final ConcurrentMap<String, GeneratedView> generatedViews =
+      new ConcurrentHashMap<String, GeneratedView>();
+  // The number of views generated with each outcome since the last report
+  private final AtomicInteger createdViews = new AtomicInteger();
+  private final AtomicInteger mergedViews = new AtomicInteger();
+  private final AtomicInteger skippedViews = new AtomicInteger();
+  private final AtomicInteger unchangedViews = new AtomicInteger();
+  private final ProcessManagerStatusListener viewOutcomeReporter =
+      new ProcessManagerStatusListener() {
+        public void onProcessManagerStatusChange(final ProcessManagerStatus oldStatus,
+            final ProcessManagerStatus newStatus) {
+          // Report once each command (or scan) is over
+          if (newStatus == ProcessManagerStatus.AVAILABLE) {
+            reportGeneratedViews();
+          }
+        }
+      };
+
+  @Reference
+  protected ProcessManagerStatusProvider processManagerStatusProvider;
+
   // ------------ OSGi component attributes ----------------
   protected BundleContext context;
 
   protected void activate(final ComponentContext context) {
     this.context = context.getBundleContext();
     serviceInstaceManager.activate(this.context);
+    parallelism =
+        NumberUtils.toInt(this.context.getProperty(PARALLELISM_PROPERTY),
+            Runtime.getRuntime().availableProcessors());
+    processManagerStatusProvider.addProcessManagerStatusListener(viewOutcomeReporter);
+  }
+
+  protected synchronized void deactivate(final ComponentContext context) {
+    processManagerStatusProvider.removeProcessManagerStatusListener(viewOutcomeReporter);
+    if (viewGenerationExecutor != null) {
+      viewGenerationExecutor.shutdown();
+      viewGenerationExecutor = null;
+    }
   }
 
   protected abstract DOC process(String templateName, ViewContext ctx);
@@ -94,54 +153,223 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
 
   protected abstract void writeDoc(DOC document, String viewPath);
 
+  /**
+   * Returns the given document as it would be written by
+   * {@link #writeDoc(Object, String)}
+   *
+   * @param document the document (required)
+   * @return its content
+   */
+  protected abstract String getContent(DOC document);
+
+  /**
+   * What was last written to a view, so that it needn't be generated again
+   * while neither its inputs nor its file change
+   */
+  private static class GeneratedView {
+
+    final String contentHash;
+    final String fingerprint;
+
+    GeneratedView(final String fingerprint, final String contentHash) {
+      this.contentHash = contentHash;
+      this.fingerprint = fingerprint;
+    }
+  }
+
+  /**
+   * What generating a view came to
+   */
+  private enum ViewOutcome {
+
+    /** The view didn't exist, so was rendered */
+    CREATED,
+
+    /** The view was merged into its existing document, which changed */
+    MERGED,
+
+    /** Neither the inputs nor the file of the view had changed */
+    SKIPPED,
+
+    /** The view was merged into its existing document, which didn't change */
+    UNCHANGED
+  }
+
+  /**
+   * A view being generated, i.e. rendered or merged into its existing
+   * document, which can be done on any thread once it has been created
+   */
+  private abstract class ViewGeneration implements Runnable {
+
+    final ViewContext ctx;
+    final boolean exists;
+    // Of the inputs other than the templates, as they were when the view
+    // was requested
+    final String inputsFingerprint;
+    final String viewName;
+
+    String contentHash;
+    DOC doc;
+    // Of all the inputs, including the templates it's generated from
+    String fingerprint;
+    ViewOutcome outcome;
+
+    // The time taken by each stage, in nanoseconds
+    long mergeTime;
+    long parseTime;
+    long renderTime;
+    long writeTime;
+
+    /**
+     * Constructor
+     *
+     * @param templateName the template of the view
+     * @param viewName the path of the view
+     * @param ctx the context to generate it with, besides the given inputs
+     * @param inputs anything else the view is generated from, other than
+     *            the templates
+     */
+    ViewGeneration(final String templateName, final String viewName, final ViewContext ctx,
+        final Object... inputs) {
+      this.ctx = ctx;
+      this.exists = existsFile(viewName);
+      this.inputsFingerprint = ViewFingerprint.of(templateName, ctx.getModel(), inputs);
+      this.viewName = viewName;
+    }
+
+    public void run() {
+      if (!exists) {
+        final long started = System.nanoTime();
+        doc = render();
+        final String content = getContent(doc);
+        renderTime = System.nanoTime() - started;
+        contentHash = DigestUtils.shaHex(content);
+        outcome = ViewOutcome.CREATED;
+        return;
+      }
+
+      final long started = System.nanoTime();
+      final String existingContent = readView(viewName);
+      final String existingHash = DigestUtils.shaHex(existingContent);
+
+      // Nothing to do if the view was last generated from the same inputs
+      // and hasn't been changed since
+      final GeneratedView generated = generatedViews.get(viewName);
+      if (fingerprint != null && generated != null && fingerprint.equals(generated.fingerprint)
+          && existingHash.equals(generated.contentHash)) {
+        parseTime = System.nanoTime() - started;
+        outcome = ViewOutcome.SKIPPED;
+        return;
+      }
+
+      final DOC existingDoc = parse(existingContent);
+      final long parsed = System.nanoTime();
+      parseTime = parsed - started;
+      doc = merge(existingDoc);
+      final String content = getContent(doc);
+      mergeTime = System.nanoTime() - parsed;
+      if (content.equals(existingContent)) {
+        contentHash = existingHash;
+        outcome = ViewOutcome.UNCHANGED;
+      } else {
+        contentHash = DigestUtils.shaHex(content);
+        outcome = ViewOutcome.MERGED;
+      }
+    }
+
+    /**
+     * Merges this view into its existing document
+     */
+    abstract DOC merge(DOC existingDoc);
+
+    /**
+     * Renders this view, which doesn't exist yet
+     */
+    abstract DOC render();
+  }
+
   private static final String FIELD_SUFFIX = "field";
   private static final String TABLE_SUFFIX = "entity";
   private static final String DETAIL_SUFFIX = "detail";
   private static final String FINDER_SUFFIX = "finder";
 
+  @Override
+  public void addEntityViews(String moduleName, MemberDetails entityDetails, ViewContext ctx,
+      EntityViewType... views) {
+    final List<ViewGeneration> generations = new ArrayList<ViewGeneration>();
+    for (final EntityViewType view : views) {
+      switch (view) {
+        case CREATE:
+          generations.add(getCreateViewGeneration(moduleName, entityDetails, ctx.copy()));
+          break;
+        case LIST:
+          generations.add(getListViewGeneration(moduleName, entityDetails, ctx.copy()));
+          break;
+        case SHOW:
+          generations.add(getShowViewGeneration(moduleName, entityDetails, ctx.copy()));
+          break;
+        case UPDATE:
+          generations.add(getUpdateViewGeneration(moduleName, entityDetails, ctx.copy()));
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported view " + view);
+      }
+    }
+    generateViews(generations);
+  }
+
   @Override
   public void addListView(String moduleName, MemberDetails entityDetails, ViewContext ctx) {
+    generateViews(Collections.singletonList(getListViewGeneration(moduleName, entityDetails, ctx)));
+  }
+
+  private ViewGeneration getListViewGeneration(String moduleName, MemberDetails entityDetails,
+      final ViewContext ctx) {
 
     // Getting entity fields that should be included on view
     List<FieldMetadata> entityFields = entityDetails.getFields();
-    List<FieldItem> fields =
+    final List<FieldItem> fields =
         getFieldViewItems(entityFields, ctx.getEntityName(), true, ctx, TABLE_SUFFIX);
-    List<DetailEntityItem> details =
+    final List<DetailEntityItem> details =
         getDetailsFieldViewItems(entityDetails, ctx.getEntityName(), ctx, DETAIL_SUFFIX);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat("/list")
             .concat(getViewsExtension());
 
-    EntityItem entityItem =
+    final EntityItem entityItem =
         new EntityItem(ctx.getEntityName(), ctx.getIdentifierField(), ctx.getControllerPath(),
             TABLE_SUFFIX);
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = mergeListView("list", loadExistingDoc(viewName), ctx, entityItem, fields, details);
-    } else {
-      ctx.addExtraParameter("entity", entityItem);
-      ctx.addExtraParameter("fields", fields);
-      ctx.addExtraParameter("details", details);
-      newDoc = process("list", ctx);
-    }
+    return new ViewGeneration("list", viewName, ctx, entityItem, fields, details) {
 
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+      @Override
+      DOC merge(final DOC existingDoc) {
+        return mergeListView("list", existingDoc, ctx, entityItem, fields, details);
+      }
 
+      @Override
+      DOC render() {
+        ctx.addExtraParameter("entity", entityItem);
+        ctx.addExtraParameter("fields", fields);
+        ctx.addExtraParameter("details", details);
+        return process("list", ctx);
+      }
+    };
   }
 
   @Override
   public void addShowView(String moduleName, MemberDetails entityDetails, ViewContext ctx) {
+    generateViews(Collections.singletonList(getShowViewGeneration(moduleName, entityDetails, ctx)));
+  }
+
+  private ViewGeneration getShowViewGeneration(String moduleName, MemberDetails entityDetails,
+      final ViewContext ctx) {
 
     // Getting entity fields that should be included on view
     List<FieldMetadata> entityFields = entityDetails.getFields();
-    List<FieldItem> fields =
+    final List<FieldItem> fields =
         getFieldViewItems(entityFields, ctx.getEntityName(), false, ctx, FIELD_SUFFIX);
 
     // TODO: TO BE FIXED when implements details
@@ -150,88 +378,89 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
 
     ctx.addExtraParameter("details", details);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat("/show")
             .concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("show", loadExistingDoc(viewName), ctx, fields);
-    } else {
-      ctx.addExtraParameter("fields", fields);
-      newDoc = process("show", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
-
+    return new FormViewGeneration("show", viewName, ctx, fields);
   }
 
   @Override
   public void addCreateView(String moduleName, MemberDetails entityDetails, ViewContext ctx) {
+    generateViews(Collections
+        .singletonList(getCreateViewGeneration(moduleName, entityDetails, ctx)));
+  }
+
+  private ViewGeneration getCreateViewGeneration(String moduleName, MemberDetails entityDetails,
+      ViewContext ctx) {
 
     // Getting entity fields that should be included on view
     List<FieldMetadata> entityFields = entityDetails.getFields();
     List<FieldItem> fields =
         getFieldViewItems(entityFields, ctx.getEntityName(), false, ctx, FIELD_SUFFIX);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat("/create")
             .concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("create", loadExistingDoc(viewName), ctx, fields);
-    } else {
-      ctx.addExtraParameter("fields", fields);
-      newDoc = process("create", ctx);
-    }
-
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
-
+    return new FormViewGeneration("create", viewName, ctx, fields);
   }
 
   @Override
   public void addUpdateView(String moduleName, MemberDetails entityDetails, ViewContext ctx) {
+    generateViews(Collections
+        .singletonList(getUpdateViewGeneration(moduleName, entityDetails, ctx)));
+  }
+
+  private ViewGeneration getUpdateViewGeneration(String moduleName, MemberDetails entityDetails,
+      ViewContext ctx) {
 
     // Getting entity fields that should be included on view
     List<FieldMetadata> entityFields = entityDetails.getFields();
     List<FieldItem> fields =
         getFieldViewItems(entityFields, ctx.getEntityName(), false, ctx, FIELD_SUFFIX);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat("/edit")
             .concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("edit", loadExistingDoc(viewName), ctx, fields);
-    } else {
-      ctx.addExtraParameter("fields", fields);
-      newDoc = process("edit", ctx);
+    return new FormViewGeneration("edit", viewName, ctx, fields);
+  }
+
+  /**
+   * A view that shows the given fields, e.g. the show, create and edit
+   * views of an entity
+   */
+  private class FormViewGeneration extends ViewGeneration {
+
+    private final List<FieldItem> fields;
+    private final String templateName;
+
+    FormViewGeneration(final String templateName, final String viewName, final ViewContext ctx,
+        final List<FieldItem> fields) {
+      super(templateName, viewName, ctx, fields);
+      this.fields = fields;
+      this.templateName = templateName;
     }
 
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    @Override
+    DOC merge(final DOC existingDoc) {
+      return AbstractViewGenerationService.this.merge(templateName, existingDoc, ctx, fields);
+    }
 
+    @Override
+    DOC render() {
+      ctx.addExtraParameter("fields", fields);
+      return process(templateName, ctx);
+    }
   }
 
   @Override
   public void addFinderFormView(String moduleName, MemberDetails entityDetails, String finderName,
-      List<FieldMetadata> fieldsToAdd, ViewContext ctx) {
+      List<FieldMetadata> fieldsToAdd, final ViewContext ctx) {
 
     // Getting entity fields that should be included on view
     List<FieldItem> fields =
@@ -255,32 +484,32 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
     path = StringUtils.uncapitalize(path);
     ctx.addExtraParameter("action", path);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat(finderName)
             .concat("Form").concat(getViewsExtension());
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc = merge("finderForm", loadExistingDoc(viewName), ctx);
-    } else {
-      newDoc = process("finderForm", ctx);
-    }
+    generateViews(Collections.singletonList(new ViewGeneration("finderForm", viewName, ctx) {
 
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+      @Override
+      DOC merge(final DOC existingDoc) {
+        return AbstractViewGenerationService.this.merge("finderForm", existingDoc, ctx);
+      }
+
+      @Override
+      DOC render() {
+        return process("finderForm", ctx);
+      }
+    }));
   }
 
   @Override
   public void addFinderListView(String moduleName, MemberDetails returnTypeDetails,
-      String finderName, ViewContext ctx) {
+      String finderName, final ViewContext ctx) {
 
     // Getting entity fields that should be included on view
     List<FieldMetadata> entityFields = returnTypeDetails.getFields();
-    List<FieldItem> fields =
+    final List<FieldItem> fields =
         getFieldViewItems(entityFields, ctx.getEntityName(), false, ctx, StringUtils.EMPTY);
 
     // Build URL path to get data
@@ -299,30 +528,192 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
     path = StringUtils.uncapitalize(path);
     ctx.addExtraParameter("finderPath", path);
 
-    // Process elements to generate
-    DOC newDoc = null;
-
     // Getting new viewName
     String viewName =
         getViewsFolder(moduleName).concat(ctx.getControllerPath()).concat("/").concat(finderName)
             .concat("List").concat(getViewsExtension());
 
-    EntityItem entityItem =
+    final EntityItem entityItem =
         new EntityItem(ctx.getEntityName(), ctx.getIdentifierField(), ctx.getControllerPath(),
             FINDER_SUFFIX);
 
-    // Check if new view to generate exists or not
-    if (existsFile(viewName)) {
-      newDoc =
-          mergeListView("finderList", loadExistingDoc(viewName), ctx, entityItem, fields,
-              new ArrayList<DetailEntityItem>());
+    generateViews(Collections.singletonList(new ViewGeneration("finderList", viewName, ctx,
+        entityItem, fields) {
+
+      @Override
+      DOC merge(final DOC existingDoc) {
+        return mergeListView("finderList", existingDoc, ctx, entityItem, fields,
+            new ArrayList<DetailEntityItem>());
+      }
+
+      @Override
+      DOC render() {
+        ctx.addExtraParameter("fields", fields);
+        return process("finderList", ctx);
+      }
+    }));
+  }
+
+  /**
+   * Generates the given views, concurrently if there's more than one and
+   * the parallelism allows, then writes them in the given order on the
+   * calling thread, so that the file manager sees one deterministic batch.
+   * Nothing is written if any view can't be generated.
+   *
+   * @param generations the views to generate (required)
+   */
+  private void generateViews(final List<ViewGeneration> generations) {
+    final Object preparation = prepareViewGeneration();
+    // The templates are checked once for all the views
+    final String templatesVersion = getTemplatesVersion(preparation);
+    for (final ViewGeneration generation : generations) {
+      if (generation.inputsFingerprint != null) {
+        generation.fingerprint = ViewFingerprint.of(templatesVersion, generation.inputsFingerprint);
+      }
+    }
+    if (parallelism < 2 || generations.size() < 2) {
+      for (final ViewGeneration generation : generations) {
+        generateView(preparation, generation);
+      }
     } else {
-      ctx.addExtraParameter("fields", fields);
-      newDoc = process("finderList", ctx);
+      final List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (final ViewGeneration generation : generations) {
+        futures.add(getViewGenerationExecutor().submit(new Runnable() {
+          public void run() {
+            generateView(preparation, generation);
+          }
+        }));
+      }
+      // Wait for every view, so that none is still being generated if one
+      // fails
+      Throwable failure = null;
+      for (final Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          for (final Future<?> remaining : futures) {
+            remaining.cancel(true);
+          }
+          throw new IllegalStateException("Interrupted while generating views", e);
+        } catch (final ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause();
+          }
+        }
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      if (failure != null) {
+        throw new IllegalStateException(failure);
+      }
     }
 
-    // Write newDoc on disk
-    writeDoc(newDoc, viewName);
+    for (final ViewGeneration generation : generations) {
+      if (generation.outcome == ViewOutcome.CREATED || generation.outcome == ViewOutcome.MERGED) {
+        final long started = System.nanoTime();
+        writeDoc(generation.doc, generation.viewName);
+        generation.writeTime = System.nanoTime() - started;
+      }
+      if (generation.fingerprint == null) {
+        generatedViews.remove(generation.viewName);
+      } else if (generation.outcome != ViewOutcome.SKIPPED) {
+        generatedViews.put(generation.viewName, new GeneratedView(generation.fingerprint,
+            generation.contentHash));
+      }
+      switch (generation.outcome) {
+        case CREATED:
+          createdViews.incrementAndGet();
+          break;
+        case MERGED:
+          mergedViews.incrementAndGet();
+          break;
+        case SKIPPED:
+          skippedViews.incrementAndGet();
+          break;
+        default:
+          unchangedViews.incrementAndGet();
+      }
+      if (LOGGER.isLoggable(Level.FINE)) {
+        LOGGER.fine(String.format("Generated %s: %s (render %.1f ms, parse existing %.1f ms, "
+            + "merge %.1f ms, write %.1f ms)", generation.viewName, generation.outcome,
+            generation.renderTime / 1e6, generation.parseTime / 1e6, generation.mergeTime / 1e6,
+            generation.writeTime / 1e6));
+      }
+    }
+  }
+
+  /**
+   * Reports how many views were skipped and merged since the last report,
+   * if any existing views were generated again
+   */
+  private void reportGeneratedViews() {
+    final int created = createdViews.getAndSet(0);
+    final int merged = mergedViews.getAndSet(0);
+    final int skipped = skippedViews.getAndSet(0);
+    final int unchanged = unchangedViews.getAndSet(0);
+    if (merged + skipped + unchanged > 0) {
+      LOGGER.info(String.format("Views: %d skipped as unchanged, %d re-merged (%d of them "
+          + "without changes), %d created", skipped, merged + unchanged, unchanged, created));
+    }
+  }
+
+  private synchronized ExecutorService getViewGenerationExecutor() {
+    if (viewGenerationExecutor == null) {
+      viewGenerationExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+        public Thread newThread(final Runnable runnable) {
+          final Thread thread = new Thread(runnable, "Roo view generator");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return viewGenerationExecutor;
+  }
+
+  /**
+   * Called on the calling thread before any views are generated, possibly
+   * on other threads; implementations can override it to do anything that
+   * mustn't be done concurrently, e.g. reading project settings
+   *
+   * @return anything the threads generating the views need, which is passed
+   *         to {@link #generateView(Object, Runnable)} (may be
+   *         <code>null</code>)
+   */
+  protected Object prepareViewGeneration() {
+    return null;
+  }
+
+  /**
+   * Generates a view on the current thread, which may not be the one that
+   * called {@link #prepareViewGeneration()}. This implementation just runs
+   * the given generation; implementations can override it to make the
+   * preparation available to it.
+   *
+   * @param preparation what {@link #prepareViewGeneration()} returned
+   * @param generation generates the view (required)
+   */
+  protected void generateView(final Object preparation, final Runnable generation) {
+    generation.run();
+  }
+
+  /**
+   * Returns the version of the templates that views are about to be
+   * generated from; views whose other inputs haven't changed are still
+   * generated again after it changes. Called once for each batch of views,
+   * on the calling thread, after {@link #prepareViewGeneration()}.
+   * Implementations whose templates can change while Roo is running, e.g.
+   * by being edited outside Roo, should override this.
+   *
+   * @param preparation what {@link #prepareViewGeneration()} returned
+   * @return a non-<code>null</code> version
+   */
+  protected String getTemplatesVersion(final Object preparation) {
+    return "";
   }
 
   @Override
@@ -1100,17 +1491,18 @@ public abstract class AbstractViewGenerationService<DOC> implements MVCViewGener
    * @return
    */
   protected DOC loadExistingDoc(String path) {
-    String content = "";
+    // Parse String content to obtain the same type of object
+    return parse(readView(path));
+  }
+
+  private String readView(String path) {
     try {
       // Load file and get STRING content
-      content = FileUtils.readFileToString(new File(path));
+      return FileUtils.readFileToString(new File(path));
 
     } catch (IOException e) {
       throw new RuntimeException(String.format("ERROR: Error trying to load existing doc %s", path));
     }
-
-    // Parse String content to obtain the same type of object
-    return parse(content);
   }
 
   /**
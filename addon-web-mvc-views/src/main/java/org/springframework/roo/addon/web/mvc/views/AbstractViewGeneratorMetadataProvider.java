@@ -349,24 +349,28 @@ public abstract class AbstractViewGeneratorMetadataProvider extends
 
     final String module = controllerDetail.getType().getModule();
 
+    // Add the views of this controller, which are generated together
+    final List<EntityViewType> views = new ArrayList<EntityViewType>();
     if (controllerMetadata.getType() == ControllerType.COLLECTION) {
       // Add list view
-      viewGenerationService.addListView(module, entityMemberDetails, ctx);
+      views.add(EntityViewType.LIST);
       if (!entityMetadata.isReadOnly()) {
         // If not readOnly, add create view
-        viewGenerationService.addCreateView(module, entityMemberDetails, ctx);
+        views.add(EntityViewType.CREATE);
       }
     } else if (controllerMetadata.getType() == ControllerType.ITEM) {
       // Add show view
-      viewGenerationService.addShowView(module, entityMemberDetails, ctx);
+      views.add(EntityViewType.SHOW);
 
       if (!entityMetadata.isReadOnly()) {
         // If not readOnly, add update view
-        viewGenerationService.addUpdateView(module, entityMemberDetails, ctx);
+        views.add(EntityViewType.UPDATE);
       }
     } else if (controllerMetadata.getType() == ControllerType.DETAIL) {
-      viewGenerationService.addListView(module, entityMemberDetails, ctx);
+      views.add(EntityViewType.LIST);
     }
+    viewGenerationService.addEntityViews(module, entityMemberDetails, ctx,
+        views.toArray(new EntityViewType[views.size()]));
 
     // Add finder views
     /* TODO
@@ -0,0 +1,35 @@
+package org.springframework.roo.addon.web.mvc.views;
+
+/**
+ * The views of an entity that
+ * {@link MVCViewGenerationService#addEntityViews(String, org.springframework.roo.classpath.scanner.MemberDetails, ViewContext, EntityViewType...)}
+ * can generate together.
+ *
+ * @since 2.0
+ */
+public enum EntityViewType {
+
+  /**
+   * The view to create an entity, as generated by
+   * {@link MVCViewGenerationService#addCreateView}
+   */
+  CREATE,
+
+  /**
+   * The view listing entities, as generated by
+   * {@link MVCViewGenerationService#addListView}
+   */
+  LIST,
+
+  /**
+   * The view showing an entity, as generated by
+   * {@link MVCViewGenerationService#addShowView}
+   */
+  SHOW,
+
+  /**
+   * The view to update an entity, as generated by
+   * {@link MVCViewGenerationService#addUpdateView}
+   */
+  UPDATE
+}
@@ -112,6 +112,22 @@ public interface MVCViewGenerationService {
    */
   void addUpdateView(String moduleName, MemberDetails entity, ViewContext ctx);
 
+  /**
+   * This operation will add the given views of an entity, as the
+   * corresponding add*View operations would, except that the views may be
+   * generated concurrently. They're written in the given order once they
+   * have all been generated; if any of them can't be, none are written.
+   *
+   * @param moduleName module where views will be added
+   * @param entity Details of an entity to be able to generate views
+   * @param ctx ViewContext that contains necessary information about
+   *            the controller, the project, etc...; not changed, as each
+   *            view is generated with its own copy
+   * @param views the views to add, in the order to write them
+   */
+  void addEntityViews(String moduleName, MemberDetails entity, ViewContext ctx,
+      EntityViewType... views);
+
   /**
    * This operation will add a finder form view using entityDetails and the
    * provided context
@@ -4,6 +4,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
+
 /**
  * This class contains all necessary information about views.
  * 
@@ -37,12 +39,39 @@ public class ViewContext {
   // Security information
   private boolean securityEnabled;
 
+  // The model built from the fields above, until one of them changes
+  private Map<String, Object> baseModel;
+
+  /**
+   * Returns a copy of this context, whose extra information can be changed
+   * without affecting this one, e.g. so that each view of an entity can be
+   * generated separately from the others
+   *
+   * @return a new instance
+   */
+  public ViewContext copy() {
+    final ViewContext copy = new ViewContext();
+    copy.projectName = projectName;
+    copy.description = description;
+    copy.version = version;
+    copy.controllerPath = controllerPath;
+    copy.identifierField = identifierField;
+    copy.modelAttribute = modelAttribute;
+    copy.modelAttributeName = modelAttributeName;
+    copy.entityName = entityName;
+    copy.extraInformation = new HashMap<String, Object>(extraInformation);
+    copy.securityEnabled = securityEnabled;
+    copy.baseModel = baseModel;
+    return copy;
+  }
+
   public String getControllerPath() {
     return controllerPath;
   }
 
   public void setControllerPath(String controllerPath) {
     this.controllerPath = controllerPath;
+    this.baseModel = null;
   }
 
   public String getProjectName() {
@@ -51,6 +80,7 @@ public class ViewContext {
 
   public void setProjectName(String projectName) {
     this.projectName = projectName;
+    this.baseModel = null;
   }
 
   public String getDescription() {
@@ -59,6 +89,7 @@ public class ViewContext {
 
   public void setDescription(String description) {
     this.description = description;
+    this.baseModel = null;
   }
 
   public String getVersion() {
@@ -67,6 +98,7 @@ public class ViewContext {
 
   public void setVersion(String version) {
     this.version = version;
+    this.baseModel = null;
   }
 
   public Map<String, Object> getExtraInformation() {
@@ -91,6 +123,7 @@ public class ViewContext {
 
   public void setModelAttribute(String modelAttribute) {
     this.modelAttribute = modelAttribute;
+    this.baseModel = null;
   }
 
   public String getEntityName() {
@@ -99,6 +132,7 @@ public class ViewContext {
 
   public void setEntityName(String entityName) {
     this.entityName = entityName;
+    this.baseModel = null;
   }
 
   public String getIdentifierField() {
@@ -107,6 +141,7 @@ public class ViewContext {
 
   public void setIdentifierField(String identifierField) {
     this.identifierField = identifierField;
+    this.baseModel = null;
   }
 
   public String getModelAttributeName() {
@@ -115,6 +150,7 @@ public class ViewContext {
 
   public void setModelAttributeName(String modelAttributeName) {
     this.modelAttributeName = modelAttributeName;
+    this.baseModel = null;
   }
 
   public boolean isSecurityEnabled() {
@@ -123,6 +159,49 @@ public class ViewContext {
 
   public void setSecurityEnabled(boolean securityEnabled) {
     this.securityEnabled = securityEnabled;
+    this.baseModel = null;
+  }
+
+  /**
+   * Returns the model to process view templates with: the project,
+   * controller, entity and security information of this context, followed by
+   * its extra information. The former part is only built again after it
+   * changes, as it's the same for every view of an entity.
+   *
+   * @return a new map, which callers may modify
+   */
+  public Map<String, Object> getModel() {
+    if (baseModel == null) {
+      final Map<String, Object> model = new HashMap<String, Object>();
+
+      // Getting project information
+      model.put("projectName", projectName);
+      model.put("description", description);
+      model.put("version", version);
+
+      // Getting controller information
+      model.put("controllerPath", controllerPath);
+
+      // Getting entity information
+      model.put("entityName", entityName);
+      if (entityName != null) {
+        model.put("entityLabel", FieldItem.buildLabel(entityName, ""));
+        model.put("entityLabelPlural", FieldItem.buildLabel(entityName, "plural"));
+        model.put("z", new FieldItem("", entityName).getZ());
+      }
+      model.put("identifierField", identifierField);
+      model.put("modelAttribute", String.format("${%s}", modelAttribute));
+      model.put("modelAttributeName", modelAttributeName);
+
+      // Getting security information
+      model.put("isSecurityEnabled", securityEnabled);
+      baseModel = model;
+    }
+
+    final Map<String, Object> model = new HashMap<String, Object>(baseModel);
+    // Add all extra elements. This is useful if some implementation wants
+    // to include its own information
+    model.putAll(extraInformation);
+    return model;
   }
-
 }
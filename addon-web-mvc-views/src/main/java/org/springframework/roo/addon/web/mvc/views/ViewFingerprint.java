@@ -0,0 +1,130 @@
+package org.springframework.roo.addon.web.mvc.views;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.roo.addon.web.mvc.views.components.DetailEntityItem;
+import org.springframework.roo.addon.web.mvc.views.components.EntityItem;
+import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
+
+/**
+ * Computes a fingerprint of the inputs a view is generated from, so that
+ * views whose inputs haven't changed needn't be generated again.
+ * <p>
+ * Inputs can be strings, numbers, booleans, enums, {@link FieldItem}s,
+ * {@link EntityItem}s (including {@link DetailEntityItem}s) and maps,
+ * collections or arrays of these. Maps are fingerprinted in key order, so
+ * that their iteration order doesn't matter.
+ *
+ * @since 2.0
+ */
+final class ViewFingerprint {
+
+  /**
+   * Returns the fingerprint of the given inputs
+   *
+   * @param inputs the inputs, in a fixed order (elements may be
+   *            <code>null</code>)
+   * @return a SHA-1 hash, or <code>null</code> if any input is of a type
+   *         that can't be fingerprinted, in which case the view should
+   *         always be generated
+   */
+  static String of(final Object... inputs) {
+    final StringBuilder sb = new StringBuilder();
+    for (final Object input : inputs) {
+      if (!append(sb, input)) {
+        return null;
+      }
+    }
+    return DigestUtils.shaHex(sb.toString());
+  }
+
+  private static boolean append(final StringBuilder sb, final Object value) {
+    if (value == null) {
+      sb.append('~');
+    } else if (value instanceof String || value instanceof Number || value instanceof Boolean
+        || value instanceof Character || value instanceof Enum) {
+      // Prefix the length, so that no two sequences of values look alike
+      final String string = value.toString();
+      sb.append(string.length()).append(':').append(string);
+    } else if (value instanceof FieldItem) {
+      final FieldItem field = (FieldItem) value;
+      sb.append("F(");
+      return appendAll(sb, field.getFieldName(), field.getFieldNameCapitalized(),
+          field.getFieldId(), field.getEntityName(), field.getLabel(), field.getType(),
+          field.getZ(), field.isUserManaged(), field.getCodeManaged(), field.getConfiguration(),
+          field.getJavascriptCode())
+          && close(sb);
+    } else if (value instanceof DetailEntityItem) {
+      final DetailEntityItem detail = (DetailEntityItem) value;
+      sb.append("D(");
+      return appendEntityItem(sb, detail)
+          && appendAll(sb, detail.getFieldName(), detail.getFieldNameCapitalized(),
+              detail.getTabLinkCode()) && close(sb);
+    } else if (value instanceof EntityItem) {
+      sb.append("E(");
+      return appendEntityItem(sb, (EntityItem) value) && close(sb);
+    } else if (value instanceof Map) {
+      final SortedMap<String, Object> sorted = new TreeMap<String, Object>();
+      for (final Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        if (!(entry.getKey() instanceof String)) {
+          return false;
+        }
+        sorted.put((String) entry.getKey(), entry.getValue());
+      }
+      sb.append('{');
+      for (final Entry<String, Object> entry : sorted.entrySet()) {
+        if (!appendAll(sb, entry.getKey(), entry.getValue())) {
+          return false;
+        }
+      }
+      sb.append('}');
+    } else if (value instanceof Collection) {
+      sb.append('[');
+      for (final Object element : (Collection<?>) value) {
+        if (!append(sb, element)) {
+          return false;
+        }
+      }
+      sb.append(']');
+    } else if (value instanceof Object[]) {
+      sb.append('[');
+      if (!appendAll(sb, (Object[]) value)) {
+        return false;
+      }
+      sb.append(']');
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  private static boolean appendAll(final StringBuilder sb, final Object... values) {
+    for (final Object value : values) {
+      if (!append(sb, value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean appendEntityItem(final StringBuilder sb, final EntityItem entity) {
+    return appendAll(sb, entity.getEntityName(), entity.getEntityItemId(), entity.getZ(),
+        entity.isUserManaged(), entity.getCodeManaged(), entity.getConfiguration(),
+        entity.getJavascriptCode());
+  }
+
+  private static boolean close(final StringBuilder sb) {
+    sb.append(')');
+    return true;
+  }
+
+  /**
+   * Constructor is private to prevent instantiation
+   */
+  private ViewFingerprint() {}
+}
@@ -1,37 +1,32 @@
 package org.springframework.roo.addon.web.mvc.views.template.engines;
 
-import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.springframework.roo.addon.web.mvc.views.AbstractViewGenerationService;
 import org.springframework.roo.addon.web.mvc.views.ViewContext;
-import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.support.osgi.OSGiUtils;
 import org.springframework.roo.support.util.FileUtils;
 
-import freemarker.template.Configuration;
-import freemarker.template.Template;
-import freemarker.template.TemplateExceptionHandler;
-import freemarker.template.Version;
-
 @Component(componentAbstract = true)
 public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
     AbstractViewGenerationService<DOC> {
 
   @Reference
   FileManager fileManager;
+  @Reference
+  FreeMarkerTemplateEngineService templateEngineService;
+
+  // The engine prepared for the views being generated by the current thread
+  private final ThreadLocal<FreeMarkerTemplateEngine> preparedTemplateEngine =
+      new ThreadLocal<FreeMarkerTemplateEngine>();
 
   protected abstract Class<?> getResourceLoaderClass();
 
@@ -45,55 +40,14 @@ public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
 
     try {
 
-      Configuration cfg = new Configuration(new Version(2, 3, 23));
-      cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
-
-      // Check if exists some template. If not, use classpath to locate the template
-      if (checkTemplates(getTemplatesLocation(), templateName)) {
-        // Process using FreeMarker and setDirectoryForTemplateLoading
-        cfg.setDirectoryForTemplateLoading(new File(getTemplatesLocation()));
-      } else {
-        // Process using FreeMarker and setClassForTemplateLoading
-        cfg.setClassForTemplateLoading(getResourceLoaderClass(), "templates");
-      }
-
-      // Prepare the template input:
-      Map<String, Object> input = new HashMap<String, Object>();
-
-      // Getting project information from ViewContext
-      input.put("projectName", ctx.getProjectName());
-      input.put("description", ctx.getDescription());
-      input.put("version", ctx.getVersion());
-
-      // Getting controller information from ViewContext
-      input.put("controllerPath", ctx.getControllerPath());
-
-      // Getting entity information from ViewContext
-      input.put("entityName", ctx.getEntityName());
-      if (ctx.getEntityName() != null) {
-        input.put("entityLabel", FieldItem.buildLabel(ctx.getEntityName(), ""));
-        input.put("entityLabelPlural", FieldItem.buildLabel(ctx.getEntityName(), "plural"));
-        input.put("z", new FieldItem("", ctx.getEntityName()).getZ());
-      }
-      input.put("identifierField", ctx.getIdentifierField());
-      input.put("modelAttribute", String.format("${%s}", ctx.getModelAttribute()));
-      input.put("modelAttributeName", ctx.getModelAttributeName());
-
-      // Getting security information from ViewContext
-      input.put("isSecurityEnabled", ctx.isSecurityEnabled());
-
-      // Add all extra elements from ViewContext. This is useful if some
-      // implementation wants to include its own information
-      for (Entry<String, Object> extraInformation : ctx.getExtraInformation().entrySet()) {
-        input.put(extraInformation.getKey(), extraInformation.getValue());
+      // Process the template using the long-lived engine of the current
+      // templates location, which only reads each template again once it
+      // has changed
+      FreeMarkerTemplateEngine templateEngine = preparedTemplateEngine.get();
+      if (templateEngine == null) {
+        templateEngine = getTemplateEngine();
       }
-
-      Template template = cfg.getTemplate(templateName.concat(".ftl"));
-      StringBuilderWriter writer = new StringBuilderWriter();
-      template.process(input, writer);
-      writer.close();
-
-      content = writer.toString();
+      content = templateEngine.process(templateName, ctx.getModel());
 
       if (StringUtils.isBlank(content)) {
         throw new RuntimeException(String.format(
@@ -112,6 +66,49 @@ public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
 
   }
 
+  /**
+   * Returns the template engine for the current templates location, having
+   * refreshed it so that it sees any templates changed since it was last
+   * used. Locating the templates reads the project settings, so this
+   * mustn't be called by the threads generating views.
+   *
+   * @return a non-<code>null</code> engine
+   */
+  protected FreeMarkerTemplateEngine getTemplateEngine() {
+    final FreeMarkerTemplateEngine engine =
+        templateEngineService.getEngine(getTemplatesLocation(), getResourceLoaderClass());
+    engine.refresh();
+    return engine;
+  }
+
+  @Override
+  protected String getTemplatesVersion(final Object preparation) {
+    // As of the refresh done when preparing, i.e. the last-modified times
+    // and lengths of any customized templates
+    return ((FreeMarkerTemplateEngine) preparation).getTemplatesVersion();
+  }
+
+  @Override
+  protected Object prepareViewGeneration() {
+    // Locate and check the templates once, on the calling thread
+    return getTemplateEngine();
+  }
+
+  @Override
+  protected void generateView(final Object preparation, final Runnable generation) {
+    final FreeMarkerTemplateEngine previous = preparedTemplateEngine.get();
+    preparedTemplateEngine.set((FreeMarkerTemplateEngine) preparation);
+    try {
+      generation.run();
+    } finally {
+      if (previous == null) {
+        preparedTemplateEngine.remove();
+      } else {
+        preparedTemplateEngine.set(previous);
+      }
+    }
+  }
+
   /**
    * This method will copy the contents of a directory to another if the
    * resource does not already exist in the target directory
@@ -162,6 +159,10 @@ public abstract class AbstractFreeMarkerViewGenerationService<DOC> extends
         }
       }
     }
+
+    // The copied templates might have the same last-modified times and
+    // lengths as the ones they replaced
+    templateEngineService.invalidate(targetDirectory);
   }
 
 }
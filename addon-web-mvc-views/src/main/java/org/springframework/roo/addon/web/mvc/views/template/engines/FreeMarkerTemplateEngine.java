@@ -0,0 +1,199 @@
+package org.springframework.roo.addon.web.mvc.views.template.engines;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.file.monitor.event.FileDetails;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateExceptionHandler;
+import freemarker.template.Version;
+
+/**
+ * Processes the FreeMarker templates of a view generator, reading each one
+ * from the generator's templates location if it's there (i.e. it has been
+ * customized for the project), or else from the generator's bundle.
+ * <p>
+ * Templates are only read and parsed once, until {@link #refresh()} finds
+ * that a file in the templates location has been added, removed or changed
+ * (e.g. edited outside Roo), or {@link #invalidate()} is called to signal
+ * that it has. Instances are thread-safe.
+ *
+ * @since 2.0
+ */
+public class FreeMarkerTemplateEngine {
+
+  private static final String TEMPLATE_EXTENSION = ".ftl";
+  private static final Version VERSION = new Version(2, 3, 23);
+
+  private static Configuration newConfiguration() {
+    final Configuration configuration = new Configuration(VERSION);
+    configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+    // Changes are found by refresh() or signalled by invalidate(), so
+    // there's no need to check the templates for them
+    configuration.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+    return configuration;
+  }
+
+  private static void appendFiles(final StringBuilder sb, final File directory,
+      final String relativePath) {
+    final String[] names = directory.list();
+    if (names == null) {
+      return;
+    }
+    Arrays.sort(names);
+    for (final String name : names) {
+      final File file = new File(directory, name);
+      if (file.isDirectory()) {
+        appendFiles(sb, file, relativePath + name + "/");
+      } else {
+        sb.append(relativePath).append(name).append('|').append(file.lastModified()).append('|')
+            .append(file.length()).append('\n');
+      }
+    }
+  }
+
+  private final Configuration classpathConfiguration;
+  /** key: template name, value: whether the templates location contains it */
+  private final ConcurrentMap<String, Boolean> customTemplates =
+      new ConcurrentHashMap<String, Boolean>();
+  private volatile Configuration directoryConfiguration;
+  private long invalidations;
+  private final File templatesDirectory;
+  private final String templatesPath;
+  private String templatesVersion;
+
+  /**
+   * Constructor
+   *
+   * @param templatesLocation the directory of any customized templates
+   *            (required; need not exist)
+   * @param resourceLoaderClass the class whose "templates" resources are the
+   *            default templates (required)
+   */
+  public FreeMarkerTemplateEngine(final String templatesLocation,
+      final Class<?> resourceLoaderClass) {
+    Validate.notBlank(templatesLocation, "Templates location required");
+    Validate.notNull(resourceLoaderClass, "Resource loader class required");
+    templatesDirectory = new File(templatesLocation);
+    templatesPath = FileDetails.getCanonicalPath(templatesDirectory);
+    classpathConfiguration = newConfiguration();
+    classpathConfiguration.setClassForTemplateLoading(resourceLoaderClass, "templates");
+  }
+
+  /**
+   * Indicates whether the given file is in this engine's templates location
+   *
+   * @param canonicalPath the canonical path of the file (required)
+   * @return see above
+   */
+  public boolean contains(final String canonicalPath) {
+    return canonicalPath.equals(templatesPath)
+        || canonicalPath.startsWith(templatesPath + File.separator);
+  }
+
+  private Configuration getConfiguration(final String templateName) throws IOException {
+    Boolean custom = customTemplates.get(templateName);
+    if (custom == null) {
+      custom = new File(templatesDirectory, templateName + TEMPLATE_EXTENSION).isFile();
+      customTemplates.put(templateName, custom);
+    }
+    if (!custom) {
+      return classpathConfiguration;
+    }
+    Configuration configuration = directoryConfiguration;
+    if (configuration == null) {
+      synchronized (this) {
+        configuration = directoryConfiguration;
+        if (configuration == null) {
+          configuration = newConfiguration();
+          configuration.setDirectoryForTemplateLoading(templatesDirectory);
+          directoryConfiguration = configuration;
+        }
+      }
+    }
+    return configuration;
+  }
+
+  /**
+   * Returns the version of the templates as of the last call to
+   * {@link #refresh()}
+   *
+   * @return <code>null</code> if it hasn't been called yet
+   */
+  public synchronized String getTemplatesVersion() {
+    return templatesVersion;
+  }
+
+  /**
+   * Discards the templates read so far, so that they're read again when
+   * next processed, e.g. after Roo has replaced templates in the templates
+   * location
+   */
+  public synchronized void invalidate() {
+    // Changes the version even if the files' last-modified times and
+    // lengths didn't change
+    invalidations++;
+    clearTemplates();
+  }
+
+  private void clearTemplates() {
+    customTemplates.clear();
+    final Configuration configuration = directoryConfiguration;
+    if (configuration != null) {
+      configuration.clearTemplateCache();
+    }
+  }
+
+  /**
+   * Checks the last-modified times and lengths of the files in the templates
+   * location, discarding the templates read so far if any file has been
+   * added, removed or changed since the last check. Templates aren't
+   * checked for changes as they're processed, so this should be called
+   * before processing templates that may have changed, e.g. once before
+   * generating a batch of views.
+   *
+   * @return the version of the templates, which changes whenever they do
+   */
+  public synchronized String refresh() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(invalidations).append('\n');
+    appendFiles(sb, templatesDirectory, "");
+    final String version = DigestUtils.shaHex(sb.toString());
+    if (!version.equals(templatesVersion)) {
+      clearTemplates();
+      templatesVersion = version;
+    }
+    return version;
+  }
+
+  /**
+   * Processes the given template
+   *
+   * @param templateName the name of the template, without its ".ftl"
+   *            extension (required)
+   * @param model the model to process it with (required)
+   * @return the output of the template
+   * @throws IOException if the template can't be read
+   * @throws TemplateException if it can't be processed
+   */
+  public String process(final String templateName, final Map<String, Object> model)
+      throws IOException, TemplateException {
+    Validate.notBlank(templateName, "Template name required");
+    Validate.notNull(model, "Model required");
+    final Template template =
+        getConfiguration(templateName).getTemplate(templateName + TEMPLATE_EXTENSION);
+    final StringBuilderWriter writer = new StringBuilderWriter();
+    template.process(model, writer);
+    return writer.toString();
+  }
+}
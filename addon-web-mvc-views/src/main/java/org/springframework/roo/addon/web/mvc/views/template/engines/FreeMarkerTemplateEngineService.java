@@ -0,0 +1,32 @@
+package org.springframework.roo.addon.web.mvc.views.template.engines;
+
+/**
+ * Provides the long-lived {@link FreeMarkerTemplateEngine}s of the view
+ * generators, one per templates location.
+ *
+ * @since 2.0
+ */
+public interface FreeMarkerTemplateEngineService {
+
+  /**
+   * Returns the engine for the given templates
+   *
+   * @param templatesLocation the directory of any customized templates
+   *            (required; need not exist)
+   * @param resourceLoaderClass the class whose "templates" resources are the
+   *            default templates (required)
+   * @return a non-<code>null</code> engine, the same one each time for the
+   *         same arguments, which should be refreshed before use (see
+   *         {@link FreeMarkerTemplateEngine#refresh()})
+   */
+  FreeMarkerTemplateEngine getEngine(String templatesLocation, Class<?> resourceLoaderClass);
+
+  /**
+   * Discards the templates read so far by the engines whose templates
+   * location contains the given directory, e.g. after replacing templates in
+   * it
+   *
+   * @param templatesLocation the directory of the templates (required)
+   */
+  void invalidate(String templatesLocation);
+}
@@ -0,0 +1,54 @@
+package org.springframework.roo.addon.web.mvc.views.template.engines;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Service;
+import org.springframework.roo.file.monitor.event.FileDetails;
+
+/**
+ * Implementation of {@link FreeMarkerTemplateEngineService}. The file monitor
+ * doesn't report changes to the customized templates, as they're in the
+ * hidden ".roo" folder, so engines find them by checking their templates
+ * location when refreshed.
+ *
+ * @since 2.0
+ */
+@Component
+@Service
+public class FreeMarkerTemplateEngineServiceImpl implements FreeMarkerTemplateEngineService {
+
+  /** key: resource loader class and templates location */
+  private final ConcurrentMap<String, FreeMarkerTemplateEngine> engines =
+      new ConcurrentHashMap<String, FreeMarkerTemplateEngine>();
+
+  public FreeMarkerTemplateEngine getEngine(final String templatesLocation,
+      final Class<?> resourceLoaderClass) {
+    Validate.notBlank(templatesLocation, "Templates location required");
+    Validate.notNull(resourceLoaderClass, "Resource loader class required");
+    final String key = resourceLoaderClass.getName() + " " + templatesLocation;
+    FreeMarkerTemplateEngine engine = engines.get(key);
+    if (engine == null) {
+      final FreeMarkerTemplateEngine newEngine =
+          new FreeMarkerTemplateEngine(templatesLocation, resourceLoaderClass);
+      engine = engines.putIfAbsent(key, newEngine);
+      if (engine == null) {
+        engine = newEngine;
+      }
+    }
+    return engine;
+  }
+
+  public void invalidate(final String templatesLocation) {
+    Validate.notBlank(templatesLocation, "Templates location required");
+    final String canonicalPath = FileDetails.getCanonicalPath(new File(templatesLocation));
+    for (final FreeMarkerTemplateEngine engine : engines.values()) {
+      if (engine.contains(canonicalPath)) {
+        engine.invalidate();
+      }
+    }
+  }
+}
@@ -0,0 +1,295 @@
+package org.springframework.roo.addon.web.mvc.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.addon.web.mvc.views.components.DetailEntityItem;
+import org.springframework.roo.addon.web.mvc.views.components.EntityItem;
+import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
+import org.springframework.roo.addon.web.mvc.views.components.MenuEntry;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.scanner.MemberDetails;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.process.manager.event.ProcessManagerStatusProvider;
+
+/**
+ * Unit test of the view generation pipeline of
+ * {@link AbstractViewGenerationService}
+ */
+public class AbstractViewGenerationServiceTest {
+
+  /**
+   * Generates views whose document is their content, rendering each one
+   * more slowly than the next so that concurrent views finish out of order
+   */
+  private static class StubViewGenerationService extends AbstractViewGenerationService<String> {
+
+    private static final List<String> TEMPLATES = Arrays.asList("edit", "create", "show", "list");
+
+    private String failingTemplate;
+    private final AtomicInteger merges = new AtomicInteger();
+    private final AtomicInteger renders = new AtomicInteger();
+    private String templatesVersion = "1";
+    private final AtomicInteger templatesVersionChecks = new AtomicInteger();
+    private final TypeLocationService typeLocationService = mock(TypeLocationService.class);
+    private final File viewsFolder;
+    private final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+
+    StubViewGenerationService(final File viewsFolder, final int parallelism) {
+      this.viewsFolder = viewsFolder;
+      final BundleContext bundleContext = mock(BundleContext.class);
+      when(bundleContext.getProperty(PARALLELISM_PROPERTY)).thenReturn(
+          String.valueOf(parallelism));
+      final ComponentContext componentContext = mock(ComponentContext.class);
+      when(componentContext.getBundleContext()).thenReturn(bundleContext);
+      processManagerStatusProvider = mock(ProcessManagerStatusProvider.class);
+      activate(componentContext);
+    }
+
+    @Override
+    protected String process(final String templateName, final ViewContext ctx) {
+      if (templateName.equals(failingTemplate)) {
+        throw new IllegalStateException("Could not process " + templateName);
+      }
+      try {
+        Thread.sleep(10 * (TEMPLATES.indexOf(templateName) + 1));
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      renders.incrementAndGet();
+      return "<html>" + templateName + " of " + ctx.getEntityName() + "</html>";
+    }
+
+    @Override
+    protected String parse(final String content) {
+      return content;
+    }
+
+    @Override
+    protected String merge(final String templateName, final String existingDoc,
+        final ViewContext ctx) {
+      merges.incrementAndGet();
+      return process(templateName, ctx);
+    }
+
+    @Override
+    protected String merge(final String templateName, final String existingDoc,
+        final ViewContext ctx, final List<FieldItem> fields) {
+      return merge(templateName, existingDoc, ctx);
+    }
+
+    @Override
+    protected String mergeListView(final String templateName, final String existingDoc,
+        final ViewContext ctx, final EntityItem entity, final List<FieldItem> fields,
+        final List<DetailEntityItem> details) {
+      return merge(templateName, existingDoc, ctx);
+    }
+
+    @Override
+    protected String mergeMenu(final String templateName, final String existingDoc,
+        final ViewContext ctx, final List<MenuEntry> menuEntries) {
+      return merge(templateName, existingDoc, ctx);
+    }
+
+    @Override
+    protected String getTemplatesLocation() {
+      return viewsFolder.getPath();
+    }
+
+    @Override
+    protected String getTemplatesVersion(final Object preparation) {
+      templatesVersionChecks.incrementAndGet();
+      return templatesVersion;
+    }
+
+    @Override
+    protected void writeDoc(final String document, final String viewPath) {
+      written.add(viewPath.substring(viewsFolder.getPath().length()) + "=" + document);
+      try {
+        FileUtils.write(new File(viewPath), document);
+      } catch (final IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    protected String getContent(final String document) {
+      return document;
+    }
+
+    @Override
+    protected boolean existsFile(final String viewPath) {
+      return new File(viewPath).exists();
+    }
+
+    @Override
+    public TypeLocationService getTypeLocationService() {
+      return typeLocationService;
+    }
+
+    public JavaType getType() {
+      return null;
+    }
+
+    public String getName() {
+      return "stub";
+    }
+
+    public String getViewsFolder(final String moduleName) {
+      return viewsFolder.getPath();
+    }
+
+    public String getViewsExtension() {
+      return ".html";
+    }
+
+    public void installTemplates() {}
+  }
+
+  private static final EntityViewType[] ENTITY_VIEWS = {EntityViewType.LIST, EntityViewType.SHOW,
+      EntityViewType.CREATE, EntityViewType.UPDATE};
+
+  private static final File TEMP_DIR = new File(System.getProperty("java.io.tmpdir"));
+
+  // Fixture
+  private MemberDetails entityDetails;
+  private final List<File> viewsFolders = new ArrayList<File>();
+
+  @Before
+  public void setUp() {
+    entityDetails = mock(MemberDetails.class);
+    when(entityDetails.getFields()).thenReturn(new ArrayList<FieldMetadata>());
+  }
+
+  @After
+  public void tearDown() {
+    for (final File viewsFolder : viewsFolders) {
+      FileUtils.deleteQuietly(viewsFolder);
+    }
+  }
+
+  private StubViewGenerationService newService(final int parallelism) {
+    final File viewsFolder = new File(TEMP_DIR, "roo-views-" + System.nanoTime());
+    viewsFolders.add(viewsFolder);
+    return new StubViewGenerationService(viewsFolder, parallelism);
+  }
+
+  private ViewContext newViewContext() {
+    final ViewContext ctx = new ViewContext();
+    ctx.setProjectName("petclinic");
+    ctx.setControllerPath("/owners");
+    ctx.setEntityName("Owner");
+    ctx.setIdentifierField("id");
+    ctx.setModelAttribute("owner");
+    ctx.setModelAttributeName("owner");
+    return ctx;
+  }
+
+  @Test
+  public void testParallelAndSequentialGenerationWriteTheSameViewsInOrder() throws Exception {
+    final StubViewGenerationService sequential = newService(1);
+    final StubViewGenerationService parallel = newService(4);
+
+    for (final StubViewGenerationService service : Arrays.asList(sequential, parallel)) {
+      // Created, then merged into the edited views
+      service.addEntityViews("", entityDetails, newViewContext(), ENTITY_VIEWS);
+      for (final File view : service.viewsFolder.listFiles()[0].listFiles()) {
+        FileUtils.write(view, "<html>edited</html>");
+      }
+      service.addEntityViews("", entityDetails, newViewContext(), ENTITY_VIEWS);
+    }
+
+    assertEquals(8, sequential.written.size());
+    assertTrue(sequential.written.get(0).endsWith("/list.html=<html>list of Owner</html>"));
+    assertTrue(sequential.written.get(1).endsWith("/show.html=<html>show of Owner</html>"));
+    assertTrue(sequential.written.get(2).endsWith("/create.html=<html>create of Owner</html>"));
+    assertTrue(sequential.written.get(3).endsWith("/edit.html=<html>edit of Owner</html>"));
+    assertEquals(sequential.written.subList(0, 4), sequential.written.subList(4, 8));
+    assertEquals(4, sequential.merges.get());
+    assertEquals(sequential.written, parallel.written);
+    assertEquals(sequential.merges.get(), parallel.merges.get());
+  }
+
+  @Test
+  public void testNothingIsWrittenWhenAViewFails() {
+    for (final int parallelism : new int[] {1, 4}) {
+      final StubViewGenerationService service = newService(parallelism);
+      service.failingTemplate = "show";
+      try {
+        service.addEntityViews("", entityDetails, newViewContext(), ENTITY_VIEWS);
+        fail("Expected the failure to be thrown");
+      } catch (final IllegalStateException expected) {
+        assertEquals("Could not process show", expected.getMessage());
+      }
+      assertTrue(service.written.isEmpty());
+      assertFalse(service.viewsFolder.exists());
+    }
+  }
+
+  @Test
+  public void testViewIsSkippedOnlyWhileItsInputsAndFileAreUnchanged() throws Exception {
+    final StubViewGenerationService service = newService(1);
+    service.addEntityViews("", entityDetails, newViewContext(), EntityViewType.LIST);
+    assertEquals(1, service.renders.get());
+    assertEquals(1, service.written.size());
+    final File view = service.viewsFolder.listFiles()[0].listFiles()[0];
+
+    // Unchanged, so skipped
+    service.addEntityViews("", entityDetails, newViewContext(), EntityViewType.LIST);
+    assertEquals(1, service.renders.get());
+    assertEquals(1, service.written.size());
+
+    // The file was edited, so merged and written
+    FileUtils.write(view, "<html>edited</html>");
+    service.addEntityViews("", entityDetails, newViewContext(), EntityViewType.LIST);
+    assertEquals(1, service.merges.get());
+    assertEquals(2, service.written.size());
+    assertEquals("<html>list of Owner</html>", FileUtils.readFileToString(view));
+    service.addEntityViews("", entityDetails, newViewContext(), EntityViewType.LIST);
+    assertEquals(1, service.merges.get());
+
+    // The templates changed, so merged, but not written as the content is
+    // the same
+    service.templatesVersion = "2";
+    service.addEntityViews("", entityDetails, newViewContext(), EntityViewType.LIST);
+    assertEquals(2, service.merges.get());
+    assertEquals(2, service.written.size());
+    service.addEntityViews("", entityDetails, newViewContext(), EntityViewType.LIST);
+    assertEquals(2, service.merges.get());
+
+    // The inputs changed, so merged
+    final ViewContext ctx = newViewContext();
+    ctx.setEntityName("Pet");
+    service.addEntityViews("", entityDetails, ctx, EntityViewType.LIST);
+    assertEquals(3, service.merges.get());
+    assertEquals(3, service.written.size());
+  }
+
+  @Test
+  public void testTemplatesAreCheckedOnceForAllTheViews() {
+    for (final int parallelism : new int[] {1, 4}) {
+      final StubViewGenerationService service = newService(parallelism);
+      service.addEntityViews("", entityDetails, newViewContext(), ENTITY_VIEWS);
+      assertEquals(1, service.templatesVersionChecks.get());
+    }
+  }
+}
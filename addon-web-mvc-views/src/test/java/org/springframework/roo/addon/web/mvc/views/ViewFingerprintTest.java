@@ -0,0 +1,58 @@
+package org.springframework.roo.addon.web.mvc.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
+
+/**
+ * Unit test of {@link ViewFingerprint}
+ */
+public class ViewFingerprintTest {
+
+  @Test
+  public void testMapOrderDoesNotMatter() {
+    final Map<String, Object> ab = new LinkedHashMap<String, Object>();
+    ab.put("a", 1);
+    ab.put("b", "two");
+    final Map<String, Object> ba = new LinkedHashMap<String, Object>();
+    ba.put("b", "two");
+    ba.put("a", 1);
+
+    assertEquals(ViewFingerprint.of("list", ab), ViewFingerprint.of("list", ba));
+  }
+
+  @Test
+  public void testUnsupportedTypesHaveNoFingerprint() {
+    assertNull(ViewFingerprint.of("list", new Object()));
+    assertNull(ViewFingerprint.of("list", Arrays.asList("fields", new Object())));
+    assertNull(ViewFingerprint.of("list", Collections.singletonMap("fields", new Object())));
+    assertNull(ViewFingerprint.of("list", Collections.singletonMap(1, "fields")));
+  }
+
+  @Test
+  public void testLengthPrefixesTellValuesApart() {
+    assertFalse(ViewFingerprint.of("ab", "c").equals(ViewFingerprint.of("a", "bc")));
+    assertFalse(ViewFingerprint.of("1:a").equals(ViewFingerprint.of(1, "a")));
+    assertFalse(ViewFingerprint.of((Object) null).equals(ViewFingerprint.of("~")));
+  }
+
+  @Test
+  public void testFieldConfigurationIsFingerprinted() {
+    final FieldItem field = new FieldItem("name", "Owner", "field");
+    final String before = ViewFingerprint.of(Collections.singletonList(field));
+    assertNotNull(before);
+
+    field.addConfigurationElement("required", true);
+
+    assertFalse(before.equals(ViewFingerprint.of(Collections.singletonList(field))));
+  }
+}
@@ -0,0 +1,193 @@
+package org.springframework.roo.addon.web.mvc.views.template.engines;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.addon.web.mvc.views.ViewContext;
+import org.springframework.roo.addon.web.mvc.views.components.DetailEntityItem;
+import org.springframework.roo.addon.web.mvc.views.components.EntityItem;
+import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
+import org.springframework.roo.addon.web.mvc.views.components.MenuEntry;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.scanner.MemberDetails;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.process.manager.event.ProcessManagerStatusProvider;
+
+/**
+ * Unit test of how {@link AbstractFreeMarkerViewGenerationService} generates
+ * views from customized templates
+ */
+public class AbstractFreeMarkerViewGenerationServiceTest {
+
+  /**
+   * Generates views whose document is their content, merging them by
+   * replacing their content
+   */
+  private static class StubViewGenerationService extends
+      AbstractFreeMarkerViewGenerationService<String> {
+
+    private final File templatesFolder;
+    private final TypeLocationService typeLocationService = mock(TypeLocationService.class);
+    private final File viewsFolder;
+
+    StubViewGenerationService(final File templatesFolder, final File viewsFolder) {
+      this.templatesFolder = templatesFolder;
+      this.viewsFolder = viewsFolder;
+      templateEngineService = new FreeMarkerTemplateEngineServiceImpl();
+      final ComponentContext componentContext = mock(ComponentContext.class);
+      when(componentContext.getBundleContext()).thenReturn(mock(BundleContext.class));
+      processManagerStatusProvider = mock(ProcessManagerStatusProvider.class);
+      activate(componentContext);
+    }
+
+    @Override
+    protected Class<?> getResourceLoaderClass() {
+      return getClass();
+    }
+
+    @Override
+    protected String parse(final String content) {
+      return content;
+    }
+
+    @Override
+    protected String merge(final String templateName, final String existingDoc,
+        final ViewContext ctx) {
+      return process(templateName, ctx);
+    }
+
+    @Override
+    protected String merge(final String templateName, final String existingDoc,
+        final ViewContext ctx, final List<FieldItem> fields) {
+      return merge(templateName, existingDoc, ctx);
+    }
+
+    @Override
+    protected String mergeListView(final String templateName, final String existingDoc,
+        final ViewContext ctx, final EntityItem entity, final List<FieldItem> fields,
+        final List<DetailEntityItem> details) {
+      return merge(templateName, existingDoc, ctx);
+    }
+
+    @Override
+    protected String mergeMenu(final String templateName, final String existingDoc,
+        final ViewContext ctx, final List<MenuEntry> menuEntries) {
+      return merge(templateName, existingDoc, ctx);
+    }
+
+    @Override
+    protected String getTemplatesLocation() {
+      return templatesFolder.getPath();
+    }
+
+    @Override
+    protected void writeDoc(final String document, final String viewPath) {
+      try {
+        FileUtils.write(new File(viewPath), document);
+      } catch (final IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    protected String getContent(final String document) {
+      return document;
+    }
+
+    @Override
+    protected boolean existsFile(final String viewPath) {
+      return new File(viewPath).exists();
+    }
+
+    @Override
+    public TypeLocationService getTypeLocationService() {
+      return typeLocationService;
+    }
+
+    public JavaType getType() {
+      return null;
+    }
+
+    public String getName() {
+      return "stub";
+    }
+
+    public String getViewsFolder(final String moduleName) {
+      return viewsFolder.getPath();
+    }
+
+    public String getViewsExtension() {
+      return ".html";
+    }
+
+    public void installTemplates() {}
+  }
+
+  private static final File TEMP_DIR = new File(System.getProperty("java.io.tmpdir"));
+
+  // Fixture
+  private MemberDetails entityDetails;
+  private File templatesFolder;
+  private File viewsFolder;
+
+  @Before
+  public void setUp() {
+    entityDetails = mock(MemberDetails.class);
+    when(entityDetails.getFields()).thenReturn(new ArrayList<FieldMetadata>());
+    templatesFolder = new File(TEMP_DIR, "roo-templates-" + System.nanoTime());
+    viewsFolder = new File(TEMP_DIR, "roo-views-" + System.nanoTime());
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(templatesFolder);
+    FileUtils.deleteQuietly(viewsFolder);
+  }
+
+  /**
+   * Customizes the list template as if outside Roo, making sure its
+   * last-modified time changes
+   */
+  private void customizeListTemplate(final String content) throws Exception {
+    final File template = new File(templatesFolder, "list.ftl");
+    final long lastModified = template.lastModified();
+    FileUtils.write(template, content);
+    template.setLastModified(Math.max(lastModified, System.currentTimeMillis()) + 2000);
+  }
+
+  private ViewContext newViewContext() {
+    final ViewContext ctx = new ViewContext();
+    ctx.setProjectName("petclinic");
+    ctx.setControllerPath("/owners");
+    ctx.setEntityName("Owner");
+    ctx.setIdentifierField("id");
+    return ctx;
+  }
+
+  @Test
+  public void testViewIsGeneratedAgainAfterItsCustomizedTemplateIsEdited() throws Exception {
+    final StubViewGenerationService service =
+        new StubViewGenerationService(templatesFolder, viewsFolder);
+    final File view = new File(viewsFolder, "owners/list.html");
+    customizeListTemplate("<html>${entityName}s</html>");
+    service.addListView("", entityDetails, newViewContext());
+    assertEquals("<html>Owners</html>", FileUtils.readFileToString(view));
+
+    customizeListTemplate("<html>All ${entityName}s</html>");
+    service.addListView("", entityDetails, newViewContext());
+    assertEquals("<html>All Owners</html>", FileUtils.readFileToString(view));
+  }
+}
@@ -0,0 +1,87 @@
+package org.springframework.roo.addon.web.mvc.views.template.engines;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link FreeMarkerTemplateEngine}
+ */
+public class FreeMarkerTemplateEngineTest {
+
+  private static final File TEMP_DIR = new File(System.getProperty("java.io.tmpdir"));
+  private static final Map<String, Object> MODEL = Collections.<String, Object>singletonMap(
+      "name", "Owner");
+
+  // Fixture
+  private FreeMarkerTemplateEngine engine;
+  private File templatesDirectory;
+
+  @Before
+  public void setUp() {
+    templatesDirectory = new File(TEMP_DIR, "roo-templates-" + System.nanoTime());
+    engine = new FreeMarkerTemplateEngine(templatesDirectory.getPath(), getClass());
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(templatesDirectory);
+  }
+
+  /**
+   * Customizes the given template as if outside Roo, i.e. without
+   * invalidating the engine, making sure its last-modified time changes
+   */
+  private void customize(final String templateName, final String content) throws Exception {
+    final File template = new File(templatesDirectory, templateName + ".ftl");
+    final long lastModified = template.lastModified();
+    FileUtils.write(template, content);
+    template.setLastModified(Math.max(lastModified, System.currentTimeMillis()) + 2000);
+  }
+
+  @Test
+  public void testEditedCustomizedTemplateIsProcessedAgainOnceRefreshed() throws Exception {
+    customize("greeting", "Hello ${name}");
+    final String version = engine.refresh();
+    assertEquals("Hello Owner", engine.process("greeting", MODEL));
+
+    customize("greeting", "Goodbye ${name}");
+    assertEquals("Hello Owner", engine.process("greeting", MODEL));
+    assertFalse(version.equals(engine.refresh()));
+    assertEquals("Goodbye Owner", engine.process("greeting", MODEL));
+  }
+
+  @Test
+  public void testTemplateCustomizedAfterUseIsProcessedOnceRefreshed() throws Exception {
+    final String version = engine.refresh();
+    assertEquals("Default greeting for Owner\n", engine.process("greeting", MODEL));
+
+    customize("greeting", "Hello ${name}");
+    assertFalse(version.equals(engine.refresh()));
+    assertEquals("Hello Owner", engine.process("greeting", MODEL));
+
+    // Back to the default once the customized template is removed
+    FileUtils.forceDelete(new File(templatesDirectory, "greeting.ftl"));
+    engine.refresh();
+    assertEquals("Default greeting for Owner\n", engine.process("greeting", MODEL));
+  }
+
+  @Test
+  public void testVersionOnlyChangesWithTheTemplates() throws Exception {
+    customize("greeting", "Hello ${name}");
+    final String version = engine.refresh();
+    assertEquals(version, engine.refresh());
+
+    // Replaced by Roo, possibly within the file system's time resolution
+    engine.invalidate();
+    assertFalse(version.equals(engine.refresh()));
+  }
+}
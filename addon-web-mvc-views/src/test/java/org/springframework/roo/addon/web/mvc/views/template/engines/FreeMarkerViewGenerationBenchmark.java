@@ -0,0 +1,194 @@
+package org.springframework.roo.addon.web.mvc.views.template.engines;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.springframework.roo.addon.web.mvc.views.ViewContext;
+import org.springframework.roo.addon.web.mvc.views.components.FieldItem;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateExceptionHandler;
+import freemarker.template.Version;
+
+/**
+ * Stand-alone benchmark of generating the views of synthetic entities,
+ * comparing a new FreeMarker configuration per view, as
+ * {@link AbstractFreeMarkerViewGenerationService} used to create, with a
+ * long-lived {@link FreeMarkerTemplateEngine}. Reports the views generated
+ * per second.
+ * <p>
+ * Not run as part of the build; run the main method, optionally giving the
+ * number of entities (300 by default) and of passes to time (5 by default).
+ * The templates are written to a temporary directory, as if customized for
+ * a project.
+ */
+public class FreeMarkerViewGenerationBenchmark {
+
+  private interface Renderer {
+    String render(String templateName, ViewContext ctx) throws Exception;
+  }
+
+  private static final int FIELDS_PER_ENTITY = 10;
+
+  private static final String FIELD_MACRO = "<#macro field item>\n"
+      + "<div class=\"form-group\" id=\"${item.fieldId}\">\n"
+      + "  <label for=\"${item.fieldName}\" data-th-text=\"#{${item.label}}\">"
+      + "${item.fieldNameCapitalized}</label>\n"
+      + "  <input type=\"text\" id=\"${item.fieldName}\" name=\"${item.fieldName}\" "
+      + "data-th-field=\"*{${item.fieldName}}\"/>\n</div>\n</#macro>\n";
+
+  private static final String FORM_TEMPLATE = "<#import \"fragments/field.ftl\" as f>\n"
+      + "<html><head><title>${projectName} - ${entityLabel}</title></head><body>\n"
+      + "<form id=\"${entityName}-${z}\" data-th-object=\"${modelAttribute}\" "
+      + "data-th-action=\"@{${controllerPath}}\">\n"
+      + "<#list fields as field><@f.field item=field/></#list>\n"
+      + "<#if isSecurityEnabled><input type=\"hidden\" name=\"_csrf\"/></#if>\n"
+      + "</form></body></html>\n";
+
+  private static final String TABLE_TEMPLATE = "<html><head><title>${projectName} - "
+      + "${entityLabelPlural}</title></head><body>\n<table id=\"${entityName}-table\">\n"
+      + "<thead><tr><#list fields as field><th data-th-text=\"#{${field.label}}\">"
+      + "${field.fieldNameCapitalized}</th></#list></tr></thead>\n"
+      + "<tbody><tr data-th-each=\"item : ${modelAttribute}\"><#list fields as field>"
+      + "<td data-th-text=\"${r\"${item.\"}${field.fieldName}}\"></td></#list></tr></tbody>\n"
+      + "</table></body></html>\n";
+
+  private static final String[] VIEWS = {"list", "show", "create", "edit", "finderList"};
+
+  public static void main(final String[] args) throws Exception {
+    final int entities = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+    final int passes = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    final File templatesDirectory = File.createTempFile("templates", "");
+    templatesDirectory.delete();
+    try {
+      writeTemplates(templatesDirectory);
+      final List<ViewContext> contexts = new ArrayList<ViewContext>();
+      for (int i = 0; i < entities; i++) {
+        contexts.add(newViewContext("Entity" + i));
+      }
+      System.out.println("Generating " + VIEWS.length + " views for " + entities
+          + " entities " + passes + " times");
+
+      final int before = report("Configuration per view (before)", contexts, passes,
+          new Renderer() {
+            public String render(final String templateName, final ViewContext ctx)
+                throws Exception {
+              final Configuration cfg = new Configuration(new Version(2, 3, 23));
+              cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+              cfg.setDirectoryForTemplateLoading(templatesDirectory);
+              final Template template = cfg.getTemplate(templateName.concat(".ftl"));
+              final StringBuilderWriter writer = new StringBuilderWriter();
+              template.process(getModel(ctx), writer);
+              return writer.toString();
+            }
+          });
+      final FreeMarkerTemplateEngine engine =
+          new FreeMarkerTemplateEngine(templatesDirectory.getPath(),
+              FreeMarkerViewGenerationBenchmark.class);
+      final int after = report("FreeMarkerTemplateEngine (after)", contexts, passes,
+          new Renderer() {
+            public String render(final String templateName, final ViewContext ctx)
+                throws Exception {
+              return engine.process(templateName, ctx.getModel());
+            }
+          });
+      if (before != after) {
+        throw new IllegalStateException("Generated " + before + " characters before but "
+            + after + " after");
+      }
+    } finally {
+      FileUtils.deleteQuietly(templatesDirectory);
+    }
+  }
+
+  /**
+   * Builds the model of the given context the way
+   * {@link AbstractFreeMarkerViewGenerationService} used to for each view
+   */
+  private static Map<String, Object> getModel(final ViewContext ctx) {
+    final Map<String, Object> input = new HashMap<String, Object>();
+    input.put("projectName", ctx.getProjectName());
+    input.put("description", ctx.getDescription());
+    input.put("version", ctx.getVersion());
+    input.put("controllerPath", ctx.getControllerPath());
+    input.put("entityName", ctx.getEntityName());
+    if (ctx.getEntityName() != null) {
+      input.put("entityLabel", FieldItem.buildLabel(ctx.getEntityName(), ""));
+      input.put("entityLabelPlural", FieldItem.buildLabel(ctx.getEntityName(), "plural"));
+      input.put("z", new FieldItem("", ctx.getEntityName()).getZ());
+    }
+    input.put("identifierField", ctx.getIdentifierField());
+    input.put("modelAttribute", String.format("${%s}", ctx.getModelAttribute()));
+    input.put("modelAttributeName", ctx.getModelAttributeName());
+    input.put("isSecurityEnabled", ctx.isSecurityEnabled());
+    for (final Entry<String, Object> extraInformation : ctx.getExtraInformation().entrySet()) {
+      input.put(extraInformation.getKey(), extraInformation.getValue());
+    }
+    return input;
+  }
+
+  private static ViewContext newViewContext(final String entityName) {
+    final ViewContext ctx = new ViewContext();
+    ctx.setProjectName("benchmark");
+    ctx.setDescription("View generation benchmark");
+    ctx.setVersion("1.0.0");
+    ctx.setControllerPath("/" + entityName.toLowerCase());
+    ctx.setEntityName(entityName);
+    ctx.setIdentifierField("id");
+    ctx.setModelAttribute(entityName.toLowerCase());
+    ctx.setModelAttributeName(entityName.toLowerCase());
+    ctx.setSecurityEnabled(true);
+    final List<FieldItem> fields = new ArrayList<FieldItem>();
+    for (int i = 0; i < FIELDS_PER_ENTITY; i++) {
+      fields.add(new FieldItem("field" + i, entityName, "field"));
+    }
+    ctx.addExtraParameter("fields", fields);
+    return ctx;
+  }
+
+  private static int pass(final List<ViewContext> contexts, final Renderer renderer)
+      throws Exception {
+    int generated = 0;
+    for (final ViewContext ctx : contexts) {
+      for (final String view : VIEWS) {
+        generated += renderer.render(view, ctx).length();
+      }
+    }
+    return generated;
+  }
+
+  private static int report(final String name, final List<ViewContext> contexts,
+      final int passes, final Renderer renderer) throws Exception {
+    // Warm up the JIT
+    int generated = pass(contexts, renderer);
+
+    final long start = System.nanoTime();
+    for (int i = 0; i < passes; i++) {
+      generated = pass(contexts, renderer);
+    }
+    final long elapsed = System.nanoTime() - start;
+
+    final int views = contexts.size() * VIEWS.length * passes;
+    System.out.println(String.format("%-32s %8.3f ms/pass %10.0f views/s", name, elapsed / 1e6
+        / passes, views / (elapsed / 1e9)));
+    return generated;
+  }
+
+  private static void writeTemplates(final File templatesDirectory) throws Exception {
+    FileUtils.writeStringToFile(new File(templatesDirectory, "fragments/field.ftl"), FIELD_MACRO,
+        "UTF-8");
+    for (final String view : VIEWS) {
+      final boolean table = view.startsWith("list") || view.startsWith("finder");
+      FileUtils.writeStringToFile(new File(templatesDirectory, view + ".ftl"), table
+          ? TABLE_TEMPLATE : FORM_TEMPLATE, "UTF-8");
+    }
+  }
+}
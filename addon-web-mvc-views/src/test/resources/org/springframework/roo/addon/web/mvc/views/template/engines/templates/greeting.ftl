@@ -0,0 +1 @@
+Default greeting for ${name}
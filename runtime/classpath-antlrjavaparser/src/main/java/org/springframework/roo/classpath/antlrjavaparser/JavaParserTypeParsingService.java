@@ -6,17 +6,27 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.classpath.PhysicalTypeCategory;
 import org.springframework.roo.classpath.TypeLocationService;
 import org.springframework.roo.classpath.TypeParsingService;
@@ -62,11 +72,52 @@ import com.github.antlrjavaparser.api.type.ClassOrInterfaceType;
 @Service
 public class JavaParserTypeParsingService implements TypeParsingService {
 
+  /**
+   * A compilation unit parsed ahead of its type being requested, along with
+   * the state of its file at the time.
+   */
+  private static class ParsedUnit {
+
+    private final CompilationUnit compilationUnit;
+    private final long lastModified;
+    private final long length;
+
+    ParsedUnit(final CompilationUnit compilationUnit, final long lastModified, final long length) {
+      this.compilationUnit = compilationUnit;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+    boolean isCurrent(final File file) {
+      return file.lastModified() == lastModified && file.length() == length;
+    }
+  }
+
+  /**
+   * The bundle property giving the number of threads that
+   * {@link #parseAhead(Collection)} uses; defaults to the number of
+   * processors. A value of 1 disables parsing ahead.
+   */
+  static final String PARALLELISM_PROPERTY = "roo.parser.parallelism";
+
   @Reference
   MetadataService metadataService;
   @Reference
   TypeLocationService typeLocationService;
 
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private final Map<String, ParsedUnit> parsedAhead = new ConcurrentHashMap<String, ParsedUnit>();
+
+  protected void activate(final ComponentContext context) {
+    parallelism =
+        Math.max(1, NumberUtils.toInt(
+            context.getBundleContext().getProperty(PARALLELISM_PROPERTY), parallelism));
+  }
+
+  protected void deactivate(final ComponentContext context) {
+    discardParsedAhead();
+  }
+
   private void addEnumConstant(final List<EnumConstantDeclaration> constants,
       final JavaSymbolName name) {
     // Determine location to insert
@@ -80,6 +131,11 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     constants.add(constants.size(), newEntry);
   }
 
+  @Override
+  public void discardParsedAhead() {
+    parsedAhead.clear();
+  }
+
   @Override
   public final String getCompilationUnitContents(final ClassOrInterfaceTypeDetails cid) {
     Validate.notNull(cid, "Class or interface type details are required");
@@ -111,6 +167,10 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     Validate.notBlank(declaredByMetadataId, "Declaring metadata ID required");
     Validate.notNull(typeName, "Java type to locate required");
     final File file = new File(fileIdentifier);
+    final ParsedUnit parsedUnit = parsedAhead.remove(fileIdentifier);
+    if (parsedUnit != null && parsedUnit.isCurrent(file)) {
+      return getTypeFromCompilationUnit(parsedUnit.compilationUnit, declaredByMetadataId, typeName);
+    }
     String typeContents = "";
     try {
       typeContents = FileUtils.readFileToString(file);
@@ -122,6 +182,19 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     return getTypeFromString(typeContents, declaredByMetadataId, typeName);
   }
 
+  private ClassOrInterfaceTypeDetails getTypeFromCompilationUnit(
+      final CompilationUnit compilationUnit, final String declaredByMetadataId,
+      final JavaType typeName) {
+    final TypeDeclaration typeDeclaration =
+        JavaParserUtils.locateTypeDeclaration(compilationUnit, typeName);
+    if (typeDeclaration == null) {
+      return null;
+    }
+    return JavaParserClassOrInterfaceTypeDetailsBuilder.getInstance(compilationUnit, null,
+        typeDeclaration, declaredByMetadataId, typeName, metadataService, typeLocationService)
+        .build();
+  }
+
   @Override
   public ClassOrInterfaceTypeDetails getTypeFromString(final String fileContents,
       final String declaredByMetadataId, final JavaType typeName) {
@@ -134,14 +207,7 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     try {
       final CompilationUnit compilationUnit =
           JavaParser.parse(new ByteArrayInputStream(fileContents.getBytes()));
-      final TypeDeclaration typeDeclaration =
-          JavaParserUtils.locateTypeDeclaration(compilationUnit, typeName);
-      if (typeDeclaration == null) {
-        return null;
-      }
-      return JavaParserClassOrInterfaceTypeDetailsBuilder.getInstance(compilationUnit, null,
-          typeDeclaration, declaredByMetadataId, typeName, metadataService, typeLocationService)
-          .build();
+      return getTypeFromCompilationUnit(compilationUnit, declaredByMetadataId, typeName);
     } catch (final IOException e) {
       throw new IllegalStateException(e);
     } catch (final ParseException e) {
@@ -149,6 +215,73 @@ public class JavaParserTypeParsingService implements TypeParsingService {
     }
   }
 
+  @Override
+  public int parseAhead(final Collection<String> fileIdentifiers) {
+    Validate.notNull(fileIdentifiers, "File identifiers required");
+    discardParsedAhead();
+    if (parallelism < 2 || fileIdentifiers.size() < 2) {
+      // Nothing to gain over parsing each type when it is requested
+      return 0;
+    }
+
+    final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+    for (final String fileIdentifier : new LinkedHashSet<String>(fileIdentifiers)) {
+      tasks.add(new Callable<Boolean>() {
+        public Boolean call() {
+          return parseAhead(fileIdentifier);
+        }
+      });
+    }
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    int parsed = 0;
+    try {
+      for (final Future<Boolean> result : pool.invokeAll(tasks)) {
+        if (result.get()) {
+          parsed++;
+        }
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+    return parsed;
+  }
+
+  /**
+   * Parses the given compilation unit and keeps it for when its type is
+   * requested. Files that can't be read or parsed are left for that request
+   * to deal with (and report).
+   * 
+   * @param fileIdentifier the location of the compilation unit
+   * @return whether the compilation unit was parsed
+   */
+  private boolean parseAhead(final String fileIdentifier) {
+    final File file = new File(fileIdentifier);
+    // Captured before reading, so that any change made while reading is
+    // noticed when the parsed unit comes to be used
+    final long lastModified = file.lastModified();
+    final long length = file.length();
+    try {
+      final String contents = FileUtils.readFileToString(file);
+      if (StringUtils.isBlank(contents)) {
+        return false;
+      }
+      final CompilationUnit compilationUnit =
+          JavaParser.parse(new ByteArrayInputStream(contents.getBytes()));
+      parsedAhead.put(fileIdentifier, new ParsedUnit(compilationUnit, lastModified, length));
+      return true;
+    } catch (final IOException e) {
+      return false;
+    } catch (final ParseException e) {
+      return false;
+    } catch (final RuntimeException e) {
+      return false;
+    }
+  }
+
   /**
    * Appends the presented class to the end of the presented body
    * declarations. The body declarations appear within the presented
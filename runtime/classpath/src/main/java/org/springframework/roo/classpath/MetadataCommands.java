@@ -3,18 +3,33 @@ package org.springframework.roo.classpath;
 import static org.apache.commons.io.IOUtils.LINE_SEPARATOR;
 import static org.springframework.roo.shell.OptionContexts.INCLUDE_CURRENT_MODULE;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.felix.scr.annotations.ReferenceStrategy;
 import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
+import org.springframework.roo.classpath.itd.AbstractItdMetadataProvider;
 import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataLogger;
+import org.springframework.roo.metadata.MetadataProfile;
+import org.springframework.roo.metadata.MetadataProvider;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.metadata.MetadataTimingStatistic;
 import org.springframework.roo.model.JavaType;
@@ -29,12 +44,16 @@ import org.springframework.roo.shell.CommandMarker;
 
 @Component
 @Service
+@Reference(name = "metadataProvider", strategy = ReferenceStrategy.EVENT,
+    policy = ReferencePolicy.DYNAMIC, referenceInterface = MetadataProvider.class,
+    cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
 public class MetadataCommands implements CommandMarker {
 
   private static final String METADATA_FOR_MODULE_COMMAND = "metadata for module";
   private static final String METADATA_CACHE_COMMAND = "metadata cache";
   private static final String METADATA_FOR_ID_COMMAND = "metadata for id";
   private static final String METADATA_FOR_TYPE_COMMAND = "metadata for type";
+  private static final String METADATA_PROFILE_COMMAND = "metadata profile";
   private static final String METADATA_STATUS_COMMAND = "metadata status";
   private static final String METADATA_TRACE_COMMAND = "metadata trace";
 
@@ -51,9 +70,22 @@ public class MetadataCommands implements CommandMarker {
   @Reference
   private TypeLocationService typeLocationService;
 
+  private final Set<AbstractItdMetadataProvider> itdMetadataProviders =
+      new CopyOnWriteArraySet<AbstractItdMetadataProvider>();
+
+  protected void bindMetadataProvider(final MetadataProvider metadataProvider) {
+    if (metadataProvider instanceof AbstractItdMetadataProvider) {
+      itdMetadataProviders.add((AbstractItdMetadataProvider) metadataProvider);
+    }
+  }
+
+  protected void unbindMetadataProvider(final MetadataProvider metadataProvider) {
+    itdMetadataProviders.remove(metadataProvider);
+  }
+
   @CliAvailabilityIndicator({METADATA_FOR_MODULE_COMMAND, METADATA_CACHE_COMMAND,
-      METADATA_FOR_ID_COMMAND, METADATA_FOR_TYPE_COMMAND, METADATA_STATUS_COMMAND,
-      METADATA_TRACE_COMMAND})
+      METADATA_FOR_ID_COMMAND, METADATA_FOR_TYPE_COMMAND, METADATA_PROFILE_COMMAND,
+      METADATA_STATUS_COMMAND, METADATA_TRACE_COMMAND})
   public boolean isModuleMetadataAvailable() {
     return projectOperations.getFocusedModule() != null;
   }
@@ -152,13 +184,68 @@ public class MetadataCommands implements CommandMarker {
     return sb.toString();
   }
 
+  @CliCommand(value = METADATA_PROFILE_COMMAND,
+      help = "Profiles metadata requests and shows what has been profiled so far")
+  public String metadataProfile(
+      @CliOption(key = "start", mandatory = false, specifiedDefaultValue = "true",
+          unspecifiedDefaultValue = "false",
+          help = "Whether to start profiling, discarding any previous profile") final boolean start,
+      @CliOption(key = "stop", mandatory = false, specifiedDefaultValue = "true",
+          unspecifiedDefaultValue = "false", help = "Whether to stop profiling") final boolean stop,
+      @CliOption(
+          key = "file",
+          mandatory = false,
+          help = "The file to write the time spent in each chain of metadata providers to, in the collapsed stack format read by flame graph tools") final File file) {
+    Validate.isTrue(!start || !stop, "Profiling can't be both started and stopped");
+    if (start) {
+      metadataLogger.setProfiling(false);
+      metadataLogger.setProfiling(true);
+      return "Profiling metadata requests; use '" + METADATA_PROFILE_COMMAND
+          + "' to show the results";
+    }
+    if (stop) {
+      metadataLogger.setProfiling(false);
+    }
+    final MetadataProfile profile = metadataLogger.getProfile();
+    if (profile == null) {
+      return "Metadata requests haven't been profiled; use '" + METADATA_PROFILE_COMMAND
+          + " --start' to profile them";
+    }
+    if (file == null) {
+      return profile.toString();
+    }
+    Writer writer = null;
+    try {
+      writer = new FileWriter(file);
+      profile.writeCollapsedStacks(writer);
+    } catch (final IOException e) {
+      throw new IllegalStateException("Unable to write " + file, e);
+    } finally {
+      IOUtils.closeQuietly(writer);
+    }
+    return profile.toString() + LINE_SEPARATOR + "Collapsed stacks written to " + file;
+  }
+
   @CliCommand(value = METADATA_STATUS_COMMAND, help = "Shows metadata statistics")
   public String metadataTimings() {
     final StringBuilder sb = new StringBuilder();
     for (final MetadataTimingStatistic stat : metadataLogger.getTimings()) {
       sb.append(stat.toString()).append(LINE_SEPARATOR);
     }
-    sb.append(metadataService.toString());
+    sb.append(metadataService.toString()).append(LINE_SEPARATOR);
+    sb.append(memberDetailsScanner.toString()).append(LINE_SEPARATOR);
+    sb.append(metadataDependencyRegistry.toString());
+
+    // ITD files written (or not) by each provider, in name order
+    final Map<String, AbstractItdMetadataProvider> providersByName =
+        new TreeMap<String, AbstractItdMetadataProvider>();
+    for (final AbstractItdMetadataProvider provider : itdMetadataProviders) {
+      providersByName.put(provider.getClass().getSimpleName(), provider);
+    }
+    for (final Map.Entry<String, AbstractItdMetadataProvider> entry : providersByName.entrySet()) {
+      sb.append(LINE_SEPARATOR).append(entry.getKey()).append(" ")
+          .append(entry.getValue().getItdFileStatistics());
+    }
     return sb.toString();
   }
 
@@ -0,0 +1,248 @@
+package org.springframework.roo.classpath;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Indexes the project's types, by physical type identifier, on their
+ * annotations, custom data tags, extended types, implemented interfaces,
+ * package and module. Each type's entries are replaced whenever it is
+ * re-indexed, so the index can be kept up to date one type at a time.
+ * <p>
+ * Not thread safe.
+ *
+ * @since 2.0
+ */
+final class TypeIndex {
+
+  /**
+   * One secondary index, from a key to the identifiers of the types having
+   * it.
+   */
+  private static class KeyIndex<K> {
+
+    private final Map<K, Set<String>> typesByKey = new HashMap<K, Set<String>>();
+
+    void add(final K key, final String typeId) {
+      Set<String> typeIds = typesByKey.get(key);
+      if (typeIds == null) {
+        typeIds = new LinkedHashSet<String>();
+        typesByKey.put(key, typeIds);
+      }
+      typeIds.add(typeId);
+    }
+
+    Set<String> get(final K key) {
+      final Set<String> typeIds = typesByKey.get(key);
+      if (typeIds == null) {
+        return Collections.emptySet();
+      }
+      return typeIds;
+    }
+
+    void remove(final K key, final String typeId) {
+      final Set<String> typeIds = typesByKey.get(key);
+      if (typeIds != null) {
+        typeIds.remove(typeId);
+        if (typeIds.isEmpty()) {
+          typesByKey.remove(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * The keys under which a type is currently indexed.
+   */
+  private static class Entry {
+
+    private final Set<JavaType> annotations = new LinkedHashSet<JavaType>();
+    private final Set<String> extendsTypes = new LinkedHashSet<String>();
+    private final Set<String> implementsTypes = new LinkedHashSet<String>();
+    private String module;
+    private String packageName;
+    private final Set<Object> tags = new LinkedHashSet<Object>();
+  }
+
+  private static <K> void addAll(final KeyIndex<K> index, final Collection<K> keys,
+      final String typeId) {
+    for (final K key : keys) {
+      index.add(key, typeId);
+    }
+  }
+
+  private static <K> void removeAll(final KeyIndex<K> index, final Collection<K> keys,
+      final String typeId) {
+    for (final K key : keys) {
+      index.remove(key, typeId);
+    }
+  }
+
+  private final KeyIndex<JavaType> byAnnotation = new KeyIndex<JavaType>();
+  private final KeyIndex<String> byExtendsType = new KeyIndex<String>();
+  private final KeyIndex<String> byImplementsType = new KeyIndex<String>();
+  private final KeyIndex<String> byModule = new KeyIndex<String>();
+  private final KeyIndex<String> byPackage = new KeyIndex<String>();
+  private final KeyIndex<Object> byTag = new KeyIndex<Object>();
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+  boolean contains(final String typeId) {
+    return entries.containsKey(typeId);
+  }
+
+  /**
+   * Returns the identifiers of the indexed types matching the given query.
+   *
+   * @param query the query (required)
+   * @return a new set
+   */
+  Set<String> find(final TypeQuery query) {
+    Validate.notNull(query, "Query required");
+    final List<Set<String>> criteria = new ArrayList<Set<String>>();
+    for (final JavaType annotation : query.getAnnotations()) {
+      criteria.add(byAnnotation.get(annotation));
+    }
+    for (final Object tag : query.getTags()) {
+      criteria.add(byTag.get(tag));
+    }
+    for (final String extendsType : query.getExtendsTypes()) {
+      criteria.add(byExtendsType.get(extendsType));
+    }
+    for (final String implementsType : query.getImplementsTypes()) {
+      criteria.add(byImplementsType.get(implementsType));
+    }
+    addAlternatives(criteria, byPackage, query.getPackages());
+    addAlternatives(criteria, byModule, query.getModules());
+    if (criteria.isEmpty()) {
+      return new LinkedHashSet<String>(entries.keySet());
+    }
+
+    // Start from the most selective criterion
+    Set<String> smallest = criteria.get(0);
+    for (final Set<String> criterion : criteria) {
+      if (criterion.size() < smallest.size()) {
+        smallest = criterion;
+      }
+    }
+    final Set<String> result = new LinkedHashSet<String>();
+    for (final String typeId : smallest) {
+      if (matchesAll(typeId, criteria)) {
+        result.add(typeId);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A type is only in one package and one module, so asking for several of
+   * them means any of them.
+   */
+  private void addAlternatives(final List<Set<String>> criteria, final KeyIndex<String> index,
+      final Set<String> keys) {
+    if (keys.size() == 1) {
+      criteria.add(index.get(keys.iterator().next()));
+    } else if (keys.size() > 1) {
+      final Set<String> typeIds = new LinkedHashSet<String>();
+      for (final String key : keys) {
+        typeIds.addAll(index.get(key));
+      }
+      criteria.add(typeIds);
+    }
+  }
+
+  /**
+   * Returns the identifiers of the indexed types with the given annotation.
+   *
+   * @param annotationType the annotation (required)
+   * @return a new set
+   */
+  Set<String> findByAnnotation(final JavaType annotationType) {
+    return new LinkedHashSet<String>(byAnnotation.get(annotationType));
+  }
+
+  /**
+   * Returns the identifiers of the indexed types with the given custom data
+   * tag.
+   *
+   * @param tag the tag (required)
+   * @return a new set
+   */
+  Set<String> findByTag(final Object tag) {
+    return new LinkedHashSet<String>(byTag.get(tag));
+  }
+
+  private boolean matchesAll(final String typeId, final List<Set<String>> criteria) {
+    for (final Set<String> criterion : criteria) {
+      if (!criterion.contains(typeId)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Removes the given type from the index, if present.
+   *
+   * @param typeId the type's physical type identifier (required)
+   */
+  void remove(final String typeId) {
+    final Entry entry = entries.remove(typeId);
+    if (entry != null) {
+      removeAll(byAnnotation, entry.annotations, typeId);
+      removeAll(byTag, entry.tags, typeId);
+      removeAll(byExtendsType, entry.extendsTypes, typeId);
+      removeAll(byImplementsType, entry.implementsTypes, typeId);
+      byPackage.remove(entry.packageName, typeId);
+      byModule.remove(entry.module, typeId);
+    }
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Indexes the given type, replacing any entries it previously had.
+   *
+   * @param cid the type's details (required)
+   */
+  void update(final ClassOrInterfaceTypeDetails cid) {
+    Validate.notNull(cid, "Type details required");
+    final String typeId = cid.getDeclaredByMetadataId();
+    remove(typeId);
+
+    final Entry entry = new Entry();
+    for (final AnnotationMetadata annotation : cid.getAnnotations()) {
+      entry.annotations.add(annotation.getAnnotationType());
+    }
+    entry.tags.addAll(cid.getCustomData().keySet());
+    for (final JavaType extendsType : cid.getExtendsTypes()) {
+      entry.extendsTypes.add(extendsType.getFullyQualifiedTypeName());
+    }
+    for (final JavaType implementsType : cid.getImplementsTypes()) {
+      entry.implementsTypes.add(implementsType.getFullyQualifiedTypeName());
+    }
+    entry.packageName = cid.getName().getPackage().getFullyQualifiedPackageName();
+    entry.module = PhysicalTypeIdentifier.getPath(typeId).getModule();
+    entries.put(typeId, entry);
+
+    addAll(byAnnotation, entry.annotations, typeId);
+    addAll(byTag, entry.tags, typeId);
+    addAll(byExtendsType, entry.extendsTypes, typeId);
+    addAll(byImplementsType, entry.implementsTypes, typeId);
+    byPackage.add(entry.packageName, typeId);
+    byModule.add(entry.module, typeId);
+  }
+}
@@ -74,6 +74,17 @@ public interface TypeLocationService {
   Set<ClassOrInterfaceTypeDetails> findClassesOrInterfaceDetailsWithAnnotation(
       JavaType... annotationsToDetect);
 
+  /**
+   * Returns the {@link ClassOrInterfaceTypeDetails} of the project's types
+   * that match every criterion of the given query, eg those annotated with a
+   * given annotation in a given module.
+   * 
+   * @param query the criteria to match (required)
+   * @return the matching types, sorted by simple name (may be empty)
+   * @since 2.0
+   */
+  Set<ClassOrInterfaceTypeDetails> findClassesOrInterfaceDetails(TypeQuery query);
+
   /**
    * Returns a set of {@link ClassOrInterfaceTypeDetails}s that possess the
    * specified tag.
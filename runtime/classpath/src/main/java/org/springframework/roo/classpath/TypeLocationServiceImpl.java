@@ -9,11 +9,11 @@ import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
-import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
-import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
 import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.file.monitor.event.FileDetails;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataNotificationListener;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaSymbolName;
@@ -47,8 +47,10 @@ import java.util.logging.Logger;
 /**
  * Implementation of {@link TypeLocationService}.
  * <p>
- * For performance reasons automatically caches the queries. The cache is
- * invalidated on changes to the file system.
+ * For performance reasons the project's types are indexed by annotation, tag,
+ * extended type, implemented interface, package and module. The index is
+ * built on the first query and then kept up to date one type at a time, as
+ * files change and as their {@link PhysicalTypeMetadata} is re-parsed.
  * 
  * @author Alan Stewart
  * @author Ben Alex
@@ -72,6 +74,13 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     context = cContext.getBundleContext();
   }
 
+  protected void deactivate(final ComponentContext cContext) {
+    if (metadataDependencyRegistry != null) {
+      metadataDependencyRegistry.removeNotificationListener(physicalTypeListener);
+      metadataDependencyRegistry = null;
+    }
+  }
+
   private static final Comparator<String> LENGTH_COMPARATOR = new Comparator<String>() {
     public int compare(final String key1, final String key2) {
       return Integer.valueOf(key1.length()).compareTo(key2.length());
@@ -150,42 +159,62 @@ public class TypeLocationServiceImpl implements TypeLocationService {
 
   private FileManager fileManager;
   private FileMonitorService fileMonitorService;
+  private MetadataDependencyRegistry metadataDependencyRegistry;
   private MetadataService metadataService;
   private ProjectOperations projectOperations;
   private TypeCache typeCache;
+  private TypeParsingService typeParsingService;
   private TypeResolutionService typeResolutionService;
 
-  private final Map<JavaType, Set<String>> annotationToMidMap =
-      new HashMap<JavaType, Set<String>>();
   private final Map<String, Set<String>> changeMap = new HashMap<String, Set<String>>();
   private final Set<String> dirtyFiles = new HashSet<String>();
+  private boolean dirtyFilesRequested;
   private final Set<String> discoveredTypes = new HashSet<String>();
-  private final Map<String, Set<Object>> typeCustomDataMap = new HashMap<String, Set<Object>>();
-  private final Map<Object, Set<String>> tagToMidMap = new HashMap<Object, Set<String>>();
-  private final Map<String, Set<JavaType>> typeAnnotationMap = new HashMap<String, Set<JavaType>>();
+  private final TypeIndex typeIndex = new TypeIndex();
+  // The types whose files have been reported as dirty since the
+  // PhysicalTypeMetadataProvider last re-parsed them, e.g. as they were
+  // written by the current command, so their metadata must be evicted
+  private final Set<String> unparsedTypes = new HashSet<String>();
+
+  private final MetadataNotificationListener physicalTypeListener =
+      new MetadataNotificationListener() {
+        public void notify(final String upstreamDependency, final String downstreamDependency) {
+          // The provider announces each type it has just re-parsed from a
+          // changed file, which the file monitor reports as dirty first
+          if (PhysicalTypeIdentifier.isValid(upstreamDependency)) {
+            discoverTypes();
+            unparsedTypes.remove(upstreamDependency);
+          }
+        }
+      };
 
   private void cacheType(final String fileCanonicalPath) {
     Validate.notBlank(fileCanonicalPath, "File canonical path required");
     if (doesPathIndicateJavaType(fileCanonicalPath)) {
       final String id = getPhysicalTypeIdentifier(fileCanonicalPath);
       if (id != null && PhysicalTypeIdentifier.isValid(id)) {
-        // Change to Java, so drop the cache
-        final ClassOrInterfaceTypeDetails cid = lookupClassOrInterfaceTypeDetails(id);
+        final ClassOrInterfaceTypeDetails cid =
+            lookupClassOrInterfaceTypeDetails(id, unparsedTypes.remove(id));
         if (cid == null) {
           if (!getFileManager().exists(fileCanonicalPath)) {
             getTypeCache().removeType(id);
+            typeIndex.remove(id);
             final JavaType type = getTypeCache().getTypeDetails(id).getName();
             updateChanges(type.getFullyQualifiedTypeName(), true);
           }
           return;
         }
-        getTypeCache().cacheType(fileCanonicalPath, cid);
-        updateAttributeCache(cid);
-        updateChanges(cid.getName().getFullyQualifiedTypeName(), false);
+        cacheType(fileCanonicalPath, cid);
       }
     }
   }
 
+  private void cacheType(final String fileCanonicalPath, final ClassOrInterfaceTypeDetails cid) {
+    getTypeCache().cacheType(fileCanonicalPath, cid);
+    typeIndex.update(cid);
+    updateChanges(cid.getName().getFullyQualifiedTypeName(), false);
+  }
+
   private Set<String> discoverTypes() {
     // Retrieve a list of paths that have been discovered or modified since
     // the last invocation by this class
@@ -194,8 +223,16 @@ public class TypeLocationServiceImpl implements TypeLocationService {
       if (doesPathIndicateJavaType(change)) {
         discoveredTypes.add(change);
         dirtyFiles.add(change);
+        // The first request reports every file, not just changed ones
+        if (dirtyFilesRequested) {
+          final String id = getPhysicalTypeIdentifier(change);
+          if (id != null) {
+            unparsedTypes.add(id);
+          }
+        }
       }
     }
+    dirtyFilesRequested = true;
     return discoveredTypes;
   }
 
@@ -225,6 +262,25 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     return Collections.unmodifiableSet(new LinkedHashSet<ClassOrInterfaceTypeDetails>(types));
   }
 
+  public Set<ClassOrInterfaceTypeDetails> findClassesOrInterfaceDetails(final TypeQuery query) {
+    Validate.notNull(query, "Query required");
+    updateTypeCache();
+    final List<ClassOrInterfaceTypeDetails> types = new ArrayList<ClassOrInterfaceTypeDetails>();
+    for (final String locatedMid : typeIndex.find(query)) {
+      final ClassOrInterfaceTypeDetails located = getTypeCache().getTypeDetails(locatedMid);
+      if (located != null) {
+        types.add(located);
+      }
+    }
+    Collections.sort(types, new NaturalOrderComparator<ClassOrInterfaceTypeDetails>() {
+      @Override
+      protected String stringify(final ClassOrInterfaceTypeDetails object) {
+        return object.getName().getSimpleTypeName();
+      }
+    });
+    return Collections.unmodifiableSet(new LinkedHashSet<ClassOrInterfaceTypeDetails>(types));
+  }
+
   public Set<ClassOrInterfaceTypeDetails> findClassesOrInterfaceDetailsWithTag(final Object tag) {
     Validate.notNull(tag, "Tag required");
     final Set<ClassOrInterfaceTypeDetails> types = new LinkedHashSet<ClassOrInterfaceTypeDetails>();
@@ -552,18 +608,61 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     return false;
   }
 
+  /**
+   * Caches every type in the project. The compilation units are first parsed
+   * in parallel by the {@link TypeParsingService}; each type is then resolved
+   * and cached one at a time, as resolving a type can require the metadata of
+   * others.
+   */
   private void initTypeMap() {
+    final List<String> javaFiles = new ArrayList<String>();
     for (final Pom pom : getProjectOperations().getPoms()) {
       for (final PhysicalPath path : pom.getPhysicalPaths()) {
         if (path.isSource()) {
           final String allJavaFiles =
               FileUtils.ensureTrailingSeparator(path.getLocationPath()) + JAVA_FILES_ANT_PATH;
           for (final FileDetails file : getFileManager().findMatchingAntPath(allJavaFiles)) {
-            cacheType(file.getCanonicalPath());
+            if (doesPathIndicateJavaType(file.getCanonicalPath())) {
+              javaFiles.add(file.getCanonicalPath());
+            }
           }
         }
       }
     }
+
+    final TypeParsingService typeParsingService = getTypeParsingService();
+    final long parseStart = System.nanoTime();
+    int parsedAhead = 0;
+    if (typeParsingService != null) {
+      parsedAhead = typeParsingService.parseAhead(javaFiles);
+    }
+    final long parseTime = System.nanoTime() - parseStart;
+
+    long resolveTime = 0;
+    long insertTime = 0;
+    try {
+      for (final String javaFile : javaFiles) {
+        final String id = getPhysicalTypeIdentifier(javaFile);
+        if (id == null || !PhysicalTypeIdentifier.isValid(id)) {
+          continue;
+        }
+        final long resolveStart = System.nanoTime();
+        final ClassOrInterfaceTypeDetails cid = lookupClassOrInterfaceTypeDetails(id, false);
+        final long insertStart = System.nanoTime();
+        resolveTime += insertStart - resolveStart;
+        if (cid != null) {
+          cacheType(javaFile, cid);
+        }
+        insertTime += System.nanoTime() - insertStart;
+      }
+    } finally {
+      if (typeParsingService != null) {
+        typeParsingService.discardParsedAhead();
+      }
+    }
+    LOGGER.fine("Loaded " + javaFiles.size() + " types (" + parsedAhead
+        + " parsed in parallel): parse " + parseTime / 1000000 + " ms, type resolution "
+        + resolveTime / 1000000 + " ms, cache insert " + insertTime / 1000000 + " ms");
   }
 
   public boolean isInProject(final JavaType javaType) {
@@ -571,16 +670,21 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   }
 
   /**
-   * Obtains the a fresh copy of the {@link ClassOrInterfaceTypeDetails} for
-   * the given physical type.
+   * Obtains the current {@link ClassOrInterfaceTypeDetails} for the given
+   * physical type. The {@link PhysicalTypeMetadataProvider} re-parses each
+   * changed file once the file monitor publishes its change, so there is
+   * only a need to evict the type's metadata if its file has been written
+   * since, e.g. by the current command.
    * 
    * @param physicalTypeIdentifier to lookup (required)
+   * @param evict whether to evict any cached metadata of the type first
    * @return the requested details (or <code>null</code> if unavailable)
    */
   private ClassOrInterfaceTypeDetails lookupClassOrInterfaceTypeDetails(
-      final String physicalTypeIdentifier) {
+      final String physicalTypeIdentifier, final boolean evict) {
     final PhysicalTypeMetadata physicalTypeMetadata =
-        (PhysicalTypeMetadata) getMetadataService().evictAndGet(physicalTypeIdentifier);
+        (PhysicalTypeMetadata) (evict ? getMetadataService().evictAndGet(physicalTypeIdentifier)
+            : getMetadataService().get(physicalTypeIdentifier));
     if (physicalTypeMetadata == null) {
       return null;
     }
@@ -591,20 +695,13 @@ public class TypeLocationServiceImpl implements TypeLocationService {
       final LocatedTypeCallback callback) {
     Validate.notNull(annotationsToDetect, "Annotations to detect required");
     Validate.notNull(callback, "Callback required");
-    // If the cache doesn't yet contain the annotation to be found it should
-    // be added
-    for (final JavaType annotationType : annotationsToDetect) {
-      if (!annotationToMidMap.containsKey(annotationType)) {
-        annotationToMidMap.put(annotationType, new HashSet<String>());
-      }
-    }
 
     // Before processing the call any changes to the project should be
     // processed and the cache updated accordingly
     updateTypeCache();
 
     for (final JavaType annotationType : annotationsToDetect) {
-      for (final String locatedMid : annotationToMidMap.get(annotationType)) {
+      for (final String locatedMid : typeIndex.findByAnnotation(annotationType)) {
         final ClassOrInterfaceTypeDetails located = getTypeCache().getTypeDetails(locatedMid);
         callback.process(located);
       }
@@ -614,62 +711,17 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   private void processTypesWithTag(final Object tag, final LocatedTypeCallback callback) {
     Validate.notNull(tag, "Tag required");
     Validate.notNull(callback, "Callback required");
-    // If the cache doesn't yet contain the tag it should be added
-    if (!tagToMidMap.containsKey(tag)) {
-      tagToMidMap.put(tag, new HashSet<String>());
-    }
 
     // Before processing the call any changes to the project should be
     // processed and the cache updated accordingly
     updateTypeCache();
 
-    for (final String locatedMid : tagToMidMap.get(tag)) {
+    for (final String locatedMid : typeIndex.findByTag(tag)) {
       final ClassOrInterfaceTypeDetails located = getTypeCache().getTypeDetails(locatedMid);
       callback.process(located);
     }
   }
 
-  private void updateAttributeCache(final MemberHoldingTypeDetails cid) {
-    Validate.notNull(cid, "Member holding type details required");
-    if (!typeAnnotationMap.containsKey(cid.getDeclaredByMetadataId())) {
-      typeAnnotationMap.put(cid.getDeclaredByMetadataId(), new HashSet<JavaType>());
-    }
-    if (!typeCustomDataMap.containsKey(cid.getDeclaredByMetadataId())) {
-      typeCustomDataMap.put(cid.getDeclaredByMetadataId(), new HashSet<Object>());
-    }
-    final Set<JavaType> previousAnnotations = typeAnnotationMap.get(cid.getDeclaredByMetadataId());
-    for (final JavaType previousAnnotation : previousAnnotations) {
-      final Set<String> midSet = annotationToMidMap.get(previousAnnotation);
-      if (midSet != null) {
-        midSet.remove(cid.getDeclaredByMetadataId());
-      }
-    }
-    previousAnnotations.clear();
-    for (final AnnotationMetadata annotationMetadata : cid.getAnnotations()) {
-      if (!annotationToMidMap.containsKey(annotationMetadata.getAnnotationType())) {
-        annotationToMidMap.put(annotationMetadata.getAnnotationType(), new HashSet<String>());
-      }
-      previousAnnotations.add(annotationMetadata.getAnnotationType());
-      annotationToMidMap.get(annotationMetadata.getAnnotationType()).add(
-          cid.getDeclaredByMetadataId());
-    }
-    final Set<Object> previousCustomDataSet = typeCustomDataMap.get(cid.getDeclaredByMetadataId());
-    for (final Object previousCustomData : previousCustomDataSet) {
-      final Set<String> midSet = tagToMidMap.get(previousCustomData);
-      if (midSet != null) {
-        midSet.remove(cid.getDeclaredByMetadataId());
-      }
-    }
-    previousCustomDataSet.clear();
-    for (final Object customData : cid.getCustomData().keySet()) {
-      if (!tagToMidMap.containsKey(customData)) {
-        tagToMidMap.put(customData, new HashSet<String>());
-      }
-      previousCustomDataSet.add(customData);
-      tagToMidMap.get(customData).add(cid.getDeclaredByMetadataId());
-    }
-  }
-
   private void updateChanges(final String typeName, final boolean remove) {
     Validate.notNull(typeName, "Type name required");
     for (final String requestingClass : changeMap.keySet()) {
@@ -682,15 +734,23 @@ public class TypeLocationServiceImpl implements TypeLocationService {
   }
 
   private void updateTypeCache() {
-    if (getTypeCache().getAllTypeIdentifiers().isEmpty()) {
+    if (metadataDependencyRegistry == null) {
+      metadataDependencyRegistry = getMetadataDependencyRegistry();
+      if (metadataDependencyRegistry != null) {
+        metadataDependencyRegistry.addNotificationListener(physicalTypeListener);
+      }
+    }
+    if (getTypeCache().getAllTypeIdentifiers().isEmpty() || typeIndex.size() == 0) {
       initTypeMap();
     }
     discoverTypes();
-    // Update the type cache
-    for (final String change : dirtyFiles) {
+    // Update the type cache; the files reported as dirty while doing so
+    // are left for the next update
+    final List<String> changes = new ArrayList<String>(dirtyFiles);
+    dirtyFiles.clear();
+    for (final String change : changes) {
       cacheType(change);
     }
-    dirtyFiles.clear();
   }
 
   public void addDependencies(ModuleFeatureName moduleFeatureName,
@@ -796,6 +856,24 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     }
   }
 
+  public MetadataDependencyRegistry getMetadataDependencyRegistry() {
+    // Get all Services implement MetadataDependencyRegistry interface
+    try {
+      ServiceReference<?>[] references =
+          context.getAllServiceReferences(MetadataDependencyRegistry.class.getName(), null);
+
+      for (ServiceReference<?> ref : references) {
+        return (MetadataDependencyRegistry) context.getService(ref);
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load MetadataDependencyRegistry on TypeLocationServiceImpl.");
+      return null;
+    }
+  }
+
   public MetadataService getMetadataService() {
     if (metadataService == null) {
       // Get all Services implement MetadataService interface
@@ -862,6 +940,28 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     }
   }
 
+  public TypeParsingService getTypeParsingService() {
+    if (typeParsingService == null) {
+      // Get all Services implement TypeParsingService interface
+      try {
+        ServiceReference<?>[] references =
+            context.getAllServiceReferences(TypeParsingService.class.getName(), null);
+
+        for (ServiceReference<?> ref : references) {
+          return (TypeParsingService) context.getService(ref);
+        }
+
+        return null;
+
+      } catch (InvalidSyntaxException e) {
+        LOGGER.warning("Cannot load TypeParsingService on TypeLocationServiceImpl.");
+        return null;
+      }
+    } else {
+      return typeParsingService;
+    }
+  }
+
   public TypeResolutionService getTypeResolutionService() {
     if (typeResolutionService == null) {
       // Get all Services implement TypeResolutionService interface
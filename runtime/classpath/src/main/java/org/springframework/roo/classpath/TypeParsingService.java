@@ -1,10 +1,20 @@
 package org.springframework.roo.classpath;
 
+import java.util.Collection;
+
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.model.JavaType;
 
 public interface TypeParsingService {
 
+  /**
+   * Discards any compilation units parsed by {@link #parseAhead(Collection)}
+   * that have not yet been used.
+   * 
+   * @since 2.0
+   */
+  void discardParsedAhead();
+
   /**
    * Returns the compilation unit contents that represents the passed class or
    * interface details. This is useful if an add-on requires a compilation
@@ -58,6 +68,21 @@ public interface TypeParsingService {
   ClassOrInterfaceTypeDetails getTypeFromString(String typeContents, String declaredByMetadataId,
       JavaType javaType);
 
+  /**
+   * Parses the given compilation units in parallel, ahead of their types
+   * being requested one by one via
+   * {@link #getTypeAtLocation(String, String, JavaType)}. Only the parsing is
+   * done here; resolving each type against the rest of the project is left
+   * to that later request. A parsed unit is used once, and only if its file
+   * has not changed in the meantime.
+   * 
+   * @param fileIdentifiers the locations of the compilation units to parse
+   *            (required)
+   * @return the number of compilation units parsed
+   * @since 2.0
+   */
+  int parseAhead(Collection<String> fileIdentifiers);
+
   /**
    * Returns the compilation unit contents that represents the java file
    * updated with the passed class or interface details. The difference with
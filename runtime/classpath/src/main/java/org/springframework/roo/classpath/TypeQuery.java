@@ -0,0 +1,155 @@
+package org.springframework.roo.classpath;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.roo.model.JavaPackage;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * The criteria for finding the project's types via
+ * {@link TypeLocationService#findClassesOrInterfaceDetails(TypeQuery)}. A type
+ * matches the query if it meets every criterion added to it, for example:
+ *
+ * <pre>
+ * new TypeQuery().annotatedWith(RooJavaType.ROO_JPA_ENTITY).inModule(&quot;model&quot;)
+ * </pre>
+ *
+ * A query with no criteria matches every type.
+ *
+ * @since 2.0
+ */
+public final class TypeQuery {
+
+  private final Set<JavaType> annotations = new LinkedHashSet<JavaType>();
+  private final Set<String> extendsTypes = new LinkedHashSet<String>();
+  private final Set<String> implementsTypes = new LinkedHashSet<String>();
+  private final Set<String> modules = new LinkedHashSet<String>();
+  private final Set<String> packages = new LinkedHashSet<String>();
+  private final Set<Object> tags = new LinkedHashSet<Object>();
+
+  /**
+   * Only matches types with the given annotation.
+   *
+   * @param annotationType the type of annotation (required)
+   * @return this query
+   */
+  public TypeQuery annotatedWith(final JavaType annotationType) {
+    Validate.notNull(annotationType, "Annotation type required");
+    annotations.add(annotationType);
+    return this;
+  }
+
+  /**
+   * Only matches types that directly extend the given type, ignoring any
+   * type parameters.
+   *
+   * @param superType the class (or for interfaces, the interface) being
+   *            extended (required)
+   * @return this query
+   */
+  public TypeQuery extending(final JavaType superType) {
+    Validate.notNull(superType, "Extended type required");
+    extendsTypes.add(superType.getFullyQualifiedTypeName());
+    return this;
+  }
+
+  Set<JavaType> getAnnotations() {
+    return Collections.unmodifiableSet(annotations);
+  }
+
+  Set<String> getExtendsTypes() {
+    return Collections.unmodifiableSet(extendsTypes);
+  }
+
+  Set<String> getImplementsTypes() {
+    return Collections.unmodifiableSet(implementsTypes);
+  }
+
+  Set<String> getModules() {
+    return Collections.unmodifiableSet(modules);
+  }
+
+  Set<String> getPackages() {
+    return Collections.unmodifiableSet(packages);
+  }
+
+  Set<Object> getTags() {
+    return Collections.unmodifiableSet(tags);
+  }
+
+  /**
+   * Only matches types that directly implement the given interface, ignoring
+   * any type parameters.
+   *
+   * @param interfaceType the interface (required)
+   * @return this query
+   */
+  public TypeQuery implementing(final JavaType interfaceType) {
+    Validate.notNull(interfaceType, "Interface type required");
+    implementsTypes.add(interfaceType.getFullyQualifiedTypeName());
+    return this;
+  }
+
+  /**
+   * Only matches types in the given module.
+   *
+   * @param moduleName the name of the module (blank for the root module)
+   * @return this query
+   */
+  public TypeQuery inModule(final String moduleName) {
+    modules.add(StringUtils.stripToEmpty(moduleName));
+    return this;
+  }
+
+  /**
+   * Only matches types declared directly in the given package (not in its
+   * sub-packages).
+   *
+   * @param javaPackage the package (required)
+   * @return this query
+   */
+  public TypeQuery inPackage(final JavaPackage javaPackage) {
+    Validate.notNull(javaPackage, "Package required");
+    packages.add(javaPackage.getFullyQualifiedPackageName());
+    return this;
+  }
+
+  /**
+   * Indicates whether this query has no criteria, and so matches every type.
+   *
+   * @return see above
+   */
+  public boolean isEmpty() {
+    return annotations.isEmpty() && extendsTypes.isEmpty() && implementsTypes.isEmpty()
+        && modules.isEmpty() && packages.isEmpty() && tags.isEmpty();
+  }
+
+  /**
+   * Only matches types with the given custom data tag.
+   *
+   * @param tag the custom data key (required)
+   * @return this query
+   */
+  public TypeQuery taggedWith(final Object tag) {
+    Validate.notNull(tag, "Tag required");
+    tags.add(tag);
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("annotations", annotations);
+    builder.append("tags", tags);
+    builder.append("extendsTypes", extendsTypes);
+    builder.append("implementsTypes", implementsTypes);
+    builder.append("packages", packages);
+    builder.append("modules", modules);
+    return builder.toString();
+  }
+}
@@ -24,6 +24,7 @@ import org.springframework.roo.classpath.scanner.MemberDetails;
 import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
 import org.springframework.roo.metadata.AbstractHashCodeTrackingMetadataNotifier;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataId;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
 import org.springframework.roo.metadata.MetadataNotificationListener;
@@ -87,6 +88,8 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
    */
   private boolean dependsOnGovernorTypeDetailAvailability = true;
 
+  private final ItdFingerprintStore fingerprints = new ItdFingerprintStore();
+
   /** We don't care about trigger annotations; we always produce metadata */
   private boolean ignoreTriggerAnnotations = false;
 
@@ -151,6 +154,7 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
   private void deleteItd(final String metadataIdentificationString, final String itdFilename,
       final String reason, final boolean now) {
 
+    fingerprints.forget(itdFilename);
     if (now) {
       getFileManager().delete(itdFilename, reason);
     } else {
@@ -163,8 +167,7 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
 
   public final MetadataItem get(final String metadataIdentificationString) {
 
-    Validate.isTrue(MetadataIdentificationUtils.getMetadataClass(metadataIdentificationString)
-        .equals(MetadataIdentificationUtils.getMetadataClass(getProvidesType())),
+    Validate.isTrue(isOfProvidedType(metadataIdentificationString),
         "Unexpected request for '%s' to this provider (which uses '%s')",
         metadataIdentificationString, getProvidesType());
 
@@ -278,7 +281,11 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
           // We have content to write
           getItdDiscoveryService().addItdTypeDetails(itdTypeDetails);
           final String itd = itdSourceFileComposer.getOutput();
-          getFileManager().createOrUpdateTextFileIfRequired(itdFilename, itd, false);
+          // Only pass the ITD on to be written (and its file read back to
+          // compare) if it or its file may have changed
+          if (fingerprints.rendered(itdFilename, itd)) {
+            getFileManager().createOrUpdateTextFileIfRequired(itdFilename, itd, false);
+          }
         } else {
           // We don't have content to write
           deleteItdFile = true;
@@ -311,6 +318,17 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
    */
   protected abstract String getGovernorPhysicalTypeIdentifier(String metadataIdentificationString);
 
+  /**
+   * Returns what this provider has done with the ITD files of the metadata it
+   * has produced.
+   *
+   * @return a non-<code>null</code> live view of the statistics
+   * @since 2.0
+   */
+  public ItdFileStatistics getItdFileStatistics() {
+    return fingerprints.getStatistics();
+  }
+
   public final String getIdForPhysicalJavaType(final String physicalJavaTypeIdentifier) {
     Validate.isTrue(
         MetadataIdentificationUtils.getMetadataClass(physicalJavaTypeIdentifier).equals(
@@ -485,6 +503,10 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
     return ignoreTriggerAnnotations;
   }
 
+  private boolean isOfProvidedType(final String mid) {
+    return MetadataId.valueOf(mid).getMetadataClassId() == MetadataId.valueOf(getProvidesType());
+  }
+
   private boolean isNotificationForJavaType(final String mid) {
     return MetadataIdentificationUtils.getMetadataClass(mid).equals(
         MetadataIdentificationUtils.getMetadataClass(PhysicalTypeIdentifier
@@ -500,7 +522,7 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
     // Handle if the downstream dependency is "class level", meaning we need
     // to figure out the specific downstream MID this metadata provider
     // wants to update/refresh.
-    if (MetadataIdentificationUtils.isIdentifyingClass(downstreamDependency)) {
+    if (MetadataId.valueOf(downstreamDependency).isIdentifyingClass()) {
       // We have not identified an instance-specific downstream MID, so
       // we'll need to calculate an instance-specific downstream MID to
       // retrieve.
@@ -512,7 +534,8 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
         return;
       }
 
-      Validate.isTrue(MetadataIdentificationUtils.isIdentifyingInstance(downstreamDependency),
+      final MetadataId downstreamId = MetadataId.valueOf(downstreamDependency);
+      Validate.isTrue(downstreamId.isIdentifyingInstance(),
           "An instance-specific downstream MID was required by '%s' (not '%s')", getClass()
               .getName(), downstreamDependency);
 
@@ -521,17 +544,15 @@ public abstract class AbstractItdMetadataProvider extends AbstractHashCodeTracki
       // It is unusual to register a direct downstream relationship given
       // it costs dependency registration memory and class-level
       // notifications will always occur anyway.
-      if (getMetadataDependencyRegistry().getDownstream(upstreamDependency).contains(
-          downstreamDependency)) {
+      if (getMetadataDependencyRegistry().getDownstream(MetadataId.valueOf(upstreamDependency))
+          .contains(downstreamId)) {
         return;
       }
     }
 
     // We should now have an instance-specific "downstream dependency" that
     // can be processed by this class
-    Validate.isTrue(
-        MetadataIdentificationUtils.getMetadataClass(downstreamDependency).equals(
-            MetadataIdentificationUtils.getMetadataClass(getProvidesType())),
+    Validate.isTrue(isOfProvidedType(downstreamDependency),
         "Unexpected downstream notification for '%s' to this provider (which uses '%s')",
         downstreamDependency, getProvidesType());
 
@@ -0,0 +1,89 @@
+package org.springframework.roo.classpath.itd;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Counts what an {@link AbstractItdMetadataProvider} has done with the ITD
+ * files of the metadata it has produced.
+ *
+ * @since 2.0
+ */
+public final class ItdFileStatistics {
+
+  private final AtomicLong rendered = new AtomicLong();
+  private final AtomicLong unchangedReadBack = new AtomicLong();
+  private final AtomicLong unchangedUnread = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+
+  /**
+   * Returns the number of times an ITD has been rendered to source code. Each
+   * rendered ITD is counted by exactly one of {@link #getUnchangedUnread()},
+   * {@link #getUnchangedReadBack()} and {@link #getWritten()}.
+   *
+   * @return a non-negative number
+   */
+  public long getRendered() {
+    return rendered.get();
+  }
+
+  /**
+   * Returns the number of times a rendered ITD was found to match its file
+   * by reading the file back, e.g. once a deferred write of it took place.
+   *
+   * @return a non-negative number
+   */
+  public long getUnchangedReadBack() {
+    return unchangedReadBack.get();
+  }
+
+  /**
+   * Returns the number of times a rendered ITD was not compared with its file,
+   * as neither the rendered ITD's digest nor the file had changed since that
+   * file was last found to match. The ITD is still rendered; only reading
+   * the file is saved.
+   *
+   * @return a non-negative number
+   */
+  public long getUnchangedUnread() {
+    return unchangedUnread.get();
+  }
+
+  /**
+   * Returns the number of times an ITD has been passed to the
+   * {@link org.springframework.roo.process.manager.FileManager} to be written
+   * (if its file's contents differ).
+   *
+   * @return a non-negative number
+   */
+  public long getWritten() {
+    return written.get();
+  }
+
+  void incrementRendered() {
+    rendered.incrementAndGet();
+  }
+
+  void incrementUnchangedReadBack() {
+    unchangedReadBack.incrementAndGet();
+  }
+
+  void incrementUnchangedUnread() {
+    unchangedUnread.incrementAndGet();
+  }
+
+  void incrementWritten() {
+    written.incrementAndGet();
+  }
+
+  @Override
+  public String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("rendered", rendered);
+    builder.append("unchangedUnread", unchangedUnread);
+    builder.append("unchangedReadBack", unchangedReadBack);
+    builder.append("written", written);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+}
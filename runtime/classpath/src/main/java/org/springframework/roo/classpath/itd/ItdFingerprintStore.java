@@ -0,0 +1,113 @@
+package org.springframework.roo.classpath.itd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Remembers, for each ITD file, the SHA-1 digest of the ITD last rendered for
+ * it and the state of the file once its contents were known to match that
+ * ITD. An ITD rendered with the same digest while its file is unchanged since
+ * then needs no comparing with its file. The ITD still has to be rendered to
+ * compute its digest; it's reading and comparing the file that is saved.
+ * <p>
+ * A file is only known to match once its contents have been read back and
+ * compared, as the {@link org.springframework.roo.process.manager.FileManager}
+ * may defer (or end up discarding) a write.
+ *
+ * @since 2.0
+ */
+final class ItdFingerprintStore {
+
+  private static class Fingerprint {
+
+    private final String digest;
+    private final long lastModified;
+    private final long length;
+    private final boolean verified;
+
+    Fingerprint(final String digest) {
+      this.digest = digest;
+      lastModified = 0;
+      length = 0;
+      verified = false;
+    }
+
+    Fingerprint(final String digest, final File file) {
+      this.digest = digest;
+      lastModified = file.lastModified();
+      length = file.length();
+      verified = true;
+    }
+
+    boolean matches(final File file) {
+      return verified && file.lastModified() == lastModified && file.length() == length;
+    }
+  }
+
+  private final Map<String, Fingerprint> fingerprints =
+      new ConcurrentHashMap<String, Fingerprint>();
+  private final ItdFileStatistics statistics = new ItdFileStatistics();
+
+  /**
+   * Forgets the given ITD file, e.g. because it is being deleted.
+   *
+   * @param itdFilename the canonical path of the ITD file (required)
+   */
+  void forget(final String itdFilename) {
+    Validate.notBlank(itdFilename, "ITD filename required");
+    fingerprints.remove(itdFilename);
+  }
+
+  ItdFileStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Records that the given ITD has been rendered, and indicates whether its
+   * file needs writing. The file is not read if it is unchanged since it was
+   * verified to contain an ITD with the same digest; it is read only if the
+   * last ITD rendered for it had the same digest, to verify the write took
+   * place.
+   *
+   * @param itdFilename the canonical path of the ITD file (required)
+   * @param contents the rendered ITD (required)
+   * @return <code>false</code> if the file is known to already have the given
+   *         contents
+   */
+  boolean rendered(final String itdFilename, final String contents) {
+    Validate.notBlank(itdFilename, "ITD filename required");
+    Validate.notNull(contents, "ITD contents required");
+    statistics.incrementRendered();
+    final String digest = DigestUtils.shaHex(contents);
+    final Fingerprint previous = fingerprints.get(itdFilename);
+    if (previous != null && previous.digest.equals(digest)) {
+      final File file = new File(itdFilename);
+      if (previous.matches(file)) {
+        statistics.incrementUnchangedUnread();
+        return false;
+      }
+      if (file.isFile() && contents.equals(read(file))) {
+        fingerprints.put(itdFilename, new Fingerprint(digest, file));
+        statistics.incrementUnchangedReadBack();
+        return false;
+      }
+    }
+    fingerprints.put(itdFilename, new Fingerprint(digest));
+    statistics.incrementWritten();
+    return true;
+  }
+
+  private String read(final File file) {
+    try {
+      return FileUtils.readFileToString(file);
+    } catch (final IOException e) {
+      return null;
+    }
+  }
+}
@@ -2,12 +2,18 @@ package org.springframework.roo.classpath.scanner;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.logging.Logger;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
@@ -20,8 +26,10 @@ import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
 import org.springframework.roo.classpath.itd.ItdMetadataProvider;
 import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataNotificationListener;
 import org.springframework.roo.metadata.MetadataProvider;
 import org.springframework.roo.metadata.MetadataService;
 import org.osgi.framework.BundleContext;
@@ -42,6 +50,14 @@ import org.springframework.roo.support.logging.HandlerUtils;
  * the metadata infrastructure does not require special type naming approaches
  * to be employed. The ordering behaviour exists solely to simplify debugging
  * for add-on developers and log comparison between invocations.
+ * <p>
+ * The result for each requesting class and governor is cached until the
+ * {@link MetadataDependencyRegistry} announces a change to one of the types in
+ * the governor's hierarchy or to one of the ITDs consulted for them, which it
+ * does before notifying the metadata downstream of that change, or the
+ * governor's hierarchy is presented as different
+ * {@link ClassOrInterfaceTypeDetails} instances. The cache's statistics are
+ * shown by {@link #toString()}.
  * 
  * @author Ben Alex
  * @since 1.1
@@ -52,10 +68,81 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
 
   protected final static Logger LOGGER = HandlerUtils.getLogger(MemberDetailsScannerImpl.class);
 
+  static final int CACHE_CAPACITY = 10000;
+
+  /**
+   * A cached result, along with what it was built from.
+   */
+  private static class CacheEntry {
+
+    /** the MIDs of the hierarchy's types and of the ITDs consulted for them */
+    private final Set<String> contributors;
+    /** the absolute superclass first, down to the governor */
+    private final List<ClassOrInterfaceTypeDetails> hierarchy;
+    private final MemberDetails memberDetails;
+
+    private CacheEntry(final List<ClassOrInterfaceTypeDetails> hierarchy,
+        final Set<String> contributors, final MemberDetails memberDetails) {
+      this.contributors = contributors;
+      this.hierarchy = hierarchy;
+      this.memberDetails = memberDetails;
+    }
+
+    /**
+     * Indicates whether this entry was built from the given governor's
+     * current hierarchy
+     */
+    private boolean isFor(ClassOrInterfaceTypeDetails cid) {
+      for (int i = hierarchy.size() - 1; i >= 0; i--) {
+        if (hierarchy.get(i) != cid) {
+          return false;
+        }
+        cid = cid.getSuperclass();
+      }
+      return cid == null;
+    }
+  }
+
   // ------------ OSGi component attributes ----------------
   private BundleContext context;
 
   protected MetadataService metadataService;
+  private MetadataDependencyRegistry metadataDependencyRegistry;
+
+  /** key: requesting class and governor MID (guarded by itself) */
+  private final Map<String, CacheEntry> cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f,
+      true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest) {
+      if (size() > CACHE_CAPACITY) {
+        unindex(eldest.getKey(), eldest.getValue());
+        return true;
+      }
+      return false;
+    }
+  };
+  private final Map<String, Set<String>> cacheKeysByContributor =
+      new HashMap<String, Set<String>>(); // Guarded by cache
+  /**
+   * When each MID, or class of MID, was last changed, while any results were
+   * being built (guarded by cache)
+   */
+  private final Map<String, Long> changes = new HashMap<String, Long>();
+  private long changeCount; // Guarded by cache
+  private int builds; // Guarded by cache
+  private long cacheHits; // Guarded by cache
+  private long cacheMisses; // Guarded by cache
+  private long cacheInvalidations; // Guarded by cache
+
+  // Registered to be notified before the downstream metadata, which may ask
+  // for the member details of its governor again while it's rebuilt
+  private final MetadataNotificationListener changeListener = new MetadataNotificationListener() {
+    public void notify(final String upstreamDependency, final String downstreamDependency) {
+      invalidate(upstreamDependency);
+    }
+  };
 
   protected void activate(final ComponentContext context) {
     this.context = context.getBundleContext();
@@ -117,7 +204,80 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
   }
 
   protected void deactivate(final ComponentContext componentContext) {
-    // Empty
+    if (metadataDependencyRegistry != null) {
+      metadataDependencyRegistry.removePreNotificationListener(changeListener);
+      metadataDependencyRegistry = null;
+    }
+    clearCache();
+  }
+
+  private void clearCache() {
+    synchronized (cache) {
+      cache.clear();
+      cacheKeysByContributor.clear();
+      changes.clear();
+    }
+  }
+
+  /**
+   * Drops the cached results built from the given metadata, which has
+   * changed
+   *
+   * @param metadataId the MID of the changed metadata, or of the class of
+   *            metadata that changed
+   */
+  void invalidate(final String metadataId) {
+    synchronized (cache) {
+      if (builds > 0) {
+        changes.put(metadataId, ++changeCount);
+      }
+      final Set<String> cacheKeys = new HashSet<String>();
+      if (MetadataIdentificationUtils.isIdentifyingClass(metadataId)) {
+        for (final Map.Entry<String, Set<String>> entry : cacheKeysByContributor.entrySet()) {
+          if (metadataId.equals(MetadataIdentificationUtils.getMetadataClassId(entry.getKey()))) {
+            cacheKeys.addAll(entry.getValue());
+          }
+        }
+      } else if (cacheKeysByContributor.containsKey(metadataId)) {
+        cacheKeys.addAll(cacheKeysByContributor.get(metadataId));
+      }
+      for (final String cacheKey : cacheKeys) {
+        final CacheEntry entry = cache.remove(cacheKey);
+        if (entry != null) {
+          unindex(cacheKey, entry);
+          cacheInvalidations++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Indicates whether any of the given metadata has changed since the given
+   * point
+   */
+  private boolean isChangedSince(final Set<String> metadataIds, final long changeCount) {
+    for (final String metadataId : metadataIds) {
+      final Long changed = changes.get(metadataId);
+      final Long classChanged =
+          changes.get(MetadataIdentificationUtils.getMetadataClassId(metadataId));
+      if (changed != null && changed > changeCount || classChanged != null
+          && classChanged > changeCount) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void unindex(final String cacheKey, final CacheEntry entry) {
+    for (final String contributor : entry.contributors) {
+      final Set<String> cacheKeys = cacheKeysByContributor.get(contributor);
+      if (cacheKeys != null) {
+        cacheKeys.remove(cacheKey);
+        if (cacheKeys.isEmpty()) {
+          cacheKeysByContributor.remove(contributor);
+        }
+      }
+    }
   }
 
   public final MemberDetails getMemberDetails(final String requestingClass,
@@ -127,17 +287,58 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
       metadataService = getMetadataService();
     }
 
+    if (metadataDependencyRegistry == null) {
+      metadataDependencyRegistry = getMetadataDependencyRegistry();
+      if (metadataDependencyRegistry != null) {
+        metadataDependencyRegistry.addPreNotificationListener(changeListener);
+      }
+    }
+
     if (providers.isEmpty()) {
       bindProviders();
+      if (!providers.isEmpty()) {
+        // Any results built without them are incomplete
+        clearCache();
+      }
     }
 
     if (decorators.isEmpty()) {
       bindDecorators();
+      if (!decorators.isEmpty()) {
+        clearCache();
+      }
     }
 
     if (cid == null) {
       return null;
     }
+
+    final String cacheKey = requestingClass + " " + cid.getDeclaredByMetadataId();
+    final long startChangeCount;
+    synchronized (cache) {
+      final CacheEntry entry = cache.get(cacheKey);
+      if (entry != null && entry.isFor(cid)) {
+        cacheHits++;
+        return entry.memberDetails;
+      }
+      cacheMisses++;
+      startChangeCount = changeCount;
+      builds++;
+    }
+
+    try {
+      return buildMemberDetails(requestingClass, cid, cacheKey, startChangeCount);
+    } finally {
+      synchronized (cache) {
+        if (--builds == 0) {
+          changes.clear();
+        }
+      }
+    }
+  }
+
+  private MemberDetails buildMemberDetails(final String requestingClass,
+      ClassOrInterfaceTypeDetails cid, final String cacheKey, final long startChangeCount) {
     synchronized (lock) {
       // Create a list of discovered members
       final List<MemberHoldingTypeDetails> memberHoldingTypeDetails =
@@ -152,9 +353,15 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
         cid = cid.getSuperclass();
       }
 
+      // What the result is built from, and whether it can be cached, ie
+      // wasn't missing an ITD only because it was still being created
+      final Set<String> contributors = new HashSet<String>();
+      boolean cacheable = true;
+
       // Now we add this governor, plus all of its superclasses
       for (final ClassOrInterfaceTypeDetails currentClass : cidHierarchy) {
         memberHoldingTypeDetails.add(currentClass);
+        contributors.add(currentClass.getDeclaredByMetadataId());
 
         // Locate all MetadataProvider instances that provide ITDs and
         // thus MemberHoldingTypeDetails information
@@ -179,7 +386,11 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
 
           // Get the metadata and ensure we have ITD type details
           // available
+          contributors.add(key);
           final MetadataItem metadataItem = metadataService.get(key);
+          if (metadataItem == null && metadataService.isResolving(key)) {
+            cacheable = false;
+          }
           if (metadataItem == null || !metadataItem.isValid()) {
             continue;
           }
@@ -215,10 +426,52 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
         }
       }
 
+      if (cacheable) {
+        cache(cacheKey, new CacheEntry(cidHierarchy, contributors, result), startChangeCount);
+      }
       return result;
     }
   }
 
+  private void cache(final String cacheKey, final CacheEntry entry, final long startChangeCount) {
+    synchronized (cache) {
+      if (isChangedSince(entry.contributors, startChangeCount)) {
+        // Already out of date
+        return;
+      }
+      final CacheEntry previous = cache.put(cacheKey, entry);
+      if (previous != null) {
+        unindex(cacheKey, previous);
+      }
+      for (final String contributor : entry.contributors) {
+        Set<String> cacheKeys = cacheKeysByContributor.get(contributor);
+        if (cacheKeys == null) {
+          cacheKeys = new HashSet<String>();
+          cacheKeysByContributor.put(contributor, cacheKeys);
+        }
+        cacheKeys.add(cacheKey);
+      }
+    }
+  }
+
+  public MetadataDependencyRegistry getMetadataDependencyRegistry() {
+    // Get all Services implement MetadataDependencyRegistry interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(MetadataDependencyRegistry.class.getName(), null);
+
+      for (ServiceReference<?> ref : references) {
+        return (MetadataDependencyRegistry) this.context.getService(ref);
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load MetadataDependencyRegistry on MemberDetailsScannerImpl.");
+      return null;
+    }
+  }
+
   public MetadataService getMetadataService() {
     // Get all Services implement MetadataService interface
     try {
@@ -236,4 +489,17 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
       return null;
     }
   }
+
+  @Override
+  public final String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    synchronized (cache) {
+      builder.append("cacheHits", cacheHits);
+      builder.append("cacheMisses", cacheMisses);
+      builder.append("cacheInvalidations", cacheInvalidations);
+      builder.append("cacheCurrentSize", cache.size());
+      builder.append("cacheMaximumSize", CACHE_CAPACITY);
+    }
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
 }
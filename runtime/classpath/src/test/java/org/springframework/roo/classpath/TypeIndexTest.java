@@ -0,0 +1,119 @@
+package org.springframework.roo.classpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.model.JavaPackage;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.model.RooJavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link TypeIndex}
+ */
+public class TypeIndexTest {
+
+  private static final JavaType ENTITY = RooJavaType.ROO_JPA_ENTITY;
+  private static final JavaType REPOSITORY = RooJavaType.ROO_REPOSITORY_JPA;
+  private static final JavaType SERIALIZABLE = new JavaType("java.io.Serializable");
+  private static final String TAG = "tag";
+
+  private static ClassOrInterfaceTypeDetailsBuilder builder(final String typeName,
+      final String module) {
+    final JavaType type = new JavaType(typeName, module);
+    final String id =
+        PhysicalTypeIdentifier.createIdentifier(type,
+            LogicalPath.getInstance(Path.SRC_MAIN_JAVA, module));
+    return new ClassOrInterfaceTypeDetailsBuilder(id, Modifier.PUBLIC, type,
+        PhysicalTypeCategory.CLASS);
+  }
+
+  // Fixture
+  private ClassOrInterfaceTypeDetails order;
+  private ClassOrInterfaceTypeDetails orderRepository;
+  private ClassOrInterfaceTypeDetails person;
+  private TypeIndex typeIndex;
+
+  @Before
+  public void setUp() {
+    ClassOrInterfaceTypeDetailsBuilder builder = builder("com.foo.domain.Person", "model");
+    builder.addAnnotation(new AnnotationMetadataBuilder(ENTITY));
+    builder.addImplementsType(SERIALIZABLE);
+    person = builder.build();
+
+    builder = builder("com.foo.domain.Order", "");
+    builder.addAnnotation(new AnnotationMetadataBuilder(ENTITY));
+    builder.addExtendsTypes(person.getName());
+    builder.getCustomData().put(TAG, null);
+    order = builder.build();
+
+    builder = builder("com.foo.repository.OrderRepository", "repository");
+    builder.addAnnotation(new AnnotationMetadataBuilder(REPOSITORY));
+    orderRepository = builder.build();
+
+    typeIndex = new TypeIndex();
+    typeIndex.update(person);
+    typeIndex.update(order);
+    typeIndex.update(orderRepository);
+  }
+
+  private String id(final ClassOrInterfaceTypeDetails cid) {
+    return cid.getDeclaredByMetadataId();
+  }
+
+  @Test
+  public void testCompoundQuery() {
+    assertEquals(Collections.singleton(id(person)),
+        typeIndex.find(new TypeQuery().annotatedWith(ENTITY).inModule("model")));
+    assertEquals(Collections.singleton(id(order)),
+        typeIndex.find(new TypeQuery().annotatedWith(ENTITY).extending(person.getName())));
+    assertEquals(Collections.singleton(id(person)),
+        typeIndex.find(new TypeQuery().implementing(SERIALIZABLE).inPackage(
+            new JavaPackage("com.foo.domain"))));
+    assertTrue(typeIndex.find(new TypeQuery().annotatedWith(ENTITY).annotatedWith(REPOSITORY))
+        .isEmpty());
+  }
+
+  @Test
+  public void testEmptyQueryMatchesEveryType() {
+    assertEquals(3, typeIndex.find(new TypeQuery()).size());
+  }
+
+  @Test
+  public void testQueryForAnyOfSeveralModules() {
+    assertEquals(2, typeIndex.find(new TypeQuery().inModule("").inModule("repository")).size());
+    assertEquals(Collections.singleton(id(order)), typeIndex.find(new TypeQuery().taggedWith(TAG)));
+  }
+
+  @Test
+  public void testRemove() {
+    typeIndex.remove(id(order));
+
+    assertFalse(typeIndex.contains(id(order)));
+    assertEquals(Collections.singleton(id(person)), typeIndex.findByAnnotation(ENTITY));
+    assertTrue(typeIndex.findByTag(TAG).isEmpty());
+  }
+
+  @Test
+  public void testUpdateReplacesPreviousEntries() {
+    final ClassOrInterfaceTypeDetailsBuilder builder = new ClassOrInterfaceTypeDetailsBuilder(order);
+    builder.removeAnnotation(ENTITY);
+    builder.addAnnotation(new AnnotationMetadataBuilder(REPOSITORY));
+    typeIndex.update(builder.build());
+
+    assertEquals(3, typeIndex.size());
+    assertEquals(Collections.singleton(id(person)), typeIndex.findByAnnotation(ENTITY));
+    assertEquals(2, typeIndex.findByAnnotation(REPOSITORY).size());
+    assertEquals(Collections.singleton(id(order)), typeIndex.findByTag(TAG));
+  }
+}
@@ -1,13 +1,43 @@
 package org.springframework.roo.classpath;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 
 import junit.framework.TestCase;
 
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.file.monitor.FileMonitorService;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataNotificationListener;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.model.RooJavaType;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.ProjectOperations;
+import org.springframework.roo.project.maven.Pom;
+
 /**
  * Unit test of {@link TypeLocationServiceImpl}.
  * 
@@ -16,6 +46,126 @@ import junit.framework.TestCase;
  */
 public class TypeLocationServiceImplTest extends TestCase {
 
+  private static final JavaType PERSON = new JavaType("com.foo.Person");
+
+  private static PhysicalTypeMetadata mockPhysicalType(final String id,
+      final JavaType... annotations) {
+    final ClassOrInterfaceTypeDetailsBuilder builder =
+        new ClassOrInterfaceTypeDetailsBuilder(id, Modifier.PUBLIC, PERSON,
+            PhysicalTypeCategory.CLASS);
+    for (final JavaType annotation : annotations) {
+      builder.addAnnotation(new AnnotationMetadataBuilder(annotation));
+    }
+    final ClassOrInterfaceTypeDetails cid = builder.build();
+    final PhysicalTypeMetadata physicalType = mock(PhysicalTypeMetadata.class);
+    when(physicalType.getMemberHoldingTypeDetails()).thenReturn(cid);
+    return physicalType;
+  }
+
+  public void testTypeWrittenByTheCurrentCommandIsParsedAgain() {
+    // Set up
+    final File projectRoot =
+        new File(System.getProperty("java.io.tmpdir"), "roo-project-" + System.nanoTime());
+    final Pom pom =
+        new Pom("com.foo", "foo", "1.0", "jar", null, null, null, null, null, null, null, null,
+            null, null, null, null, null, null, projectRoot + File.separator + "pom.xml", "",
+            Arrays.asList(Path.SRC_MAIN_JAVA));
+    final String path =
+        pom.getPathLocation(Path.SRC_MAIN_JAVA) + PERSON.getRelativeFileName();
+    final String id =
+        PhysicalTypeIdentifier.createIdentifier(PERSON,
+            LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+    final ProjectOperations projectOperations = mock(ProjectOperations.class);
+    when(projectOperations.getPoms()).thenReturn(Collections.<Pom>emptyList());
+    when(projectOperations.getModuleForFileIdentifier(anyString())).thenReturn(pom);
+    final TypeCache typeCache = new TypeCacheImpl();
+    typeCache.cacheFilePathAgainstTypeIdentifier(path, id);
+
+    // Each request for dirty files reports the next of these
+    final Queue<Collection<String>> dirtyFiles = new LinkedList<Collection<String>>();
+    final FileMonitorService fileMonitorService = mock(FileMonitorService.class);
+    when(fileMonitorService.getDirtyFiles(TypeLocationServiceImpl.class.getName())).thenAnswer(
+        new Answer<Collection<String>>() {
+          public Collection<String> answer(final InvocationOnMock invocation) {
+            return dirtyFiles.isEmpty() ? Collections.<String>emptySet() : dirtyFiles.remove();
+          }
+        });
+    final MetadataNotificationListener[] listener = new MetadataNotificationListener[1];
+    final MetadataDependencyRegistry metadataDependencyRegistry =
+        mock(MetadataDependencyRegistry.class);
+    doAnswer(new Answer<Void>() {
+      public Void answer(final InvocationOnMock invocation) {
+        listener[0] = (MetadataNotificationListener) invocation.getArguments()[0];
+        return null;
+      }
+    }).when(metadataDependencyRegistry).addNotificationListener(
+        any(MetadataNotificationListener.class));
+    final FileManager fileManager = mock(FileManager.class);
+    final MetadataService metadataService = mock(MetadataService.class);
+    final TypeLocationServiceImpl typeLocationService = new TypeLocationServiceImpl() {
+      @Override
+      public FileManager getFileManager() {
+        return fileManager;
+      }
+
+      @Override
+      public FileMonitorService getFileMonitorService() {
+        return fileMonitorService;
+      }
+
+      @Override
+      public MetadataDependencyRegistry getMetadataDependencyRegistry() {
+        return metadataDependencyRegistry;
+      }
+
+      @Override
+      public MetadataService getMetadataService() {
+        return metadataService;
+      }
+
+      @Override
+      public ProjectOperations getProjectOperations() {
+        return projectOperations;
+      }
+
+      @Override
+      public TypeCache getTypeCache() {
+        return typeCache;
+      }
+
+      @Override
+      public TypeParsingService getTypeParsingService() {
+        return null;
+      }
+    };
+    assertTrue(typeLocationService.findTypesWithAnnotation(RooJavaType.ROO_JPA_ENTITY).isEmpty());
+
+    // Invoke: the command annotates the type, whose cached metadata is
+    // still that of the type before then
+    when(metadataService.get(id)).thenReturn(mockPhysicalType(id));
+    when(metadataService.evictAndGet(id)).thenReturn(
+        mockPhysicalType(id, RooJavaType.ROO_JPA_ENTITY));
+    dirtyFiles.add(Collections.singleton(path));
+    final Set<JavaType> entities =
+        typeLocationService.findTypesWithAnnotation(RooJavaType.ROO_JPA_ENTITY);
+
+    // Check
+    assertEquals(Collections.singleton(PERSON), entities);
+    verify(metadataService).evictAndGet(id);
+    verify(metadataService, never()).get(id);
+
+    // Invoke: the change is published, so the provider re-parses the type,
+    // which needn't be parsed again
+    when(metadataService.get(id)).thenReturn(mockPhysicalType(id, RooJavaType.ROO_JPA_ENTITY));
+    dirtyFiles.add(Collections.singleton(path));
+    listener[0].notify(id, null);
+    typeLocationService.findTypesWithAnnotation(RooJavaType.ROO_JPA_ENTITY);
+
+    // Check
+    verify(metadataService).evictAndGet(id);
+    verify(metadataService).get(id);
+  }
+
   public void testGetAllPackages() {
     // Set up
     final String leafPackage = "com.foo.bar";
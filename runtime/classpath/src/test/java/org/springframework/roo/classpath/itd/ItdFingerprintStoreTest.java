@@ -0,0 +1,96 @@
+package org.springframework.roo.classpath.itd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link ItdFingerprintStore}
+ */
+public class ItdFingerprintStoreTest {
+
+  private static final String CONTENTS = "privileged aspect Person_Roo_JavaBean {}";
+
+  // Fixture
+  private File itd;
+  private String itdFilename;
+  private ItdFingerprintStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    itd = File.createTempFile(getClass().getSimpleName(), ".aj");
+    itdFilename = itd.getCanonicalPath();
+    store = new ItdFingerprintStore();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(itd);
+  }
+
+  @Test
+  public void testChangedContentsAreWritten() throws IOException {
+    FileUtils.write(itd, CONTENTS);
+    store.rendered(itdFilename, CONTENTS);
+    store.rendered(itdFilename, CONTENTS);
+
+    assertTrue(store.rendered(itdFilename, CONTENTS + " "));
+  }
+
+  @Test
+  public void testChangedFileIsRead() throws IOException {
+    FileUtils.write(itd, CONTENTS);
+    store.rendered(itdFilename, CONTENTS);
+    store.rendered(itdFilename, CONTENTS);
+
+    FileUtils.write(itd, CONTENTS + " // edited");
+    assertTrue(store.rendered(itdFilename, CONTENTS));
+    assertEquals(0, store.getStatistics().getUnchangedUnread());
+  }
+
+  @Test
+  public void testForgottenFileIsRead() throws IOException {
+    FileUtils.write(itd, CONTENTS);
+    store.rendered(itdFilename, CONTENTS);
+    store.rendered(itdFilename, CONTENTS);
+
+    store.forget(itdFilename);
+    assertTrue(store.rendered(itdFilename, CONTENTS));
+    assertEquals(0, store.getStatistics().getUnchangedUnread());
+  }
+
+  @Test
+  public void testUnchangedFileIsNotReadOnceVerified() throws IOException {
+    // The first write may be deferred, so isn't trusted
+    assertTrue(store.rendered(itdFilename, CONTENTS));
+    FileUtils.write(itd, CONTENTS);
+
+    // Reading the file back verifies it
+    assertFalse(store.rendered(itdFilename, CONTENTS));
+    assertEquals(0, store.getStatistics().getUnchangedUnread());
+
+    // Now the file need not be read
+    assertFalse(store.rendered(itdFilename, CONTENTS));
+
+    final ItdFileStatistics statistics = store.getStatistics();
+    assertEquals(3, statistics.getRendered());
+    assertEquals(1, statistics.getUnchangedUnread());
+    assertEquals(1, statistics.getUnchangedReadBack());
+    assertEquals(1, statistics.getWritten());
+  }
+
+  @Test
+  public void testWriteThatNeverHappenedIsRetried() {
+    assertTrue(store.rendered(itdFilename, CONTENTS));
+    // e.g. the deferred write was discarded
+    assertTrue(store.rendered(itdFilename, CONTENTS));
+  }
+}
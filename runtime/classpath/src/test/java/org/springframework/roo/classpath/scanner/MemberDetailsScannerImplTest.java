@@ -0,0 +1,217 @@
+package org.springframework.roo.classpath.scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ItdTypeDetails;
+import org.springframework.roo.classpath.itd.ItdMetadataProvider;
+import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataLogger;
+import org.springframework.roo.metadata.MetadataProvider;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.metadata.internal.DefaultMetadataDependencyRegistry;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link MemberDetailsScannerImpl}
+ */
+public class MemberDetailsScannerImplTest {
+
+  /**
+   * Counts the results it's asked to decorate, i.e. the results built
+   */
+  private static class CountingDecorator implements MemberDetailsDecorator {
+
+    private int count;
+
+    public MemberDetails decorate(final String requestingClass, final MemberDetails memberDetails) {
+      count++;
+      return memberDetails;
+    }
+
+    public MemberDetails decorateTypes(final String requestingClass,
+        final MemberDetails memberDetails) {
+      return memberDetails;
+    }
+  }
+
+  private static final String DOWNSTREAM_METADATA_CLASS = "MID:com.example.DownstreamMetadata";
+  private static final String ITD_METADATA_CLASS = "MID:com.example.ExampleMetadata";
+  private static final String REQUESTING_CLASS = "com.example.RequestingMetadataProvider";
+
+  // Fixture
+  private CountingDecorator decorator;
+  private ClassOrInterfaceTypeDetails governor;
+  private String governorId;
+  private String itdId;
+  private MetadataService mockMetadataService;
+  private DefaultMetadataDependencyRegistry registry;
+  private MemberDetailsScannerImpl scanner;
+
+  @SuppressWarnings("rawtypes")
+  @Before
+  public void setUp() throws Exception {
+    governorId =
+        PhysicalTypeIdentifier.createIdentifier(new JavaType("com.example.Person"),
+            LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+    itdId = ITD_METADATA_CLASS + "#" + governorId.substring(governorId.indexOf('#') + 1);
+    governor = mockClassOrInterfaceTypeDetails();
+
+    final ItdMetadataProvider mockItdMetadataProvider = mock(ItdMetadataProvider.class);
+    when(mockItdMetadataProvider.getProvidesType()).thenReturn(ITD_METADATA_CLASS);
+    when(mockItdMetadataProvider.getIdForPhysicalJavaType(governorId)).thenReturn(itdId);
+
+    mockMetadataService = mock(MetadataService.class);
+    mockItd();
+
+    registry = new DefaultMetadataDependencyRegistry() {
+      {
+        metadataLogger = mock(MetadataLogger.class);
+      }
+    };
+    registry.addNotificationListener(mockMetadataService);
+
+    decorator = new CountingDecorator();
+    final BundleContext mockBundleContext = mock(BundleContext.class);
+    final ServiceReference mockDecoratorReference = mock(ServiceReference.class);
+    final ServiceReference mockMetadataServiceReference = mock(ServiceReference.class);
+    final ServiceReference mockProviderReference = mock(ServiceReference.class);
+    final ServiceReference mockRegistryReference = mock(ServiceReference.class);
+    when(mockBundleContext.getAllServiceReferences(MemberDetailsDecorator.class.getName(), null))
+        .thenReturn(new ServiceReference[] {mockDecoratorReference});
+    when(mockBundleContext.getAllServiceReferences(MetadataService.class.getName(), null))
+        .thenReturn(new ServiceReference[] {mockMetadataServiceReference});
+    when(mockBundleContext.getAllServiceReferences(MetadataProvider.class.getName(), null))
+        .thenReturn(new ServiceReference[] {mockProviderReference});
+    when(
+        mockBundleContext.getAllServiceReferences(MetadataDependencyRegistry.class.getName(),
+            null)).thenReturn(new ServiceReference[] {mockRegistryReference});
+    when(mockBundleContext.getService(mockDecoratorReference)).thenReturn(decorator);
+    when(mockBundleContext.getService(mockMetadataServiceReference)).thenReturn(
+        mockMetadataService);
+    when(mockBundleContext.getService(mockProviderReference)).thenReturn(mockItdMetadataProvider);
+    when(mockBundleContext.getService(mockRegistryReference)).thenReturn(registry);
+    final ComponentContext mockComponentContext = mock(ComponentContext.class);
+    when(mockComponentContext.getBundleContext()).thenReturn(mockBundleContext);
+
+    scanner = new MemberDetailsScannerImpl();
+    scanner.activate(mockComponentContext);
+  }
+
+  private ClassOrInterfaceTypeDetails mockClassOrInterfaceTypeDetails() {
+    final ClassOrInterfaceTypeDetails mockCid = mock(ClassOrInterfaceTypeDetails.class);
+    when(mockCid.getDeclaredByMetadataId()).thenReturn(governorId);
+    return mockCid;
+  }
+
+  private ItdTypeDetails mockItd() {
+    final ItdTypeDetails mockItd = mock(ItdTypeDetails.class);
+    final ItdTypeDetailsProvidingMetadataItem mockItdMetadata =
+        mock(ItdTypeDetailsProvidingMetadataItem.class);
+    when(mockItdMetadata.isValid()).thenReturn(true);
+    when(mockItdMetadata.getMemberHoldingTypeDetails()).thenReturn(mockItd);
+    when(mockMetadataService.get(itdId)).thenReturn(mockItdMetadata);
+    return mockItd;
+  }
+
+  @Test
+  public void testRepeatedRequestIsServedFromCache() {
+    final MemberDetails memberDetails = scanner.getMemberDetails(REQUESTING_CLASS, governor);
+
+    assertSame(memberDetails, scanner.getMemberDetails(REQUESTING_CLASS, governor));
+    assertEquals(1, decorator.count);
+    assertEquals(2, memberDetails.getDetails().size());
+    assertTrue(scanner.toString(), scanner.toString().contains("cacheHits=1"));
+  }
+
+  @Test
+  public void testOtherRequestingClassIsNotServedFromCache() {
+    scanner.getMemberDetails(REQUESTING_CLASS, governor);
+    scanner.getMemberDetails("com.example.OtherMetadataProvider", governor);
+
+    assertEquals(2, decorator.count);
+  }
+
+  @Test
+  public void testChangedItdInvalidatesCachedResult() {
+    final MemberDetails memberDetails = scanner.getMemberDetails(REQUESTING_CLASS, governor);
+    scanner.invalidate("MID:com.example.UnrelatedMetadata#SRC_MAIN_JAVA?com.example.Person");
+    assertSame(memberDetails, scanner.getMemberDetails(REQUESTING_CLASS, governor));
+
+    scanner.invalidate(itdId);
+
+    assertNotSame(memberDetails, scanner.getMemberDetails(REQUESTING_CLASS, governor));
+    assertEquals(2, decorator.count);
+  }
+
+  @Test
+  public void testChangedGovernorInvalidatesCachedResult() {
+    scanner.getMemberDetails(REQUESTING_CLASS, governor);
+    scanner.invalidate(governorId);
+    scanner.getMemberDetails(REQUESTING_CLASS, governor);
+
+    assertEquals(2, decorator.count);
+  }
+
+  @Test
+  public void testReparsedGovernorIsNotServedFromCache() {
+    scanner.getMemberDetails(REQUESTING_CLASS, governor);
+    scanner.getMemberDetails(REQUESTING_CLASS, mockClassOrInterfaceTypeDetails());
+
+    assertEquals(2, decorator.count);
+  }
+
+  @Test
+  public void testResultMissingAnItdStillBeingCreatedIsNotCached() {
+    when(mockMetadataService.get(itdId)).thenReturn(null);
+    when(mockMetadataService.isResolving(itdId)).thenReturn(true);
+
+    scanner.getMemberDetails(REQUESTING_CLASS, governor);
+    scanner.getMemberDetails(REQUESTING_CLASS, governor);
+
+    assertEquals(2, decorator.count);
+  }
+
+  @Test
+  public void testDownstreamOfAChangedItdIsRebuiltFromIt() {
+    final String downstreamId = DOWNSTREAM_METADATA_CLASS + itdId.substring(itdId.indexOf('#'));
+    registry.registerDependency(itdId, downstreamId);
+    scanner.getMemberDetails(REQUESTING_CLASS, governor);
+
+    // The ITD's provider rebuilds it, then notifies downstream, which asks
+    // for the governor's member details straight away
+    final ItdTypeDetails changedItd = mockItd();
+    final List<MemberDetails> rebuilt = new ArrayList<MemberDetails>();
+    doAnswer(new Answer<Void>() {
+      public Void answer(final InvocationOnMock invocation) {
+        rebuilt.add(scanner.getMemberDetails(REQUESTING_CLASS, governor));
+        return null;
+      }
+    }).when(mockMetadataService).notify(itdId, downstreamId);
+    registry.notifyDownstream(itdId);
+
+    assertEquals(1, rebuilt.size());
+    assertTrue(rebuilt.get(0).getDetails().contains(changedItd));
+    assertEquals(2, decorator.count);
+  }
+}
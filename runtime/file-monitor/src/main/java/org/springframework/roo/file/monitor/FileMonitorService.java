@@ -2,6 +2,7 @@ package org.springframework.roo.file.monitor;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 
 import org.springframework.roo.file.monitor.event.FileDetails;
@@ -34,6 +35,22 @@ public interface FileMonitorService {
    */
   boolean add(MonitoringRequest request);
 
+  /**
+   * Waits until the file system reports a change to a monitored location, or
+   * until the given time has elapsed. Implementations that cannot be told of
+   * changes (eg because they poll) simply wait for the given time, so callers
+   * still need to invoke {@link #scanAll()} periodically.
+   * <p>
+   * A reported change is published by the next {@link #scanAll()}.
+   * 
+   * @param timeoutMillis the maximum number of milliseconds to wait
+   * @return true if a change was reported while waiting
+   * @throws InterruptedException if the calling thread is interrupted while
+   *             waiting
+   * @since 2.0
+   */
+  boolean awaitChange(long timeoutMillis) throws InterruptedException;
+
   /**
    * Locates all {@link FileDetails} which match the presented Ant path.
    * 
@@ -88,6 +105,20 @@ public interface FileMonitorService {
    */
   boolean remove(MonitoringRequest request);
 
+  /**
+   * Advises files whose contents are known not to have changed since an
+   * earlier session (for example, because they were verified against a
+   * persisted snapshot). The first scan of a newly-added
+   * {@link MonitoringRequest} compares its contents against these files
+   * instead of announcing every file as newly monitored, so only new, modified
+   * or deleted files are published.
+   * 
+   * @param knownFiles key: canonical path, value: last modified time (can be
+   *            empty, but not null)
+   * @since 2.0
+   */
+  void setKnownFiles(Map<String, Long> knownFiles);
+
   /**
    * Execute a scan of all monitored locations.
    * 
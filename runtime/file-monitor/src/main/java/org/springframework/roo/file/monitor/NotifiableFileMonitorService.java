@@ -1,5 +1,7 @@
 package org.springframework.roo.file.monitor;
 
+import java.util.Collection;
+
 import org.springframework.roo.file.monitor.event.FileEventListener;
 
 /**
@@ -42,6 +44,16 @@ public interface NotifiableFileMonitorService extends FileMonitorService {
    */
   void notifyChanged(String fileCanonicalPath);
 
+  /**
+   * Indicates the canonical paths specified should be treated as if they had
+   * changed, in the same way as {@link #notifyChanged(String)} but as a
+   * single notification, e.g. once a batch of files has been written.
+   * 
+   * @param fileCanonicalPaths required (not null)
+   * @since 2.0
+   */
+  void notifyChanged(Collection<String> fileCanonicalPaths);
+
   void notifyCreated(String fileCanonicalPath);
 
   /**
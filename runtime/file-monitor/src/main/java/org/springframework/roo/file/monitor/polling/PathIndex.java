@@ -0,0 +1,270 @@
+package org.springframework.roo.file.monitor.polling;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The contents of a monitored location as found by a scan: the last modified
+ * time of each file and directory, keyed by path, plus the names of the
+ * entries within each directory.
+ * <p>
+ * Times are held in an open-addressing table of paths and primitive times, so
+ * an entry costs two array slots instead of a map entry, a {@link java.io.File}
+ * and a {@link Long}. Iterating over the paths while modifying the index is
+ * not supported.
+ *
+ * @since 2.0
+ */
+public final class PathIndex implements Iterable<String> {
+
+  /**
+   * The time returned for a path that is not in the index.
+   */
+  public static final long UNKNOWN = Long.MIN_VALUE;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private static int hash(final String path) {
+    final int h = path.hashCode();
+    return h ^ h >>> 16;
+  }
+
+  // key: directory path, value: names of the entries within it
+  private final Map<String, String[]> children;
+  private String[] paths;
+  private long scanTime;
+  private int size;
+  private long[] times;
+
+  public PathIndex() {
+    children = new HashMap<String, String[]>();
+    paths = new String[INITIAL_CAPACITY];
+    times = new long[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Creates a copy of the given index.
+   *
+   * @param other the index to copy (required)
+   */
+  public PathIndex(final PathIndex other) {
+    Validate.notNull(other, "Index to copy required");
+    children = new HashMap<String, String[]>(other.children);
+    paths = other.paths.clone();
+    scanTime = other.scanTime;
+    size = other.size;
+    times = other.times.clone();
+  }
+
+  /**
+   * Indicates whether the given path is in the index.
+   *
+   * @param path the path to look up (required)
+   * @return see above
+   */
+  public boolean contains(final String path) {
+    return indexOf(path) >= 0;
+  }
+
+  /**
+   * Returns the last modified time of the given path.
+   *
+   * @param path the path to look up (required)
+   * @return the time, or {@link #UNKNOWN} if the path is not in the index
+   */
+  public long get(final String path) {
+    final int index = indexOf(path);
+    return index < 0 ? UNKNOWN : times[index];
+  }
+
+  /**
+   * Returns the names of the entries within the given directory, as found by
+   * the scan that built this index.
+   *
+   * @param directory the path of the directory (required)
+   * @return null if the directory's entries are not known
+   */
+  public String[] getChildren(final String directory) {
+    return children.get(directory);
+  }
+
+  /**
+   * Returns the time the scan that built this index started.
+   *
+   * @return milliseconds since the epoch (zero if not known)
+   */
+  public long getScanTime() {
+    return scanTime;
+  }
+
+  private int indexOf(final String path) {
+    final int mask = paths.length - 1;
+    for (int i = hash(path) & mask;; i = i + 1 & mask) {
+      if (paths[i] == null) {
+        return -1 - i;
+      }
+      if (paths[i].equals(path)) {
+        return i;
+      }
+    }
+  }
+
+  /**
+   * Indicates whether the entries within the given directory are known.
+   *
+   * @param path the path to check (required)
+   * @return false if the path is not a directory that was scanned
+   */
+  public boolean isDirectory(final String path) {
+    return children.containsKey(path);
+  }
+
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private int next = advance(0);
+
+      private int advance(int from) {
+        while (from < paths.length && paths[from] == null) {
+          from++;
+        }
+        return from;
+      }
+
+      public boolean hasNext() {
+        return next < paths.length;
+      }
+
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final String path = paths[next];
+        next = advance(next + 1);
+        return path;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Records the last modified time of the given path.
+   *
+   * @param path the path (required)
+   * @param time the last modified time
+   * @return the previous time, or {@link #UNKNOWN} if the path is new
+   */
+  public long put(final String path, final long time) {
+    Validate.notNull(path, "Path required");
+    int index = indexOf(path);
+    if (index >= 0) {
+      final long previous = times[index];
+      times[index] = time;
+      return previous;
+    }
+    if ((size + 1) * 4 > paths.length * 3) {
+      resize();
+      index = indexOf(path);
+    }
+    index = -1 - index;
+    paths[index] = path;
+    times[index] = time;
+    size++;
+    return UNKNOWN;
+  }
+
+  /**
+   * Removes the given path, along with the entries recorded for it if it is a
+   * directory.
+   *
+   * @param path the path to remove (required)
+   * @return its last modified time, or {@link #UNKNOWN} if it was not in the
+   *         index
+   */
+  public long remove(final String path) {
+    children.remove(path);
+    int index = indexOf(path);
+    if (index < 0) {
+      return UNKNOWN;
+    }
+    final long previous = times[index];
+    // Shift back any entries that probed past the removed one
+    final int mask = paths.length - 1;
+    for (int next = index + 1 & mask; paths[next] != null; next = next + 1 & mask) {
+      final int home = hash(paths[next]) & mask;
+      if ((next - home & mask) >= (next - index & mask)) {
+        paths[index] = paths[next];
+        times[index] = times[next];
+        index = next;
+      }
+    }
+    paths[index] = null;
+    size--;
+    return previous;
+  }
+
+  private void resize() {
+    final String[] oldPaths = paths;
+    final long[] oldTimes = times;
+    paths = new String[oldPaths.length * 2];
+    times = new long[oldTimes.length * 2];
+    for (int i = 0; i < oldPaths.length; i++) {
+      if (oldPaths[i] != null) {
+        final int index = -1 - indexOf(oldPaths[i]);
+        paths[index] = oldPaths[i];
+        times[index] = oldTimes[i];
+      }
+    }
+  }
+
+  /**
+   * Records the names of the entries within the given directory.
+   *
+   * @param directory the path of the directory (required)
+   * @param names the names, or null to forget them (eg because they have
+   *            changed since)
+   */
+  public void setChildren(final String directory, final String[] names) {
+    if (names == null) {
+      children.remove(directory);
+    } else {
+      children.put(directory, names);
+    }
+  }
+
+  /**
+   * Records the time the scan that built this index started.
+   *
+   * @param scanTime milliseconds since the epoch
+   */
+  public void setScanTime(final long scanTime) {
+    this.scanTime = scanTime;
+  }
+
+  /**
+   * Returns the number of paths in the index.
+   *
+   * @return zero or more
+   */
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    final String[] sorted = new String[size];
+    int i = 0;
+    for (final String path : this) {
+      sorted[i++] = path;
+    }
+    Arrays.sort(sorted);
+    return Arrays.toString(sorted);
+  }
+}
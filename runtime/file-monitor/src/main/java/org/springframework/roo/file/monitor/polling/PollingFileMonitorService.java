@@ -5,17 +5,25 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -49,7 +57,9 @@ import org.w3c.dom.Element;
  * compares this active file index with the last time it was executed for that
  * particular {@link MonitoringRequest}. Events are then fired, and only when
  * the event firing process has completed is the next {@link MonitoringRequest}
- * examined.
+ * examined. The index is a {@link PathIndex}, built by a single walk that
+ * reads the attributes of each entry once and only lists the directories
+ * that changed since the previous scan.
  * <p>
  * This implementation does not recognize {@link FileOperation#RENAMED} events.
  * This implementation will ignore any monitored files with a filename starting
@@ -66,17 +76,129 @@ import org.w3c.dom.Element;
  */
 public class PollingFileMonitorService implements NotifiableFileMonitorService {
 
+  /**
+   * Walks a monitored location into a {@link PathIndex}, as per
+   * {@link PollingFileMonitorService#computeEntries(PathIndex, File, boolean, PathIndex)}.
+   */
+  private class ScanVisitor extends SimpleFileVisitor<Path> {
+
+    // The names found in each directory being walked, innermost last
+    private final Deque<List<String>> children = new ArrayDeque<List<String>>();
+    private final boolean includeSubtree;
+    private final PathIndex index;
+    private final List<String> newPaths = new ArrayList<String>();
+    private final PathIndex priorIndex;
+
+    ScanVisitor(final PathIndex index, final PathIndex priorIndex, final boolean includeSubtree) {
+      this.index = index;
+      this.priorIndex = priorIndex;
+      this.includeSubtree = includeSubtree;
+    }
+
+    private boolean isUnchanged(final String directory, final long lastModified) {
+      return priorIndex != null && priorIndex.get(directory) == lastModified
+          && priorIndex.getChildren(directory) != null
+          && lastModified + RACY_INTERVAL_MILLIS <= priorIndex.getScanTime();
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) {
+      final List<String> names = children.removeLast();
+      index.setChildren(dir.toString(), names.toArray(new String[names.size()]));
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+        throws IOException {
+      final String path = dir.toString();
+      if (!record(dir, path, attrs)) {
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+      children.addLast(new ArrayList<String>());
+      final long lastModified = attrs.lastModifiedTime().toMillis();
+      if (!isUnchanged(path, lastModified)) {
+        return FileVisitResult.CONTINUE;
+      }
+
+      // Same entries as last time, so read them by name
+      for (final String name : priorIndex.getChildren(path)) {
+        final Path child = dir.resolve(name);
+        final BasicFileAttributes childAttrs;
+        try {
+          childAttrs = Files.readAttributes(child, BasicFileAttributes.class);
+        } catch (final IOException deletedSince) {
+          continue;
+        }
+        if (childAttrs.isDirectory() && includeSubtree) {
+          walk(child, Integer.MAX_VALUE);
+        } else {
+          visitFile(child, childAttrs);
+        }
+      }
+      postVisitDirectory(dir, null);
+      return FileVisitResult.SKIP_SUBTREE;
+    }
+
+    /**
+     * Records the given entry unless it is ignored, returning whether it was
+     * recorded.
+     */
+    private boolean record(final Path file, final String path, final BasicFileAttributes attrs) {
+      final Path fileName = file.getFileName();
+      final String name = fileName == null ? "" : fileName.toString();
+      if (isIgnored(name, path, attrs.isDirectory())) {
+        return false;
+      }
+      if (index.put(path, attrs.lastModifiedTime().toMillis()) == PathIndex.UNKNOWN
+          && (priorIndex == null || !priorIndex.contains(path))) {
+        newPaths.add(path);
+      }
+      if (!children.isEmpty()) {
+        children.getLast().add(name);
+      }
+      return true;
+    }
+
+    @Override
+    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+      // Directories only get here when sub-directories are not walked
+      if (!attrs.isDirectory() || includeSubtree) {
+        record(file, file.toString(), attrs);
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+      // Unreadable or vanished since listed, so skip it
+      return FileVisitResult.CONTINUE;
+    }
+
+    void walk(final Path start, final int maxDepth) {
+      try {
+        Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth, this);
+      } catch (final IOException ignored) {
+      }
+    }
+  }
+
   protected final static Logger LOGGER = HandlerUtils.getLogger(PollingFileMonitorService.class);
 
+  // How long before a scan a directory must have last changed for that scan
+  // to be sure it saw all of the directory's entries
+  private static final long RACY_INTERVAL_MILLIS = 2000;
+
   private final Set<String> allFiles = new HashSet<String>();
+  private final Map<String, Long> knownFiles = new HashMap<String, Long>();
   private final Map<String, Set<String>> changeMap = new HashMap<String, Set<String>>();
   private final Set<FileEventListener> fileEventListeners = new HashSet<FileEventListener>();
   private final Object lock = new Object();
   private final Set<String> notifyChanged = new HashSet<String>();
   private final Set<String> notifyCreated = new HashSet<String>();
   private final Set<String> notifyDeleted = new HashSet<String>();
-  private final Map<MonitoringRequest, Map<File, Long>> priorExecution =
-      new WeakHashMap<MonitoringRequest, Map<File, Long>>();
+  private final Map<MonitoringRequest, PathIndex> priorExecution =
+      new WeakHashMap<MonitoringRequest, PathIndex>();
   private final Set<MonitoringRequest> requests = new LinkedHashSet<MonitoringRequest>();
   private final List<FileEvent> eventsPendingToPublish = new ArrayList<FileEvent>();
 
@@ -135,8 +257,8 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
   }
 
   /**
-   * Adds one or more entries into the Map. The key of the Map is the File
-   * object, and the value is the {@link File#lastModified()} time.
+   * Walks the given file or directory, recording each entry that is not
+   * {@link #isIgnored(File) ignored} in the given index.
    * <p>
    * Specifically:
    * <ul>
@@ -147,36 +269,82 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
    * <li>If invoked with a File that is actually a Directory, subdirectories
    * will be added only if "includeSubtree" is true.</li>
    * </ul>
+   * The attributes of each entry are read once. A directory whose last
+   * modified time has not changed since the given prior scan (and was not
+   * modified just before it, as file system times can be coarse) has the same
+   * entries as then, so they are read by name instead of listing the directory
+   * again.
+   *
+   * @param index the index to add the entries to (required)
+   * @param currentFile the file or directory to walk (required)
+   * @param includeSubtree whether to walk sub-directories
+   * @param priorIndex the index built by the previous scan of the same
+   *            location (null if none)
+   * @since 2.0
    */
-  private void computeEntries(final Map<File, Long> map, final File currentFile,
-      final boolean includeSubtree) {
-    Validate.notNull(map, "Map required");
+  protected final void computeEntries(final PathIndex index, final File currentFile,
+      final boolean includeSubtree, final PathIndex priorIndex) {
+    Validate.notNull(index, "Index required");
     Validate.notNull(currentFile, "Current file is required");
 
-    if (!currentFile.exists() || currentFile.getName().length() > 1
-        && currentFile.getName().startsWith(".") || currentFile.getName().equals("log.roo")
-        || currentFile.isDirectory() && isExcludedDirectory(currentFile.getPath())) {
-      return;
+    final ScanVisitor visitor = new ScanVisitor(index, priorIndex, includeSubtree);
+    visitor.walk(currentFile.toPath(), includeSubtree ? Integer.MAX_VALUE : 1);
+
+    // Only entries new since the prior scan need their canonical path
+    for (final String path : visitor.newPaths) {
+      try {
+        allFiles.add(new File(path).getCanonicalPath());
+      } catch (final IOException ignored) {
+      }
     }
+  }
 
-    map.put(currentFile, currentFile.lastModified());
+  /**
+   * Builds the current contents of the given monitored location, ready to be
+   * compared with its contents as of the previous scan. This implementation
+   * walks the whole location via
+   * {@link #computeEntries(PathIndex, File, boolean, PathIndex)}.
+   * 
+   * @param request the monitored location, which exists (required)
+   * @param priorFiles the contents found by the previous scan, which must not
+   *            be modified (null if this is the first scan of the location)
+   * @return a new index
+   * @since 2.0
+   */
+  protected PathIndex computeCurrentExecution(final MonitoringRequest request,
+      final PathIndex priorFiles) {
+    final PathIndex currentExecution = new PathIndex();
+    currentExecution.setScanTime(System.currentTimeMillis());
+    computeEntries(currentExecution, request.getFile(), isWatchSubtree(request), priorFiles);
+    return currentExecution;
+  }
 
-    try {
-      allFiles.add(currentFile.getCanonicalPath());
-    } catch (final IOException ignored) {
-    }
+  public boolean awaitChange(final long timeoutMillis) throws InterruptedException {
+    // Changes are only found by scanning
+    Thread.sleep(timeoutMillis);
+    return false;
+  }
 
-    if (currentFile.isDirectory()) {
-      final File[] files = currentFile.listFiles();
-      if (files == null || files.length == 0) {
-        return;
-      }
-      for (final File file : files) {
-        if (file.isFile() || includeSubtree) {
-          computeEntries(map, file, includeSubtree);
+  /**
+   * Builds the prior execution of a newly-monitored location from the files
+   * advised via {@link #setKnownFiles(Map)}, so that the first scan only
+   * reports the differences.
+   * 
+   * @param currentExecution the current contents of the monitored location
+   * @return the known subset of the current contents (never null)
+   */
+  private PathIndex getKnownEntries(final PathIndex currentExecution) {
+    final PathIndex knownEntries = new PathIndex();
+    for (final String path : currentExecution) {
+      try {
+        final Long lastModified = knownFiles.get(new File(path).getCanonicalPath());
+        if (lastModified != null) {
+          knownEntries.put(path, lastModified);
         }
+      } catch (final IOException ignored) {
       }
     }
+    return knownEntries;
   }
 
   public SortedSet<FileDetails> findMatchingAntPath(final String antPath) {
@@ -224,7 +392,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
   }
 
   private List<FileEvent> getFileCreationEvents(final MonitoringRequest request,
-      final Map<File, Long> priorFiles) {
+      final PathIndex priorFiles) {
     final List<FileEvent> createEvents = new ArrayList<FileEvent>();
     for (final Iterator<String> iter = notifyCreated.iterator(); iter.hasNext();) {
       final String filePath = iter.next();
@@ -238,7 +406,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
               FileOperation.CREATED, null));
           // Update the prior execution map so it isn't notified again
           // next round
-          priorFiles.put(thisFile, thisFile.lastModified());
+          priorFiles.put(filePath, thisFile.lastModified());
         }
       }
     }
@@ -246,7 +414,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
   }
 
   private List<FileEvent> getFileDeletionEvents(final MonitoringRequest request,
-      final Map<File, Long> priorFiles) {
+      final PathIndex priorFiles) {
     final List<FileEvent> deleteEvents = new ArrayList<FileEvent>();
     for (final Iterator<String> iter = notifyDeleted.iterator(); iter.hasNext();) {
       final String filePath = iter.next();
@@ -261,7 +429,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
               null));
           // Update the prior execution map so it isn't notified again
           // next round
-          priorFiles.remove(thisFile);
+          priorFiles.remove(filePath);
         }
       }
     }
@@ -269,7 +437,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
   }
 
   private List<FileEvent> getFileUpdateEvents(final MonitoringRequest request,
-      final Map<File, Long> priorFiles) {
+      final PathIndex priorFiles) {
     final List<FileEvent> updateEvents = new ArrayList<FileEvent>();
     for (final Iterator<String> iter = notifyChanged.iterator(); iter.hasNext();) {
       final String filePath = iter.next();
@@ -283,7 +451,7 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
               FileOperation.UPDATED, null));
           // Update the prior execution map so it isn't notified again
           // next round
-          priorFiles.put(thisFile, thisFile.lastModified());
+          priorFiles.put(filePath, thisFile.lastModified());
           // Also remove it from the created list, if it's in there
           if (notifyCreated.contains(filePath)) {
             notifyCreated.remove(filePath);
@@ -303,9 +471,9 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
 
       for (final MonitoringRequest request : requests) {
         if (priorExecution.containsKey(request)) {
-          final Map<File, Long> priorFiles = priorExecution.get(request);
-          for (final Entry<File, Long> entry : priorFiles.entrySet()) {
-            monitored.add(new FileDetails(entry.getKey(), entry.getValue()));
+          final PathIndex priorFiles = priorExecution.get(request);
+          for (final String path : priorFiles) {
+            monitored.add(new FileDetails(new File(path), priorFiles.get(path)));
           }
         }
       }
@@ -320,6 +488,24 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
+  /**
+   * Indicates whether the given file or directory is never monitored, ie it
+   * is hidden, the Roo log or an excluded directory (such as a build output
+   * directory).
+   * 
+   * @param file the file or directory to check (required)
+   * @return see above
+   * @since 2.0
+   */
+  protected final boolean isIgnored(final File file) {
+    return isIgnored(file.getName(), file.getPath(), file.isDirectory());
+  }
+
+  private boolean isIgnored(final String name, final String path, final boolean directory) {
+    return name.length() > 1 && name.startsWith(".") || name.equals("log.roo") || directory
+        && isExcludedDirectory(path);
+  }
+
   private boolean isExcludedDirectory(final String path) {
     final boolean hasSrc = path.contains(File.separator + "src");
     return !hasSrc
@@ -346,6 +532,19 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     return false;
   }
 
+  /**
+   * Indicates whether the given request monitors the sub-tree of a directory,
+   * rather than a single file or the files directly within a directory.
+   * 
+   * @param request the monitoring request (required)
+   * @return see above
+   * @since 2.0
+   */
+  protected final boolean isWatchSubtree(final MonitoringRequest request) {
+    return request instanceof DirectoryMonitoringRequest
+        && ((DirectoryMonitoringRequest) request).isWatchSubtree();
+  }
+
   private boolean isWithin(final MonitoringRequest request, final String filePath) {
     String requestCanonicalPath;
     try {
@@ -386,6 +585,15 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
+  public void notifyChanged(final Collection<String> fileCanonicalPaths) {
+    Validate.notNull(fileCanonicalPaths, "File canonical paths required");
+    synchronized (lock) {
+      for (final String fileCanonicalPath : fileCanonicalPaths) {
+        notifyChanged(fileCanonicalPath);
+      }
+    }
+  }
+
   public void notifyCreated(final String fileCanonicalPath) {
     synchronized (lock) {
       updateChanges(fileCanonicalPath, false);
@@ -404,6 +612,16 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
     }
   }
 
+  /**
+   * Allows subclasses to amend the events found by comparing a monitored
+   * location with its previous contents, before they are published. This
+   * implementation does nothing.
+   * 
+   * @param eventsToPublish the events, in publication order (never null)
+   * @since 2.0
+   */
+  protected void postProcessEvents(final List<FileEvent> eventsToPublish) {}
+
   /**
    * Publish the events, if needed.
    * <p>
@@ -434,9 +652,9 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
       final List<FileEvent> eventsToPublish = new ArrayList<FileEvent>();
 
       // See when each file was last checked
-      Map<File, Long> priorFiles = priorExecution.get(request);
+      PathIndex priorFiles = priorExecution.get(request);
       if (priorFiles == null) {
-        priorFiles = new HashMap<File, Long>();
+        priorFiles = new PathIndex();
         priorExecution.put(request, priorFiles);
       }
 
@@ -500,11 +718,9 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
       if (priorExecution.containsKey(request)) {
         final List<FileEvent> eventsToPublish = new ArrayList<FileEvent>();
 
-        final Map<File, Long> priorFiles = priorExecution.get(request);
-        for (final Entry<File, Long> entry : priorFiles.entrySet()) {
-          final File thisFile = entry.getKey();
-          final Long lastModified = entry.getValue();
-          eventsToPublish.add(new FileEvent(new FileDetails(thisFile, lastModified),
+        final PathIndex priorFiles = priorExecution.get(request);
+        for (final String path : priorFiles) {
+          eventsToPublish.add(new FileEvent(new FileDetails(new File(path), priorFiles.get(path)),
               FileOperation.MONITORING_FINISH, null));
         }
         publish(eventsToPublish);
@@ -525,31 +741,32 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
       int changes = 0;
 
       for (final MonitoringRequest request : requests) {
-        boolean includeSubtree = false;
-        if (request instanceof DirectoryMonitoringRequest) {
-          includeSubtree = ((DirectoryMonitoringRequest) request).isWatchSubtree();
-        }
-
         if (!request.getFile().exists()) {
           continue;
         }
 
         // Build contents of the monitored location
-        final Map<File, Long> currentExecution = new HashMap<File, Long>();
-        computeEntries(currentExecution, request.getFile(), includeSubtree);
+        PathIndex priorFiles = priorExecution.get(request);
+        final PathIndex currentExecution = computeCurrentExecution(request, priorFiles);
 
         final List<FileEvent> eventsToPublish = new ArrayList<FileEvent>();
 
-        if (priorExecution.containsKey(request)) {
+        if (priorFiles == null && !knownFiles.isEmpty()) {
+          // Newly-monitored location whose contents were partially known
+          // in an earlier session, so we only report the differences
+          priorFiles = getKnownEntries(currentExecution);
+        }
+
+        if (priorFiles != null) {
           // Need to perform a comparison, as we have data from a
           // previous execution
-          final Map<File, Long> priorFiles = priorExecution.get(request);
 
           // Locate created and modified files
-          for (final Entry<File, Long> entry : currentExecution.entrySet()) {
-            final File thisFile = entry.getKey();
-            final Long currentTimestamp = entry.getValue();
-            if (!priorFiles.containsKey(thisFile)) {
+          for (final String path : currentExecution) {
+            final long currentTimestamp = currentExecution.get(path);
+            final long previousTimestamp = priorFiles.get(path);
+            if (previousTimestamp == PathIndex.UNKNOWN) {
+              final File thisFile = new File(path);
               // This file did not exist last execution, so it
               // must be new
               eventsToPublish.add(new FileEvent(new FileDetails(thisFile, currentTimestamp),
@@ -563,9 +780,9 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
               continue;
             }
 
-            final Long previousTimestamp = priorFiles.get(thisFile);
-            if (!currentTimestamp.equals(previousTimestamp)) {
+            if (currentTimestamp != previousTimestamp) {
               // Modified
+              final File thisFile = new File(path);
               eventsToPublish.add(new FileEvent(new FileDetails(thisFile, currentTimestamp),
                   FileOperation.UPDATED, null));
               try {
@@ -578,10 +795,12 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
           }
 
           // Now locate deleted files
-          priorFiles.keySet().removeAll(currentExecution.keySet());
-          for (final Entry<File, Long> entry : priorFiles.entrySet()) {
-            final File deletedFile = entry.getKey();
-            eventsToPublish.add(new FileEvent(new FileDetails(deletedFile, entry.getValue()),
+          for (final String path : priorFiles) {
+            if (currentExecution.contains(path)) {
+              continue;
+            }
+            final File deletedFile = new File(path);
+            eventsToPublish.add(new FileEvent(new FileDetails(deletedFile, priorFiles.get(path)),
                 FileOperation.DELETED, null));
             try {
               // If this file was already going to be notified,
@@ -593,12 +812,14 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
         } else {
           // No data from previous execution, so it's a
           // newly-monitored location
-          for (final Entry<File, Long> entry : currentExecution.entrySet()) {
-            eventsToPublish.add(new FileEvent(new FileDetails(entry.getKey(), entry.getValue()),
-                FileOperation.MONITORING_START, null));
+          for (final String path : currentExecution) {
+            eventsToPublish.add(new FileEvent(new FileDetails(new File(path), currentExecution
+                .get(path)), FileOperation.MONITORING_START, null));
           }
         }
 
+        postProcessEvents(eventsToPublish);
+
         // Record the monitored location's contents, ready for next
         // execution
         priorExecution.put(request, currentExecution);
@@ -640,10 +861,21 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
         changes += eventsToPublish.size();
       }
 
+      // Known files only apply to the first scan of each location
+      knownFiles.clear();
+
       return changes;
     }
   }
 
+  public void setKnownFiles(final Map<String, Long> knownFiles) {
+    Validate.notNull(knownFiles, "Known files required");
+    synchronized (lock) {
+      this.knownFiles.clear();
+      this.knownFiles.putAll(knownFiles);
+    }
+  }
+
   private String getRooProjectVersion() {
     String homePath = new File(".").getPath();
     String pomPath = homePath + "/pom.xml";
@@ -654,9 +886,9 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
         Document docXml = XmlUtils.readXml(is);
         Element document = docXml.getDocumentElement();
         Element rooVersionElement = XmlUtils.findFirstElement("properties/roo.version", document);
-        String rooVersion = rooVersionElement.getTextContent();
-
-        return rooVersion;
+        if (rooVersionElement != null) {
+          return rooVersionElement.getTextContent();
+        }
       }
 
       return "UNKNOWN";
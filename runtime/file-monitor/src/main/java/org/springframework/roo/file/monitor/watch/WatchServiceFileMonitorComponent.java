@@ -0,0 +1,56 @@
+package org.springframework.roo.file.monitor.watch;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.felix.scr.annotations.ReferenceStrategy;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.file.monitor.event.FileEventListener;
+import org.springframework.roo.file.monitor.polling.PollingFileMonitorService;
+
+/**
+ * Makes the file monitor available as an OSGi component that automatically
+ * monitors the environment's {@link FileEventListener} components.
+ * <p>
+ * By default the file system is polled, as per
+ * {@link PollingFileMonitorService}. Setting the {@value #BACKEND_PROPERTY}
+ * property to {@value #WATCH_BACKEND} uses the native file system
+ * notifications instead, as per {@link WatchServiceFileMonitorService}, with
+ * polling as the fallback where they are unavailable.
+ * <p>
+ * This component was called <code>PollingFileMonitorComponent</code> before
+ * it could use the watch service.
+ *
+ * @author Ben Alex
+ * @since 1.1
+ */
+@Component
+@Service
+@Reference(name = "fileEventListener", strategy = ReferenceStrategy.EVENT,
+    policy = ReferencePolicy.DYNAMIC, referenceInterface = FileEventListener.class,
+    cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
+public class WatchServiceFileMonitorComponent extends WatchServiceFileMonitorService {
+
+  /**
+   * The name of the property selecting how the file system is monitored;
+   * either "polling" (the default) or {@value #WATCH_BACKEND}.
+   */
+  public static final String BACKEND_PROPERTY = "roo.file.monitor";
+
+  public static final String WATCH_BACKEND = "watch";
+
+  protected void activate(final ComponentContext context) {
+    setWatching(WATCH_BACKEND.equalsIgnoreCase(context.getBundleContext().getProperty(
+        BACKEND_PROPERTY)));
+  }
+
+  protected void bindFileEventListener(final FileEventListener listener) {
+    add(listener);
+  }
+
+  protected void unbindFileEventListener(final FileEventListener listener) {
+    remove(listener);
+  }
+}
@@ -0,0 +1,378 @@
+package org.springframework.roo.file.monitor.watch;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.springframework.roo.file.monitor.FileMonitorService;
+import org.springframework.roo.file.monitor.MonitoringRequest;
+import org.springframework.roo.file.monitor.event.FileDetails;
+import org.springframework.roo.file.monitor.event.FileEvent;
+import org.springframework.roo.file.monitor.event.FileOperation;
+import org.springframework.roo.file.monitor.polling.PathIndex;
+import org.springframework.roo.file.monitor.polling.PollingFileMonitorService;
+
+/**
+ * A {@link FileMonitorService} that uses the file system's native change
+ * notifications (via {@link WatchService}) instead of walking every monitored
+ * location on every scan.
+ * <p>
+ * The first scan of each {@link MonitoringRequest} walks the location as per
+ * {@link PollingFileMonitorService} and registers each of its directories with
+ * the {@link WatchService}. Later scans only look at the files the watch
+ * service reported as created, modified or deleted, so their cost depends on
+ * the number of changes rather than the number of monitored files. If the
+ * watch service cannot be created, cannot watch a directory or reports that it
+ * lost events, the affected scans fall back to a full walk.
+ * <p>
+ * A file deleted and re-created under another name in the same directory, with
+ * the same last modified time, is published as a {@link FileOperation#DELETED}
+ * event for the old name followed by a {@link FileOperation#RENAMED} event for
+ * the new name (instead of {@link FileOperation#CREATED}), so listeners that
+ * ignore renames still see the deletion.
+ *
+ * @since 2.0
+ */
+public class WatchServiceFileMonitorService extends PollingFileMonitorService {
+
+  // All guarded by watchLock, which is always acquired before the lock of the
+  // superclass
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<WatchKey, Path>();
+  private final Map<Path, WatchKey> watchKeys = new HashMap<Path, WatchKey>();
+  private final Set<File> changedFiles = new LinkedHashSet<File>();
+  private final Map<File, File> renamedFiles = new HashMap<File, File>();
+  private final Set<MonitoringRequest> unwatchableRequests = new HashSet<MonitoringRequest>();
+  private final Object watchLock = new Object();
+  private boolean overflowed;
+  private WatchService watchService;
+  private boolean watching = true;
+
+  @Override
+  public boolean awaitChange(final long timeoutMillis) throws InterruptedException {
+    final WatchService service;
+    synchronized (watchLock) {
+      service = watching ? watchService : null;
+    }
+    if (service == null) {
+      // Not watching (yet), so changes are only found by scanning
+      return super.awaitChange(timeoutMillis);
+    }
+    final WatchKey key;
+    try {
+      key = service.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (final ClosedWatchServiceException e) {
+      return false;
+    }
+    if (key == null) {
+      return false;
+    }
+    synchronized (watchLock) {
+      if (service == watchService) {
+        // Record the events now, as the key is no longer queued for the
+        // next scan to find
+        collectWatchEvents(key);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Records the files reported by the given key, and whether it lost any
+   * events.
+   */
+  private void collectWatchEvents(final WatchKey key) {
+    final Path directory = watchedDirectories.get(key);
+    if (directory == null) {
+      key.cancel();
+      return;
+    }
+    File deleted = null;
+    for (final WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        overflowed = true;
+        continue;
+      }
+      final File file = directory.resolve((Path) event.context()).toFile();
+      changedFiles.add(file);
+      // A rename is reported as a deletion immediately followed by a
+      // creation in the same directory
+      if (event.kind() == ENTRY_CREATE && deleted != null) {
+        renamedFiles.put(file, deleted);
+      }
+      deleted = event.kind() == ENTRY_DELETE ? file : null;
+    }
+    if (!key.reset()) {
+      // The directory is no longer accessible (eg it was deleted)
+      watchKeys.remove(watchedDirectories.remove(key));
+    }
+  }
+
+  /**
+   * Collects the files reported by the watch service since the last scan,
+   * and whether it lost any events.
+   */
+  private void drainWatchEvents() {
+    WatchKey key;
+    while ((key = watchService.poll()) != null) {
+      collectWatchEvents(key);
+    }
+  }
+
+  @Override
+  protected PathIndex computeCurrentExecution(final MonitoringRequest request,
+      final PathIndex priorFiles) {
+    if (!watching || overflowed || priorFiles == null || !isWatched(request)) {
+      final PathIndex currentExecution = super.computeCurrentExecution(request, priorFiles);
+      if (watching && !unwatchableRequests.contains(request)) {
+        watchDirectories(request, currentExecution, currentExecution);
+      }
+      return currentExecution;
+    }
+
+    final PathIndex currentExecution = new PathIndex(priorFiles);
+    final List<String> newEntries = new ArrayList<String>();
+    for (final File file : changedFiles) {
+      if (isMonitoredBy(request, file)) {
+        update(request, currentExecution, file, newEntries);
+      }
+    }
+    watchDirectories(request, currentExecution, newEntries);
+    return currentExecution;
+  }
+
+  private boolean isMonitoredBy(final MonitoringRequest request, final File file) {
+    final File location = request.getFile();
+    if (location.isFile() || !location.exists()) {
+      return location.equals(file);
+    }
+    if (!isWatchSubtree(request)) {
+      return location.equals(file.getParentFile());
+    }
+    return file.getPath().startsWith(location.getPath() + File.separator);
+  }
+
+  private boolean isWatched(final MonitoringRequest request) {
+    if (unwatchableRequests.contains(request)) {
+      return false;
+    }
+    final File location = request.getFile();
+    final File directory = location.isDirectory() ? location : location.getParentFile();
+    return directory != null && watchKeys.containsKey(directory.toPath());
+  }
+
+  @Override
+  protected void postProcessEvents(final List<FileEvent> eventsToPublish) {
+    if (renamedFiles.isEmpty()) {
+      return;
+    }
+    final Map<File, FileEvent> deletions = new HashMap<File, FileEvent>();
+    for (final FileEvent event : eventsToPublish) {
+      if (event.getOperation() == FileOperation.DELETED) {
+        deletions.put(event.getFileDetails().getFile(), event);
+      }
+    }
+    final List<FileEvent> renames = new ArrayList<FileEvent>();
+    for (final Iterator<FileEvent> iter = eventsToPublish.iterator(); iter.hasNext();) {
+      final FileEvent event = iter.next();
+      if (event.getOperation() != FileOperation.CREATED) {
+        continue;
+      }
+      final File newName = event.getFileDetails().getFile();
+      final File previousName = renamedFiles.get(newName);
+      final FileEvent deletion = previousName == null ? null : deletions.get(previousName);
+      if (deletion != null
+          && event.getFileDetails().getLastModified()
+              .equals(deletion.getFileDetails().getLastModified())) {
+        iter.remove();
+        renames.add(new FileEvent(event.getFileDetails(), FileOperation.RENAMED, previousName));
+      }
+    }
+    // After the deletions, so the old name is gone before the new one appears
+    eventsToPublish.addAll(renames);
+  }
+
+  @Override
+  public boolean remove(final MonitoringRequest request) {
+    synchronized (watchLock) {
+      final boolean removed = super.remove(request);
+      unwatchableRequests.remove(request);
+      if (removed && request.getFile().isDirectory()) {
+        // Stop watching directories no other request needs
+        final Set<File> stillMonitored = new HashSet<File>();
+        for (final FileDetails details : getMonitored()) {
+          stillMonitored.add(details.getFile());
+        }
+        final String location = request.getFile().getPath();
+        for (final Iterator<Map.Entry<Path, WatchKey>> iter = watchKeys.entrySet().iterator(); iter
+            .hasNext();) {
+          final Map.Entry<Path, WatchKey> entry = iter.next();
+          final String directory = entry.getKey().toString();
+          if ((directory.equals(location) || directory.startsWith(location + File.separator))
+              && !stillMonitored.contains(entry.getKey().toFile())) {
+            entry.getValue().cancel();
+            watchedDirectories.remove(entry.getValue());
+            iter.remove();
+          }
+        }
+      }
+      return removed;
+    }
+  }
+
+  @Override
+  public int scanAll() {
+    synchronized (watchLock) {
+      if (watching && watchService == null) {
+        try {
+          watchService = FileSystems.getDefault().newWatchService();
+        } catch (final IOException e) {
+          stopWatching(e);
+        } catch (final UnsupportedOperationException e) {
+          stopWatching(e);
+        }
+      }
+      if (watching) {
+        drainWatchEvents();
+      }
+      try {
+        return super.scanAll();
+      } finally {
+        changedFiles.clear();
+        renamedFiles.clear();
+        overflowed = false;
+      }
+    }
+  }
+
+  /**
+   * Indicates whether to use the watch service; when false (or if the watch
+   * service is unavailable) this service behaves exactly as a
+   * {@link PollingFileMonitorService}.
+   *
+   * @param watching whether to use the watch service
+   */
+  public void setWatching(final boolean watching) {
+    synchronized (watchLock) {
+      this.watching = watching;
+      if (!watching) {
+        stopWatching(null);
+      }
+    }
+  }
+
+  private void stopWatching(final Exception cause) {
+    if (cause != null) {
+      LOGGER.log(Level.FINE, "Falling back to polling the file system", cause);
+    }
+    watching = false;
+    unwatchableRequests.clear();
+    watchedDirectories.clear();
+    watchKeys.clear();
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (final IOException ignored) {
+      }
+      watchService = null;
+    }
+  }
+
+  /**
+   * Re-reads a file or directory reported by the watch service, updating the
+   * contents of the monitored location accordingly.
+   */
+  private void update(final MonitoringRequest request, final PathIndex currentExecution,
+      final File file, final List<String> newEntries) {
+    final String path = file.getPath();
+    if (file.exists() && !isIgnored(file)) {
+      if (file.isDirectory() && !isWatchSubtree(request)) {
+        return;
+      }
+      // Walks a newly-created directory, as it has not been watched yet
+      final PathIndex entries = new PathIndex();
+      computeEntries(entries, file, isWatchSubtree(request), null);
+      for (final String entry : entries) {
+        if (currentExecution.put(entry, entries.get(entry)) == PathIndex.UNKNOWN) {
+          newEntries.add(entry);
+        }
+        currentExecution.setChildren(entry, entries.getChildren(entry));
+      }
+    } else if (currentExecution.remove(path) != PathIndex.UNKNOWN) {
+      // Remove everything that was within a deleted directory
+      final String prefix = path + File.separator;
+      final List<String> within = new ArrayList<String>();
+      for (final String entry : currentExecution) {
+        if (entry.startsWith(prefix)) {
+          within.add(entry);
+        }
+      }
+      for (final String entry : within) {
+        currentExecution.remove(entry);
+      }
+    }
+    // A polling scan sees the parent directory's time change as well; its
+    // entries have changed too, so a later polling scan must list it again
+    final File parent = file.getParentFile();
+    if (parent != null && currentExecution.contains(parent.getPath())) {
+      currentExecution.put(parent.getPath(), parent.lastModified());
+      currentExecution.setChildren(parent.getPath(), null);
+    }
+  }
+
+  /**
+   * Registers the directories of the given monitored location that are not
+   * watched yet, among the location itself and the given entries.
+   */
+  private void watchDirectories(final MonitoringRequest request, final PathIndex index,
+      final Iterable<String> entries) {
+    final List<File> directories = new ArrayList<File>();
+    final File location = request.getFile();
+    if (location.isDirectory()) {
+      directories.add(location);
+      if (isWatchSubtree(request)) {
+        for (final String entry : entries) {
+          if (index.isDirectory(entry)) {
+            directories.add(new File(entry));
+          }
+        }
+      }
+    } else if (location.getParentFile() != null) {
+      directories.add(location.getParentFile());
+    }
+    for (final File directory : directories) {
+      final Path path = directory.toPath();
+      if (!watchKeys.containsKey(path)) {
+        try {
+          final WatchKey key = path.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+          watchKeys.put(path, key);
+          watchedDirectories.put(key, path);
+        } catch (final IOException e) {
+          // Not fatal; the next scans just walk this location
+          LOGGER.log(Level.FINE, "Unable to watch '" + directory + "'", e);
+          unwatchableRequests.add(request);
+          return;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package org.springframework.roo.file.monitor.polling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link PathIndex}
+ */
+public class PathIndexTest {
+
+  private static final int PATHS = 10000;
+
+  private static String path(final int i) {
+    return "/project/src/main/java/Type" + i + ".java";
+  }
+
+  @Test
+  public void testCopyIsIndependent() {
+    final PathIndex index = new PathIndex();
+    index.put("/project", 1L);
+    index.setChildren("/project", new String[] {"pom.xml"});
+    index.setScanTime(5L);
+
+    final PathIndex copy = new PathIndex(index);
+    copy.put("/project/pom.xml", 2L);
+    copy.remove("/project");
+
+    assertEquals(1L, index.get("/project"));
+    assertFalse(index.contains("/project/pom.xml"));
+    assertTrue(index.isDirectory("/project"));
+    assertEquals(5L, copy.getScanTime());
+  }
+
+  @Test
+  public void testPutGetAndRemove() {
+    final PathIndex index = new PathIndex();
+    for (int i = 0; i < PATHS; i++) {
+      assertEquals(PathIndex.UNKNOWN, index.put(path(i), i));
+    }
+    assertEquals(PATHS, index.size());
+    assertEquals(7L, index.put(path(7), 70L));
+    assertEquals(70L, index.get(path(7)));
+
+    // Removing every other path must not lose the ones that collided with it
+    for (int i = 0; i < PATHS; i += 2) {
+      assertEquals(i, index.remove(path(i)));
+    }
+    assertEquals(PATHS / 2, index.size());
+    for (int i = 1; i < PATHS; i += 2) {
+      assertTrue(index.contains(path(i)));
+    }
+    assertFalse(index.contains(path(0)));
+    assertEquals(PathIndex.UNKNOWN, index.remove(path(0)));
+
+    final Set<String> iterated = new HashSet<String>();
+    for (final String path : index) {
+      assertTrue(iterated.add(path));
+    }
+    assertEquals(PATHS / 2, iterated.size());
+  }
+
+  @Test
+  public void testRemovingDirectoryForgetsItsChildren() {
+    final PathIndex index = new PathIndex();
+    index.put("/project/src", 1L);
+    index.setChildren("/project/src", new String[] {"main", "test"});
+    assertEquals(2, index.getChildren("/project/src").length);
+
+    index.remove("/project/src");
+    assertNull(index.getChildren("/project/src"));
+    assertFalse(index.isDirectory("/project/src"));
+  }
+}
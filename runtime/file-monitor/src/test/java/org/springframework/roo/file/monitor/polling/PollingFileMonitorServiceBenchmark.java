@@ -0,0 +1,141 @@
+package org.springframework.roo.file.monitor.polling;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.springframework.roo.file.monitor.DirectoryMonitoringRequest;
+import org.springframework.roo.file.monitor.event.FileOperation;
+import org.springframework.roo.file.monitor.watch.WatchServiceFileMonitorService;
+
+/**
+ * Stand-alone benchmark of a scan of an unchanged project, comparing the
+ * {@link File}-based walk that {@link PollingFileMonitorService} used to do
+ * with its current {@link PathIndex}-based walk and with the watch service
+ * backend. Reports the average time and memory allocated per scan.
+ * <p>
+ * Not run as part of the build; run the main method, optionally giving the
+ * number of files to create (100000 by default) and the number of scans to
+ * time (10 by default).
+ */
+public class PollingFileMonitorServiceBenchmark {
+
+  private static final int FILES_PER_DIRECTORY = 50;
+
+  private interface Scan {
+    void run();
+  }
+
+  private static void createTree(final File root, final int files) throws IOException {
+    for (int i = 0; i < files; i++) {
+      final int directory = i / FILES_PER_DIRECTORY;
+      final File parent =
+          new File(root, "src/main/java/module" + directory / 100 + "/package" + directory);
+      if (i % FILES_PER_DIRECTORY == 0 && !parent.mkdirs()) {
+        throw new IOException("Unable to create " + parent);
+      }
+      FileUtils.write(new File(parent, "Type" + i + ".java"), "class Type" + i + " {}");
+    }
+  }
+
+  /**
+   * The walk done by each scan before {@link PathIndex} was introduced.
+   */
+  private static void legacyComputeEntries(final Map<File, Long> map, final File currentFile) {
+    if (!currentFile.exists() || currentFile.getName().length() > 1
+        && currentFile.getName().startsWith(".")) {
+      return;
+    }
+    map.put(currentFile, currentFile.lastModified());
+    try {
+      currentFile.getCanonicalPath();
+    } catch (final IOException ignored) {
+    }
+    if (currentFile.isDirectory()) {
+      final File[] files = currentFile.listFiles();
+      if (files == null) {
+        return;
+      }
+      for (final File file : files) {
+        legacyComputeEntries(map, file);
+      }
+    }
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final int files = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    final int scans = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    final File root =
+        new File(System.getProperty("java.io.tmpdir"), "roo-scan-benchmark-" + System.nanoTime());
+    createTree(root, files);
+    // Let the tree age, so unchanged directories are not mistaken for racy
+    Thread.sleep(2500);
+    try {
+      final Map<File, Long> prior = new HashMap<File, Long>();
+      legacyComputeEntries(prior, root);
+      System.out.println("Scanning " + prior.size() + " entries " + scans + " times");
+
+      report("File-based walk (before)", scans, new Scan() {
+        public void run() {
+          final Map<File, Long> current = new HashMap<File, Long>();
+          legacyComputeEntries(current, root);
+          current.keySet().removeAll(prior.keySet());
+        }
+      });
+
+      final PollingFileMonitorService polling = new PollingFileMonitorService();
+      polling.add(new DirectoryMonitoringRequest(root, true, FileOperation.values()));
+      report("PathIndex walk (after)", scans, new Scan() {
+        public void run() {
+          polling.scanAll();
+        }
+      });
+
+      final WatchServiceFileMonitorService watching = new WatchServiceFileMonitorService();
+      watching.add(new DirectoryMonitoringRequest(root, true, FileOperation.values()));
+      report("Watch service", scans, new Scan() {
+        public void run() {
+          watching.scanAll();
+        }
+      });
+      watching.setWatching(false);
+    } finally {
+      FileUtils.deleteDirectory(root);
+    }
+  }
+
+  private static void report(final String name, final int scans, final Scan scan) {
+    // The first scan builds the initial index, and warms up the JIT
+    scan.run();
+    scan.run();
+
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    final long allocatedBefore = getAllocatedBytes(threads);
+    final long start = System.nanoTime();
+    for (int i = 0; i < scans; i++) {
+      scan.run();
+    }
+    final long elapsed = System.nanoTime() - start;
+    final long allocated = getAllocatedBytes(threads) - allocatedBefore;
+
+    System.out.println(String.format("%-26s %8.1f ms/scan %10s KB/scan", name, elapsed / 1e6
+        / scans, allocated < 0 ? "n/a" : String.valueOf(allocated / 1024 / scans)));
+  }
+
+  /**
+   * Returns the bytes allocated by the current thread so far, where the JVM
+   * reports it (HotSpot does), otherwise a negative number.
+   */
+  private static long getAllocatedBytes(final ThreadMXBean threads) {
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread
+          .currentThread().getId());
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,134 @@
+package org.springframework.roo.file.monitor.watch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.roo.file.monitor.event.FileOperation.CREATED;
+import static org.springframework.roo.file.monitor.event.FileOperation.DELETED;
+import static org.springframework.roo.file.monitor.event.FileOperation.RENAMED;
+import static org.springframework.roo.file.monitor.event.FileOperation.UPDATED;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.file.monitor.DirectoryMonitoringRequest;
+import org.springframework.roo.file.monitor.event.FileEvent;
+import org.springframework.roo.file.monitor.event.FileEventListener;
+import org.springframework.roo.file.monitor.event.FileOperation;
+
+/**
+ * Unit test of {@link WatchServiceFileMonitorService}
+ */
+public class WatchServiceFileMonitorServiceTest {
+
+  private static final File TEMP_DIR = new File(System.getProperty("java.io.tmpdir"));
+
+  // Some watch service implementations poll, so allow them plenty of time
+  private static final long TIMEOUT_MILLIS = 30000;
+
+  // Fixture
+  private final List<FileEvent> events = new ArrayList<FileEvent>();
+  private WatchServiceFileMonitorService service;
+  private File testDirectory;
+
+  /**
+   * Returns the files of the published events with the given operation.
+   */
+  private List<File> getFiles(final FileOperation operation) {
+    final List<File> files = new ArrayList<File>();
+    for (final FileEvent event : events) {
+      if (event.getOperation() == operation) {
+        files.add(event.getFileDetails().getFile());
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Scans until the watch service has reported at least one change.
+   */
+  private void scanUntilChanged() throws InterruptedException {
+    events.clear();
+    final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (service.scanAll() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    testDirectory = new File(TEMP_DIR, "roo-watch-" + System.nanoTime());
+    assertTrue(new File(testDirectory, "src").mkdirs());
+    FileUtils.write(new File(testDirectory, "src/Person.java"), "class Person {}");
+
+    service = new WatchServiceFileMonitorService();
+    service.add(new FileEventListener() {
+      public void onFileEvent(final FileEvent fileEvent) {
+        events.add(fileEvent);
+      }
+    });
+    service.add(new DirectoryMonitoringRequest(testDirectory, true, CREATED, RENAMED, UPDATED,
+        DELETED));
+    service.scanAll();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    service.setWatching(false);
+    FileUtils.deleteDirectory(testDirectory);
+  }
+
+  @Test
+  public void testAwaitChange() throws Exception {
+    assertFalse(service.awaitChange(10));
+    final File file = new File(testDirectory, "src/Order.java");
+    FileUtils.write(file, "class Order {}");
+
+    assertTrue(service.awaitChange(TIMEOUT_MILLIS));
+    // The change reported while waiting is published by the next scan
+    events.clear();
+    assertTrue(service.scanAll() > 0);
+    assertTrue(getFiles(CREATED).contains(file));
+  }
+
+  @Test
+  public void testCreationInNewDirectory() throws Exception {
+    final File directory = new File(testDirectory, "src/domain");
+    assertTrue(directory.mkdir());
+    FileUtils.write(new File(directory, "Order.java"), "class Order {}");
+
+    // The new directory is walked, as it was not being watched yet
+    scanUntilChanged();
+    final List<File> created = getFiles(CREATED);
+    assertTrue(created.contains(directory));
+    assertTrue(created.contains(new File(directory, "Order.java")));
+  }
+
+  @Test
+  public void testRename() throws Exception {
+    final File oldName = new File(testDirectory, "src/Person.java");
+    final File newName = new File(testDirectory, "src/Customer.java");
+    assertTrue(oldName.renameTo(newName));
+
+    scanUntilChanged();
+    FileEvent deletion = null;
+    FileEvent rename = null;
+    for (final FileEvent event : events) {
+      if (event.getOperation() == DELETED) {
+        deletion = event;
+      } else if (event.getOperation() == RENAMED) {
+        rename = event;
+      }
+    }
+    assertEquals(oldName, deletion.getFileDetails().getFile());
+    assertEquals(newName, rename.getFileDetails().getFile());
+    assertEquals(oldName, rename.getPreviousName());
+    assertTrue(events.indexOf(deletion) < events.indexOf(rename));
+  }
+}
@@ -0,0 +1,223 @@
+package org.springframework.roo.file.undo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.support.logging.HandlerUtils;
+
+/**
+ * Default implementation of {@link UndoJournal}.
+ * <p>
+ * Files of up to {@link #MAXIMUM_IN_MEMORY_FILE} bytes are kept compressed in
+ * memory, for as long as they fit within the given budget. Other files are
+ * hard linked into a temporary directory where the file system allows it,
+ * which relies on files being replaced rather than overwritten in place (as
+ * the process manager does), and are otherwise copied there.
+ *
+ * @since 2.0
+ */
+public class DefaultUndoJournal implements UndoJournal {
+
+  /**
+   * Prior contents held on disk.
+   */
+  private static class FileEntry implements Entry {
+
+    private final File backup;
+
+    FileEntry(final File backup) {
+      this.backup = backup;
+    }
+
+    public void discard() {
+      if (!backup.delete()) {
+        backup.deleteOnExit();
+      }
+    }
+
+    public boolean restore(final File file) {
+      try {
+        // A linked backup of a file that was never replaced is already in
+        // place (and copying it onto itself would truncate it)
+        if (!file.exists() || !Files.isSameFile(backup.toPath(), file.toPath())) {
+          FileUtils.copyFile(backup, file);
+        }
+      } catch (final IOException e) {
+        // Keep the backup, as it's now the only copy
+        LOGGER.fine("Unable to restore '" + file + "' from '" + backup + "'");
+        return false;
+      }
+      discard();
+      return true;
+    }
+  }
+
+  /**
+   * Prior contents held in memory.
+   */
+  private class MemoryEntry implements Entry {
+
+    private byte[] compressed;
+
+    MemoryEntry(final byte[] compressed) {
+      this.compressed = compressed;
+    }
+
+    public synchronized void discard() {
+      if (compressed != null) {
+        release(compressed.length);
+        compressed = null;
+      }
+    }
+
+    public synchronized boolean restore(final File file) {
+      if (compressed == null) {
+        return false;
+      }
+      try {
+        FileUtils.writeByteArrayToFile(file, decompress(compressed));
+      } catch (final IOException e) {
+        // Keep the contents, as they're now the only copy
+        LOGGER.fine("Unable to restore '" + file + "' from memory");
+        return false;
+      }
+      discard();
+      return true;
+    }
+  }
+
+  private static final Logger LOGGER = HandlerUtils.getLogger(DefaultUndoJournal.class);
+
+  /**
+   * The size in bytes of the largest file that is kept in memory.
+   */
+  public static final long MAXIMUM_IN_MEMORY_FILE = 1024 * 1024;
+
+  private static byte[] compress(final byte[] bytes) throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    final DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater);
+    try {
+      out.write(bytes);
+      out.finish();
+    } finally {
+      deflater.end();
+    }
+    return compressed.toByteArray();
+  }
+
+  private static byte[] decompress(final byte[] compressed) throws IOException {
+    final InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed));
+    try {
+      return IOUtils.toByteArray(in);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  private final long budget;
+  private final AtomicLong bytesSaved = new AtomicLong();
+  // Created on first use
+  private File directory;
+  private final AtomicInteger entries = new AtomicInteger();
+  private long size;
+
+  /**
+   * Constructor
+   *
+   * @param budget the number of bytes of memory that entries may use (zero
+   *            keeps them all on disk)
+   */
+  public DefaultUndoJournal(final long budget) {
+    Validate.isTrue(budget >= 0, "Budget must not be negative");
+    this.budget = budget;
+  }
+
+  private synchronized File createBackupFile() throws IOException {
+    if (directory == null || !directory.isDirectory()) {
+      directory = Files.createTempDirectory("roo-undo").toFile();
+      directory.deleteOnExit();
+    }
+    return File.createTempFile("UndoJournal", "tmp", directory);
+  }
+
+  public long getBytesSaved() {
+    return bytesSaved.get();
+  }
+
+  public int getEntries() {
+    return entries.get();
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public Entry record(final File file) throws IOException {
+    Validate.notNull(file, "File required");
+    Validate.isTrue(file.isFile(), "Path '%s' must be a file", file);
+    entries.incrementAndGet();
+    final long length = file.length();
+    if (length <= MAXIMUM_IN_MEMORY_FILE && length <= budget) {
+      final byte[] compressed = compress(FileUtils.readFileToByteArray(file));
+      if (reserve(compressed.length)) {
+        bytesSaved.addAndGet(length);
+        return new MemoryEntry(compressed);
+      }
+    }
+
+    final File backup = createBackupFile();
+    try {
+      link(backup, file);
+      bytesSaved.addAndGet(length);
+    } catch (final IOException e) {
+      // e.g. the temporary directory is on another file system
+      FileUtils.copyFile(file, backup);
+    } catch (final UnsupportedOperationException e) {
+      FileUtils.copyFile(file, backup);
+    }
+    return new FileEntry(backup);
+  }
+
+  /**
+   * Replaces the given backup file with a hard link to the given file;
+   * package-private so that tests can simulate file systems without them
+   *
+   * @param backup the backup file to replace
+   * @param file the file being recorded
+   * @throws IOException if the link can't be created
+   */
+  void link(final File backup, final File file) throws IOException {
+    Files.delete(backup.toPath());
+    Files.createLink(backup.toPath(), file.toPath());
+  }
+
+  private synchronized void release(final long bytes) {
+    size -= bytes;
+  }
+
+  private synchronized boolean reserve(final long bytes) {
+    if (size + bytes > budget) {
+      return false;
+    }
+    size += bytes;
+    return true;
+  }
+
+  public void resetStatistics() {
+    entries.set(0);
+    bytesSaved.set(0);
+  }
+}
@@ -3,12 +3,15 @@ package org.springframework.roo.file.undo;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Stack;
+import java.util.logging.Logger;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.file.undo.UndoEvent.UndoOperation;
+import org.springframework.roo.support.logging.HandlerUtils;
 
 /**
  * Default implementation of the {@link UndoManager} interface.
@@ -20,11 +23,27 @@ import org.springframework.roo.file.undo.UndoEvent.UndoOperation;
 @Service
 public class DefaultUndoManager implements UndoManager {
 
+  /**
+   * The bundle property giving the number of bytes of memory the undo
+   * journal may use to keep the prior contents of files (compressed); any
+   * that don't fit are kept on disk.
+   */
+  static final String JOURNAL_BUDGET_PROPERTY = "roo.undo.budget";
+
+  private static final long DEFAULT_JOURNAL_BUDGET = 32 * 1024 * 1024;
+  private static final Logger LOGGER = HandlerUtils.getLogger(DefaultUndoManager.class);
+
+  private UndoJournal journal = new DefaultUndoJournal(DEFAULT_JOURNAL_BUDGET);
   private final Set<UndoListener> listeners = new HashSet<UndoListener>();
   private final Stack<UndoableOperation> stack = new Stack<UndoableOperation>();
   private boolean undoEnabled = true;
 
-  protected void activate(final ComponentContext context) {}
+  protected void activate(final ComponentContext context) {
+    final long budget =
+        NumberUtils.toLong(context.getBundleContext().getProperty(JOURNAL_BUDGET_PROPERTY),
+            DEFAULT_JOURNAL_BUDGET);
+    journal = new DefaultUndoJournal(Math.max(0, budget));
+  }
 
   public void add(final UndoableOperation undoableOperation) {
     Validate.notNull(undoableOperation, "Undoable operation required");
@@ -39,6 +58,10 @@ public class DefaultUndoManager implements UndoManager {
     notifyListeners(UndoOperation.FLUSH);
   }
 
+  public UndoJournal getJournal() {
+    return journal;
+  }
+
   private void notifyListeners(final UndoOperation operation) {
     for (final UndoListener listener : listeners) {
       listener.onUndoEvent(new UndoEvent(operation));
@@ -59,9 +82,23 @@ public class DefaultUndoManager implements UndoManager {
             + "' threw an exception, in violation of the interface contract");
       }
     }
+    reportJournal();
     notifyListeners(UndoOperation.RESET);
   }
 
+  /**
+   * Reports how the journal was used since the last report, i.e. by the
+   * command just completed or undone.
+   */
+  private void reportJournal() {
+    if (journal.getEntries() > 0) {
+      LOGGER.fine("Undo journal: " + journal.getEntries() + " file(s) recorded, "
+          + journal.getBytesSaved() / 1024 + " KB not copied to disk, " + journal.getSize()
+          / 1024 + " KB still held in memory");
+    }
+    journal.resetStatistics();
+  }
+
   public void setUndoEnabled(final boolean undoEnabled) {
     this.undoEnabled = undoEnabled;
   }
@@ -89,6 +126,7 @@ public class DefaultUndoManager implements UndoManager {
             + "' threw an exception, in violation of the interface contract");
       }
     }
+    reportJournal();
     notifyListeners(UndoOperation.UNDO);
     return undoMode;
   }
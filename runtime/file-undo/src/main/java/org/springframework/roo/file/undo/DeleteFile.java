@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.springframework.roo.support.logging.HandlerUtils;
@@ -20,7 +19,7 @@ public class DeleteFile implements UndoableOperation {
   private static final Logger LOGGER = HandlerUtils.getLogger(DeleteFile.class);
 
   private final File actual;
-  private final File backup;
+  private final UndoJournal.Entry backup;
   private final FilenameResolver filenameResolver;
 
   /**
@@ -57,8 +56,7 @@ public class DeleteFile implements UndoableOperation {
     Validate.isTrue(actual.isFile(), "Path '%s' must be a file (not a directory)", actual);
 
     try {
-      backup = File.createTempFile("DeleteFile", "tmp");
-      FileUtils.copyFile(actual, backup);
+      backup = undoManager.getJournal().record(actual);
     } catch (final IOException ioe) {
       throw new IllegalStateException("Unable to make a backup of file '" + actual + "'", ioe);
     }
@@ -74,29 +72,16 @@ public class DeleteFile implements UndoableOperation {
   }
 
   public void reset() {
-    // Fix for ROO-1555
-    try {
-      if (backup.delete()) {
-        LOGGER.finest("Reset manage " + filenameResolver.getMeaningfulName(backup));
-      } else {
-        backup.deleteOnExit();
-        LOGGER.fine("Reset failed " + filenameResolver.getMeaningfulName(backup));
-      }
-    } catch (final Throwable e) {
-      backup.deleteOnExit();
-      LOGGER.fine("Reset failed " + filenameResolver.getMeaningfulName(backup));
-    }
+    backup.discard();
+    LOGGER.finest("Reset manage " + filenameResolver.getMeaningfulName(actual));
   }
 
   public boolean undo() {
-    try {
-      FileUtils.copyFile(backup, actual);
+    if (backup.restore(actual)) {
       LOGGER.fine("Undo delete " + filenameResolver.getMeaningfulName(actual));
       return true;
-    } catch (final IOException ioe) {
-      LOGGER.fine("Undo failed " + filenameResolver.getMeaningfulName(actual));
-      return false;
     }
+    LOGGER.fine("Undo failed " + filenameResolver.getMeaningfulName(actual));
+    return false;
   }
-
 }
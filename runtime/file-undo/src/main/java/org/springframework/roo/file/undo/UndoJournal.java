@@ -0,0 +1,73 @@
+package org.springframework.roo.file.undo;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps the prior contents of the files changed by {@link UndoableOperation}s,
+ * so they can be restored if the operations are undone.
+ * <p>
+ * Implementations must be thread safe.
+ *
+ * @since 2.0
+ */
+public interface UndoJournal {
+
+  /**
+   * The prior contents of one file.
+   */
+  interface Entry {
+
+    /**
+     * Releases the resources held by this entry. No exceptions may be thrown.
+     */
+    void discard();
+
+    /**
+     * Writes the recorded contents to the given file and, if that succeeds,
+     * releases the resources held by this entry. No exceptions may be thrown.
+     *
+     * @param file the file to restore (required)
+     * @return whether the file was restored
+     */
+    boolean restore(File file);
+  }
+
+  /**
+   * Returns the number of bytes of recorded file contents that did not have
+   * to be copied to disk, since the last call to {@link #resetStatistics()}.
+   *
+   * @return a non-negative number
+   */
+  long getBytesSaved();
+
+  /**
+   * Returns the number of entries recorded since the last call to
+   * {@link #resetStatistics()}.
+   *
+   * @return a non-negative number
+   */
+  int getEntries();
+
+  /**
+   * Returns the number of bytes of memory currently held by entries.
+   *
+   * @return a non-negative number
+   */
+  long getSize();
+
+  /**
+   * Records the current contents of the given file.
+   *
+   * @param file an existing file (required)
+   * @return a non-<code>null</code> entry
+   * @throws IOException if the contents could not be recorded
+   */
+  Entry record(File file) throws IOException;
+
+  /**
+   * Starts counting the entries recorded and bytes saved afresh, e.g. at the
+   * start of each command.
+   */
+  void resetStatistics();
+}
@@ -36,6 +36,15 @@ public interface UndoManager {
    */
   void flush();
 
+  /**
+   * Returns the journal that {@link UndoableOperation}s should keep the prior
+   * contents of files in.
+   * 
+   * @return a non-<code>null</code> journal
+   * @since 2.0
+   */
+  UndoJournal getJournal();
+
   /**
    * @param undoListener removes a previously-registered undo listener
    *            (required)
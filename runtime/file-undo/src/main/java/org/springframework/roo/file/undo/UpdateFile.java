@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.Validate;
 import org.springframework.roo.support.logging.HandlerUtils;
 
@@ -19,9 +18,21 @@ public class UpdateFile implements UndoableOperation {
   private static final Logger LOGGER = HandlerUtils.getLogger(UpdateFile.class);
 
   private final File actual;
-  private final File backup;
+  private final UndoJournal.Entry backup;
   private final FilenameResolver filenameResolver;
 
+  private static UndoJournal.Entry record(final UndoManager undoManager, final File actual) {
+    Validate.notNull(undoManager, "Undo manager required");
+    Validate.notNull(actual, "File required");
+    Validate.isTrue(actual.exists(), "File '%s' must exist", actual);
+    Validate.isTrue(actual.isFile(), "Path '%s' must be a file (not a directory)", actual);
+    try {
+      return undoManager.getJournal().record(actual);
+    } catch (final IOException ioe) {
+      throw new IllegalStateException("Unable to make a backup of file '" + actual + "'", ioe);
+    }
+  }
+
   /**
    * Constructor
    * 
@@ -32,45 +43,46 @@ public class UpdateFile implements UndoableOperation {
    */
   public UpdateFile(final UndoManager undoManager, final FilenameResolver filenameResolver,
       final File actual) {
+    this(undoManager, filenameResolver, actual, record(undoManager, actual));
+  }
+
+  /**
+   * Constructor for a file whose prior contents have already been recorded,
+   * e.g. by another thread, so that operations can be registered in a
+   * predictable order.
+   * 
+   * @param undoManager cannot be <code>null</code>
+   * @param filenameResolver cannot be <code>null</code>
+   * @param actual the file being updated; must be an existing file (not a
+   *            directory)
+   * @param backup the prior contents of the file, as recorded in the undo
+   *            manager's journal (required)
+   * @since 2.0
+   */
+  public UpdateFile(final UndoManager undoManager, final FilenameResolver filenameResolver,
+      final File actual, final UndoJournal.Entry backup) {
     Validate.notNull(undoManager, "Undo manager required");
     Validate.notNull(actual, "File required");
-    Validate.isTrue(actual.exists(), "File '%s' must exist", actual);
     Validate.isTrue(actual.isFile(), "Path '%s' must be a file (not a directory)", actual);
     Validate.notNull(filenameResolver, "Filename resolver required");
+    Validate.notNull(backup, "Backup required");
     this.filenameResolver = filenameResolver;
-    try {
-      backup = File.createTempFile("UpdateFile", "tmp");
-      FileUtils.copyFile(actual, backup);
-    } catch (final IOException ioe) {
-      throw new IllegalStateException("Unable to make a backup of file '" + actual + "'", ioe);
-    }
+    this.backup = backup;
     this.actual = actual;
     undoManager.add(this);
   }
 
   public void reset() {
-    // Fix for ROO-1555
-    try {
-      if (backup.delete()) {
-        LOGGER.finest("Reset manage " + filenameResolver.getMeaningfulName(backup));
-      } else {
-        backup.deleteOnExit();
-        LOGGER.fine("Reset failed " + filenameResolver.getMeaningfulName(backup));
-      }
-    } catch (final Throwable e) {
-      backup.deleteOnExit();
-      LOGGER.fine("Reset failed " + filenameResolver.getMeaningfulName(backup));
-    }
+    backup.discard();
+    LOGGER.finest("Reset manage " + filenameResolver.getMeaningfulName(actual));
   }
 
   public boolean undo() {
-    try {
-      FileUtils.copyFile(backup, actual);
+    if (backup.restore(actual)) {
       LOGGER.fine("Undo manage " + filenameResolver.getMeaningfulName(actual));
       return true;
-    } catch (final IOException ioe) {
-      LOGGER.fine("Undo failed " + filenameResolver.getMeaningfulName(actual));
-      return false;
     }
+    LOGGER.fine("Undo failed " + filenameResolver.getMeaningfulName(actual));
+    return false;
   }
 }
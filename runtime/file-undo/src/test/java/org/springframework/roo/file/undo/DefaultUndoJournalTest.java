@@ -0,0 +1,216 @@
+package org.springframework.roo.file.undo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link DefaultUndoJournal}
+ */
+public class DefaultUndoJournalTest {
+
+  private static final byte[] ORIGINAL = new byte[4096];
+
+  static {
+    // Binary contents that deflate poorly, to check they're restored exactly
+    new Random(42).nextBytes(ORIGINAL);
+  }
+
+  private File directory;
+
+  private File createFile(final String name, final byte[] contents) throws IOException {
+    final File file = new File(directory, name);
+    FileUtils.writeByteArrayToFile(file, contents);
+    return file;
+  }
+
+  /**
+   * Replaces the given file rather than overwriting it in place, as the
+   * process manager does
+   */
+  private void replace(final File file, final String contents) throws IOException {
+    final File replacement = new File(directory, file.getName() + ".new");
+    FileUtils.writeStringToFile(replacement, contents, "UTF-8");
+    FileUtils.forceDelete(file);
+    FileUtils.moveFile(replacement, file);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile(getClass().getSimpleName(), "");
+    FileUtils.forceDelete(directory);
+    FileUtils.forceMkdir(directory);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void testFilesBeyondTheBudgetAreKeptOnDisk() throws Exception {
+    // Set up
+    final DefaultUndoJournal journal = new DefaultUndoJournal(6000);
+    final File first = createFile("first", ORIGINAL);
+    final File second = createFile("second", ORIGINAL);
+
+    // Invoke
+    final UndoJournal.Entry inMemory = journal.record(first);
+    final long sizeOfFirst = journal.getSize();
+    final UndoJournal.Entry onDisk = journal.record(second);
+
+    // Check
+    assertTrue(sizeOfFirst > 0);
+    assertEquals("The second file doesn't fit in the remaining budget", sizeOfFirst,
+        journal.getSize());
+    assertEquals(2, journal.getEntries());
+
+    // Discarding the entry in memory frees its share of the budget
+    inMemory.discard();
+    onDisk.discard();
+    assertEquals(0, journal.getSize());
+    journal.record(second);
+    assertEquals(sizeOfFirst, journal.getSize());
+  }
+
+  @Test
+  public void testFilesLargerThanTheMaximumAreKeptOnDisk() throws Exception {
+    // Set up
+    final DefaultUndoJournal journal = new DefaultUndoJournal(Long.MAX_VALUE);
+    final File file =
+        createFile("large", new byte[(int) DefaultUndoJournal.MAXIMUM_IN_MEMORY_FILE + 1]);
+
+    // Invoke
+    journal.record(file);
+
+    // Check
+    assertEquals(0, journal.getSize());
+  }
+
+  @Test
+  public void testRestoreFromMemory() throws Exception {
+    // Set up
+    final DefaultUndoJournal journal = new DefaultUndoJournal(Long.MAX_VALUE);
+    final File file = createFile("file", ORIGINAL);
+    final UndoJournal.Entry entry = journal.record(file);
+    assertTrue(journal.getSize() > 0);
+    FileUtils.writeStringToFile(file, "changed", "UTF-8");
+
+    // Invoke
+    final boolean restored = entry.restore(file);
+
+    // Check
+    assertTrue(restored);
+    assertArrayEquals(ORIGINAL, FileUtils.readFileToByteArray(file));
+    assertEquals(ORIGINAL.length, journal.getBytesSaved());
+    assertEquals(0, journal.getSize());
+    assertFalse("A restored entry is discarded", entry.restore(file));
+  }
+
+  @Test
+  public void testRestoreFromLinkedFile() throws Exception {
+    // Set up
+    final DefaultUndoJournal journal = new DefaultUndoJournal(0);
+    final File file = createFile("file", ORIGINAL);
+    final UndoJournal.Entry entry = journal.record(file);
+    replace(file, "changed");
+
+    // Invoke
+    final boolean restored = entry.restore(file);
+
+    // Check
+    assertTrue(restored);
+    assertArrayEquals(ORIGINAL, FileUtils.readFileToByteArray(file));
+    assertEquals("The file was linked rather than copied", ORIGINAL.length,
+        journal.getBytesSaved());
+    assertEquals(0, journal.getSize());
+  }
+
+  @Test
+  public void testRestoreFromLinkedFileThatWasNeverReplaced() throws Exception {
+    // Set up
+    final DefaultUndoJournal journal = new DefaultUndoJournal(0);
+    final File file = createFile("file", ORIGINAL);
+    final UndoJournal.Entry entry = journal.record(file);
+
+    // Invoke
+    final boolean restored = entry.restore(file);
+
+    // Check
+    assertTrue(restored);
+    assertArrayEquals(ORIGINAL, FileUtils.readFileToByteArray(file));
+  }
+
+  @Test
+  public void testRestoreFromCopiedFileWhenLinksAreUnavailable() throws Exception {
+    // Set up
+    final DefaultUndoJournal journal = new DefaultUndoJournal(0) {
+      @Override
+      void link(final File backup, final File file) throws IOException {
+        throw new IOException("Simulated file system without hard links");
+      }
+    };
+    final File file = createFile("file", ORIGINAL);
+    final UndoJournal.Entry entry = journal.record(file);
+    // A copy, unlike a link, survives the file being overwritten in place
+    FileUtils.writeStringToFile(file, "changed", "UTF-8");
+
+    // Invoke
+    final boolean restored = entry.restore(file);
+
+    // Check
+    assertTrue(restored);
+    assertArrayEquals(ORIGINAL, FileUtils.readFileToByteArray(file));
+    assertEquals("Nothing was saved by copying", 0, journal.getBytesSaved());
+    assertEquals(1, journal.getEntries());
+  }
+
+  @Test
+  public void testFailedRestoreFromMemoryKeepsTheEntry() throws Exception {
+    // Set up
+    final DefaultUndoJournal journal = new DefaultUndoJournal(Long.MAX_VALUE);
+    final File file = createFile("file", ORIGINAL);
+    final UndoJournal.Entry entry = journal.record(file);
+    final long size = journal.getSize();
+    // A file can't be written beneath another file
+    final File unwritable = new File(file, "child");
+
+    // Invoke
+    final boolean restored = entry.restore(unwritable);
+
+    // Check
+    assertFalse(restored);
+    assertEquals(size, journal.getSize());
+    final File elsewhere = new File(directory, "elsewhere");
+    assertTrue(entry.restore(elsewhere));
+    assertArrayEquals(ORIGINAL, FileUtils.readFileToByteArray(elsewhere));
+  }
+
+  @Test
+  public void testFailedRestoreFromDiskKeepsTheEntry() throws Exception {
+    // Set up
+    final DefaultUndoJournal journal = new DefaultUndoJournal(0);
+    final File file = createFile("file", ORIGINAL);
+    final UndoJournal.Entry entry = journal.record(file);
+    replace(file, "changed");
+    final File unwritable = new File(file, "child");
+
+    // Invoke
+    final boolean restored = entry.restore(unwritable);
+
+    // Check
+    assertFalse(restored);
+    assertTrue(entry.restore(file));
+    assertArrayEquals(ORIGINAL, FileUtils.readFileToByteArray(file));
+  }
+}
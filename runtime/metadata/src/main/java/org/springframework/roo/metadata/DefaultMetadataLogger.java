@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.SortedSet;
 import java.util.Stack;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
@@ -15,6 +16,11 @@ import org.springframework.roo.metadata.internal.StandardMetadataTimingStatistic
 
 /**
  * Default implementation of {@link MetadataLogger}.
+ * <p>
+ * Event and timer stacks are kept per thread, so metadata requests resolved
+ * concurrently by a parallel {@link MetadataService} are timed independently.
+ * Profiling can also be enabled at startup with the
+ * <code>roo.metadata.profile</code> system property.
  * 
  * @author Ben Alex
  * @since 1.1.2
@@ -26,11 +32,21 @@ public class DefaultMetadataLogger implements MetadataLogger {
   private static class TimerEntry {
     long clockStartedOrResumed; // nanos
     long duration; // nanos
+    String metadataId;
     String responsibleClass;
+    long started; // nanos
   }
 
-  private long eventNumber = 0;
-  private final Stack<Long> eventStack = new Stack<Long>();
+  /** The number of timings that can await recording while profiling */
+  private static final int PROFILER_CAPACITY = 65536;
+
+  private final AtomicLong eventNumber = new AtomicLong();
+  private final ThreadLocal<Stack<Long>> eventStack = new ThreadLocal<Stack<Long>>() {
+    @Override
+    protected Stack<Long> initialValue() {
+      return new Stack<Long>();
+    }
+  };
   private FileWriter fileLog;
   /**
    * key: responsible class, value: number of times a timing record was
@@ -38,16 +54,41 @@ public class DefaultMetadataLogger implements MetadataLogger {
    */
   private final Map<String, Long> invocations = new HashMap<String, Long>();
   private final Class<DefaultMetadataLogger> mutex = DefaultMetadataLogger.class;
-  private final Stack<TimerEntry> timerStack = new Stack<TimerEntry>();
+  private volatile MetadataProfiler profiler;
+  private final ThreadLocal<Stack<TimerEntry>> timerStack =
+      new ThreadLocal<Stack<TimerEntry>>() {
+        @Override
+        protected Stack<TimerEntry> initialValue() {
+          return new Stack<TimerEntry>();
+        }
+      };
   /** key: responsible class, value: nanos occupied */
   private final Map<String, Long> timings = new HashMap<String, Long>();
 
-  private int traceLevel = 0;
+  private volatile int traceLevel = 0;
 
   public DefaultMetadataLogger() {
     if (System.getProperty("roo.metadata.trace") != null) {
       traceLevel = 2;
     }
+    if (System.getProperty("roo.metadata.profile") != null) {
+      setProfiling(true);
+    }
+  }
+
+  /**
+   * Returns the profiler if profiling is enabled
+   * 
+   * @return <code>null</code> if not
+   */
+  private MetadataProfiler getRunningProfiler() {
+    final MetadataProfiler profiler = this.profiler;
+    return profiler != null && profiler.isRunning() ? profiler : null;
+  }
+
+  public MetadataProfile getProfile() {
+    final MetadataProfiler profiler = this.profiler;
+    return profiler == null ? null : profiler.getProfile();
   }
 
   public SortedSet<MetadataTimingStatistic> getTimings() {
@@ -65,8 +106,13 @@ public class DefaultMetadataLogger implements MetadataLogger {
     return traceLevel;
   }
 
+  public boolean isProfiling() {
+    return getRunningProfiler() != null;
+  }
+
   public void log(final String message) {
     Validate.notBlank(message, "Message to log required");
+    final Stack<Long> eventStack = this.eventStack.get();
     Validate.isTrue(eventStack.size() > 0,
         "Event stack is empty, so no logging should have been requested at this time");
     final StringBuilder sb = new StringBuilder("00000000");
@@ -80,7 +126,9 @@ public class DefaultMetadataLogger implements MetadataLogger {
       sb.append(" ");
     }
     sb.append(message);
-    logToFile(sb.toString());
+    synchronized (mutex) {
+      logToFile(sb.toString());
+    }
   }
 
   private void logToFile(final String line) {
@@ -102,18 +150,45 @@ public class DefaultMetadataLogger implements MetadataLogger {
     }
   }
 
+  public void recordCacheLookup(final boolean hit) {
+    final MetadataProfiler profiler = getRunningProfiler();
+    if (profiler != null) {
+      profiler.recordCacheLookup(hit);
+    }
+  }
+
+  public void setProfiling(final boolean profiling) {
+    synchronized (mutex) {
+      if (profiling == isProfiling()) {
+        return;
+      }
+      if (profiling) {
+        final MetadataProfiler profiler = new MetadataProfiler(PROFILER_CAPACITY);
+        profiler.start();
+        this.profiler = profiler;
+      } else {
+        profiler.stop();
+      }
+    }
+  }
+
   public void setTraceLevel(final int trace) {
     traceLevel = trace;
   }
 
   public void startEvent() {
-    eventNumber++;
-    eventStack.push(eventNumber);
+    eventStack.get().push(eventNumber.incrementAndGet());
   }
 
   public void startTimer(final String responsibleClass) {
+    startTimer(responsibleClass, null);
+  }
+
+  public void startTimer(final String responsibleClass,
+      final String metadataIdentificationString) {
     Validate.notBlank(responsibleClass, "Responsible class required");
     final long now = System.nanoTime();
+    final Stack<TimerEntry> timerStack = this.timerStack.get();
     if (timerStack.size() > 0) {
       // There is an existing timer on the stack, so we need to stop the
       // clock for it
@@ -124,24 +199,44 @@ public class DefaultMetadataLogger implements MetadataLogger {
     }
     // Start a new timer
     final TimerEntry timerEntry = new TimerEntry();
+    timerEntry.metadataId = metadataIdentificationString;
     timerEntry.responsibleClass = responsibleClass;
     timerEntry.clockStartedOrResumed = now;
+    timerEntry.started = now;
     timerStack.push(timerEntry);
   }
 
   public void stopEvent() {
+    final Stack<Long> eventStack = this.eventStack.get();
     Validate.isTrue(eventStack.size() > 0,
         "Event stack is empty, indicating a mismatched number of timer start/stop calls");
     eventStack.pop();
   }
 
   public void stopTimer() {
+    final Stack<TimerEntry> timerStack = this.timerStack.get();
     Validate.isTrue(timerStack.size() > 0,
         "Timer stack is empty, indicating a mismatched number of timer start/stop calls");
     final long now = System.nanoTime();
     final TimerEntry timerEntry = timerStack.pop();
     timerEntry.duration = timerEntry.duration + now - timerEntry.clockStartedOrResumed;
     final String responsibleClass = timerEntry.responsibleClass;
+    if (timerStack.size() > 0) {
+      // Resume the clock of the timer this one interrupted
+      timerStack.get(timerStack.size() - 1).clockStartedOrResumed = now;
+    }
+
+    final MetadataProfiler profiler = getRunningProfiler();
+    if (profiler != null) {
+      // The responsible classes of the timers in progress, outermost first
+      final String[] responsibleClasses = new String[timerStack.size() + 1];
+      for (int i = 0; i < timerStack.size(); i++) {
+        responsibleClasses[i] = timerStack.get(i).responsibleClass;
+      }
+      responsibleClasses[timerStack.size()] = responsibleClass;
+      profiler.recordTiming(responsibleClasses, timerEntry.metadataId, now - timerEntry.started,
+          timerEntry.duration);
+    }
 
     // Update the timings summary
     synchronized (mutex) {
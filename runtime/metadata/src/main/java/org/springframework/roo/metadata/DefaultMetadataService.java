@@ -1,11 +1,13 @@
 package org.springframework.roo.metadata;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
@@ -18,14 +20,20 @@ import org.apache.felix.scr.annotations.ReferenceStrategy;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.metadata.internal.AbstractMetadataCache;
+import org.springframework.roo.metadata.internal.ConcurrentMetadataRequests;
 import org.springframework.roo.metadata.internal.MetadataDependencyRegistryTracker;
 
 /**
  * Default implementation of {@link MetadataService}.
  * <p>
- * This implementation is not thread safe. It should only be accessed by a
- * single thread at a time. This is enforced by the process manager semantics,
- * so we avoid the cost of re-synchronization here.
+ * By default requests are serialized through a single mutex, as the process
+ * manager semantics ensure only one thread uses the service at a time. When
+ * the {@value ConcurrentMetadataRequests#PARALLELISM_PROPERTY} property is
+ * greater than one, the service runs in parallel mode instead: distinct
+ * metadata identification strings are resolved concurrently, while concurrent
+ * requests for the same one wait for the thread already resolving it (see
+ * {@link ConcurrentMetadataRequests}). Parallel mode requires the registered
+ * {@link MetadataProvider}s to be thread safe.
  *
  * @author Ben Alex
  * @author Enrique Ruiz at DISID Corporation S.L.
@@ -42,21 +50,28 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
   private MetadataLogger metadataLogger;
 
   // Request control
-  // List to assist output "stacks"which show the order of requests
-  private final List<String> activeRequests = new ArrayList<String>();
-  private int cacheEvictions = 0;
-  private int cacheHits = 0;
-  private int cacheMisses = 0;
-  private int cachePuts = 0;
-  // List to help us verify correct operation through logs (predictable
+  // Ordered to assist output "stacks" which show the order of requests; its
+  // size is the current recursion depth
+  private final Set<String> activeRequests = new LinkedHashSet<String>();
+  private final AtomicInteger cacheEvictions = new AtomicInteger();
+  private final AtomicInteger cacheHits = new AtomicInteger();
+  private final AtomicInteger cacheMisses = new AtomicInteger();
+  private final AtomicInteger cachePuts = new AtomicInteger();
+  // Ordered to help us verify correct operation through logs (predictable
   // ordering)
-  private final List<String> keysToRetry = new ArrayList<String>();
+  private final Set<String> keysToRetry = new LinkedHashSet<String>();
+  private final AtomicInteger largestRetryGroup = new AtomicInteger();
   // Mutex
   private final Object lock = new Object();
-  private final Map<String, MetadataProvider> providerMap = new HashMap<String, MetadataProvider>();
+  private final AtomicInteger maxRequestDepth = new AtomicInteger();
+  // Parallel mode; null when requests are serialized through the mutex
+  private ConcurrentMetadataRequests concurrentRequests;
+  private final Map<String, MetadataProvider> providerMap =
+      new ConcurrentHashMap<String, MetadataProvider>();
   private final Set<MetadataProvider> providers = new HashSet<MetadataProvider>();
-  private int recursiveGets = 0;
-  private int validGets = 0;
+  private final AtomicInteger recursiveGets = new AtomicInteger();
+  private final AtomicInteger retryGroups = new AtomicInteger();
+  private final AtomicInteger validGets = new AtomicInteger();
 
   protected MetadataDependencyRegistryTracker registryTracker = null;
 
@@ -64,9 +79,13 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
    * This service is being activated so setup it:
    * <ul>
    * <li>Create and open the {@link MetadataDependencyRegistryTracker}.</li>
+   * <li>Select the serial or parallel mode.</li>
    * </ul>
    */
   protected void activate(final ComponentContext context) {
+    if (ConcurrentMetadataRequests.getParallelism(context.getBundleContext()) > 1) {
+      concurrentRequests = new ConcurrentMetadataRequests();
+    }
     this.registryTracker = new MetadataDependencyRegistryTracker(context.getBundleContext(), this);
     this.registryTracker.open();
   }
@@ -107,11 +126,12 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
       // Finally, evict downstream dependencies (ie metadata that
       // previously depended on this now-evicted metadata)
       MetadataDependencyRegistry registry = this.registryTracker.getService();
-      for (final String downstream : registry.getDownstream(metadataIdentificationString)) {
+      for (final MetadataId downstream : registry.getDownstream(MetadataId
+          .valueOf(metadataIdentificationString))) {
         // We only need to evict if it is an instance, as only an
         // instance will ever go into the cache
-        if (MetadataIdentificationUtils.isIdentifyingInstance(downstream)) {
-          evict(downstream);
+        if (downstream.isIdentifyingInstance()) {
+          evict(downstream.getId());
         }
       }
     }
@@ -135,7 +155,13 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
 
   @SuppressWarnings("unchecked")
   public <T extends MetadataItem> T evictAndGet(final String metadataIdentificationString) {
-    return (T) getInternal(metadataIdentificationString, true, false);
+    return (T) getInternal(MetadataId.valueOf(metadataIdentificationString), true, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T extends MetadataItem> T evictAndGet(final MetadataId metadataId) {
+    Validate.notNull(metadataId, "Metadata identifier required");
+    return (T) getInternal(metadataId, true, false);
   }
 
   @SuppressWarnings("unchecked")
@@ -143,19 +169,29 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
     return (T) get(metadataIdentificationString, false);
   }
 
+  @SuppressWarnings("unchecked")
+  public <T extends MetadataItem> T get(final MetadataId metadataId) {
+    Validate.notNull(metadataId, "Metadata identifier required");
+    return (T) getInternal(metadataId, false, true);
+  }
+
   public MetadataItem get(final String metadataIdentificationString, final boolean evictCache) {
-    return getInternal(metadataIdentificationString, evictCache, true);
+    return getInternal(MetadataId.valueOf(metadataIdentificationString), evictCache, true);
   }
 
-  private MetadataItem getInternal(final String metadataIdentificationString,
-      final boolean evictCache, final boolean cacheRetrievalAllowed) {
-    Validate.isTrue(
-        MetadataIdentificationUtils.isIdentifyingInstance(metadataIdentificationString),
+  private MetadataItem getInternal(final MetadataId metadataId, final boolean evictCache,
+      final boolean cacheRetrievalAllowed) {
+    final String metadataIdentificationString = metadataId.getId();
+    Validate.isTrue(metadataId.isIdentifyingInstance(),
         "Metadata identification string '%s' does not identify a metadata instance",
         metadataIdentificationString);
 
+    if (concurrentRequests != null) {
+      return getConcurrently(metadataId, evictCache, cacheRetrievalAllowed);
+    }
+
     synchronized (lock) {
-      validGets++;
+      validGets.incrementAndGet();
 
       try {
         metadataLogger.startEvent();
@@ -166,7 +202,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
           if (metadataLogger.getTraceLevel() > 0) {
             metadataLogger.log("Evicting " + metadataIdentificationString);
           }
-          cacheEvictions++;
+          cacheEvictions.incrementAndGet();
         }
 
         // We can use the cache even for a recursive get (unless of
@@ -175,7 +211,8 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
           // Try the cache first
           final MetadataItem result = getFromCache(metadataIdentificationString);
           if (result != null) {
-            cacheHits++;
+            cacheHits.incrementAndGet();
+            metadataLogger.recordCacheLookup(true);
             if (metadataLogger.getTraceLevel() > 0) {
               metadataLogger.log("Cache hit " + metadataIdentificationString);
             }
@@ -186,24 +223,22 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
         if (metadataLogger.getTraceLevel() > 0) {
           metadataLogger.log("Cache miss " + metadataIdentificationString);
         }
-        cacheMisses++;
+        cacheMisses.incrementAndGet();
+        metadataLogger.recordCacheLookup(false);
 
         // Determine if this MID was already requested earlier. We need
         // to stop these infinite requests from occurring.
         if (activeRequests.contains(metadataIdentificationString)) {
-          recursiveGets++;
-          if (!keysToRetry.contains(metadataIdentificationString)) {
-            if (metadataLogger.getTraceLevel() > 0) {
-              metadataLogger.log("Blocked recursive request for " + metadataIdentificationString);
-            }
-            keysToRetry.add(metadataIdentificationString);
+          recursiveGets.incrementAndGet();
+          if (keysToRetry.add(metadataIdentificationString)
+              && metadataLogger.getTraceLevel() > 0) {
+            metadataLogger.log("Blocked recursive request for " + metadataIdentificationString);
           }
           return null;
         }
 
         // Get the destination
-        final String mdClassId =
-            MetadataIdentificationUtils.getMetadataClassId(metadataIdentificationString);
+        final String mdClassId = metadataId.getMetadataClassId().getId();
         final MetadataProvider p = providerMap.get(mdClassId);
         Validate
             .notNull(
@@ -213,6 +248,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
 
         // Infinite loop management
         activeRequests.add(metadataIdentificationString);
+        updateMaximum(maxRequestDepth, activeRequests.size());
 
         // Obtain the item
         if (metadataLogger.getTraceLevel() > 0) {
@@ -221,7 +257,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
         }
         MetadataItem result = null;
         try {
-          metadataLogger.startTimer(p.getClass().getName());
+          metadataLogger.startTimer(p.getClass().getName(), metadataIdentificationString);
           result = p.get(metadataIdentificationString);
         } finally {
           metadataLogger.stopTimer();
@@ -234,7 +270,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
             metadataLogger.log("Evicting unavailable item " + metadataIdentificationString);
           }
           evict(metadataIdentificationString);
-          cacheEvictions++;
+          cacheEvictions.incrementAndGet();
         }
 
         // Put into the cache, provided it isn't null
@@ -243,7 +279,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
             metadataLogger.log("Caching " + metadataIdentificationString);
           }
           super.put(result);
-          cachePuts++;
+          cachePuts.incrementAndGet();
         }
 
         activeRequests.remove(metadataIdentificationString);
@@ -262,11 +298,12 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
         try {
           // Have we processed all requests? If so, handle any retries
           // we recorded
-          if (activeRequests.isEmpty()) {
-            final List<String> thisRetry = new ArrayList<String>();
-            thisRetry.addAll(keysToRetry);
+          if (activeRequests.isEmpty() && !keysToRetry.isEmpty()) {
+            final List<String> thisRetry = new ArrayList<String>(keysToRetry);
             keysToRetry.clear();
-            if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
+            retryGroups.incrementAndGet();
+            updateMaximum(largestRetryGroup, thisRetry.size());
+            if (metadataLogger.getTraceLevel() > 0) {
               metadataLogger.log(thisRetry.size() + " keys to retry: " + thisRetry);
             }
             for (final String retryMid : thisRetry) {
@@ -283,9 +320,9 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
                 // Avoid infinite recursion loop
                 continue;
               }
-              getInternal(retryMid, false, false);
+              getInternal(MetadataId.valueOf(retryMid), false, false);
             }
-            if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
+            if (metadataLogger.getTraceLevel() > 0) {
               metadataLogger.log("Retry group completed " + metadataIdentificationString);
             }
           }
@@ -296,52 +333,222 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
     }
   }
 
-  public void notify(final String upstreamDependency, final String downstreamDependency) {
-    Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
-        "Upstream dependency is an invalid metadata identification string ('%s')",
-        upstreamDependency);
-    Validate.isTrue(MetadataIdentificationUtils.isValid(downstreamDependency),
-        "Downstream dependency is an invalid metadata identification string ('%s')",
-        downstreamDependency);
+  /**
+   * Parallel mode counterpart of
+   * {@link #getInternal(MetadataId, boolean, boolean)}. Instead of a global mutex,
+   * each metadata identification string is owned by the thread resolving it;
+   * other threads requesting it wait for that thread's result.
+   */
+  private MetadataItem getConcurrently(final MetadataId metadataId, final boolean evictCache,
+      final boolean cacheRetrievalAllowed) {
+    final String metadataIdentificationString = metadataId.getId();
+    validGets.incrementAndGet();
 
-    MetadataDependencyRegistry registry = this.registryTracker.getService();
+    try {
+      metadataLogger.startEvent();
 
-    synchronized (lock) {
-      // Get the destination
-      final String mdClassId = MetadataIdentificationUtils.getMetadataClassId(downstreamDependency);
+      if (evictCache) {
+        evict(metadataIdentificationString);
+        if (metadataLogger.getTraceLevel() > 0) {
+          metadataLogger.log("Evicting " + metadataIdentificationString);
+        }
+        cacheEvictions.incrementAndGet();
+      }
+
+      if (cacheRetrievalAllowed) {
+        final MetadataItem result = getFromCache(metadataIdentificationString);
+        if (result != null) {
+          cacheHits.incrementAndGet();
+          metadataLogger.recordCacheLookup(true);
+          if (metadataLogger.getTraceLevel() > 0) {
+            metadataLogger.log("Cache hit " + metadataIdentificationString);
+          }
+          return result;
+        }
+      }
+
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Cache miss " + metadataIdentificationString);
+      }
+      cacheMisses.incrementAndGet();
+      metadataLogger.recordCacheLookup(false);
+
+      // Either this thread is already resolving the MID, or waiting for the
+      // thread resolving it would close a cycle: both are recursive requests
+      ConcurrentMetadataRequests.Request inFlight = null;
+      if (!concurrentRequests.isActive(metadataIdentificationString)) {
+        while ((inFlight = concurrentRequests.claim(metadataIdentificationString)) != null) {
+          if (!concurrentRequests.await(inFlight)) {
+            break;
+          }
+          if (!evictCache) {
+            // Share the other thread's result
+            return inFlight.getResult();
+          }
+          // The other thread may have started before our eviction, so
+          // resolve the MID again rather than reuse its result
+        }
+        if (inFlight == null) {
+          updateMaximum(maxRequestDepth, ConcurrentMetadataRequests.getDepth());
+          return resolve(metadataId, evictCache);
+        }
+      }
+
+      recursiveGets.incrementAndGet();
+      if (concurrentRequests.retryLater(metadataIdentificationString)
+          && metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Blocked recursive request for " + metadataIdentificationString);
+      }
+      return null;
+    } finally {
+      try {
+        if (!ConcurrentMetadataRequests.isResolving()) {
+          final Set<String> thisRetry = concurrentRequests.drainRetries();
+          if (!thisRetry.isEmpty()) {
+            retryGroups.incrementAndGet();
+            updateMaximum(largestRetryGroup, thisRetry.size());
+          }
+          if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
+            metadataLogger.log(thisRetry.size() + " keys to retry: " + thisRetry);
+          }
+          for (final String retryMid : thisRetry) {
+            if (metadataLogger.getTraceLevel() > 0) {
+              metadataLogger.log("Retrying " + retryMid);
+            }
+            if (ObjectUtils.equals(retryMid, metadataIdentificationString)) {
+              // Avoid infinite recursion loop
+              continue;
+            }
+            getConcurrently(MetadataId.valueOf(retryMid), false, false);
+          }
+          if (metadataLogger.getTraceLevel() > 0 && thisRetry.size() > 0) {
+            metadataLogger.log("Retry group completed " + metadataIdentificationString);
+          }
+        }
+      } finally {
+        metadataLogger.stopEvent();
+      }
+    }
+  }
+
+  /**
+   * Obtains the given item from its provider and caches it, in parallel mode.
+   * The current thread must own the request.
+   */
+  private MetadataItem resolve(final MetadataId metadataId, final boolean evictCache) {
+    final String metadataIdentificationString = metadataId.getId();
+    try {
+      final String mdClassId = metadataId.getMetadataClassId().getId();
       final MetadataProvider p = providerMap.get(mdClassId);
+      Validate
+          .notNull(
+              p,
+              "No metadata provider is currently registered to provide metadata for identifier '%s' (class '%s')",
+              metadataIdentificationString, mdClassId);
+
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Get " + metadataIdentificationString + " from "
+            + p.getClass().getName());
+      }
+      MetadataItem result = null;
+      try {
+        metadataLogger.startTimer(p.getClass().getName(), metadataIdentificationString);
+        result = p.get(metadataIdentificationString);
+      } finally {
+        metadataLogger.stopTimer();
+      }
 
-      if (p == null) {
-        // No known provider that can consume this notification, so just
-        // return as per the interface contract
-        return;
+      if (result == null && !evictCache) {
+        if (metadataLogger.getTraceLevel() > 0) {
+          metadataLogger.log("Evicting unavailable item " + metadataIdentificationString);
+        }
+        evict(metadataIdentificationString);
+        cacheEvictions.incrementAndGet();
       }
 
-      if (p instanceof MetadataNotificationListener) {
-        // The provider can directly handle this notification, so we
-        // just need to delegate directly to it.
-        // We rely on the provider to evict items from the cache if
-        // applicable.
-        ((MetadataNotificationListener) p).notify(upstreamDependency, downstreamDependency);
-      } else {
-        // As per interface contract, we just ensure we evict the item
-        // and recreate it
-        // However, we only do this if the destination is an instance -
-        // if it's a class, "get" is not a meaningful operation.
-        if (MetadataIdentificationUtils.isIdentifyingInstance(downstreamDependency)) {
-          get(downstreamDependency, true);
+      if (result != null) {
+        if (metadataLogger.getTraceLevel() > 0) {
+          metadataLogger.log("Caching " + metadataIdentificationString);
         }
-        // As per interface contract, we now notify any listeners this
-        // downstream instance has probably now changed
-        registry.notifyDownstream(downstreamDependency);
+        super.put(result);
+        cachePuts.incrementAndGet();
       }
+
+      concurrentRequests.complete(metadataIdentificationString, result);
+
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log("Returning " + metadataIdentificationString);
+      }
+      return result;
+    } catch (final Exception e) {
+      final IllegalStateException failure = new IllegalStateException(e);
+      concurrentRequests.fail(metadataIdentificationString, failure);
+      throw failure;
+    }
+  }
+
+  public boolean isResolving(final String metadataIdentificationString) {
+    if (concurrentRequests != null) {
+      return concurrentRequests.isClaimed(metadataIdentificationString);
+    }
+    synchronized (lock) {
+      return activeRequests.contains(metadataIdentificationString);
+    }
+  }
+
+  public void notify(final String upstreamDependency, final String downstreamDependency) {
+    // Interning validates both identifiers
+    MetadataId.valueOf(upstreamDependency);
+    final MetadataId downstreamId = MetadataId.valueOf(downstreamDependency);
+
+    if (concurrentRequests != null) {
+      notifyProvider(upstreamDependency, downstreamId);
+      return;
+    }
+
+    synchronized (lock) {
+      notifyProvider(upstreamDependency, downstreamId);
+    }
+  }
+
+  private void notifyProvider(final String upstreamDependency, final MetadataId downstreamId) {
+    final MetadataDependencyRegistry registry = this.registryTracker.getService();
+    final String downstreamDependency = downstreamId.getId();
+
+    // Get the destination
+    final MetadataId mdClassId = downstreamId.getMetadataClassId();
+    final MetadataProvider p = mdClassId == null ? null : providerMap.get(mdClassId.getId());
+
+    if (p == null) {
+      // No known provider that can consume this notification, so just
+      // return as per the interface contract
+      return;
+    }
+
+    if (p instanceof MetadataNotificationListener) {
+      // The provider can directly handle this notification, so we
+      // just need to delegate directly to it.
+      // We rely on the provider to evict items from the cache if
+      // applicable.
+      ((MetadataNotificationListener) p).notify(upstreamDependency, downstreamDependency);
+    } else {
+      // As per interface contract, we just ensure we evict the item
+      // and recreate it
+      // However, we only do this if the destination is an instance -
+      // if it's a class, "get" is not a meaningful operation.
+      if (downstreamId.isIdentifyingInstance()) {
+        getInternal(downstreamId, true, true);
+      }
+      // As per interface contract, we now notify any listeners this
+      // downstream instance has probably now changed
+      registry.notifyDownstream(downstreamId);
     }
   }
 
   @Override
   public void put(final MetadataItem metadataItem) {
     super.put(metadataItem);
-    cachePuts++;
+    cachePuts.incrementAndGet();
   }
 
   @Override
@@ -349,6 +556,9 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
     final ToStringBuilder builder = new ToStringBuilder(this);
     builder.append("validGets", validGets);
     builder.append("recursiveGets", recursiveGets);
+    builder.append("maxRequestDepth", maxRequestDepth);
+    builder.append("retryGroups", retryGroups);
+    builder.append("largestRetryGroup", largestRetryGroup);
     builder.append("cachePuts", cachePuts);
     builder.append("cacheHits", cacheHits);
     builder.append("cacheMisses", cacheMisses);
@@ -358,6 +568,13 @@ public class DefaultMetadataService extends AbstractMetadataCache implements Met
     return builder.toString().replaceFirst("@[0-9a-f]+", ":");
   }
 
+  private void updateMaximum(final AtomicInteger maximum, final int value) {
+    int current = maximum.get();
+    while (value > current && !maximum.compareAndSet(current, value)) {
+      current = maximum.get();
+    }
+  }
+
   protected void unbindMetadataProvider(final MetadataProvider mp) {
     synchronized (lock) {
       final String mid = mp.getProvidesType();
@@ -0,0 +1,140 @@
+package org.springframework.roo.metadata;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A histogram of latencies, counted in power-of-two buckets of microseconds,
+ * so that it takes the same small amount of memory however many latencies
+ * are recorded. Percentiles are therefore reported as the upper bound of the
+ * bucket they fall in.
+ * <p>
+ * Not thread-safe; a {@link MetadataProfile} only hands out copies.
+ *
+ * @since 2.0
+ */
+public final class LatencyHistogram {
+
+  /**
+   * Bucket zero counts latencies under one microsecond and bucket <i>n</i>
+   * those from 2<sup><i>n</i> - 1</sup> up to 2<sup><i>n</i></sup>
+   * microseconds; the last bucket also counts any longer latencies (i.e. of
+   * a minute or more).
+   */
+  static final int BUCKETS = 28;
+
+  private static final long NANOSECONDS_IN_MICROSECOND = 1000L;
+
+  /**
+   * Formats the given number of nanoseconds in the most readable unit
+   *
+   * @param nanoseconds zero or more
+   * @return a non-blank string
+   */
+  static String format(final long nanoseconds) {
+    if (nanoseconds < NANOSECONDS_IN_MICROSECOND * 1000) {
+      return String.format("%.1f us", nanoseconds / 1e3);
+    }
+    if (nanoseconds < NANOSECONDS_IN_MICROSECOND * 1000000) {
+      return String.format("%.1f ms", nanoseconds / 1e6);
+    }
+    return String.format("%.2f s", nanoseconds / 1e9);
+  }
+
+  private static int getBucket(final long nanoseconds) {
+    final long microseconds = nanoseconds / NANOSECONDS_IN_MICROSECOND;
+    return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(microseconds));
+  }
+
+  private final long[] counts = new long[BUCKETS];
+  private long count;
+  private long maximum;
+  private long total;
+
+  /**
+   * Returns a copy of this histogram
+   *
+   * @return a new instance
+   */
+  public LatencyHistogram copy() {
+    final LatencyHistogram copy = new LatencyHistogram();
+    System.arraycopy(counts, 0, copy.counts, 0, BUCKETS);
+    copy.count = count;
+    copy.maximum = maximum;
+    copy.total = total;
+    return copy;
+  }
+
+  /**
+   * @return the number of latencies recorded
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return the longest latency recorded, in nanoseconds
+   */
+  public long getMaximum() {
+    return maximum;
+  }
+
+  /**
+   * @return the mean latency, in nanoseconds (zero if none were recorded)
+   */
+  public long getMean() {
+    return count == 0 ? 0 : total / count;
+  }
+
+  /**
+   * Returns the latency that the given percentage of recorded latencies do
+   * not exceed, to within the precision of this histogram
+   *
+   * @param percentile the percentage, from 0 to 100
+   * @return the upper bound of the bucket containing that percentile, in
+   *         nanoseconds, capped at the maximum recorded latency (zero if none
+   *         were recorded)
+   */
+  public long getPercentile(final double percentile) {
+    Validate.isTrue(percentile >= 0 && percentile <= 100, "Percentile must be from 0 to 100");
+    final long rank = (long) Math.ceil(count * percentile / 100);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS && count > 0; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank && seen > 0) {
+        if (bucket == BUCKETS - 1) {
+          return maximum;
+        }
+        final long upperBound = (1L << bucket) * NANOSECONDS_IN_MICROSECOND;
+        return Math.min(upperBound, maximum);
+      }
+    }
+    return maximum;
+  }
+
+  /**
+   * @return the sum of the recorded latencies, in nanoseconds
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * Records the given latency
+   *
+   * @param nanoseconds the latency (zero or more)
+   */
+  public void record(final long nanoseconds) {
+    Validate.isTrue(nanoseconds >= 0, "Latency must be zero or more");
+    counts[getBucket(nanoseconds)]++;
+    count++;
+    maximum = Math.max(maximum, nanoseconds);
+    total += nanoseconds;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count %d, total %s, mean %s, p50 %s, p90 %s, p99 %s, max %s", count,
+        format(total), format(getMean()), format(getPercentile(50)), format(getPercentile(90)),
+        format(getPercentile(99)), format(maximum));
+  }
+}
@@ -1,5 +1,6 @@
 package org.springframework.roo.metadata;
 
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -53,6 +54,35 @@ public interface MetadataDependencyRegistry {
    */
   void addNotificationListener(MetadataNotificationListener listener);
 
+  /**
+   * Registers an instance to receive {@link MetadataNotificationListener}
+   * events before the {@link MetadataService} does, for example to drop
+   * anything derived from the upstream metadata which the downstream
+   * metadata may ask for while it's rebuilt. The listener is passed a
+   * <code>null</code> downstream dependency and must not request metadata
+   * itself. Events raised during a notification batch are delivered straight
+   * away.
+   * 
+   * @param listener to receive all notifications first (required)
+   * @since 2.0
+   */
+  void addPreNotificationListener(MetadataNotificationListener listener);
+
+  /**
+   * Starts a notification batch, during which {@link #notifyDownstream(String)}
+   * evicts the affected metadata instances from the cache but defers their
+   * rebuilding until the batch ends. Batches may be nested, in which case only
+   * the outermost one dispatches the deferred notifications. Implementations
+   * may have batching turned off, in which case notifications are delivered
+   * straight away as usual.
+   * <p>
+   * Every call must be followed by a call to
+   * {@link #endNotificationBatch(boolean)}, typically in a finally block.
+   * 
+   * @since 2.0
+   */
+  void beginNotificationBatch();
+
   /**
    * Removes all upstream dependencies that were previously registered for the
    * specified downstream dependency. This is useful if rebuilding the
@@ -69,6 +99,15 @@ public interface MetadataDependencyRegistry {
    */
   void deregisterDependencies(String downstreamDependency);
 
+  /**
+   * As per {@link #deregisterDependencies(String)}, for a pre-parsed
+   * identifier.
+   *
+   * @param downstreamDependency the downstream dependency (required)
+   * @since 2.0
+   */
+  void deregisterDependencies(MetadataId downstreamDependency);
+
   /**
    * Removes a dependency between two items of metadata.
    * <p>
@@ -83,6 +122,31 @@ public interface MetadataDependencyRegistry {
    */
   void deregisterDependency(String upstreamDependency, String downstreamDependency);
 
+  /**
+   * Ends a notification batch started by {@link #beginNotificationBatch()}.
+   * When the outermost batch ends, each downstream dependency notified during
+   * the batch is notified once, upstream dependencies first, however many of
+   * its upstream dependencies changed. Notifications raised while doing so
+   * are coalesced in the same way. If dispatching fails, the notifications
+   * not yet delivered are kept, and dispatched when the next batch ends.
+   * 
+   * @param dispatch whether to dispatch the deferred notifications; false
+   *            discards them (eg because the changes that raised them are
+   *            being undone)
+   * @since 2.0
+   */
+  void endNotificationBatch(boolean dispatch);
+
+  /**
+   * Obtains every dependency currently registered, which is useful for
+   * persisting the dependency graph between sessions.
+   *
+   * @return an immutable copy of the dependencies, keyed by upstream
+   *         dependency (never null, but the map may be empty)
+   * @since 2.0
+   */
+  Map<String, Set<String>> getDependencies();
+
   /**
    * Obtains the list of the immediate downstream dependencies of the
    * indicated metadata item.
@@ -100,6 +164,17 @@ public interface MetadataDependencyRegistry {
    */
   Set<String> getDownstream(String upstreamDependency);
 
+  /**
+   * As per {@link #getDownstream(String)}, for a pre-parsed identifier.
+   *
+   * @param upstreamDependency to find the immediate downstream items for
+   *            (required)
+   * @return an immutable set of dependencies (never null, but the set may be
+   *         empty)
+   * @since 2.0
+   */
+  Set<MetadataId> getDownstream(MetadataId upstreamDependency);
+
   /**
    * Obtains a list of the immediate upstream dependencies of the indicated
    * metadata item.
@@ -114,6 +189,17 @@ public interface MetadataDependencyRegistry {
    */
   Set<String> getUpstream(String downstreamDependency);
 
+  /**
+   * As per {@link #getUpstream(String)}, for a pre-parsed identifier.
+   *
+   * @param downstreamDependency to find the immediate upstream items for
+   *            (required)
+   * @return an immutable set of dependencies (never null, but the set may be
+   *         empty)
+   * @since 2.0
+   */
+  Set<MetadataId> getUpstream(MetadataId downstreamDependency);
+
   /**
    * Indicates whether the indicated downstream dependency is legally
    * permitted to depend on the indicated upstream dependency. Specifically,
@@ -155,6 +241,14 @@ public interface MetadataDependencyRegistry {
    */
   void notifyDownstream(String upstreamDependency);
 
+  /**
+   * As per {@link #notifyDownstream(String)}, for a pre-parsed identifier.
+   *
+   * @param upstreamDependency that is generating the notification (required)
+   * @since 2.0
+   */
+  void notifyDownstream(MetadataId upstreamDependency);
+
   /**
    * Registers a dependency between two items of metadata.
    * <p>
@@ -169,6 +263,16 @@ public interface MetadataDependencyRegistry {
    */
   void registerDependency(String upstreamDependency, String downstreamDependency);
 
+  /**
+   * As per {@link #registerDependency(String, String)}, for pre-parsed
+   * identifiers.
+   *
+   * @param upstreamDependency the upstream dependency (required)
+   * @param downstreamDependency the downstream dependency (required)
+   * @since 2.0
+   */
+  void registerDependency(MetadataId upstreamDependency, MetadataId downstreamDependency);
+
   /**
    * De-register an additional instance to receive
    * {@link MetadataNotificationListener} events. If the listener was never
@@ -177,4 +281,14 @@ public interface MetadataDependencyRegistry {
    * @param listener to no longer receive notifications (required)
    */
   void removeNotificationListener(MetadataNotificationListener listener);
+
+  /**
+   * De-registers an instance registered by
+   * {@link #addPreNotificationListener(MetadataNotificationListener)}. If
+   * it was never registered in the first place, the method simply returns.
+   * 
+   * @param listener to no longer receive notifications (required)
+   * @since 2.0
+   */
+  void removePreNotificationListener(MetadataNotificationListener listener);
 }
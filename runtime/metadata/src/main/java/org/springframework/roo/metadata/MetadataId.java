@@ -0,0 +1,154 @@
+package org.springframework.roo.metadata;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A pre-parsed metadata identification string.
+ * <p>
+ * Instances are interned, so there is only ever one {@link MetadataId} for a
+ * given identification string and they can be compared by identity. The
+ * string is validated and split into its metadata class and instance parts
+ * once, when it is first interned, so code that handles the same identifiers
+ * repeatedly (eg during a notification storm) can use the accessors below
+ * instead of re-parsing them via {@link MetadataIdentificationUtils}.
+ * <p>
+ * Interning is weak: once nothing else refers to an instance, it's removed,
+ * so identifiers no longer in use (eg of deleted types) don't accumulate
+ * over the shell's lifetime.
+ *
+ * @since 2.0
+ */
+public final class MetadataId {
+
+  /**
+   * key: the identification string of the value (weakly held, as the value
+   * refers to it), value: the interned instance
+   */
+  private static final Map<String, WeakReference<MetadataId>> INTERNED =
+      new WeakHashMap<String, WeakReference<MetadataId>>();
+
+  /**
+   * Returns the interned {@link MetadataId} for the given metadata
+   * identification string.
+   *
+   * @param metadataIdentificationString the identifier; must return true if
+   *            presented to {@link MetadataIdentificationUtils#isValid(String)}
+   * @return a non-null instance
+   */
+  public static MetadataId valueOf(final String metadataIdentificationString) {
+    synchronized (INTERNED) {
+      // Only valid identifiers are interned, so a hit needs no validation
+      final WeakReference<MetadataId> reference =
+          metadataIdentificationString == null ? null : INTERNED
+              .get(metadataIdentificationString);
+      final MetadataId existing = reference == null ? null : reference.get();
+      if (existing != null) {
+        return existing;
+      }
+      Validate.isTrue(MetadataIdentificationUtils.isValid(metadataIdentificationString),
+          "Invalid metadata identification string ('%s')", metadataIdentificationString);
+      final MetadataId created = new MetadataId(metadataIdentificationString);
+      // Keyed by the instance's own string, so the entry lasts as long as it
+      INTERNED.put(created.id, new WeakReference<MetadataId>(created));
+      return created;
+    }
+  }
+
+  private final String id;
+  private final boolean identifyingClass;
+  private final boolean identifyingInstance;
+  private final String metadataClass;
+  private MetadataId metadataClassId; // lazily interned
+  private final String metadataInstance;
+
+  private MetadataId(final String id) {
+    this.id = id;
+    identifyingClass = MetadataIdentificationUtils.isIdentifyingClass(id);
+    identifyingInstance = MetadataIdentificationUtils.isIdentifyingInstance(id);
+    metadataClass = MetadataIdentificationUtils.getMetadataClass(id);
+    metadataInstance = MetadataIdentificationUtils.getMetadataInstance(id);
+    if (identifyingClass) {
+      metadataClassId = this;
+    }
+  }
+
+  /**
+   * Returns the metadata identification string.
+   *
+   * @return a non-blank string
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the fully-qualified name of the metadata class, as per
+   * {@link MetadataIdentificationUtils#getMetadataClass(String)}.
+   *
+   * @return the class name (null if it cannot be determined)
+   */
+  public String getMetadataClass() {
+    return metadataClass;
+  }
+
+  /**
+   * Returns the class-level identifier for this identifier, as per
+   * {@link MetadataIdentificationUtils#getMetadataClassId(String)}.
+   *
+   * @return this instance if it identifies a class, otherwise the interned
+   *         class-level identifier (null if it cannot be determined)
+   */
+  public MetadataId getMetadataClassId() {
+    if (metadataClassId == null) {
+      final String classId = MetadataIdentificationUtils.create(metadataClass);
+      if (classId != null) {
+        metadataClassId = valueOf(classId);
+      }
+    }
+    return metadataClassId;
+  }
+
+  /**
+   * Returns the instance part of this identifier, as per
+   * {@link MetadataIdentificationUtils#getMetadataInstance(String)}.
+   *
+   * @return the instance key (null unless {@link #isIdentifyingInstance()})
+   */
+  public String getMetadataInstance() {
+    return metadataInstance;
+  }
+
+  @Override
+  public int hashCode() {
+    return id.hashCode();
+  }
+
+  /**
+   * Indicates whether this identifies a class of metadata, as per
+   * {@link MetadataIdentificationUtils#isIdentifyingClass(String)}.
+   *
+   * @return see above
+   */
+  public boolean isIdentifyingClass() {
+    return identifyingClass;
+  }
+
+  /**
+   * Indicates whether this identifies an instance of metadata, as per
+   * {@link MetadataIdentificationUtils#isIdentifyingInstance(String)}.
+   *
+   * @return see above
+   */
+  public boolean isIdentifyingInstance() {
+    return identifyingInstance;
+  }
+
+  @Override
+  public String toString() {
+    return id;
+  }
+}
@@ -35,6 +35,10 @@ import java.util.SortedSet;
  * <p>
  * Implementations are free to store metadata logging output in any file they
  * wish. This file should be created on the first call to {@link #log(String)}.
+ * <p>
+ * While profiling is enabled via {@link #setProfiling(boolean)}, each timer
+ * and cache lookup is also recorded in a {@link MetadataProfile}, available
+ * via {@link #getProfile()}.
  * 
  * @author Ben Alex
  * @since 1.1.2
@@ -47,12 +51,27 @@ public interface MetadataLogger {
    */
   SortedSet<MetadataTimingStatistic> getTimings();
 
+  /**
+   * Returns what has been recorded since profiling was last enabled, up to
+   * now or until it was disabled.
+   * 
+   * @return <code>null</code> if profiling has never been enabled
+   * @since 2.0
+   */
+  MetadataProfile getProfile();
+
   /**
    * @return the currently active trace level (0 = none, 1 = major events, 2 =
    *         all events)
    */
   int getTraceLevel();
 
+  /**
+   * @return whether profiling is enabled
+   * @since 2.0
+   */
+  boolean isProfiling();
+
   /**
    * Logs a message against the given event identifier.
    * 
@@ -60,6 +79,23 @@ public interface MetadataLogger {
    */
   void log(String message);
 
+  /**
+   * Records a request for metadata, if profiling is enabled.
+   * 
+   * @param hit whether the metadata was served from the cache
+   * @since 2.0
+   */
+  void recordCacheLookup(boolean hit);
+
+  /**
+   * Enables or disables profiling. Enabling it discards anything previously
+   * recorded. Defaults to disabled.
+   * 
+   * @param profiling whether to profile
+   * @since 2.0
+   */
+  void setProfiling(boolean profiling);
+
   /**
    * Enable low-level tracing of event delivery information. Defaults to level
    * 0 (none).
@@ -85,6 +121,17 @@ public interface MetadataLogger {
    */
   void startTimer(String responsibleClass);
 
+  /**
+   * As for {@link #startTimer(String)}, also identifying the metadata being
+   * timed, so that its latencies can be profiled.
+   * 
+   * @param responsibleClass the class responsible for this timing (required)
+   * @param metadataIdentificationString the metadata being timed (may be
+   *            null)
+   * @since 2.0
+   */
+  void startTimer(String responsibleClass, String metadataIdentificationString);
+
   /**
    * Decrements the current stack level.
    */
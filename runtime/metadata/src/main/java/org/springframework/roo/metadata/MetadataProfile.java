@@ -0,0 +1,242 @@
+package org.springframework.roo.metadata;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of what a {@link MetadataLogger} recorded while profiling: the
+ * latencies of each responsible class (typically a {@link MetadataProvider})
+ * and of each metadata item, how deeply metadata requests were nested, how
+ * often the {@link MetadataService} cache was hit, and the time spent in each
+ * chain of responsible classes.
+ * <p>
+ * Latencies are inclusive, i.e. include the time taken to get any further
+ * metadata that was needed, whereas the times of each chain (or "stack") are
+ * exclusive, so that they add up to the total time profiled.
+ *
+ * @since 2.0
+ */
+public class MetadataProfile {
+
+  /**
+   * The number of responsible classes and metadata items reported by
+   * {@link #toString()}
+   */
+  private static final int REPORTED_ENTRIES = 20;
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+  private static final long NANOSECONDS_IN_MICROSECOND = 1000L;
+
+  /**
+   * Returns the given histograms, the one with the highest total latency
+   * first
+   *
+   * @param histograms the histograms to sort (required)
+   * @param maximum the maximum number of histograms to return
+   * @return a new map of copies of the histograms
+   */
+  static Map<String, LatencyHistogram> sortByTotal(final Map<String, LatencyHistogram> histograms,
+      final int maximum) {
+    final List<Entry<String, LatencyHistogram>> entries =
+        new ArrayList<Entry<String, LatencyHistogram>>(histograms.entrySet());
+    Collections.sort(entries, new Comparator<Entry<String, LatencyHistogram>>() {
+      public int compare(final Entry<String, LatencyHistogram> o1,
+          final Entry<String, LatencyHistogram> o2) {
+        final int result =
+            Long.valueOf(o2.getValue().getTotal()).compareTo(o1.getValue().getTotal());
+        return result == 0 ? o1.getKey().compareTo(o2.getKey()) : result;
+      }
+    });
+    final Map<String, LatencyHistogram> sorted = new LinkedHashMap<String, LatencyHistogram>();
+    for (final Entry<String, LatencyHistogram> entry : entries.subList(0,
+        Math.min(maximum, entries.size()))) {
+      sorted.put(entry.getKey(), entry.getValue().copy());
+    }
+    return sorted;
+  }
+
+  private final long cacheHits;
+  private final long cacheMisses;
+  private final SortedMap<String, Long> collapsedStacks;
+  private final long droppedTimings;
+  private final long duration;
+  private final int maximumDepth;
+  private final Map<String, LatencyHistogram> metadataLatencies;
+  private final Map<String, LatencyHistogram> responsibleClassLatencies;
+  private final long timings;
+  private final long totalDepth;
+
+  /**
+   * Constructor
+   *
+   * @param duration how long profiling has been running, in nanoseconds
+   * @param timings the number of timings recorded
+   * @param droppedTimings the number of timings not recorded because they
+   *            couldn't be buffered quickly enough
+   * @param cacheHits the number of metadata requests served from the cache
+   * @param cacheMisses the number of metadata requests not served from the
+   *            cache
+   * @param maximumDepth the deepest nesting of timings
+   * @param totalDepth the sum of the nesting depth of each timing
+   * @param responsibleClassLatencies key: responsible class (required)
+   * @param metadataLatencies key: metadata identification string, for the
+   *            slowest items (required)
+   * @param collapsedStacks key: the responsible classes of nested timings,
+   *            outermost first, separated by semicolons; value: the exclusive
+   *            time of the innermost one, in nanoseconds (required)
+   */
+  MetadataProfile(final long duration, final long timings, final long droppedTimings,
+      final long cacheHits, final long cacheMisses, final int maximumDepth,
+      final long totalDepth, final Map<String, LatencyHistogram> responsibleClassLatencies,
+      final Map<String, LatencyHistogram> metadataLatencies,
+      final Map<String, Long> collapsedStacks) {
+    this.cacheHits = cacheHits;
+    this.cacheMisses = cacheMisses;
+    this.collapsedStacks =
+        Collections.unmodifiableSortedMap(new TreeMap<String, Long>(collapsedStacks));
+    this.droppedTimings = droppedTimings;
+    this.duration = duration;
+    this.maximumDepth = maximumDepth;
+    this.metadataLatencies = Collections.unmodifiableMap(metadataLatencies);
+    this.responsibleClassLatencies = Collections.unmodifiableMap(responsibleClassLatencies);
+    this.timings = timings;
+    this.totalDepth = totalDepth;
+  }
+
+  /**
+   * @return the proportion of metadata requests served from the cache, from
+   *         0 to 1 (zero if there were no requests)
+   */
+  public double getCacheHitRatio() {
+    final long requests = cacheHits + cacheMisses;
+    return requests == 0 ? 0 : (double) cacheHits / requests;
+  }
+
+  public long getCacheHits() {
+    return cacheHits;
+  }
+
+  public long getCacheMisses() {
+    return cacheMisses;
+  }
+
+  /**
+   * @return key: the responsible classes of nested timings, outermost first,
+   *         separated by semicolons; value: the exclusive time of the
+   *         innermost one, in nanoseconds (never null)
+   */
+  public SortedMap<String, Long> getCollapsedStacks() {
+    return collapsedStacks;
+  }
+
+  /**
+   * @return the number of timings that couldn't be buffered quickly enough
+   *         and are therefore missing from this profile
+   */
+  public long getDroppedTimings() {
+    return droppedTimings;
+  }
+
+  /**
+   * @return how long profiling ran for, in nanoseconds
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  /**
+   * @return the deepest nesting of timings, i.e. of metadata requests that
+   *         needed further metadata
+   */
+  public int getMaximumDepth() {
+    return maximumDepth;
+  }
+
+  /**
+   * @return the mean nesting depth of timings (zero if none were recorded)
+   */
+  public double getMeanDepth() {
+    return timings == 0 ? 0 : (double) totalDepth / timings;
+  }
+
+  /**
+   * @return key: metadata identification string, value: its latencies, for
+   *         the items with the highest total latency, highest first (never
+   *         null)
+   */
+  public Map<String, LatencyHistogram> getMetadataLatencies() {
+    return metadataLatencies;
+  }
+
+  /**
+   * @return key: responsible class, value: its latencies, the highest total
+   *         latency first (never null)
+   */
+  public Map<String, LatencyHistogram> getResponsibleClassLatencies() {
+    return responsibleClassLatencies;
+  }
+
+  /**
+   * @return the number of timings recorded
+   */
+  public long getTimings() {
+    return timings;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Profiled %s: %d timings (%d dropped), cache hit ratio %.1f%% "
+        + "(%d hits, %d misses), maximum depth %d (mean %.1f)",
+        LatencyHistogram.format(duration), timings, droppedTimings, getCacheHitRatio() * 100,
+        cacheHits, cacheMisses, maximumDepth, getMeanDepth()));
+    appendLatencies(sb, "Slowest responsible classes", responsibleClassLatencies);
+    appendLatencies(sb, "Slowest metadata", metadataLatencies);
+    return sb.toString();
+  }
+
+  private void appendLatencies(final StringBuilder sb, final String heading,
+      final Map<String, LatencyHistogram> latencies) {
+    if (latencies.isEmpty()) {
+      return;
+    }
+    sb.append(LINE_SEPARATOR).append(heading).append(":");
+    int reported = 0;
+    for (final Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+      if (reported++ == REPORTED_ENTRIES) {
+        break;
+      }
+      sb.append(LINE_SEPARATOR).append("  ").append(entry.getKey()).append(": ")
+          .append(entry.getValue());
+    }
+  }
+
+  /**
+   * Writes the time spent in each chain of responsible classes in the
+   * "collapsed stack" format read by flame graph tools, i.e. one line per
+   * chain, giving the responsible classes separated by semicolons, a space
+   * and the exclusive time of the innermost one in microseconds. Chains that
+   * took less than a microsecond are omitted.
+   *
+   * @param writer the writer to write to (required); not closed
+   * @throws IOException if the writer does
+   */
+  public void writeCollapsedStacks(final Writer writer) throws IOException {
+    for (final Entry<String, Long> entry : collapsedStacks.entrySet()) {
+      final long microseconds = entry.getValue() / NANOSECONDS_IN_MICROSECOND;
+      if (microseconds > 0) {
+        writer.write(entry.getKey() + " " + microseconds + "\n");
+      }
+    }
+    writer.flush();
+  }
+}
@@ -0,0 +1,198 @@
+package org.springframework.roo.metadata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Records the timings of a {@link DefaultMetadataLogger} while it's profiling.
+ * <p>
+ * The threads doing the timing only add each timing to a bounded buffer; a
+ * background thread takes them from there and updates the histograms and
+ * stacks, so that profiling adds little to the time being measured. If the
+ * buffer is ever full, timings are dropped rather than waited for, and
+ * counted as such.
+ *
+ * @since 2.0
+ */
+final class MetadataProfiler {
+
+  private static class Timing {
+    final int depth;
+    final String[] responsibleClasses;
+    final String metadataId;
+    final long latency;
+    final long exclusiveTime;
+
+    Timing(final String[] responsibleClasses, final String metadataId, final long latency,
+        final long exclusiveTime) {
+      depth = responsibleClasses.length;
+      this.exclusiveTime = exclusiveTime;
+      this.latency = latency;
+      this.metadataId = metadataId;
+      this.responsibleClasses = responsibleClasses;
+    }
+  }
+
+  /** The maximum number of timings taken from the buffer at once */
+  private static final int BATCH_SIZE = 1024;
+
+  /** The number of metadata items whose latencies are kept in a snapshot */
+  static final int PROFILED_METADATA = 100;
+
+  private final BlockingQueue<Timing> buffer;
+  private final AtomicLong cacheHits = new AtomicLong();
+  private final AtomicLong cacheMisses = new AtomicLong();
+  private final AtomicLong droppedTimings = new AtomicLong();
+  private final long started = System.nanoTime();
+  private volatile long stopped;
+  private final Thread writer;
+
+  // Guarded by this
+  /** key: chain of responsible classes, value: exclusive nanos */
+  private final Map<String, Long> collapsedStacks = new HashMap<String, Long>();
+  private int maximumDepth;
+  private final Map<String, LatencyHistogram> metadataLatencies =
+      new HashMap<String, LatencyHistogram>();
+  private final Map<String, LatencyHistogram> responsibleClassLatencies =
+      new HashMap<String, LatencyHistogram>();
+  private long timings;
+  private long totalDepth;
+
+  /**
+   * Constructor
+   *
+   * @param capacity the number of timings that can be buffered (at least
+   *            one)
+   */
+  MetadataProfiler(final int capacity) {
+    Validate.isTrue(capacity > 0, "Capacity must be one or more");
+    buffer = new ArrayBlockingQueue<Timing>(capacity);
+    writer = new Thread(new Runnable() {
+      public void run() {
+        final List<Timing> batch = new ArrayList<Timing>();
+        while (!Thread.currentThread().isInterrupted()) {
+          try {
+            batch.add(buffer.take());
+          } catch (final InterruptedException e) {
+            return;
+          }
+          buffer.drainTo(batch, BATCH_SIZE - 1);
+          add(batch);
+          batch.clear();
+        }
+      }
+    }, "Spring Roo Metadata Profiler");
+    writer.setDaemon(true);
+  }
+
+  private synchronized void add(final List<Timing> batch) {
+    for (final Timing timing : batch) {
+      timings++;
+      totalDepth += timing.depth;
+      maximumDepth = Math.max(maximumDepth, timing.depth);
+      final String responsibleClass = timing.responsibleClasses[timing.depth - 1];
+      getHistogram(responsibleClassLatencies, responsibleClass).record(timing.latency);
+      if (timing.metadataId != null) {
+        getHistogram(metadataLatencies, timing.metadataId).record(timing.latency);
+      }
+      final String stack = StringUtils.join(timing.responsibleClasses, ';');
+      final Long existing = collapsedStacks.get(stack);
+      collapsedStacks.put(stack, existing == null ? timing.exclusiveTime : existing
+          + timing.exclusiveTime);
+    }
+  }
+
+  private LatencyHistogram getHistogram(final Map<String, LatencyHistogram> histograms,
+      final String key) {
+    LatencyHistogram histogram = histograms.get(key);
+    if (histogram == null) {
+      histogram = new LatencyHistogram();
+      histograms.put(key, histogram);
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns a snapshot of what has been recorded so far, including any
+   * timings still in the buffer
+   *
+   * @return a non-<code>null</code> profile
+   */
+  synchronized MetadataProfile getProfile() {
+    final List<Timing> remaining = new ArrayList<Timing>();
+    buffer.drainTo(remaining);
+    add(remaining);
+    final long end = isRunning() ? System.nanoTime() : stopped;
+    return new MetadataProfile(end - started, timings, droppedTimings.get(), cacheHits.get(),
+        cacheMisses.get(), maximumDepth, totalDepth, MetadataProfile.sortByTotal(
+            responsibleClassLatencies, Integer.MAX_VALUE), MetadataProfile.sortByTotal(
+            metadataLatencies, PROFILED_METADATA), collapsedStacks);
+  }
+
+  boolean isRunning() {
+    return stopped == 0;
+  }
+
+  /**
+   * Records a request for metadata
+   *
+   * @param hit whether it was served from the cache
+   */
+  void recordCacheLookup(final boolean hit) {
+    if (hit) {
+      cacheHits.incrementAndGet();
+    } else {
+      cacheMisses.incrementAndGet();
+    }
+  }
+
+  /**
+   * Records a timing
+   *
+   * @param responsibleClasses the responsible classes of the timings in
+   *            progress, outermost first, ending with that of this one
+   *            (required)
+   * @param metadataId the identification string of the metadata being timed
+   *            (may be <code>null</code>)
+   * @param latency the time since the timer started, in nanoseconds
+   * @param exclusiveTime the time not spent in nested timers, in nanoseconds
+   */
+  void recordTiming(final String[] responsibleClasses, final String metadataId,
+      final long latency, final long exclusiveTime) {
+    if (!buffer.offer(new Timing(responsibleClasses, metadataId, latency, exclusiveTime))) {
+      droppedTimings.incrementAndGet();
+    }
+  }
+
+  /**
+   * Starts writing buffered timings in the background
+   */
+  void start() {
+    writer.start();
+  }
+
+  /**
+   * Stops recording; the timings already buffered remain available via
+   * {@link #getProfile()}
+   */
+  void stop() {
+    if (!isRunning()) {
+      return;
+    }
+    stopped = System.nanoTime();
+    writer.interrupt();
+    try {
+      writer.join();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -53,6 +53,17 @@ public interface MetadataService extends MetadataNotificationListener, MetadataC
    */
   <T extends MetadataItem> T evictAndGet(String metadataIdentificationString);
 
+  /**
+   * As per {@link #evictAndGet(String)}, for a pre-parsed identifier.
+   *
+   * @param metadataId the ID of the {@link MetadataItem} to acquire; must
+   *            identify a metadata instance
+   * @return the metadata, or <code>null</code> if the ID was valid but the
+   *         metadata is not currently available
+   * @since 2.0
+   */
+  <T extends MetadataItem> T evictAndGet(MetadataId metadataId);
+
   /**
    * Returns the {@link MetadataItem} with the given ID, from the cache if
    * possible.
@@ -67,6 +78,17 @@ public interface MetadataService extends MetadataNotificationListener, MetadataC
    */
   <T extends MetadataItem> T get(String metadataIdentificationString);
 
+  /**
+   * As per {@link #get(String)}, for a pre-parsed identifier.
+   *
+   * @param metadataId the ID of the {@link MetadataItem} to acquire; must
+   *            identify a metadata instance
+   * @return the metadata, or <code>null</code> if the ID was valid but the
+   *         metadata is not currently available
+   * @since 2.0
+   */
+  <T extends MetadataItem> T get(MetadataId metadataId);
+
   /**
    * Creates the requested {@link MetadataItem} if possible, returning null if
    * the item cannot be created or found. Implementations will delegate
@@ -95,4 +117,17 @@ public interface MetadataService extends MetadataNotificationListener, MetadataC
    */
   @Deprecated
   MetadataItem get(String metadataIdentificationString, boolean evictCache);
+
+  /**
+   * Indicates whether the given {@link MetadataItem} is part way through
+   * being created, in which case a request for it from within its own
+   * creation returns <code>null</code> to avoid an infinite loop, rather than
+   * because the item is unavailable.
+   *
+   * @param metadataIdentificationString the ID of the {@link MetadataItem}
+   *            (required)
+   * @return see above
+   * @since 2.0
+   */
+  boolean isResolving(String metadataIdentificationString);
 }
@@ -11,6 +11,9 @@ import org.springframework.roo.metadata.MetadataItem;
 /**
  * Basic {@link MetadataCache} that stores elements on a least recently used
  * (LRU) basis.
+ * <p>
+ * Access to the cache is synchronized, as an access-ordered map is modified
+ * even by reads and the cache may be shared by concurrent metadata requests.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -26,29 +29,29 @@ public abstract class AbstractMetadataCache implements MetadataCache {
     init();
   }
 
-  public void evict(final String metadataIdentificationString) {
+  public synchronized void evict(final String metadataIdentificationString) {
     Validate.isTrue(
         MetadataIdentificationUtils.isIdentifyingInstance(metadataIdentificationString),
         "Only metadata instances can be cached (not '%s')", metadataIdentificationString);
     map.remove(metadataIdentificationString);
   }
 
-  public void evictAll() {
+  public synchronized void evictAll() {
     init();
   }
 
-  protected int getCacheSize() {
+  protected synchronized int getCacheSize() {
     return map.size();
   }
 
-  protected MetadataItem getFromCache(final String metadataIdentificationString) {
+  protected synchronized MetadataItem getFromCache(final String metadataIdentificationString) {
     Validate.isTrue(
         MetadataIdentificationUtils.isIdentifyingInstance(metadataIdentificationString),
         "Only metadata instances can be cached (not '%s')", metadataIdentificationString);
     return map.get(metadataIdentificationString);
   }
 
-  public int getMaxCapacity() {
+  public synchronized int getMaxCapacity() {
     return maxCapacity;
   }
 
@@ -64,12 +67,12 @@ public abstract class AbstractMetadataCache implements MetadataCache {
     };
   }
 
-  public void put(final MetadataItem metadataItem) {
+  public synchronized void put(final MetadataItem metadataItem) {
     Validate.notNull(metadataItem, "A metadata item is required");
     map.put(metadataItem.getId(), metadataItem);
   }
 
-  public void setMaxCapacity(int maxCapacity) {
+  public synchronized void setMaxCapacity(int maxCapacity) {
     if (maxCapacity < 100) {
       maxCapacity = 100;
     }
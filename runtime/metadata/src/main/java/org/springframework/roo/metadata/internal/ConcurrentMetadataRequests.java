@@ -0,0 +1,255 @@
+package org.springframework.roo.metadata.internal;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.osgi.framework.BundleContext;
+import org.springframework.roo.metadata.MetadataItem;
+
+/**
+ * Book-keeping for metadata requests that are resolved by several threads at
+ * once.
+ * <p>
+ * Each metadata identification string is resolved by at most one thread at a
+ * time: the first thread to {@link #claim(String)} it becomes its owner, and
+ * any other thread asking for it waits for the owner's result instead of
+ * computing it again. Recursive requests are detected per thread (the owner
+ * asking for a request it is already resolving), and across threads by
+ * walking the chain of threads waiting for each other before blocking.
+ *
+ * @since 2.0
+ */
+public class ConcurrentMetadataRequests {
+
+  /**
+   * A request currently being resolved by its owning thread.
+   */
+  public static class Request {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private RuntimeException failure;
+    private final String metadataIdentificationString;
+    private final Thread owner = Thread.currentThread();
+    private MetadataItem result;
+
+    private Request(final String metadataIdentificationString) {
+      this.metadataIdentificationString = metadataIdentificationString;
+    }
+
+    public String getMetadataIdentificationString() {
+      return metadataIdentificationString;
+    }
+
+    /**
+     * Returns the item produced by the owning thread, which may be null if
+     * the provider could not produce it.
+     *
+     * @return the item (may be null)
+     * @throws IllegalStateException if the owner failed to produce it
+     */
+    public MetadataItem getResult() {
+      if (failure != null) {
+        throw new IllegalStateException("Metadata request '" + metadataIdentificationString
+            + "' failed in another thread", failure);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The name of the property giving the number of threads used to resolve
+   * metadata; one or less (the default) selects the serial mode.
+   */
+  public static final String PARALLELISM_PROPERTY = "roo.metadata.parallelism";
+
+  // Requests being resolved by the current thread, in request order
+  private static final ThreadLocal<Set<String>> ACTIVE = new ThreadLocal<Set<String>>() {
+    @Override
+    protected Set<String> initialValue() {
+      return new LinkedHashSet<String>();
+    }
+  };
+
+  // Recursive requests the current thread should retry once it is idle
+  private static final ThreadLocal<Set<String>> RETRIES = new ThreadLocal<Set<String>>() {
+    @Override
+    protected Set<String> initialValue() {
+      return new LinkedHashSet<String>();
+    }
+  };
+
+  /**
+   * Returns the number of threads configured to resolve metadata.
+   *
+   * @param context the bundle context to read the
+   *            {@value #PARALLELISM_PROPERTY} property from (required)
+   * @return one for the serial mode, otherwise the number of threads
+   */
+  public static int getParallelism(final BundleContext context) {
+    return Math.max(1, NumberUtils.toInt(context.getProperty(PARALLELISM_PROPERTY), 1));
+  }
+
+  /**
+   * Returns the number of nested metadata requests the current thread is
+   * resolving.
+   *
+   * @return zero or more
+   */
+  public static int getDepth() {
+    return ACTIVE.get().size();
+  }
+
+  /**
+   * Indicates whether the current thread is part way through resolving a
+   * metadata request.
+   *
+   * @return see above
+   */
+  public static boolean isResolving() {
+    return !ACTIVE.get().isEmpty();
+  }
+
+  private final ConcurrentMap<String, Request> requests = new ConcurrentHashMap<String, Request>();
+
+  // key: blocked thread, value: request it waits for (guarded by itself)
+  private final Map<Thread, Request> waiting = new HashMap<Thread, Request>();
+
+  /**
+   * Waits for another thread to resolve the given request, unless doing so
+   * would close a cycle of threads waiting for each other.
+   *
+   * @param request a request owned by another thread (required)
+   * @return false if waiting would deadlock, in which case the request
+   *         should be treated as recursive
+   */
+  public boolean await(final Request request) {
+    Validate.notNull(request, "Request required");
+    final Thread current = Thread.currentThread();
+    synchronized (waiting) {
+      Thread owner = request.owner;
+      while (owner != null) {
+        if (owner == current) {
+          return false;
+        }
+        final Request blockedOn = waiting.get(owner);
+        owner = blockedOn == null ? null : blockedOn.owner;
+      }
+      waiting.put(current, request);
+    }
+    try {
+      request.done.await();
+      return true;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for metadata request '"
+          + request.metadataIdentificationString + "'", e);
+    } finally {
+      synchronized (waiting) {
+        waiting.remove(current);
+      }
+    }
+  }
+
+  /**
+   * Attempts to make the current thread the owner of the given request.
+   *
+   * @param metadataIdentificationString the request (required)
+   * @return null if the current thread now owns the request (and must
+   *         {@link #complete(String, MetadataItem)} or
+   *         {@link #fail(String, RuntimeException)} it), otherwise the request
+   *         as owned by another thread
+   */
+  public Request claim(final String metadataIdentificationString) {
+    final Request request = new Request(metadataIdentificationString);
+    final Request existing = requests.putIfAbsent(metadataIdentificationString, request);
+    if (existing == null) {
+      ACTIVE.get().add(metadataIdentificationString);
+    }
+    return existing;
+  }
+
+  /**
+   * Publishes the result of a request owned by the current thread.
+   *
+   * @param metadataIdentificationString the request (required)
+   * @param result the item produced (may be null)
+   */
+  public void complete(final String metadataIdentificationString, final MetadataItem result) {
+    final Request request = release(metadataIdentificationString);
+    request.result = result;
+    request.done.countDown();
+  }
+
+  /**
+   * Publishes the failure of a request owned by the current thread.
+   *
+   * @param metadataIdentificationString the request (required)
+   * @param failure the cause (required)
+   */
+  public void fail(final String metadataIdentificationString, final RuntimeException failure) {
+    final Request request = release(metadataIdentificationString);
+    request.failure = failure;
+    request.done.countDown();
+  }
+
+  /**
+   * Returns the recursive requests recorded by the current thread and clears
+   * them, in the order they were recorded.
+   *
+   * @return a copy of the requests to retry (never null)
+   */
+  public Set<String> drainRetries() {
+    final Set<String> retries = RETRIES.get();
+    final Set<String> result = new LinkedHashSet<String>(retries);
+    retries.clear();
+    return result;
+  }
+
+  /**
+   * Indicates whether the current thread is already resolving the given
+   * request, ie asking for it again would be a recursive request.
+   *
+   * @param metadataIdentificationString the request (required)
+   * @return see above
+   */
+  public boolean isActive(final String metadataIdentificationString) {
+    return ACTIVE.get().contains(metadataIdentificationString);
+  }
+
+  /**
+   * Indicates whether any thread is resolving the given request.
+   *
+   * @param metadataIdentificationString the request (required)
+   * @return see above
+   */
+  public boolean isClaimed(final String metadataIdentificationString) {
+    return requests.containsKey(metadataIdentificationString);
+  }
+
+  /**
+   * Records a recursive request, to be retried by the current thread once it
+   * has no more active requests.
+   *
+   * @param metadataIdentificationString the request (required)
+   * @return true if the request was not already recorded
+   */
+  public boolean retryLater(final String metadataIdentificationString) {
+    return RETRIES.get().add(metadataIdentificationString);
+  }
+
+  private Request release(final String metadataIdentificationString) {
+    ACTIVE.get().remove(metadataIdentificationString);
+    final Request request = requests.get(metadataIdentificationString);
+    Validate.validState(request != null && request.owner == Thread.currentThread(),
+        "Metadata request '%s' is not owned by the current thread", metadataIdentificationString);
+    requests.remove(metadataIdentificationString, request);
+    return request;
+  }
+}
@@ -1,29 +1,62 @@
 package org.springframework.roo.metadata.internal;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
-import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataId;
 import org.springframework.roo.metadata.MetadataLogger;
 import org.springframework.roo.metadata.MetadataNotificationListener;
 import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.support.logging.HandlerUtils;
 
 /**
  * Default implementation of {@link MetadataDependencyRegistry}.
  * <p>
- * This implementation is not thread safe. It should only be accessed by a
- * single thread at a time. This is enforced by the process manager semantics,
- * so we avoid the cost of re-synchronization here.
+ * The dependency graph is held in concurrent structures, so it can be read
+ * and updated by metadata requests resolved in parallel. When the
+ * {@value ConcurrentMetadataRequests#PARALLELISM_PROPERTY} property is greater
+ * than one, a notification from outside any metadata request (eg a file
+ * change) is dispatched to its downstream dependencies by a pool of that many
+ * threads; notifications raised while resolving metadata are dispatched by the
+ * calling thread, as before.
+ * <p>
+ * Dependencies are held as interned {@link MetadataId}s, so each identifier
+ * is stored once however many edges refer to it, and is not re-parsed on
+ * every notification.
+ * <p>
+ * Within a notification batch, a downstream dependency notified by several
+ * upstream dependencies is rebuilt once when the batch ends, after everything
+ * it depends on. Batching changes when metadata is rebuilt, so it's off
+ * unless the {@value #BATCH_PROPERTY} property is set to true; while it's
+ * off, batches are ignored and notifications are delivered straight away.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -32,18 +65,101 @@ import org.springframework.roo.metadata.MetadataService;
 @Service
 public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegistry {
 
+  /**
+   * A notification deferred by a batch. Notifications of a downstream
+   * instance are keyed by that instance, as the instance is rebuilt the same
+   * way whichever upstream dependency changed; notifications of a downstream
+   * class are keyed by both ends, as the provider uses the upstream dependency
+   * to work out which instance to rebuild.
+   */
+  private static class DeferredNotification {
+
+    private final MetadataId downstream;
+    private final Object key;
+    private final MetadataId upstream;
+
+    DeferredNotification(final MetadataId upstream, final MetadataId downstream) {
+      this.upstream = upstream;
+      this.downstream = downstream;
+      key =
+          downstream.isIdentifyingInstance() ? downstream : upstream.getId() + " -> "
+              + downstream.getId();
+    }
+  }
+
+  /**
+   * The name of the property that turns notification batches on when set to
+   * true.
+   */
+  public static final String BATCH_PROPERTY = "roo.metadata.batch";
+
+  private static final Logger LOGGER = HandlerUtils
+      .getLogger(DefaultMetadataDependencyRegistry.class);
+
+  // Bounds the rounds of a batch dispatch, in case rebuilding metadata keeps
+  // notifying metadata that has already been rebuilt
+  private static final int MAX_BATCH_ROUNDS = 50;
+
   /** key: downstream dependency; value: list<upstream dependencies> */
-  private final Map<String, Set<String>> downstreamKeyed = new HashMap<String, Set<String>>();
+  private final ConcurrentMap<MetadataId, Set<MetadataId>> downstreamKeyed =
+      new ConcurrentHashMap<MetadataId, Set<MetadataId>>();
 
   /** key: upstream dependency; value: list<downstream dependencies> */
-  private final Map<String, Set<String>> upstreamKeyed = new HashMap<String, Set<String>>();
+  private final ConcurrentMap<MetadataId, Set<MetadataId>> upstreamKeyed =
+      new ConcurrentHashMap<MetadataId, Set<MetadataId>>();
 
   private final Set<MetadataNotificationListener> listeners =
-      new HashSet<MetadataNotificationListener>();
+      new CopyOnWriteArraySet<MetadataNotificationListener>();
+  private final Set<MetadataNotificationListener> preListeners =
+      new CopyOnWriteArraySet<MetadataNotificationListener>();
+
+  // Serializes validation and registration of dependencies, so concurrent
+  // registrations cannot introduce a cycle between them
+  private final Object registrationLock = new Object();
+
+  // Parallel mode only; marks the threads dispatching a parallel notification
+  private ExecutorService dispatcher;
+  private final ThreadLocal<Boolean> dispatching = new ThreadLocal<Boolean>();
+
+  // Notification batches; all but the counters guarded by batchLock
+  private final Object batchLock = new Object();
+  private boolean batchEnabled;
+  private int batchDepth;
+  private boolean dispatchingBatch;
+  private final Map<Object, DeferredNotification> deferredNotifications =
+      new LinkedHashMap<Object, DeferredNotification>();
+  private final AtomicInteger batches = new AtomicInteger();
+  private final AtomicInteger batchedNotifications = new AtomicInteger();
+  private final AtomicInteger coalescedNotifications = new AtomicInteger();
 
   @Reference(policy = ReferencePolicy.DYNAMIC)
   protected volatile MetadataLogger metadataLogger;
-  protected MetadataService metadataService;
+  protected volatile MetadataService metadataService;
+
+  protected void activate(final ComponentContext context) {
+    batchEnabled =
+        "true".equalsIgnoreCase(context.getBundleContext().getProperty(BATCH_PROPERTY));
+    final int parallelism = ConcurrentMetadataRequests.getParallelism(context.getBundleContext());
+    if (parallelism > 1) {
+      dispatcher = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        public Thread newThread(final Runnable r) {
+          final Thread thread =
+              new Thread(r, "Metadata notification " + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  protected void deactivate(final ComponentContext context) {
+    if (dispatcher != null) {
+      dispatcher.shutdownNow();
+      dispatcher = null;
+    }
+  }
 
   public void addNotificationListener(final MetadataNotificationListener listener) {
     Validate.notNull(listener, "Metadata notification listener required");
@@ -57,114 +173,264 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
     listeners.add(listener);
   }
 
-  private void buildSetOfAllUpstreamDependencies(final Set<String> results,
-      final String downstreamDependency) {
-    final Set<String> upstreams = downstreamKeyed.get(downstreamDependency);
+  public void addPreNotificationListener(final MetadataNotificationListener listener) {
+    Validate.notNull(listener, "Metadata notification listener required");
+    Validate.isTrue(!(listener instanceof MetadataService),
+        "The MetadataService can't be notified first");
+    preListeners.add(listener);
+  }
+
+  public void beginNotificationBatch() {
+    synchronized (batchLock) {
+      if (batchEnabled) {
+        batchDepth++;
+      }
+    }
+  }
+
+  private void buildSetOfAllUpstreamDependencies(final Set<MetadataId> results,
+      final MetadataId downstreamDependency) {
+    final Set<MetadataId> upstreams = downstreamKeyed.get(downstreamDependency);
     if (upstreams == null) {
       return;
     }
 
-    for (final String upstream : upstreams) {
-      results.add(upstream);
-      buildSetOfAllUpstreamDependencies(results, upstream);
+    for (final MetadataId upstream : upstreams) {
+      // Each upstream only needs walking once
+      if (results.add(upstream)) {
+        buildSetOfAllUpstreamDependencies(results, upstream);
+      }
     }
   }
 
   public void deregisterDependencies(final String downstreamDependency) {
-    Validate.isTrue(MetadataIdentificationUtils.isValid(downstreamDependency),
-        "Downstream dependency is an invalid metadata identification string ('%s')",
-        downstreamDependency);
+    deregisterDependencies(MetadataId.valueOf(downstreamDependency));
+  }
+
+  public void deregisterDependencies(final MetadataId downstreamDependency) {
+    Validate.notNull(downstreamDependency, "Downstream dependency required");
 
     // Acquire the keys to delete
-    final Set<String> upstream = downstreamKeyed.get(downstreamDependency);
+    final Set<MetadataId> upstream = downstreamKeyed.get(downstreamDependency);
     if (upstream == null) {
       return;
     }
 
-    final Set<String> upstreamToDelete = new HashSet<String>(upstream);
+    final Set<MetadataId> upstreamToDelete = new HashSet<MetadataId>(upstream);
 
     // Delete them normally
-    for (final String deleteUpstream : upstreamToDelete) {
+    for (final MetadataId deleteUpstream : upstreamToDelete) {
       deregisterDependency(deleteUpstream, downstreamDependency);
     }
   }
 
   public void deregisterDependency(final String upstreamDependency,
       final String downstreamDependency) {
-    Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
-        "Upstream dependency is an invalid metadata identification string ('%s')",
-        upstreamDependency);
-    Validate.isTrue(MetadataIdentificationUtils.isValid(downstreamDependency),
-        "Downstream dependency is an invalid metadata identification string ('%s')",
-        downstreamDependency);
+    deregisterDependency(MetadataId.valueOf(upstreamDependency),
+        MetadataId.valueOf(downstreamDependency));
+  }
 
+  private void deregisterDependency(final MetadataId upstreamDependency,
+      final MetadataId downstreamDependency) {
     // Maintain the upstream-keyed map, if it even exists
-    final Set<String> downstream = upstreamKeyed.get(upstreamDependency);
+    final Set<MetadataId> downstream = upstreamKeyed.get(upstreamDependency);
     if (downstream != null) {
       downstream.remove(downstreamDependency);
     }
 
     // Maintain the downstream-keyed map, if it even exists
-    final Set<String> upstream = downstreamKeyed.get(downstreamDependency);
+    final Set<MetadataId> upstream = downstreamKeyed.get(downstreamDependency);
     if (upstream != null) {
       upstream.remove(upstreamDependency);
     }
   }
 
-  public Set<String> getDownstream(final String upstreamDependency) {
-    Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
-        "Upstream dependency is an invalid metadata identification string ('%s')",
-        upstreamDependency);
+  /**
+   * Notifies the metadata service of each deferred notification, in rounds:
+   * each round dispatches the notifications deferred so far in dependency
+   * order, while notifications raised by those rebuilds are coalesced with
+   * the ones still pending or deferred to the next round. If a notification
+   * fails, it and those not yet dispatched remain deferred, for the next
+   * batch to dispatch.
+   */
+  private void dispatchBatch() {
+    for (int round = 1;; round++) {
+      final List<DeferredNotification> pending;
+      synchronized (batchLock) {
+        if (deferredNotifications.isEmpty()) {
+          return;
+        }
+        if (round > MAX_BATCH_ROUNDS) {
+          LOGGER.warning("Abandoning " + deferredNotifications.size()
+              + " metadata notifications after " + MAX_BATCH_ROUNDS + " rounds");
+          deferredNotifications.clear();
+          return;
+        }
+        pending = new ArrayList<DeferredNotification>(deferredNotifications.values());
+      }
+
+      // The graph changes as metadata is rebuilt, so re-rank every round
+      final Map<MetadataId, Integer> depths = new HashMap<MetadataId, Integer>();
+      for (final DeferredNotification notification : pending) {
+        getDepth(notification.downstream, depths);
+      }
+      Collections.sort(pending, new Comparator<DeferredNotification>() {
+        public int compare(final DeferredNotification o1, final DeferredNotification o2) {
+          return depths.get(o1.downstream).compareTo(depths.get(o2.downstream));
+        }
+      });
+
+      for (final DeferredNotification notification : pending) {
+        synchronized (batchLock) {
+          if (deferredNotifications.remove(notification.key) == null) {
+            continue;
+          }
+        }
+        if (metadataLogger.getTraceLevel() > 0) {
+          metadataLogger.log(notification.upstream + " -> " + notification.downstream
+              + " [batched]");
+        }
+        boolean notified = false;
+        try {
+          metadataLogger.startEvent();
+          metadataLogger.startTimer(notification.downstream.getMetadataClass());
+          metadataService.notify(notification.upstream.getId(), notification.downstream.getId());
+          notified = true;
+        } finally {
+          metadataLogger.stopTimer();
+          metadataLogger.stopEvent();
+          if (!notified) {
+            synchronized (batchLock) {
+              if (!deferredNotifications.containsKey(notification.key)) {
+                deferredNotifications.put(notification.key, notification);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
 
-    final Set<String> downstream = upstreamKeyed.get(upstreamDependency);
+  public void endNotificationBatch(final boolean dispatch) {
+    synchronized (batchLock) {
+      if (!batchEnabled) {
+        return;
+      }
+      Validate.validState(batchDepth > 0, "No notification batch in progress");
+      if (--batchDepth > 0 || dispatchingBatch) {
+        return;
+      }
+      if (!dispatch || metadataService == null) {
+        deferredNotifications.clear();
+        return;
+      }
+      batches.incrementAndGet();
+      // Notifications raised by the rebuilds below are deferred too
+      dispatchingBatch = true;
+    }
+    try {
+      dispatchBatch();
+    } finally {
+      // Any notifications left after a failure are kept for the next batch
+      synchronized (batchLock) {
+        dispatchingBatch = false;
+      }
+    }
+  }
+
+  public Map<String, Set<String>> getDependencies() {
+    final Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+    for (final Entry<MetadataId, Set<MetadataId>> entry : upstreamKeyed.entrySet()) {
+      if (!entry.getValue().isEmpty()) {
+        dependencies.put(entry.getKey().getId(),
+            Collections.unmodifiableSet(toStrings(entry.getValue())));
+      }
+    }
+    return Collections.unmodifiableMap(dependencies);
+  }
+
+  /**
+   * Returns the length of the longest chain of upstream dependencies of the
+   * given metadata, ie its rank in a topological sort of the graph.
+   */
+  private int getDepth(final MetadataId metadataId, final Map<MetadataId, Integer> depths) {
+    final Integer known = depths.get(metadataId);
+    if (known != null) {
+      return known;
+    }
+    // Provisional value, in case a concurrent registration closes a cycle
+    depths.put(metadataId, 0);
+    int depth = 0;
+    for (final MetadataId upstream : getUpstream(metadataId)) {
+      depth = Math.max(depth, getDepth(upstream, depths) + 1);
+    }
+    depths.put(metadataId, depth);
+    return depth;
+  }
+
+  public Set<String> getDownstream(final String upstreamDependency) {
+    final Set<MetadataId> downstream = upstreamKeyed.get(MetadataId.valueOf(upstreamDependency));
     if (downstream == null) {
       return new HashSet<String>();
     }
 
-    return Collections.unmodifiableSet(new CopyOnWriteArraySet<String>(downstream));
+    return Collections.unmodifiableSet(toStrings(downstream));
   }
 
-  public Set<String> getUpstream(final String downstreamDependency) {
-    Validate.isTrue(MetadataIdentificationUtils.isValid(downstreamDependency),
-        "Downstream dependency is an invalid metadata identification string ('%s')",
-        downstreamDependency);
+  public Set<MetadataId> getDownstream(final MetadataId upstreamDependency) {
+    Validate.notNull(upstreamDependency, "Upstream dependency required");
+    final Set<MetadataId> downstream = upstreamKeyed.get(upstreamDependency);
+    if (downstream == null) {
+      return Collections.emptySet();
+    }
+
+    return Collections.unmodifiableSet(new LinkedHashSet<MetadataId>(downstream));
+  }
 
-    final Set<String> upstream = downstreamKeyed.get(downstreamDependency);
+  public Set<String> getUpstream(final String downstreamDependency) {
+    final Set<MetadataId> upstream = downstreamKeyed.get(MetadataId.valueOf(downstreamDependency));
     if (upstream == null) {
       return new HashSet<String>();
     }
 
-    return Collections.unmodifiableSet(upstream);
+    return Collections.unmodifiableSet(toStrings(upstream));
+  }
+
+  public Set<MetadataId> getUpstream(final MetadataId downstreamDependency) {
+    Validate.notNull(downstreamDependency, "Downstream dependency required");
+    final Set<MetadataId> upstream = downstreamKeyed.get(downstreamDependency);
+    if (upstream == null) {
+      return Collections.emptySet();
+    }
+
+    return Collections.unmodifiableSet(new LinkedHashSet<MetadataId>(upstream));
   }
 
   public boolean isValidDependency(final String upstreamDependency,
       final String downstreamDependency) {
-    Validate.isTrue(MetadataIdentificationUtils.isValid(upstreamDependency),
-        "Upstream dependency is an invalid metadata identification string ('%s')",
-        upstreamDependency);
-    Validate.isTrue(MetadataIdentificationUtils.isValid(downstreamDependency),
-        "Downstream dependency is an invalid metadata identification string ('%s')",
-        downstreamDependency);
-    Validate.isTrue(!upstreamDependency.equals(downstreamDependency),
+    return isValidDependency(MetadataId.valueOf(upstreamDependency),
+        MetadataId.valueOf(downstreamDependency));
+  }
+
+  private boolean isValidDependency(final MetadataId upstreamDependency,
+      final MetadataId downstreamDependency) {
+    Validate.isTrue(upstreamDependency != downstreamDependency,
         "Upstream dependency cannot be the same as the downstream dependency ('%s')",
         downstreamDependency);
 
     // The simplest possible outcome is the relationship already exists, so
     // quickly return in that case
-    Set<String> downstream = upstreamKeyed.get(upstreamDependency);
+    final Set<MetadataId> downstream = upstreamKeyed.get(upstreamDependency);
     if (downstream != null && downstream.contains(downstreamDependency)) {
       return true;
     }
-    // Don't need the variable anymore, as we don't care about the other
-    // downstream dependencies
-    downstream = null;
 
     // Need to walk the upstream dependency's parent dependency graph,
     // verifying no presence of the proposed downstream dependency
 
     // Need to build a set representing every eventual upstream dependency
     // of the indicated upstream dependency
-    final Set<String> allUpstreams = new HashSet<String>();
+    final Set<MetadataId> allUpstreams = new HashSet<MetadataId>();
     buildSetOfAllUpstreamDependencies(allUpstreams, upstreamDependency);
 
     // The dependency is valid if none of the upstreams depend on the
@@ -173,26 +439,38 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
   }
 
   public void notifyDownstream(final String upstreamDependency) {
+    notifyDownstream(MetadataId.valueOf(upstreamDependency));
+  }
+
+  public void notifyDownstream(final MetadataId upstreamDependency) {
+    Validate.notNull(upstreamDependency, "Upstream dependency required");
+    final String upstreamId = upstreamDependency.getId();
     try {
       metadataLogger.startEvent();
 
-      if (metadataService != null) {
+      // Let the pre-notification listeners forget the upstream dependency
+      // before anything downstream is rebuilt from it
+      notifyListeners(preListeners, upstreamId);
+
+      if (metadataService != null && isBatching()) {
+        deferDownstream(upstreamDependency);
+      } else if (metadataService != null && isParallelDispatchAllowed()) {
+        notifyInParallel(upstreamDependency);
+      } else if (metadataService != null) {
         // First dispatch the fine-grained, instance-specific
         // dependencies.
-        Set<String> notifiedDownstreams = new HashSet<String>();
-        Set<String> downstreams = getDownstream(upstreamDependency);
-        for (final String downstream : downstreams) {
+        Set<MetadataId> notifiedDownstreams = new HashSet<MetadataId>();
+        Set<MetadataId> downstreams = getDownstream(upstreamDependency);
+        for (final MetadataId downstream : downstreams) {
           if (metadataLogger.getTraceLevel() > 0) {
-            metadataLogger.log(upstreamDependency + " -> " + downstream);
+            metadataLogger.log(upstreamId + " -> " + downstream);
           }
           // No need to ensure upstreamDependency is different from
           // downstream, as that's taken care of in the
           // isValidDependency() method
           try {
-            final String responsibleClass =
-                MetadataIdentificationUtils.getMetadataClass(downstream);
-            metadataLogger.startTimer(responsibleClass);
-            metadataService.notify(upstreamDependency, downstream);
+            metadataLogger.startTimer(downstream.getMetadataClass());
+            metadataService.notify(upstreamId, downstream.getId());
           } finally {
             metadataLogger.stopTimer();
           }
@@ -204,10 +482,10 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
         // We only do it if the upstream is not class specific, as
         // otherwise we'd have handled class-specific dispatch in
         // previous loop
-        if (!MetadataIdentificationUtils.isIdentifyingClass(upstreamDependency)) {
-          final String asClass = MetadataIdentificationUtils.getMetadataClassId(upstreamDependency);
+        if (!upstreamDependency.isIdentifyingClass()) {
+          final MetadataId asClass = upstreamDependency.getMetadataClassId();
           downstreams = getDownstream(asClass);
-          for (final String downstream : downstreams) {
+          for (final MetadataId downstream : downstreams) {
             // We don't notify a downstream if it had a direct
             // instance-specific dependency and was already notified
             // in previous loop
@@ -218,15 +496,13 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
             // registered to receive class-specific notifications
             // and that instance
             // caused an event to fire)
-            if (!notifiedDownstreams.contains(downstream) && !upstreamDependency.equals(downstream)) {
+            if (!notifiedDownstreams.contains(downstream) && upstreamDependency != downstream) {
               if (metadataLogger.getTraceLevel() > 0) {
-                metadataLogger.log(upstreamDependency + " -> " + downstream + " [via class]");
+                metadataLogger.log(upstreamId + " -> " + downstream + " [via class]");
               }
               try {
-                final String responsibleClass =
-                    MetadataIdentificationUtils.getMetadataClass(downstream);
-                metadataLogger.startTimer(responsibleClass);
-                metadataService.notify(upstreamDependency, downstream);
+                metadataLogger.startTimer(downstream.getMetadataClass());
+                metadataService.notify(upstreamId, downstream.getId());
               } finally {
                 metadataLogger.stopTimer();
               }
@@ -238,44 +514,182 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
       }
 
       // Finally dispatch the general-purpose additional listeners
-      for (final MetadataNotificationListener listener : listeners) {
-        if (metadataLogger.getTraceLevel() > 1) {
-          metadataLogger.log(upstreamDependency + " -> " + upstreamDependency + " ["
-              + listener.getClass().getSimpleName() + "]");
+      notifyListeners(listeners, upstreamId);
+    } finally {
+      metadataLogger.stopEvent();
+    }
+  }
+
+  private void notifyListeners(final Set<MetadataNotificationListener> listeners,
+      final String upstreamId) {
+    for (final MetadataNotificationListener listener : listeners) {
+      if (metadataLogger.getTraceLevel() > 1) {
+        metadataLogger.log(upstreamId + " -> " + upstreamId + " ["
+            + listener.getClass().getSimpleName() + "]");
+      }
+      try {
+        final String responsibleClass = listener.getClass().getName();
+        metadataLogger.startTimer(responsibleClass);
+        listener.notify(upstreamId, null);
+      } finally {
+        metadataLogger.stopTimer();
+      }
+    }
+  }
+
+  /**
+   * Records the downstream dependencies of a notification raised during a
+   * batch, evicting the affected instances straight away so any request for
+   * them before the batch ends rebuilds them.
+   */
+  private void deferDownstream(final MetadataId upstreamDependency) {
+    final String upstreamId = upstreamDependency.getId();
+    final List<DeferredNotification> notifications = new ArrayList<DeferredNotification>();
+    final Set<MetadataId> downstreams = getDownstream(upstreamDependency);
+    for (final MetadataId downstream : downstreams) {
+      notifications.add(new DeferredNotification(upstreamDependency, downstream));
+    }
+    if (!upstreamDependency.isIdentifyingClass()) {
+      for (final MetadataId downstream : getDownstream(upstreamDependency.getMetadataClassId())) {
+        if (!downstreams.contains(downstream) && upstreamDependency != downstream) {
+          notifications.add(new DeferredNotification(upstreamDependency, downstream));
         }
-        try {
-          final String responsibleClass = listener.getClass().getName();
-          metadataLogger.startTimer(responsibleClass);
-          listener.notify(upstreamDependency, null);
-        } finally {
-          metadataLogger.stopTimer();
+      }
+    }
+
+    for (final DeferredNotification notification : notifications) {
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log(upstreamId + " -> " + notification.downstream + " [deferred]");
+      }
+      batchedNotifications.incrementAndGet();
+      synchronized (batchLock) {
+        if (deferredNotifications.containsKey(notification.key)) {
+          coalescedNotifications.incrementAndGet();
+        } else {
+          deferredNotifications.put(notification.key, notification);
+        }
+      }
+      // Evicted every time, as it may have been rebuilt since it was deferred
+      if (notification.downstream.isIdentifyingInstance()) {
+        metadataService.evict(notification.downstream.getId());
+      }
+    }
+  }
+
+  private boolean isBatching() {
+    synchronized (batchLock) {
+      return batchDepth > 0 || dispatchingBatch;
+    }
+  }
+
+  /**
+   * Indicates whether the current notification may be dispatched by the pool:
+   * nested notifications run on the calling thread, as the pool threads must
+   * never wait for each other or for a thread that owns a metadata request.
+   */
+  private boolean isParallelDispatchAllowed() {
+    return dispatcher != null && dispatching.get() == null
+        && !ConcurrentMetadataRequests.isResolving();
+  }
+
+  /**
+   * Dispatches a notification to the same downstream dependencies as the
+   * serial dispatch, but with each one notified by a pool thread. Returns
+   * once every downstream dependency has been notified.
+   */
+  private void notifyInParallel(final MetadataId upstreamDependency) {
+    final String upstreamId = upstreamDependency.getId();
+    final Set<MetadataId> downstreams = new LinkedHashSet<MetadataId>();
+    for (final MetadataId downstream : getDownstream(upstreamDependency)) {
+      if (metadataLogger.getTraceLevel() > 0) {
+        metadataLogger.log(upstreamId + " -> " + downstream);
+      }
+      downstreams.add(downstream);
+    }
+    if (!upstreamDependency.isIdentifyingClass()) {
+      for (final MetadataId downstream : getDownstream(upstreamDependency.getMetadataClassId())) {
+        if (!downstreams.contains(downstream) && upstreamDependency != downstream) {
+          if (metadataLogger.getTraceLevel() > 0) {
+            metadataLogger.log(upstreamId + " -> " + downstream + " [via class]");
+          }
+          downstreams.add(downstream);
         }
       }
-    } finally {
-      metadataLogger.stopEvent();
+    }
+
+    final List<Future<Void>> notifications = new ArrayList<Future<Void>>();
+    for (final MetadataId downstream : downstreams) {
+      notifications.add(dispatcher.submit(new Callable<Void>() {
+        public Void call() {
+          dispatching.set(Boolean.TRUE);
+          try {
+            metadataLogger.startEvent();
+            metadataLogger.startTimer(downstream.getMetadataClass());
+            metadataService.notify(upstreamId, downstream.getId());
+          } finally {
+            metadataLogger.stopTimer();
+            metadataLogger.stopEvent();
+            dispatching.remove();
+          }
+          return null;
+        }
+      }));
+    }
+
+    // Wait for all of them, reporting the first failure
+    RuntimeException failure = null;
+    for (final Future<Void> notification : notifications) {
+      try {
+        notification.get();
+      } catch (final ExecutionException e) {
+        if (failure == null) {
+          failure =
+              e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                  : new IllegalStateException(e.getCause());
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted notifying downstream of '" + upstreamId
+            + "'", e);
+      }
+    }
+    if (failure != null) {
+      throw failure;
     }
   }
 
   public void registerDependency(final String upstreamDependency, final String downstreamDependency) {
-    Validate.isTrue(isValidDependency(upstreamDependency, downstreamDependency),
-        "Invalid dependency between upstream '%s' and downstream '%s'", upstreamDependency,
-        downstreamDependency);
+    registerDependency(MetadataId.valueOf(upstreamDependency),
+        MetadataId.valueOf(downstreamDependency));
+  }
 
-    // Maintain the upstream-keyed map
-    Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-    if (downstream == null) {
-      downstream = new HashSet<String>();
-      upstreamKeyed.put(upstreamDependency, downstream);
+  public void registerDependency(final MetadataId upstreamDependency,
+      final MetadataId downstreamDependency) {
+    Validate.notNull(upstreamDependency, "Upstream dependency required");
+    Validate.notNull(downstreamDependency, "Downstream dependency required");
+    synchronized (registrationLock) {
+      Validate.isTrue(isValidDependency(upstreamDependency, downstreamDependency),
+          "Invalid dependency between upstream '%s' and downstream '%s'", upstreamDependency,
+          downstreamDependency);
+
+      // Maintain the upstream-keyed map
+      getOrCreate(upstreamKeyed, upstreamDependency).add(downstreamDependency);
+
+      // Maintain the downstream-keyed map
+      getOrCreate(downstreamKeyed, downstreamDependency).add(upstreamDependency);
     }
-    downstream.add(downstreamDependency);
+  }
 
-    // Maintain the downstream-keyed map
-    Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-    if (upstream == null) {
-      upstream = new HashSet<String>();
-      downstreamKeyed.put(downstreamDependency, upstream);
+  private Set<MetadataId> getOrCreate(final ConcurrentMap<MetadataId, Set<MetadataId>> map,
+      final MetadataId key) {
+    final Set<MetadataId> existing = map.get(key);
+    if (existing != null) {
+      return existing;
     }
-    upstream.add(upstreamDependency);
+    final Set<MetadataId> created =
+        Collections.newSetFromMap(new ConcurrentHashMap<MetadataId, Boolean>());
+    final Set<MetadataId> raced = map.putIfAbsent(key, created);
+    return raced == null ? created : raced;
   }
 
   public void removeNotificationListener(final MetadataNotificationListener listener) {
@@ -288,4 +702,26 @@ public class DefaultMetadataDependencyRegistry implements MetadataDependencyRegi
 
     listeners.remove(listener);
   }
+
+  public void removePreNotificationListener(final MetadataNotificationListener listener) {
+    Validate.notNull(listener, "Metadata notification listener required");
+    preListeners.remove(listener);
+  }
+
+  @Override
+  public final String toString() {
+    final ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("notificationBatches", batches);
+    builder.append("batchedNotifications", batchedNotifications);
+    builder.append("coalescedNotifications", coalescedNotifications);
+    return builder.toString().replaceFirst("@[0-9a-f]+", ":");
+  }
+
+  private Set<String> toStrings(final Set<MetadataId> metadataIds) {
+    final Set<String> result = new LinkedHashSet<String>();
+    for (final MetadataId metadataId : metadataIds) {
+      result.add(metadataId.getId());
+    }
+    return result;
+  }
 }
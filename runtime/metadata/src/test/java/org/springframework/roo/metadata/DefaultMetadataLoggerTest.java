@@ -0,0 +1,118 @@
+package org.springframework.roo.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link DefaultMetadataLogger}
+ */
+public class DefaultMetadataLoggerTest {
+
+  private static final String INNER_PROVIDER = "com.example.InnerProvider";
+  private static final String INNER_MID = "MID:com.example.Inner#com.example.Person";
+  private static final String OUTER_PROVIDER = "com.example.OuterProvider";
+  private static final String OUTER_MID = "MID:com.example.Outer#com.example.Person";
+
+  // Fixture
+  private DefaultMetadataLogger metadataLogger;
+
+  @Before
+  public void setUp() {
+    metadataLogger = new DefaultMetadataLogger();
+  }
+
+  private void sleep() throws InterruptedException {
+    Thread.sleep(2);
+  }
+
+  private void timeNestedRequests() throws InterruptedException {
+    metadataLogger.startTimer(OUTER_PROVIDER, OUTER_MID);
+    sleep();
+    metadataLogger.startTimer(INNER_PROVIDER, INNER_MID);
+    sleep();
+    metadataLogger.stopTimer();
+    metadataLogger.recordCacheLookup(true);
+    metadataLogger.stopTimer();
+    metadataLogger.recordCacheLookup(false);
+  }
+
+  @Test
+  public void testNothingIsProfiledByDefault() throws Exception {
+    timeNestedRequests();
+
+    assertFalse(metadataLogger.isProfiling());
+    assertNull(metadataLogger.getProfile());
+    assertEquals(2, metadataLogger.getTimings().size());
+  }
+
+  @Test
+  public void testProfileOfNestedRequests() throws Exception {
+    metadataLogger.setProfiling(true);
+    timeNestedRequests();
+    timeNestedRequests();
+    metadataLogger.setProfiling(false);
+
+    final MetadataProfile profile = metadataLogger.getProfile();
+    assertEquals(4, profile.getTimings());
+    assertEquals(0, profile.getDroppedTimings());
+    assertEquals(2, profile.getMaximumDepth());
+    assertEquals(1.5, profile.getMeanDepth(), 0);
+    assertEquals(0.5, profile.getCacheHitRatio(), 0);
+
+    final LatencyHistogram outer = profile.getResponsibleClassLatencies().get(OUTER_PROVIDER);
+    final LatencyHistogram inner = profile.getResponsibleClassLatencies().get(INNER_PROVIDER);
+    assertEquals(2, outer.getCount());
+    assertTrue(outer.getTotal() > inner.getTotal());
+    assertEquals(2, profile.getMetadataLatencies().get(INNER_MID).getCount());
+    assertEquals(OUTER_PROVIDER, profile.getResponsibleClassLatencies().keySet().iterator()
+        .next());
+
+    assertEquals(2, profile.getCollapsedStacks().size());
+    final long innerTime =
+        profile.getCollapsedStacks().get(OUTER_PROVIDER + ";" + INNER_PROVIDER);
+    assertEquals(inner.getTotal(), innerTime);
+    assertEquals(outer.getTotal(), innerTime + profile.getCollapsedStacks().get(OUTER_PROVIDER));
+  }
+
+  @Test
+  public void testRequestsAfterProfilingStopsAreNotProfiled() throws Exception {
+    metadataLogger.setProfiling(true);
+    timeNestedRequests();
+    metadataLogger.setProfiling(false);
+    timeNestedRequests();
+
+    assertEquals(2, metadataLogger.getProfile().getTimings());
+  }
+
+  @Test
+  public void testRestartingDiscardsPreviousProfile() throws Exception {
+    metadataLogger.setProfiling(true);
+    timeNestedRequests();
+    metadataLogger.setProfiling(false);
+    metadataLogger.setProfiling(true);
+
+    assertTrue(metadataLogger.isProfiling());
+    assertEquals(0, metadataLogger.getProfile().getTimings());
+  }
+
+  @Test
+  public void testWriteCollapsedStacks() throws Exception {
+    metadataLogger.setProfiling(true);
+    timeNestedRequests();
+    metadataLogger.setProfiling(false);
+    final StringWriter writer = new StringWriter();
+    metadataLogger.getProfile().writeCollapsedStacks(writer);
+
+    final String[] lines = writer.toString().split("\n");
+    assertEquals(2, lines.length);
+    assertTrue(lines[0], lines[0].matches(OUTER_PROVIDER + " \\d+"));
+    assertTrue(lines[1], lines[1].matches(OUTER_PROVIDER + ";" + INNER_PROVIDER + " \\d+"));
+  }
+}
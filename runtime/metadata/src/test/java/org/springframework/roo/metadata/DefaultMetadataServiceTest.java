@@ -8,7 +8,8 @@ public class DefaultMetadataServiceTest {
 
   private static final String TO_STRING_FOR_NEW_INSTANCE =
       "org.springframework.roo.metadata.DefaultMetadataService:" + "[validGets=0,"
-          + "recursiveGets=0," + "cachePuts=0," + "cacheHits=0," + "cacheMisses=0,"
+          + "recursiveGets=0," + "maxRequestDepth=0," + "retryGroups=0,"
+          + "largestRetryGroup=0," + "cachePuts=0," + "cacheHits=0," + "cacheMisses=0,"
           + "cacheEvictions=0," + "cacheCurrentSize=0," + "cacheMaximumSize=100000]";
 
   @Test
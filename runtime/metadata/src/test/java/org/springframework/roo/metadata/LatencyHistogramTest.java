@@ -0,0 +1,59 @@
+package org.springframework.roo.metadata;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link LatencyHistogram}
+ */
+public class LatencyHistogramTest {
+
+  private static final long MICROSECOND = 1000L;
+
+  @Test
+  public void testEmptyHistogram() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMean());
+    assertEquals(0, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void testPercentilesAreBucketUpperBounds() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 90; i++) {
+      histogram.record(3 * MICROSECOND);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(100 * MICROSECOND);
+    }
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(127 * MICROSECOND / 10, histogram.getMean());
+    assertEquals(4 * MICROSECOND, histogram.getPercentile(50));
+    assertEquals(4 * MICROSECOND, histogram.getPercentile(90));
+    assertEquals(100 * MICROSECOND, histogram.getPercentile(99));
+    assertEquals(100 * MICROSECOND, histogram.getMaximum());
+  }
+
+  @Test
+  public void testVeryLongLatenciesAreCountedInTheLastBucket() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE / 2);
+
+    assertEquals(Long.MAX_VALUE / 2, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void testCopyIsIndependent() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(MICROSECOND);
+    final LatencyHistogram copy = histogram.copy();
+    histogram.record(MICROSECOND);
+
+    assertEquals(1, copy.getCount());
+    assertEquals(MICROSECOND, copy.getTotal());
+  }
+}
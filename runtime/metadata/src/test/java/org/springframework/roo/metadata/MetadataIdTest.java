@@ -0,0 +1,70 @@
+package org.springframework.roo.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link MetadataId}
+ *
+ * @since 2.0
+ */
+public class MetadataIdTest {
+
+  private static final String METADATA_CLASS = "com.example.FooMetadata";
+  private static final String INSTANCE_KEY = "com.example.Foo";
+
+  @Test
+  public void testClassMid() {
+    final MetadataId classId =
+        MetadataId.valueOf(MetadataIdentificationUtils.create(METADATA_CLASS));
+    assertTrue(classId.isIdentifyingClass());
+    assertFalse(classId.isIdentifyingInstance());
+    assertEquals(METADATA_CLASS, classId.getMetadataClass());
+    assertNull(classId.getMetadataInstance());
+    assertSame(classId, classId.getMetadataClassId());
+  }
+
+  @Test
+  public void testInstanceMid() {
+    final String mid = MetadataIdentificationUtils.create(METADATA_CLASS, INSTANCE_KEY);
+    final MetadataId instanceId = MetadataId.valueOf(mid);
+    assertFalse(instanceId.isIdentifyingClass());
+    assertTrue(instanceId.isIdentifyingInstance());
+    assertEquals(mid, instanceId.getId());
+    assertEquals(METADATA_CLASS, instanceId.getMetadataClass());
+    assertEquals(INSTANCE_KEY, instanceId.getMetadataInstance());
+    assertSame(MetadataId.valueOf(MetadataIdentificationUtils.create(METADATA_CLASS)),
+        instanceId.getMetadataClassId());
+  }
+
+  @Test
+  public void testEqualMidsAreInterned() {
+    final String mid = MetadataIdentificationUtils.create(METADATA_CLASS, INSTANCE_KEY);
+    assertSame(MetadataId.valueOf(mid), MetadataId.valueOf(new String(mid)));
+  }
+
+  @Test
+  public void testUnreferencedMidsAreNotRetained() {
+    final String mid = MetadataIdentificationUtils.create(METADATA_CLASS, "com.example.Unused");
+    final WeakReference<MetadataId> reference =
+        new WeakReference<MetadataId>(MetadataId.valueOf(mid));
+    for (int i = 0; i < 100 && reference.get() != null; i++) {
+      System.gc();
+    }
+    assertNull(reference.get());
+    // Interning it again yields a new, equally usable instance
+    assertEquals(mid, MetadataId.valueOf(mid).getId());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMid() {
+    MetadataId.valueOf("foo");
+  }
+}
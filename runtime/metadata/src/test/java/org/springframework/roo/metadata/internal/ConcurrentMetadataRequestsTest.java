@@ -0,0 +1,74 @@
+package org.springframework.roo.metadata.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+
+public class ConcurrentMetadataRequestsTest {
+
+  private static final String JAVA_TYPE_OBJECT = MetadataIdentificationUtils.create("com.Test",
+      "object");
+  private static final String JAVA_TYPE_PERSON = MetadataIdentificationUtils.create("com.Test",
+      "person");
+
+  @Test
+  public void testRecursiveRequestOnSameThread() {
+    final ConcurrentMetadataRequests requests = new ConcurrentMetadataRequests();
+
+    Assert.assertNull(requests.claim(JAVA_TYPE_OBJECT));
+    Assert.assertTrue(requests.isActive(JAVA_TYPE_OBJECT));
+    Assert.assertTrue(ConcurrentMetadataRequests.isResolving());
+
+    // Recursive requests are retried once, in the order recorded
+    Assert.assertTrue(requests.retryLater(JAVA_TYPE_PERSON));
+    Assert.assertFalse(requests.retryLater(JAVA_TYPE_PERSON));
+
+    requests.complete(JAVA_TYPE_OBJECT, null);
+    Assert.assertFalse(requests.isActive(JAVA_TYPE_OBJECT));
+    Assert.assertFalse(ConcurrentMetadataRequests.isResolving());
+    Assert.assertEquals(1, requests.drainRetries().size());
+    Assert.assertTrue(requests.drainRetries().isEmpty());
+  }
+
+  @Test
+  public void testCycleAcrossThreads() throws Exception {
+    final ConcurrentMetadataRequests requests = new ConcurrentMetadataRequests();
+    final CountDownLatch objectClaimed = new CountDownLatch(1);
+    final CountDownLatch personClaimed = new CountDownLatch(1);
+    final AtomicBoolean otherThreadWaited = new AtomicBoolean();
+
+    // The other thread resolves the object, which needs the person
+    final Thread other = new Thread() {
+      @Override
+      public void run() {
+        requests.claim(JAVA_TYPE_OBJECT);
+        objectClaimed.countDown();
+        try {
+          personClaimed.await();
+        } catch (final InterruptedException e) {
+          return;
+        }
+        otherThreadWaited.set(requests.await(requests.claim(JAVA_TYPE_PERSON)));
+        requests.complete(JAVA_TYPE_OBJECT, null);
+      }
+    };
+    other.start();
+
+    // This thread resolves the person, which needs the object
+    objectClaimed.await();
+    Assert.assertNull(requests.claim(JAVA_TYPE_PERSON));
+    personClaimed.countDown();
+    final ConcurrentMetadataRequests.Request object = requests.claim(JAVA_TYPE_OBJECT);
+    Assert.assertNotNull(object);
+
+    // Whichever thread closes the cycle must not block
+    final boolean waited = requests.await(object);
+    requests.complete(JAVA_TYPE_PERSON, null);
+    other.join();
+    Assert.assertTrue(waited ^ otherThreadWaited.get());
+  }
+}
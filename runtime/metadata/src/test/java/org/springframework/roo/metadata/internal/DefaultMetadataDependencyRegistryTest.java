@@ -1,9 +1,27 @@
 package org.springframework.roo.metadata.internal;
 
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Set;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
+import org.mockito.InOrder;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataLogger;
+import org.springframework.roo.metadata.MetadataNotificationListener;
+import org.springframework.roo.metadata.MetadataService;
 
 public class DefaultMetadataDependencyRegistryTest {
 
@@ -18,6 +36,18 @@ public class DefaultMetadataDependencyRegistryTest {
   private static final String MVC_CONTROLLER = MetadataIdentificationUtils.create("com.Test",
       "mvc ctrl");
 
+  private DefaultMetadataDependencyRegistry newBatchingRegistry() {
+    final BundleContext bundleContext = mock(BundleContext.class);
+    when(bundleContext.getProperty(DefaultMetadataDependencyRegistry.BATCH_PROPERTY)).thenReturn(
+        "true");
+    final ComponentContext componentContext = mock(ComponentContext.class);
+    when(componentContext.getBundleContext()).thenReturn(bundleContext);
+    final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+    reg.activate(componentContext);
+    reg.metadataLogger = mock(MetadataLogger.class);
+    return reg;
+  }
+
   @Test
   public void testRegistration() {
     final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
@@ -53,4 +83,136 @@ public class DefaultMetadataDependencyRegistryTest {
     Assert.assertEquals(0, reg.getDownstream(JAVA_TYPE_PERSON).size());
     Assert.assertEquals(2, reg.getDownstream(MVC_CONTROLLER).size());
   }
+
+  @Test
+  public void testGetDependencies() {
+    final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+    reg.registerDependency(MVC_CONTROLLER, JSP_PAGE_1);
+    reg.registerDependency(MVC_CONTROLLER, JSP_PAGE_2);
+    reg.deregisterDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+
+    final Map<String, Set<String>> dependencies = reg.getDependencies();
+
+    // Upstreams left without any downstream are not reported
+    Assert.assertEquals(1, dependencies.size());
+    Assert.assertEquals(2, dependencies.get(MVC_CONTROLLER).size());
+    Assert.assertTrue(dependencies.get(MVC_CONTROLLER).contains(JSP_PAGE_1));
+  }
+
+  @Test
+  public void testBatchCoalescesNotifications() {
+    final DefaultMetadataDependencyRegistry reg = newBatchingRegistry();
+    final MetadataService metadataService = mock(MetadataService.class);
+    reg.addNotificationListener(metadataService);
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+    reg.registerDependency(JAVA_TYPE_PERSON, JAVA_TYPE_OBJECT);
+    reg.registerDependency(JAVA_TYPE_OBJECT, MVC_CONTROLLER);
+
+    reg.beginNotificationBatch();
+    reg.notifyDownstream(JAVA_TYPE_OBJECT);
+    reg.notifyDownstream(DISK_FILE);
+    reg.notifyDownstream(JAVA_TYPE_PERSON);
+
+    // Affected instances are evicted straight away, but only rebuilt later
+    verify(metadataService, never()).notify(anyString(), anyString());
+    verify(metadataService, times(2)).evict(JAVA_TYPE_OBJECT);
+    reg.endNotificationBatch(true);
+
+    // Each downstream is notified once, upstream dependencies first
+    final InOrder inOrder = inOrder(metadataService);
+    inOrder.verify(metadataService).notify(DISK_FILE, JAVA_TYPE_OBJECT);
+    inOrder.verify(metadataService).notify(JAVA_TYPE_OBJECT, MVC_CONTROLLER);
+    verify(metadataService, times(2)).notify(anyString(), anyString());
+    Assert.assertTrue(reg.toString().contains("coalescedNotifications=1"));
+  }
+
+  @Test
+  public void testDiscardedBatch() {
+    final DefaultMetadataDependencyRegistry reg = newBatchingRegistry();
+    final MetadataService metadataService = mock(MetadataService.class);
+    reg.addNotificationListener(metadataService);
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+
+    reg.beginNotificationBatch();
+    reg.beginNotificationBatch();
+    reg.notifyDownstream(DISK_FILE);
+    reg.endNotificationBatch(true);
+    reg.endNotificationBatch(false);
+    reg.notifyDownstream(DISK_FILE);
+
+    // Only the notification after the batch is delivered
+    verify(metadataService, times(1)).notify(DISK_FILE, JAVA_TYPE_OBJECT);
+  }
+
+  @Test
+  public void testBatchingIsOffByDefault() {
+    final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+    reg.metadataLogger = mock(MetadataLogger.class);
+    final MetadataService metadataService = mock(MetadataService.class);
+    reg.addNotificationListener(metadataService);
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+
+    reg.beginNotificationBatch();
+    reg.notifyDownstream(DISK_FILE);
+
+    // Delivered straight away
+    verify(metadataService).notify(DISK_FILE, JAVA_TYPE_OBJECT);
+    reg.endNotificationBatch(true);
+    verify(metadataService, times(1)).notify(DISK_FILE, JAVA_TYPE_OBJECT);
+  }
+
+  @Test
+  public void testFailedDispatchKeepsNotifications() {
+    final DefaultMetadataDependencyRegistry reg = newBatchingRegistry();
+    final MetadataService metadataService = mock(MetadataService.class);
+    reg.addNotificationListener(metadataService);
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+    doThrow(new IllegalStateException("Rebuild failed")).when(metadataService).notify(DISK_FILE,
+        JAVA_TYPE_OBJECT);
+
+    reg.beginNotificationBatch();
+    reg.notifyDownstream(DISK_FILE);
+    try {
+      reg.endNotificationBatch(true);
+      Assert.fail("Expected the failure to be thrown");
+    } catch (final IllegalStateException expected) {
+    }
+
+    // The next batch delivers the notification that failed
+    final MetadataService retryingService = mock(MetadataService.class);
+    reg.metadataService = retryingService;
+    reg.beginNotificationBatch();
+    reg.endNotificationBatch(true);
+    verify(retryingService).notify(DISK_FILE, JAVA_TYPE_OBJECT);
+  }
+
+  @Test
+  public void testPreNotificationListenersAreNotifiedFirst() {
+    final DefaultMetadataDependencyRegistry reg = newBatchingRegistry();
+    final MetadataService metadataService = mock(MetadataService.class);
+    final MetadataNotificationListener preListener = mock(MetadataNotificationListener.class);
+    final MetadataNotificationListener listener = mock(MetadataNotificationListener.class);
+    reg.addNotificationListener(metadataService);
+    reg.addNotificationListener(listener);
+    reg.addPreNotificationListener(preListener);
+    reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+
+    reg.notifyDownstream(DISK_FILE);
+
+    final InOrder inOrder = inOrder(preListener, metadataService, listener);
+    inOrder.verify(preListener).notify(DISK_FILE, null);
+    inOrder.verify(metadataService).notify(DISK_FILE, JAVA_TYPE_OBJECT);
+    inOrder.verify(listener).notify(DISK_FILE, null);
+
+    // Not deferred by a batch
+    reg.beginNotificationBatch();
+    reg.notifyDownstream(DISK_FILE);
+    verify(preListener, times(2)).notify(DISK_FILE, null);
+    reg.endNotificationBatch(false);
+
+    reg.removePreNotificationListener(preListener);
+    reg.notifyDownstream(DISK_FILE);
+    verify(preListener, times(2)).notify(DISK_FILE, null);
+  }
 }
@@ -0,0 +1,22 @@
+package org.springframework.roo.process.manager;
+
+/**
+ * The contents of a text file whose deferred write is only rendered when it is
+ * committed, or when the file is read through the {@link FileManager} in the
+ * meantime. This allows a caller to change some in-memory model of a file any
+ * number of times before it is written once.
+ *
+ * @since 2.0
+ * @see FileManager#createOrUpdateTextFileIfRequired(String, DeferredTextFile,
+ *      String)
+ */
+public interface DeferredTextFile {
+
+  /**
+   * Renders the current contents of this file. Called on the thread that
+   * reads or commits the file.
+   *
+   * @return the contents (can be zero bytes if the file should be deleted)
+   */
+  String getContents();
+}
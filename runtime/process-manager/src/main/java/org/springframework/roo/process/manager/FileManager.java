@@ -129,6 +129,25 @@ public interface FileManager {
   void createOrUpdateTextFileIfRequired(String fileIdentifier, String newContents,
       String descriptionOfChange, boolean writeImmediately);
 
+  /**
+   * Defers a write of the given text file until {@link #commit()}, replacing
+   * any write already deferred for it. The contents are not rendered until
+   * they are committed or read via {@link #getInputStream(String)}, so the
+   * caller can keep changing whatever they are rendered from in the meantime.
+   * Otherwise behaves like
+   * {@link #createOrUpdateTextFileIfRequired(String, String, String, boolean)}
+   * .
+   * 
+   * @param fileIdentifier the file to create or update as appropriate
+   *            (required)
+   * @param newContents the replacement contents (required)
+   * @param descriptionOfChange the additional information about a change (can
+   *            be null)
+   * @since 2.0
+   */
+  void createOrUpdateTextFileIfRequired(String fileIdentifier, DeferredTextFile newContents,
+      String descriptionOfChange);
+
   /**
    * Attempts to delete a file or directory on the disk. The path should be in
    * canonical file name format.
@@ -185,6 +204,18 @@ public interface FileManager {
    */
   SortedSet<FileDetails> findMatchingAntPath(String antPath);
 
+  /**
+   * Returns the deferred text file most recently passed to
+   * {@link #createOrUpdateTextFileIfRequired(String, DeferredTextFile, String)}
+   * for the given file, provided it has been neither committed nor cleared,
+   * nor superseded by another deferred write of that file.
+   * 
+   * @param fileIdentifier the file to look up (required)
+   * @return <code>null</code> if there is no such deferred text file
+   * @since 2.0
+   */
+  DeferredTextFile getDeferredTextFile(String fileIdentifier);
+
   /**
    * Obtains an input stream for the indicated file identifier, which must be
    * a file (not a directory) and must exist at the time the method is called.
@@ -74,7 +74,22 @@ public interface ProcessManager extends ProcessManagerStatusProvider {
    */
   <T> T execute(CommandCallback<T> callback);
 
-  long getLastScanDuration();
+  /**
+   * Executes the given callback as a single "transaction" in which the
+   * commands it executes via {@link #execute(CommandCallback)} are run
+   * directly, instead of each in a transaction of its own. Their file
+   * changes are committed, and the resulting metadata notifications
+   * delivered in a single batch, once the callback has returned; if it
+   * throws an exception, the changes made by all of them are undone. This
+   * method blocks until {@link ProcessManagerStatus#AVAILABLE}.
+   * 
+   * @param <T> the class of the object that
+   *            {@link CommandCallback#callback()} will return (required)
+   * @param callback the callback that executes the commands (required)
+   * @return the result of executing the callback
+   * @since 2.0
+   */
+  <T> T executeBatch(CommandCallback<T> callback);
 
   long getMinimumDelayBetweenScan();
 
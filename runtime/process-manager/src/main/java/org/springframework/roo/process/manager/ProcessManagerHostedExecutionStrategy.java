@@ -1,5 +1,7 @@
 package org.springframework.roo.process.manager;
 
+import java.util.concurrent.Callable;
+
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -55,6 +57,25 @@ public class ProcessManagerHostedExecutionStrategy implements ExecutionStrategy
     }
   }
 
+  public <T> T executeBatch(final Callable<T> task) throws RuntimeException {
+    Validate.notNull(task, "Task required");
+    synchronized (mutex) {
+      Validate.isTrue(isReadyForCommands(),
+          "ProcessManagerHostedExecutionStrategy not yet ready for commands");
+      return processManager.executeBatch(new CommandCallback<T>() {
+        public T callback() {
+          try {
+            return task.call();
+          } catch (RuntimeException e) {
+            throw e;
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      });
+    }
+  }
+
   public boolean isReadyForCommands() {
     synchronized (mutex) {
       if (processManager != null) {
@@ -30,6 +30,12 @@ public interface ProcessManagerStatusProvider {
    */
   void addProcessManagerStatusListener(ProcessManagerStatusListener processManagerStatusListener);
 
+  /**
+   * @return how many milliseconds the last scan execution took to complete (0
+   *         = never ran; >0 = last execution time)
+   */
+  long getLastScanDuration();
+
   /**
    * Returns the current {@link ProcessManager}.
    * 
@@ -37,6 +43,26 @@ public interface ProcessManagerStatusProvider {
    */
   ProcessManagerStatus getProcessManagerStatus();
 
+  /**
+   * Returns how long the background scanning currently waits after one scan
+   * before starting the next, unless woken earlier by a change. This grows
+   * while the project is idle and is never less than the scanning budget
+   * allows.
+   * 
+   * @return the interval in milliseconds (0 = manual scanning only)
+   * @since 2.0
+   */
+  long getScanInterval();
+
+  /**
+   * Returns the percentage of wall-clock time spent scanning since the
+   * process manager started.
+   * 
+   * @return a percentage between 0 and 100
+   * @since 2.0
+   */
+  double getScanPercentage();
+
   /**
    * Removes an existing status listener.
    * <p>
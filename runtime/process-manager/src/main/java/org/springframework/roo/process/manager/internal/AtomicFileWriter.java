@@ -0,0 +1,66 @@
+package org.springframework.roo.process.manager.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Writes files by way of a temporary file in the same directory that is then
+ * renamed over the target, so that a crash part way through a write leaves
+ * either the old or the new contents, never a mixture.
+ *
+ * @since 2.0
+ */
+final class AtomicFileWriter {
+
+  /**
+   * Writes the given bytes to the given file, replacing any existing
+   * contents. The temporary file is hidden, so it is never reported by the
+   * file monitor.
+   *
+   * @param file the file to write (required; its directory must exist)
+   * @param bytes the new contents (required)
+   * @throws IOException if the file could not be written
+   */
+  static void write(final File file, final byte[] bytes) throws IOException {
+    Validate.notNull(file, "File required");
+    Validate.notNull(bytes, "Bytes required");
+    final Path target = file.toPath();
+    final Path temp =
+        Files.createTempFile(target.toAbsolutePath().getParent(), "." + file.getName(), ".tmp");
+    try {
+      Files.write(temp, bytes);
+      copyPermissions(target, temp);
+      try {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (final AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Gives the new file the permissions of the one it replaces (e.g. so an
+   * executable script stays executable), where the file system has them.
+   */
+  private static void copyPermissions(final Path from, final Path to) throws IOException {
+    if (Files.exists(from)
+        && Files.getFileAttributeView(from, PosixFileAttributeView.class) != null) {
+      Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+    }
+  }
+
+  /**
+   * Constructor is private to prevent instantiation
+   */
+  private AtomicFileWriter() {}
+}
@@ -7,16 +7,25 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.framework.BundleContext;
@@ -31,9 +40,11 @@ import org.springframework.roo.file.undo.DeleteDirectory;
 import org.springframework.roo.file.undo.DeleteFile;
 import org.springframework.roo.file.undo.FilenameResolver;
 import org.springframework.roo.file.undo.UndoEvent;
+import org.springframework.roo.file.undo.UndoJournal;
 import org.springframework.roo.file.undo.UndoListener;
 import org.springframework.roo.file.undo.UndoManager;
 import org.springframework.roo.file.undo.UpdateFile;
+import org.springframework.roo.process.manager.DeferredTextFile;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.process.manager.MutableFile;
 import org.springframework.roo.process.manager.ProcessManager;
@@ -41,6 +52,12 @@ import org.springframework.roo.support.logging.HandlerUtils;
 
 /**
  * Default implementation of {@link FileManager}.
+ * <p>
+ * Deferred writes are committed in stages: the files are compared with their
+ * new contents, backed up and written on a bounded pool of threads (see
+ * {@link #PARALLELISM_PROPERTY}), each write replacing its file atomically.
+ * New files and directories are created, and changes reported, in the order
+ * the writes were requested.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -49,24 +66,83 @@ import org.springframework.roo.support.logging.HandlerUtils;
 @Service
 public class DefaultFileManager implements FileManager, UndoListener {
 
+  /**
+   * A deferred write being committed.
+   */
+  private static class PendingWrite {
+
+    private UndoJournal.Entry backup;
+    private String canonicalPath;
+    private boolean changed;
+    private boolean create;
+    private final String descriptionOfChange;
+    private final File file;
+    private String hashCode;
+    private final String newContents;
+    private volatile boolean written;
+
+    PendingWrite(final String fileIdentifier, final String newContents,
+        final String descriptionOfChange) {
+      file = new File(fileIdentifier);
+      this.newContents = newContents;
+      this.descriptionOfChange = descriptionOfChange;
+    }
+  }
+
+  /**
+   * Contents that were already rendered when their write was deferred.
+   */
+  private static class RenderedTextFile implements DeferredTextFile {
+
+    private final String contents;
+
+    RenderedTextFile(final String contents) {
+      this.contents = contents;
+    }
+
+    public String getContents() {
+      return contents;
+    }
+  }
+
+  /**
+   * One stage of committing the deferred writes, applied to each write.
+   */
+  private interface WriteStage {
+    void run(PendingWrite write) throws IOException;
+  }
+
   protected final static Logger LOGGER = HandlerUtils.getLogger(DefaultFileManager.class);
 
+  /**
+   * The bundle property giving the number of threads {@link #commit()} uses
+   * to compare, back up and write files; defaults to the number of
+   * processors. A value of 1 does everything on the committing thread.
+   */
+  static final String PARALLELISM_PROPERTY = "roo.file.parallelism";
+
   /** key: file identifier, value: new description of change */
   private final Map<String, String> deferredDescriptionOfChanges =
       new LinkedHashMap<String, String>();
   /** key: file identifier, value: new textual content */
-  private final Map<String, String> deferredFileWrites = new LinkedHashMap<String, String>();
+  private final Map<String, DeferredTextFile> deferredFileWrites =
+      new LinkedHashMap<String, DeferredTextFile>();
 
   // ------------ OSGi component attributes ----------------
   private BundleContext context;
 
+  // Created on first use
+  private ExecutorService commitExecutor;
   private NotifiableFileMonitorService fileMonitorService;
   private FilenameResolver filenameResolver;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
   private ProcessManager processManager;
   private UndoManager undoManager;
 
   protected void activate(final ComponentContext context) {
     this.context = context.getBundleContext();
+    parallelism =
+        Math.max(1, NumberUtils.toInt(this.context.getProperty(PARALLELISM_PROPERTY), parallelism));
     if (undoManager == null) {
       undoManager = getUndoManager();
     }
@@ -79,18 +155,22 @@ public class DefaultFileManager implements FileManager, UndoListener {
   }
 
   public void commit() {
-    final Map<String, String> toRemove = new LinkedHashMap<String, String>(deferredFileWrites);
+    final Map<String, DeferredTextFile> toRemove =
+        new LinkedHashMap<String, DeferredTextFile>(deferredFileWrites);
     try {
-      for (final Entry<String, String> entry : toRemove.entrySet()) {
+      final List<PendingWrite> writes = new ArrayList<PendingWrite>();
+      for (final Entry<String, DeferredTextFile> entry : toRemove.entrySet()) {
         final String fileIdentifier = entry.getKey();
-        final String newContents = entry.getValue();
+        // Rendered here, as the models behind them need not be thread safe
+        final String newContents = entry.getValue().getContents();
         if (StringUtils.isNotBlank(newContents)) {
-          createOrUpdateTextFileIfRequired(fileIdentifier, newContents,
-              StringUtils.stripToEmpty(deferredDescriptionOfChanges.get(fileIdentifier)));
+          writes.add(new PendingWrite(fileIdentifier, newContents, StringUtils
+              .stripToEmpty(deferredDescriptionOfChanges.get(fileIdentifier))));
         } else if (exists(fileIdentifier)) {
           delete(fileIdentifier, "empty");
         }
       }
+      write(writes);
     } finally {
       for (final String remove : toRemove.keySet()) {
         deferredFileWrites.remove(remove);
@@ -205,20 +285,26 @@ public class DefaultFileManager implements FileManager, UndoListener {
     if (writeImmediately) {
       createOrUpdateTextFileIfRequired(fileIdentifier, newContents, descriptionOfChange);
     } else {
-      deferredFileWrites.put(fileIdentifier, newContents);
-
-      String deferredDescriptionOfChange =
-          StringUtils.defaultIfEmpty(deferredDescriptionOfChanges.get(fileIdentifier), "");
-      if (StringUtils.isNotBlank(deferredDescriptionOfChange)
-          && !deferredDescriptionOfChange.trim().endsWith(";")) {
-        deferredDescriptionOfChange += "; ";
-      }
-      deferredDescriptionOfChanges.put(fileIdentifier,
-          deferredDescriptionOfChange + StringUtils.stripToEmpty(descriptionOfChange));
+      deferDescriptionOfChange(fileIdentifier, descriptionOfChange);
+      deferredFileWrites.put(fileIdentifier, new RenderedTextFile(newContents));
     }
   }
 
+  public void createOrUpdateTextFileIfRequired(final String fileIdentifier,
+      final DeferredTextFile newContents, final String descriptionOfChange) {
+    Validate.notBlank(fileIdentifier, "File identifier required");
+    Validate.notNull(newContents, "New contents required");
+    deferDescriptionOfChange(fileIdentifier, descriptionOfChange);
+    deferredFileWrites.put(fileIdentifier, newContents);
+  }
+
   protected void deactivate(final ComponentContext context) {
+    synchronized (this) {
+      if (commitExecutor != null) {
+        commitExecutor.shutdown();
+        commitExecutor = null;
+      }
+    }
     if (undoManager == null) {
       undoManager = getUndoManager();
     }
@@ -226,6 +312,18 @@ public class DefaultFileManager implements FileManager, UndoListener {
     undoManager.removeUndoListener(this);
   }
 
+  private void deferDescriptionOfChange(final String fileIdentifier,
+      final String descriptionOfChange) {
+    String deferredDescriptionOfChange =
+        StringUtils.defaultIfEmpty(deferredDescriptionOfChanges.get(fileIdentifier), "");
+    if (StringUtils.isNotBlank(deferredDescriptionOfChange)
+        && !deferredDescriptionOfChange.trim().endsWith(";")) {
+      deferredDescriptionOfChange += "; ";
+    }
+    deferredDescriptionOfChanges.put(fileIdentifier,
+        deferredDescriptionOfChange + StringUtils.stripToEmpty(descriptionOfChange));
+  }
+
   public void delete(final String fileIdentifier) {
     delete(fileIdentifier, null);
   }
@@ -273,10 +371,18 @@ public class DefaultFileManager implements FileManager, UndoListener {
     return fileMonitorService.findMatchingAntPath(antPath);
   }
 
+  public DeferredTextFile getDeferredTextFile(final String fileIdentifier) {
+    final DeferredTextFile deferredTextFile = deferredFileWrites.get(fileIdentifier);
+    if (deferredTextFile instanceof RenderedTextFile) {
+      return null;
+    }
+    return deferredTextFile;
+  }
+
   public InputStream getInputStream(final String fileIdentifier) {
     if (deferredFileWrites.containsKey(fileIdentifier)) {
       return new BufferedInputStream(new ByteArrayInputStream(deferredFileWrites
-          .get(fileIdentifier).getBytes()));
+          .get(fileIdentifier).getContents().getBytes()));
     }
 
     final File file = new File(fileIdentifier);
@@ -343,6 +449,162 @@ public class DefaultFileManager implements FileManager, UndoListener {
     return new DefaultMutableFile(actual, fileMonitorService, renderer);
   }
 
+  private synchronized ExecutorService getCommitExecutor() {
+    if (commitExecutor == null) {
+      commitExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+        public Thread newThread(final Runnable runnable) {
+          final Thread thread = new Thread(runnable, "Roo file writer");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return commitExecutor;
+  }
+
+  /**
+   * Applies the given stage to each of the given writes, in parallel if
+   * there is more than one of them. Every write is attempted even if some
+   * fail, so that the undo manager knows about all the files changed.
+   * 
+   * @param writes the writes to process (required)
+   * @param stage the stage to apply (required)
+   * @throws IllegalStateException if the stage failed for any write
+   */
+  private void runInParallel(final List<PendingWrite> writes, final WriteStage stage) {
+    if (parallelism < 2 || writes.size() < 2) {
+      for (final PendingWrite write : writes) {
+        runStage(stage, write);
+      }
+      return;
+    }
+    final List<Future<?>> results = new ArrayList<Future<?>>();
+    for (final PendingWrite write : writes) {
+      results.add(getCommitExecutor().submit(new Runnable() {
+        public void run() {
+          runStage(stage, write);
+        }
+      }));
+    }
+    RuntimeException failure = null;
+    for (final Future<?> result : results) {
+      try {
+        result.get();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while writing files", e);
+      } catch (final ExecutionException e) {
+        if (failure == null) {
+          failure =
+              e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                  : new IllegalStateException(e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void runStage(final WriteStage stage, final PendingWrite write) {
+    try {
+      stage.run(write);
+    } catch (final IOException e) {
+      throw new IllegalStateException("Could not output '" + write.file + "'", e);
+    }
+  }
+
+  /**
+   * Commits the given deferred writes to disk.
+   * 
+   * @param writes the writes, in the order they were requested (required)
+   */
+  private void write(final List<PendingWrite> writes) {
+    if (writes.isEmpty()) {
+      return;
+    }
+    if (fileMonitorService == null) {
+      fileMonitorService = getFileMonitorService();
+    }
+    if (processManager == null) {
+      processManager = getProcessManager();
+    }
+    if (filenameResolver == null) {
+      filenameResolver = getFileNameResolver();
+    }
+    if (undoManager == null) {
+      undoManager = getUndoManager();
+    }
+    Validate.notNull(fileMonitorService, "FileMonitorService required");
+    Validate.notNull(processManager, "ProcessManager required");
+    Validate.notNull(filenameResolver, "FilenameResolver required");
+    Validate.notNull(undoManager, "UndoManager required");
+
+    // First verify which files have even changed
+    runInParallel(writes, new WriteStage() {
+      public void run(final PendingWrite write) throws IOException {
+        write.create = !write.file.exists();
+        write.changed =
+            write.create || !write.newContents.equals(FileUtils.readFileToString(write.file));
+      }
+    });
+
+    // New files are created in order, as they may share new directories
+    final List<PendingWrite> changed = new ArrayList<PendingWrite>();
+    for (final PendingWrite write : writes) {
+      if (write.changed) {
+        if (write.create) {
+          Validate.notNull(createFile(write.file.getPath()), "Could not create file '%s'",
+              write.file);
+        }
+        changed.add(write);
+      }
+    }
+
+    try {
+      // Backups are recorded by the writing threads, but only registered
+      // with the undo manager afterwards, in order
+      runInParallel(changed, new WriteStage() {
+        public void run(final PendingWrite write) throws IOException {
+          if (!write.create) {
+            write.backup = undoManager.getJournal().record(write.file);
+          }
+          final byte[] bytes = write.newContents.getBytes();
+          write.hashCode = DigestUtils.shaHex(bytes);
+          write.canonicalPath = write.file.getCanonicalPath();
+          AtomicFileWriter.write(write.file, bytes);
+          write.written = true;
+        }
+      });
+    } finally {
+      for (final PendingWrite write : changed) {
+        if (write.backup != null) {
+          new UpdateFile(undoManager, filenameResolver, write.file, write.backup);
+        }
+      }
+
+      // Report what was written, in order, and tell the file monitor about
+      // the updated files in one go
+      final List<String> updated = new ArrayList<String>();
+      for (final PendingWrite write : changed) {
+        if (write.written) {
+          final ManagedMessageRenderer renderer =
+              new ManagedMessageRenderer(filenameResolver, write.file, write.create);
+          renderer.setIncludeHashCode(processManager.isDevelopmentMode());
+          if (StringUtils.isNotBlank(write.descriptionOfChange)) {
+            renderer.setDescriptionOfChange(write.descriptionOfChange);
+          }
+          renderer.setHashCode(write.hashCode);
+          renderer.logManagedMessage();
+          if (!write.create) {
+            updated.add(write.canonicalPath);
+          }
+        }
+      }
+      fileMonitorService.notifyChanged(updated);
+    }
+  }
+
   public NotifiableFileMonitorService getFileMonitorService() {
     // Get all Services implement NotifiableFileMonitorService interface
     try {
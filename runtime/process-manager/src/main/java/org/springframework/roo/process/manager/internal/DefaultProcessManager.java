@@ -7,6 +7,7 @@ import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.framework.BundleContext;
@@ -20,16 +21,29 @@ import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.file.monitor.MonitoringRequest;
 import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
 import org.springframework.roo.file.undo.UndoManager;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.process.manager.ActiveProcessManager;
 import org.springframework.roo.process.manager.CommandCallback;
 import org.springframework.roo.process.manager.ProcessManager;
 import org.springframework.roo.process.manager.event.AbstractProcessManagerStatusPublisher;
 import org.springframework.roo.process.manager.event.ProcessManagerStatus;
+import org.springframework.roo.shell.Shell;
+import org.springframework.roo.shell.event.ShellStatus;
+import org.springframework.roo.shell.event.ShellStatusListener;
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.osgi.OSGiUtils;
 
 /**
  * Default implementation of {@link ProcessManager} interface.
+ * <p>
+ * A background thread scans the file system once a second while the project
+ * is changing, doubling the interval each time a scan finds nothing up to
+ * {@value #MAXIMUM_SCAN_INTERVAL} ms. A change reported by the
+ * {@link FileMonitorService} (eg by its watch service) or input typed into
+ * the {@link Shell} wakes the thread up straight away. However long the
+ * scans take, the thread keeps the share of wall-clock time spent scanning
+ * within the percentage given by the {@value #SCAN_BUDGET_PROPERTY}
+ * property ({@value #DEFAULT_SCAN_BUDGET} by default).
  * 
  * @author Ben Alex
  * @author Juan Carlos García
@@ -42,42 +56,140 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
 
   private static final Logger LOGGER = HandlerUtils.getLogger(DefaultProcessManager.class);
 
+  /**
+   * The name of the property giving the maximum percentage of wall-clock time
+   * the background thread may spend scanning.
+   */
+  public static final String SCAN_BUDGET_PROPERTY = "roo.process.scan.budget";
+
+  static final int DEFAULT_SCAN_BUDGET = 10;
+  static final long MINIMUM_SCAN_INTERVAL = 1000;
+  static final long MAXIMUM_SCAN_INTERVAL = 16000;
+
   // ------------ OSGi component attributes ----------------
   private BundleContext context;
 
   private boolean developmentMode = false;
   private FileMonitorService fileMonitorService;
-  private long lastScanDuration = 0;
-  private long lastScanTime = 0; // What time the last scan was completed
-  private long minimumDelayBetweenScan = -1; // How many ms must pass at
+  private volatile long autoScanInterval = MINIMUM_SCAN_INTERVAL;
+  private Thread batchThread; // Guarded by processManagerStatus
+  private volatile long lastScanDuration = 0;
+  private volatile long lastScanTime = 0; // What time the last scan was completed
+  private MetadataDependencyRegistry metadataDependencyRegistry;
+  private MetadataSnapshotManager metadataSnapshotManager;
+  private volatile long minimumDelayBetweenScan = -1; // How many ms must pass at
+  private int scanBudget = DEFAULT_SCAN_BUDGET;
+  private Thread scanningThread;
+  private boolean scanningThreadWaiting; // Guarded by scanningThreadLock
+  private final Object scanningThreadLock = new Object();
+  private Shell shell;
+  private final ShellStatusListener shellStatusListener = new ShellStatusListener() {
+    public void onShellStatusChange(final ShellStatus oldStatus, final ShellStatus newStatus) {
+      if (newStatus.getStatus() == ShellStatus.Status.PARSING) {
+        // The user has typed something, so catch up with any changes
+        // made outside the shell before the command runs
+        wakeUp();
+      }
+    }
+  };
+  private long startTime;
   private StartLevel startLevel;
+  private volatile long totalScanDuration = 0;
   private UndoManager undoManager;
+  private boolean wakeUpRequested; // Guarded by scanningThreadLock
   private String workingDir;
 
+  /**
+   * Waits for the given time, or until the file system or the shell report
+   * some activity.
+   * 
+   * @param timeout the maximum number of milliseconds to wait
+   * @return true if woken up by some activity
+   */
+  private boolean awaitActivity(final long timeout) {
+    synchronized (scanningThreadLock) {
+      if (wakeUpRequested) {
+        wakeUpRequested = false;
+        return true;
+      }
+      scanningThreadWaiting = true;
+    }
+    boolean changed = false;
+    try {
+      final FileMonitorService monitor = fileMonitorService;
+      if (monitor == null || getProcessManagerStatus() != ProcessManagerStatus.AVAILABLE) {
+        Thread.sleep(timeout);
+      } else {
+        changed = monitor.awaitChange(timeout);
+      }
+    } catch (final InterruptedException wokenUp) {
+    } finally {
+      synchronized (scanningThreadLock) {
+        scanningThreadWaiting = false;
+        // Clear any interrupt that arrived once the wait was over, so it
+        // cannot disturb the next scan
+        Thread.interrupted();
+        changed |= wakeUpRequested;
+        wakeUpRequested = false;
+      }
+    }
+    return changed;
+  }
+
   public <T> T execute(final CommandCallback<T> callback) {
+    return execute(callback, false);
+  }
+
+  private <T> T execute(final CommandCallback<T> callback, final boolean batch) {
     Validate.notNull(callback, "Callback required");
     synchronized (processManagerStatus) {
+      if (batchThread == Thread.currentThread()) {
+        // Part of a batch, whose transaction covers this command too
+        try {
+          return callback.callback();
+        } catch (final RuntimeException e) {
+          logException(e);
+          throw e;
+        }
+      }
       // For us to acquire this lock means no other thread has hold of
       // process manager status
       Validate.isTrue(getProcessManagerStatus() == ProcessManagerStatus.AVAILABLE
           || getProcessManagerStatus() == ProcessManagerStatus.BUSY_EXECUTING,
           "Unable to execute as another thread has set status to %s", getProcessManagerStatus());
       setProcessManagerStatus(ProcessManagerStatus.BUSY_EXECUTING);
+      if (batch) {
+        batchThread = Thread.currentThread();
+      }
       try {
         return doTransactionally(callback);
       } catch (final RuntimeException e) {
         logException(e);
         throw e;
       } finally {
+        if (batch) {
+          batchThread = null;
+        }
+        // The user is active, so stop backing off
+        autoScanInterval = MINIMUM_SCAN_INTERVAL;
         setProcessManagerStatus(ProcessManagerStatus.AVAILABLE);
       }
     }
   }
 
+  public <T> T executeBatch(final CommandCallback<T> callback) {
+    return execute(callback, true);
+  }
+
   /**
-   * @return how many milliseconds the last scan execution took to complete (0
-   *         = never ran; >0 = last execution time)
+   * Returns how many milliseconds must pass after a scan before the next one
+   * can start, for the share of time spent scanning to remain within the
+   * budget.
    */
+  private long getBudgetDelay() {
+    return lastScanDuration * (100 - scanBudget) / scanBudget;
+  }
+
   public long getLastScanDuration() {
     return lastScanDuration;
   }
@@ -90,6 +202,22 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     return minimumDelayBetweenScan;
   }
 
+  public long getScanInterval() {
+    final long interval = minimumDelayBetweenScan;
+    if (interval == 0) {
+      return 0;
+    }
+    return Math.max(interval < 0 ? autoScanInterval : interval, getBudgetDelay());
+  }
+
+  public double getScanPercentage() {
+    final long elapsed = System.currentTimeMillis() - startTime;
+    if (elapsed <= 0) {
+      return 0;
+    }
+    return Math.min(100, totalScanDuration * 100.0 / elapsed);
+  }
+
   public boolean isDevelopmentMode() {
     return developmentMode;
   }
@@ -123,53 +251,75 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
       // so we control process manager and can terminate its background
       // timer thread
       if (getProcessManagerStatus() != ProcessManagerStatus.TERMINATED) {
+        // Persist the metadata snapshot while every service is still
+        // available, so the next session can start warm
+        final MetadataDependencyRegistry registry =
+            metadataSnapshotManager == null || fileMonitorService == null ? null
+                : getMetadataDependencyRegistry();
+        if (registry != null) {
+          try {
+            metadataSnapshotManager.save(fileMonitorService, registry);
+          } catch (final Throwable t) {
+            logException(t);
+          }
+        }
+        if (shell != null) {
+          shell.removeShellStatusListener(shellStatusListener);
+        }
         // The thread started above will terminate of its own accord,
         // given we are shutting down
         setProcessManagerStatus(ProcessManagerStatus.TERMINATED);
+        wakeUp();
       }
     }
   }
 
   public void timerBasedScan() {
+    if (minimumDelayBetweenScan == 0) {
+      // Manual scanning only, we never allow the timer to kick of a
+      // scan
+      return;
+    }
+    final long started = System.currentTimeMillis();
+    int changes = 0;
     try {
-      if (minimumDelayBetweenScan == 0) {
-        // Manual scanning only, we never allow the timer to kick of a
-        // scan
-        return;
-      }
-
-      long effectiveMinimumDelayBetweenScan = minimumDelayBetweenScan;
-      if (effectiveMinimumDelayBetweenScan < 0) {
-        // A negative minimum delay between scan means auto-scaling is
-        // used
-        if (lastScanDuration < 500) {
-          // We've never done a scan, or they are very fast
-          effectiveMinimumDelayBetweenScan = 0;
-        } else {
-          // Use the last duration (we might make this sliding scale
-          // in the future)
-          effectiveMinimumDelayBetweenScan = lastScanDuration;
-        }
-      }
-      final long started = System.currentTimeMillis();
-      if (started < lastScanTime + effectiveMinimumDelayBetweenScan) {
-        // Too soon to re-scan
+      changes = backgroundScan();
+      if (changes < 0) {
+        // Another thread is busy; it will have scanned anyway
         return;
       }
-      backgroundScan();
-      // Record the completion time so we can ensure we don't re-scan too
-      // soon
-      lastScanTime = System.currentTimeMillis();
-
-      // Compute how many milliseconds it took to run
-      lastScanDuration = lastScanTime - started;
-      if (lastScanDuration == 0) {
-        // Ensure it correctly reflects that it has ever run
-        lastScanDuration = 1;
-      }
     } catch (final Throwable t) {
       LOGGER.log(Level.SEVERE, t.getMessage(), t);
     }
+    // Record the completion time so we can ensure we don't re-scan too
+    // soon
+    lastScanTime = System.currentTimeMillis();
+
+    // Compute how many milliseconds it took to run, ensuring it correctly
+    // reflects that it has ever run
+    lastScanDuration = Math.max(1, lastScanTime - started);
+    totalScanDuration += lastScanDuration;
+
+    // Scan often while the project is changing, less and less often while
+    // it is idle
+    if (changes > 0) {
+      autoScanInterval = MINIMUM_SCAN_INTERVAL;
+    } else {
+      autoScanInterval = Math.min(autoScanInterval * 2, MAXIMUM_SCAN_INTERVAL);
+    }
+  }
+
+  /**
+   * Makes the background thread scan as soon as the scanning budget allows.
+   */
+  private void wakeUp() {
+    synchronized (scanningThreadLock) {
+      wakeUpRequested = true;
+      if (scanningThreadWaiting) {
+        // Only interrupted while waiting, never while scanning
+        scanningThread.interrupt();
+      }
+    }
   }
 
   protected void activate(final ComponentContext context) {
@@ -177,6 +327,16 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     // ROO-3824: Checking -DdevelopmentMode parameter
     setDevelopmentMode(OSGiUtils.isDevelopmentMode(context));
     workingDir = OSGiUtils.getRooWorkingDirectory(context);
+    startTime = System.currentTimeMillis();
+    scanBudget =
+        Math.min(100,
+            NumberUtils.toInt(this.context.getProperty(SCAN_BUDGET_PROPERTY), DEFAULT_SCAN_BUDGET));
+    if (scanBudget < 1) {
+      scanBudget = DEFAULT_SCAN_BUDGET;
+    }
+    if (MetadataSnapshotManager.isEnabled(this.context)) {
+      metadataSnapshotManager = new MetadataSnapshotManager(workingDir);
+    }
     this.context.addFrameworkListener(new FrameworkListener() {
       public void frameworkEvent(final FrameworkEvent event) {
 
@@ -200,25 +360,13 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
       }
     });
 
-    // Now start a thread that will undertake a background scan every second
-    final Thread t = new Thread(new Runnable() {
+    // Now start a thread that will undertake the background scans
+    scanningThread = new Thread(new Runnable() {
       public void run() {
-        // Unsynchronized lookup of terminated status to avoid anything
-        // blocking the termination of the thread
-        while (getProcessManagerStatus() != ProcessManagerStatus.TERMINATED) {
-          // We only bother doing a scan if we seem to be available (a
-          // proper synchronized check happens later)
-          if (getProcessManagerStatus() == ProcessManagerStatus.AVAILABLE) {
-            timerBasedScan();
-          }
-          try {
-            Thread.sleep(1000);
-          } catch (final InterruptedException ignoreAndContinue) {
-          }
-        }
+        scheduleScans();
       }
     }, "Spring Roo Process Manager Background Scanning Thread");
-    t.start();
+    scanningThread.start();
   }
 
   protected void deactivate(final ComponentContext context) {
@@ -226,12 +374,15 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     terminate(); // Safe to call even if we'd terminated earlier
   }
 
-  private boolean backgroundScan() {
+  /**
+   * @return the number of changes found, or -1 if another thread is busy
+   */
+  private int backgroundScan() {
     // Quickly determine if another thread is running; we don't need to sit
     // around and wait (we'll get called again in a few hundred milliseconds
     // anyway)
     if (getProcessManagerStatus() != ProcessManagerStatus.AVAILABLE) {
-      return false;
+      return -1;
     }
     synchronized (processManagerStatus) {
       // Do the check again, now this thread has a lock on
@@ -244,7 +395,11 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
       setProcessManagerStatus(ProcessManagerStatus.BUSY_SCANNING);
 
       try {
-        doTransactionally(null);
+        return doTransactionally(new CommandCallback<Integer>() {
+          public Integer callback() {
+            return fileMonitorService.scanAll();
+          }
+        });
       } catch (final Throwable t) {
         // We don't want a scan failure to cause the background scanning
         // thread to die
@@ -253,7 +408,7 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
         setProcessManagerStatus(ProcessManagerStatus.AVAILABLE);
       }
     }
-    return true;
+    return 0;
   }
 
   private void completeStartup() {
@@ -264,6 +419,13 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
 
     Validate.notNull(fileMonitorService, "FileMonitorService is required");
 
+    if (shell == null) {
+      shell = getShell();
+      if (shell != null) {
+        shell.addShellStatusListener(shellStatusListener);
+      }
+    }
+
     synchronized (processManagerStatus) {
       if (getProcessManagerStatus() != ProcessManagerStatus.STARTING) {
         throw new IllegalStateException("Process manager status " + getProcessManagerStatus()
@@ -271,9 +433,23 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
       }
       setProcessManagerStatus(ProcessManagerStatus.COMPLETING_STARTUP);
       try {
+        // Advise the files unchanged since the last session, if any, so
+        // the initial scan only publishes what actually changed
+        final boolean snapshotRestored =
+            metadataSnapshotManager != null
+                && metadataSnapshotManager.restore(context, fileMonitorService);
+
         // Register the initial monitoring request
         doTransactionally(new MonitoringRequestCommand(fileMonitorService,
             MonitoringRequest.getInitialSubTreeMonitoringRequest(workingDir), true));
+
+        if (snapshotRestored) {
+          // Now the project metadata exists, restore the dependencies of
+          // the previous session and re-announce the changed files
+          metadataSnapshotManager.restoreDependencies(getMetadataDependencyRegistry(),
+              fileMonitorService);
+          doTransactionally(null);
+        }
       } catch (final Throwable t) {
         logException(t);
       } finally {
@@ -296,15 +472,29 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
 
     Validate.notNull(undoManager, "UndoManager is required");
 
+    if (metadataDependencyRegistry == null) {
+      metadataDependencyRegistry = getMetadataDependencyRegistry();
+    }
+
+    Validate.notNull(metadataDependencyRegistry, "MetadataDependencyRegistry is required");
+
     T result = null;
     try {
       ActiveProcessManager.setActiveProcessManager(this);
 
-      // Run the requested operation
-      if (callback == null) {
-        fileMonitorService.scanAll();
-      } else {
-        result = callback.callback();
+      // Run the requested operation, rebuilding the metadata it affects
+      // once it has finished
+      boolean completed = false;
+      metadataDependencyRegistry.beginNotificationBatch();
+      try {
+        if (callback == null) {
+          fileMonitorService.scanAll();
+        } else {
+          result = callback.callback();
+        }
+        completed = true;
+      } finally {
+        metadataDependencyRegistry.endNotificationBatch(completed);
       }
 
       // Flush the undo manager so that any changes it has been holding
@@ -313,10 +503,17 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
 
       // Guarantee scans repeat until there are no more changes detected
       while (fileMonitorService.isDirty()) {
-        if (fileMonitorService instanceof NotifiableFileMonitorService) {
-          ((NotifiableFileMonitorService) fileMonitorService).scanNotified();
-        } else {
-          fileMonitorService.scanAll();
+        completed = false;
+        metadataDependencyRegistry.beginNotificationBatch();
+        try {
+          if (fileMonitorService instanceof NotifiableFileMonitorService) {
+            ((NotifiableFileMonitorService) fileMonitorService).scanNotified();
+          } else {
+            fileMonitorService.scanAll();
+          }
+          completed = true;
+        } finally {
+          metadataDependencyRegistry.endNotificationBatch(completed);
         }
         // In case something else happened as a result of event
         // notifications above
@@ -363,6 +560,39 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     }
   }
 
+  /**
+   * Runs the background scans until terminated.
+   */
+  private void scheduleScans() {
+    boolean wokenUp = false;
+    // Unsynchronized lookup of terminated status to avoid anything
+    // blocking the termination of the thread
+    while (getProcessManagerStatus() != ProcessManagerStatus.TERMINATED) {
+      long delay;
+      if (minimumDelayBetweenScan == 0
+          || getProcessManagerStatus() != ProcessManagerStatus.AVAILABLE) {
+        // Nothing to do for now, so check again in a while (a proper
+        // synchronized check happens when scanning)
+        delay = MINIMUM_SCAN_INTERVAL;
+      } else {
+        long nextScanTime = lastScanTime + getBudgetDelay();
+        if (!wokenUp) {
+          nextScanTime = Math.max(nextScanTime, lastScanTime + getScanInterval());
+        }
+        delay = nextScanTime - System.currentTimeMillis();
+      }
+      if (delay > 0) {
+        if (awaitActivity(delay)) {
+          wokenUp = true;
+          autoScanInterval = MINIMUM_SCAN_INTERVAL;
+        }
+        continue;
+      }
+      timerBasedScan();
+      wokenUp = false;
+    }
+  }
+
   public FileMonitorService getFileMonitorService() {
     // Get all Services implement FileMonitorService interface
     try {
@@ -381,6 +611,46 @@ public class DefaultProcessManager extends AbstractProcessManagerStatusPublisher
     }
   }
 
+  public MetadataDependencyRegistry getMetadataDependencyRegistry() {
+    // Get all Services implement MetadataDependencyRegistry interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(MetadataDependencyRegistry.class.getName(), null);
+
+      for (ServiceReference<?> ref : references) {
+        return (MetadataDependencyRegistry) this.context.getService(ref);
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load MetadataDependencyRegistry on DefaultProcessManager.");
+      return null;
+    }
+  }
+
+  public Shell getShell() {
+    // Get all Services implement Shell interface
+    try {
+      ServiceReference<?>[] references =
+          this.context.getAllServiceReferences(Shell.class.getName(), null);
+
+      if (references == null) {
+        return null;
+      }
+
+      for (ServiceReference<?> ref : references) {
+        return (Shell) this.context.getService(ref);
+      }
+
+      return null;
+
+    } catch (InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load Shell on DefaultProcessManager.");
+      return null;
+    }
+  }
+
   public StartLevel getStartLevel() {
     // Get all Services implement StartLevel interface
     try {
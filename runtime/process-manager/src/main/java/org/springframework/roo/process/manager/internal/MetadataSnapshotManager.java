@@ -0,0 +1,391 @@
+package org.springframework.roo.process.manager.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.springframework.roo.file.monitor.FileMonitorService;
+import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
+import org.springframework.roo.file.monitor.event.FileDetails;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataProvider;
+import org.springframework.roo.support.logging.HandlerUtils;
+
+/**
+ * Persists the state required for the shell to restart "warm" between
+ * sessions: a fingerprint of every monitored file (size, last modified time
+ * and content hash) and the metadata dependency graph, stamped with the
+ * version of every bundle that provides metadata.
+ * <p>
+ * When a snapshot is restored, files whose fingerprint still matches are
+ * advised to the {@link FileMonitorService} as known, so the initial scan only
+ * publishes the files that changed since the last session. Metadata items
+ * themselves are not persisted; they are lazily recreated by their providers
+ * the first time they are requested. POMs are always published, as project
+ * metadata must be built on startup.
+ * <p>
+ * A snapshot is discarded if any metadata provider bundle has been added,
+ * removed or upgraded since it was written, as the generated ITDs may no
+ * longer be up to date.
+ *
+ * @since 2.0
+ */
+public class MetadataSnapshotManager {
+
+  /**
+   * The name of the property that enables the metadata snapshot.
+   */
+  public static final String METADATA_SNAPSHOT_PROPERTY = "roo.metadata.snapshot";
+
+  private static final Logger LOGGER = HandlerUtils.getLogger(MetadataSnapshotManager.class);
+
+  private static final int FORMAT_VERSION = 1;
+  private static final String POM_FILE_NAME = "pom.xml";
+  private static final String SNAPSHOT_FILE_NAME = ".roo-metadata.snapshot";
+
+  private static class FileFingerprint {
+    final String hash; // null for directories
+    final long lastModified;
+    final long size;
+
+    FileFingerprint(final long size, final long lastModified, final String hash) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+  }
+
+  /**
+   * Indicates whether the metadata snapshot has been enabled for the given
+   * bundle context.
+   *
+   * @param context the bundle context (required)
+   * @return true if -Droo.metadata.snapshot=true has been specified
+   */
+  public static boolean isEnabled(final BundleContext context) {
+    return "true".equals(context.getProperty(METADATA_SNAPSHOT_PROPERTY));
+  }
+
+  private final Set<String> changedFiles = new LinkedHashSet<String>();
+  private final Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+  private final Map<String, FileFingerprint> fingerprints = new HashMap<String, FileFingerprint>();
+  private Map<String, String> providerVersions = new TreeMap<String, String>();
+  private final File snapshotFile;
+
+  /**
+   * Constructor
+   *
+   * @param workingDirectory the Roo working directory in which the snapshot
+   *            is stored (required)
+   */
+  public MetadataSnapshotManager(final String workingDirectory) {
+    Validate.notBlank(workingDirectory, "Working directory required");
+    snapshotFile = new File(workingDirectory, SNAPSHOT_FILE_NAME);
+  }
+
+  private Map<String, String> getProviderVersions(final BundleContext context) {
+    final Map<String, String> versions = new TreeMap<String, String>();
+    try {
+      final ServiceReference<?>[] references =
+          context.getAllServiceReferences(MetadataProvider.class.getName(), null);
+      if (references == null) {
+        return versions;
+      }
+      for (final ServiceReference<?> ref : references) {
+        final Bundle bundle = ref.getBundle();
+        if (bundle != null) {
+          versions.put(bundle.getSymbolicName(), bundle.getVersion().toString());
+        }
+      }
+    } catch (final InvalidSyntaxException e) {
+      LOGGER.warning("Cannot load MetadataProviders on MetadataSnapshotManager.");
+    }
+    return versions;
+  }
+
+  private String hash(final File file) throws IOException {
+    InputStream inputStream = null;
+    try {
+      inputStream = new BufferedInputStream(new FileInputStream(file));
+      return DigestUtils.shaHex(inputStream);
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  private boolean isUnchanged(final File file, final FileFingerprint fingerprint) {
+    if (fingerprint.hash == null) {
+      return file.isDirectory();
+    }
+    if (!file.isFile() || file.length() != fingerprint.size) {
+      return false;
+    }
+    if (file.lastModified() == fingerprint.lastModified) {
+      return true;
+    }
+    // Touched (eg by a VCS checkout) but possibly still the same content
+    try {
+      return fingerprint.hash.equals(hash(file));
+    } catch (final IOException e) {
+      return false;
+    }
+  }
+
+  private boolean read() throws IOException {
+    DataInputStream in = null;
+    try {
+      in =
+          new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(
+              snapshotFile))));
+      if (in.readInt() != FORMAT_VERSION) {
+        return false;
+      }
+
+      final Map<String, String> snapshotVersions = new TreeMap<String, String>();
+      for (int i = in.readInt(); i > 0; i--) {
+        snapshotVersions.put(in.readUTF(), in.readUTF());
+      }
+      if (!snapshotVersions.equals(providerVersions)) {
+        LOGGER.fine("Metadata providers have changed since the metadata snapshot was written");
+        return false;
+      }
+
+      for (int i = in.readInt(); i > 0; i--) {
+        final String path = in.readUTF();
+        final long size = in.readLong();
+        final long lastModified = in.readLong();
+        final String hash = in.readBoolean() ? in.readUTF() : null;
+        fingerprints.put(path, new FileFingerprint(size, lastModified, hash));
+      }
+
+      for (int i = in.readInt(); i > 0; i--) {
+        final String upstream = in.readUTF();
+        final Set<String> downstreams = new HashSet<String>();
+        for (int j = in.readInt(); j > 0; j--) {
+          downstreams.add(in.readUTF());
+        }
+        dependencies.put(upstream, downstreams);
+      }
+      return true;
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Restores the snapshot written by the previous session, if any, advising
+   * the files that have not changed since to the given file monitor. This
+   * must be invoked before the initial monitoring request is added.
+   *
+   * @param context the bundle context (required)
+   * @param fileMonitorService the file monitor to advise (required)
+   * @return true if a valid snapshot was restored
+   */
+  public boolean restore(final BundleContext context, final FileMonitorService fileMonitorService) {
+    providerVersions = getProviderVersions(context);
+    if (!snapshotFile.isFile()) {
+      return false;
+    }
+
+    final long started = System.currentTimeMillis();
+    try {
+      if (!read()) {
+        fingerprints.clear();
+        dependencies.clear();
+        return false;
+      }
+    } catch (final IOException e) {
+      LOGGER.log(Level.FINE, "Unable to read metadata snapshot", e);
+      fingerprints.clear();
+      dependencies.clear();
+      return false;
+    }
+
+    final Map<String, Long> knownFiles = new HashMap<String, Long>();
+    for (final Iterator<Entry<String, FileFingerprint>> iter =
+        fingerprints.entrySet().iterator(); iter.hasNext();) {
+      final Entry<String, FileFingerprint> entry = iter.next();
+      final File file = new File(entry.getKey());
+      if (entry.getKey().endsWith(POM_FILE_NAME) || !isUnchanged(file, entry.getValue())) {
+        changedFiles.add(entry.getKey());
+        iter.remove();
+        continue;
+      }
+      if (file.lastModified() != entry.getValue().lastModified) {
+        // Same content, so we just record the new time stamp
+        entry.setValue(new FileFingerprint(entry.getValue().size, file.lastModified(),
+            entry.getValue().hash));
+      }
+      knownFiles.put(entry.getKey(), file.lastModified());
+    }
+    fileMonitorService.setKnownFiles(knownFiles);
+
+    LOGGER.fine("Metadata snapshot restored in " + (System.currentTimeMillis() - started)
+        + " ms: " + knownFiles.size() + " files unchanged, " + changedFiles.size()
+        + " changed");
+    return true;
+  }
+
+  /**
+   * Registers the dependencies restored from the snapshot, then re-announces
+   * the files that changed or were deleted since the snapshot was written so
+   * that their downstream metadata is notified. This must be invoked once the
+   * initial monitoring request has been scanned, as by then the project
+   * metadata has been built and will not cascade through the restored
+   * dependencies.
+   *
+   * @param registry the registry to populate (required)
+   * @param fileMonitorService the file monitor to re-announce changes through
+   *            (required)
+   */
+  public void restoreDependencies(final MetadataDependencyRegistry registry,
+      final FileMonitorService fileMonitorService) {
+    int restored = 0;
+    for (final Entry<String, Set<String>> entry : dependencies.entrySet()) {
+      for (final String downstream : entry.getValue()) {
+        if (!entry.getKey().equals(downstream)
+            && registry.isValidDependency(entry.getKey(), downstream)) {
+          registry.registerDependency(entry.getKey(), downstream);
+          restored++;
+        }
+      }
+    }
+    dependencies.clear();
+
+    if (fileMonitorService instanceof NotifiableFileMonitorService) {
+      final NotifiableFileMonitorService notifiableFileMonitorService =
+          (NotifiableFileMonitorService) fileMonitorService;
+      for (final String changedFile : changedFiles) {
+        if (changedFile.endsWith(POM_FILE_NAME)) {
+          continue;
+        }
+        if (new File(changedFile).exists()) {
+          notifiableFileMonitorService.notifyChanged(changedFile);
+        } else {
+          // Deleted since the snapshot was written, so the initial scan
+          // didn't see it; announce the deletion so that its metadata and
+          // generated files are removed
+          notifiableFileMonitorService.notifyDeleted(changedFile);
+        }
+      }
+    }
+    changedFiles.clear();
+
+    LOGGER.fine("Metadata snapshot restored " + restored + " dependencies");
+  }
+
+  /**
+   * Writes the snapshot of the current session, replacing any previous one.
+   * Files whose size and last modified time are unchanged since the snapshot
+   * was restored are not hashed again.
+   *
+   * @param fileMonitorService the file monitor whose files to fingerprint
+   *            (required)
+   * @param registry the registry whose dependencies to persist (required)
+   */
+  public void save(final FileMonitorService fileMonitorService,
+      final MetadataDependencyRegistry registry) {
+    final long started = System.currentTimeMillis();
+    final Map<String, FileFingerprint> current = new TreeMap<String, FileFingerprint>();
+    for (final FileDetails fileDetails : fileMonitorService.getMonitored()) {
+      final File file = fileDetails.getFile();
+      final String path = fileDetails.getCanonicalPath();
+      if (file.isDirectory()) {
+        current.put(path, new FileFingerprint(-1, file.lastModified(), null));
+        continue;
+      }
+      if (!file.isFile()) {
+        continue;
+      }
+      final FileFingerprint previous = fingerprints.get(path);
+      if (previous != null && previous.hash != null && previous.size == file.length()
+          && previous.lastModified == file.lastModified()) {
+        current.put(path, previous);
+        continue;
+      }
+      try {
+        current.put(path, new FileFingerprint(file.length(), file.lastModified(), hash(file)));
+      } catch (final IOException e) {
+        // Leave it out, so the file is treated as changed next session
+      }
+    }
+    fingerprints.clear();
+    fingerprints.putAll(current);
+
+    final File tempFile = new File(snapshotFile.getPath() + ".tmp");
+    DataOutputStream out = null;
+    try {
+      out =
+          new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(
+              new FileOutputStream(tempFile))));
+      out.writeInt(FORMAT_VERSION);
+
+      out.writeInt(providerVersions.size());
+      for (final Entry<String, String> entry : providerVersions.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeUTF(entry.getValue());
+      }
+
+      out.writeInt(current.size());
+      for (final Entry<String, FileFingerprint> entry : current.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue().size);
+        out.writeLong(entry.getValue().lastModified);
+        out.writeBoolean(entry.getValue().hash != null);
+        if (entry.getValue().hash != null) {
+          out.writeUTF(entry.getValue().hash);
+        }
+      }
+
+      final Map<String, Set<String>> graph = registry.getDependencies();
+      out.writeInt(graph.size());
+      for (final Entry<String, Set<String>> entry : graph.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (final String downstream : entry.getValue()) {
+          out.writeUTF(downstream);
+        }
+      }
+      out.close();
+      out = null;
+
+      FileUtils.deleteQuietly(snapshotFile);
+      if (!tempFile.renameTo(snapshotFile)) {
+        throw new IOException("Unable to rename " + tempFile + " to " + snapshotFile);
+      }
+      LOGGER.fine("Metadata snapshot written in " + (System.currentTimeMillis() - started)
+          + " ms: " + current.size() + " files, " + graph.size() + " upstream dependencies");
+    } catch (final IOException e) {
+      LOGGER.log(Level.FINE, "Unable to write metadata snapshot", e);
+      FileUtils.deleteQuietly(tempFile);
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+}
@@ -6,7 +6,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.Validate;
 import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
 
@@ -60,7 +59,7 @@ public class MonitoredOutputStream extends ByteArrayOutputStream {
     managedMessageRenderer.logManagedMessage();
 
     // Write the actual file out to disk
-    FileUtils.writeByteArrayToFile(file, bytes);
+    AtomicFileWriter.write(file, bytes);
 
     // Tell the FileMonitorService what happened
     String fileCanonicalPath;
@@ -0,0 +1,114 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link AtomicFileWriter}
+ */
+public class AtomicFileWriterTest {
+
+  private File directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile(getClass().getSimpleName(), "");
+    FileUtils.forceDelete(directory);
+    FileUtils.forceMkdir(directory);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void testWriteNewFile() throws Exception {
+    // Set up
+    final File file = new File(directory, "new.txt");
+
+    // Invoke
+    AtomicFileWriter.write(file, "contents".getBytes());
+
+    // Check
+    assertEquals("contents", FileUtils.readFileToString(file));
+    assertEquals(Arrays.asList(file), Arrays.asList(directory.listFiles()));
+  }
+
+  @Test
+  public void testWriteReplacesTheExistingFile() throws Exception {
+    // Set up
+    final File file = new File(directory, "existing.txt");
+    FileUtils.writeStringToFile(file, "old contents");
+    // A hard link sees in-place writes, but not the file being replaced
+    final File link = new File(directory, "link.txt");
+    try {
+      Files.createLink(link.toPath(), file.toPath());
+    } catch (final UnsupportedOperationException e) {
+      return;
+    }
+
+    // Invoke
+    AtomicFileWriter.write(file, "new".getBytes());
+
+    // Check
+    assertArrayEquals("new".getBytes(), FileUtils.readFileToByteArray(file));
+    assertEquals("old contents", FileUtils.readFileToString(link));
+  }
+
+  @Test
+  public void testWritePreservesPermissions() throws Exception {
+    // Set up
+    final File file = new File(directory, "script.sh");
+    FileUtils.writeStringToFile(file, "echo old");
+    if (Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class) == null) {
+      // Permissions aren't preserved where the file system doesn't have them
+      return;
+    }
+    final Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+    Files.setPosixFilePermissions(file.toPath(), permissions);
+
+    // Invoke
+    AtomicFileWriter.write(file, "echo new".getBytes());
+
+    // Check
+    assertEquals("echo new", FileUtils.readFileToString(file));
+    assertEquals(permissions, Files.getPosixFilePermissions(file.toPath()));
+  }
+
+  @Test
+  public void testFailedWriteRemovesTheTemporaryFile() throws Exception {
+    // Set up
+    final File target = new File(directory, "target");
+    // A non-empty directory can't be replaced by a file
+    FileUtils.writeStringToFile(new File(target, "child.txt"), "child");
+
+    // Invoke
+    try {
+      AtomicFileWriter.write(target, "contents".getBytes());
+      fail("Expected an IOException");
+    } catch (final IOException expected) {
+    }
+
+    // Check
+    assertEquals(Arrays.asList(target), Arrays.asList(directory.listFiles()));
+    assertTrue(target.isDirectory());
+    assertEquals("child", FileUtils.readFileToString(new File(target, "child.txt")));
+  }
+}
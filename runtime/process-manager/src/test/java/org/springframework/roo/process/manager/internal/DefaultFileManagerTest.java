@@ -0,0 +1,226 @@
+package org.springframework.roo.process.manager.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
+import org.springframework.roo.file.undo.CreateFile;
+import org.springframework.roo.file.undo.DefaultUndoJournal;
+import org.springframework.roo.file.undo.FilenameResolver;
+import org.springframework.roo.file.undo.UndoManager;
+import org.springframework.roo.file.undo.UndoableOperation;
+import org.springframework.roo.file.undo.UpdateFile;
+import org.springframework.roo.process.manager.ProcessManager;
+
+/**
+ * Unit test of committing deferred writes with {@link DefaultFileManager}
+ */
+public class DefaultFileManagerTest {
+
+  private static final int EXISTING_FILES = 20;
+
+  @Mock
+  private BundleContext mockBundleContext;
+  @Mock
+  private ComponentContext mockComponentContext;
+  @Mock
+  private NotifiableFileMonitorService mockFileMonitorService;
+  @Mock
+  private FilenameResolver mockFilenameResolver;
+  @Mock
+  private ProcessManager mockProcessManager;
+  @Mock
+  private UndoManager mockUndoManager;
+
+  private File directory;
+  // The files written, in the order their writes were requested
+  private final List<File> existingFiles = new ArrayList<File>();
+  private DefaultFileManager fileManager;
+  private final List<Collection<String>> notifiedChanges = new ArrayList<Collection<String>>();
+  private final List<UndoableOperation> undoableOperations = new ArrayList<UndoableOperation>();
+
+  private List<UpdateFile> getUpdateFiles() {
+    final List<UpdateFile> updateFiles = new ArrayList<UpdateFile>();
+    for (final UndoableOperation operation : undoableOperations) {
+      if (operation instanceof UpdateFile) {
+        updateFiles.add((UpdateFile) operation);
+      }
+    }
+    return updateFiles;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    directory = File.createTempFile(getClass().getSimpleName(), "").getCanonicalFile();
+    FileUtils.forceDelete(directory);
+    FileUtils.forceMkdir(directory);
+    // Requested in the reverse order of their names, so that the order of
+    // the writes isn't the natural order of the files
+    for (int i = 0; i < EXISTING_FILES; i++) {
+      final File file =
+          new File(directory, String.format("file-%02d.txt", EXISTING_FILES - 1 - i));
+      FileUtils.writeStringToFile(file, "old " + i);
+      existingFiles.add(file);
+    }
+
+    when(mockComponentContext.getBundleContext()).thenReturn(mockBundleContext);
+    when(mockBundleContext.getProperty(DefaultFileManager.PARALLELISM_PROPERTY)).thenReturn("4");
+    when(mockUndoManager.getJournal()).thenReturn(new DefaultUndoJournal(Long.MAX_VALUE));
+    doAnswer(new Answer<Void>() {
+      public Void answer(final InvocationOnMock invocation) {
+        undoableOperations.add((UndoableOperation) invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(mockUndoManager).add(any(UndoableOperation.class));
+    doAnswer(new Answer<Void>() {
+      @SuppressWarnings("unchecked")
+      public Void answer(final InvocationOnMock invocation) {
+        notifiedChanges.add(new ArrayList<String>((Collection<String>) invocation
+            .getArguments()[0]));
+        return null;
+      }
+    }).when(mockFileMonitorService).notifyChanged(anyCollectionOf(String.class));
+
+    fileManager = new DefaultFileManager() {
+      @Override
+      public NotifiableFileMonitorService getFileMonitorService() {
+        return mockFileMonitorService;
+      }
+
+      @Override
+      public FilenameResolver getFileNameResolver() {
+        return mockFilenameResolver;
+      }
+
+      @Override
+      public ProcessManager getProcessManager() {
+        return mockProcessManager;
+      }
+
+      @Override
+      public UndoManager getUndoManager() {
+        return mockUndoManager;
+      }
+    };
+    fileManager.activate(mockComponentContext);
+  }
+
+  @After
+  public void tearDown() {
+    fileManager.deactivate(mockComponentContext);
+    FileUtils.deleteQuietly(directory);
+  }
+
+  @Test
+  public void testCommitReportsChangesInRequestOrder() throws Exception {
+    // Set up
+    final File unchanged = new File(directory, "unchanged.txt");
+    FileUtils.writeStringToFile(unchanged, "same");
+    final File created = new File(directory, "new" + File.separator + "created.txt");
+    final List<String> expectedChanges = new ArrayList<String>();
+    for (int i = 0; i < existingFiles.size(); i++) {
+      final File file = existingFiles.get(i);
+      fileManager.createOrUpdateTextFileIfRequired(file.getPath(), "new " + i, false);
+      expectedChanges.add(file.getCanonicalPath());
+      if (i == EXISTING_FILES / 2) {
+        fileManager.createOrUpdateTextFileIfRequired(created.getPath(), "created", false);
+        fileManager.createOrUpdateTextFileIfRequired(unchanged.getPath(), "same", false);
+      }
+    }
+
+    // Invoke
+    fileManager.commit();
+
+    // Check the files
+    for (int i = 0; i < existingFiles.size(); i++) {
+      assertEquals("new " + i, FileUtils.readFileToString(existingFiles.get(i)));
+    }
+    assertEquals("created", FileUtils.readFileToString(created));
+    assertEquals("same", FileUtils.readFileToString(unchanged));
+
+    // Check that updated files are notified in one batch, in order
+    assertEquals(Collections.singletonList(expectedChanges), notifiedChanges);
+    verify(mockFileMonitorService).notifyCreated(created.getCanonicalPath());
+
+    // Check that the writes are reported in order
+    final InOrder inOrder = inOrder(mockFilenameResolver);
+    for (final File file : existingFiles) {
+      inOrder.verify(mockFilenameResolver).getMeaningfulName(eq(file));
+    }
+  }
+
+  @Test
+  public void testCommitRegistersUndoOperationsInRequestOrder() throws Exception {
+    // Set up
+    final File created = new File(directory, "created.txt");
+    fileManager.createOrUpdateTextFileIfRequired(created.getPath(), "created", false);
+    for (int i = 0; i < existingFiles.size(); i++) {
+      fileManager.createOrUpdateTextFileIfRequired(existingFiles.get(i).getPath(), "new " + i,
+          false);
+    }
+
+    // Invoke
+    fileManager.commit();
+
+    // Check
+    assertEquals(EXISTING_FILES + 1, undoableOperations.size());
+    assertEquals(CreateFile.class, undoableOperations.get(0).getClass());
+    final List<UpdateFile> updateFiles = getUpdateFiles();
+    assertEquals(EXISTING_FILES, updateFiles.size());
+    // Undoing each update in turn restores the next file that was requested
+    for (int i = 0; i < EXISTING_FILES; i++) {
+      assertTrue(updateFiles.get(i).undo());
+      for (int j = 0; j < EXISTING_FILES; j++) {
+        assertEquals("After undoing " + (i + 1) + " updates", (j <= i ? "old " : "new ") + j,
+            FileUtils.readFileToString(existingFiles.get(j)));
+      }
+    }
+  }
+
+  @Test
+  public void testCommitOnOneThreadRegistersTheSameUndoOperations() throws Exception {
+    // Set up
+    when(mockBundleContext.getProperty(DefaultFileManager.PARALLELISM_PROPERTY)).thenReturn("1");
+    fileManager.activate(mockComponentContext);
+    for (int i = 0; i < existingFiles.size(); i++) {
+      fileManager.createOrUpdateTextFileIfRequired(existingFiles.get(i).getPath(), "new " + i,
+          false);
+    }
+
+    // Invoke
+    fileManager.commit();
+
+    // Check
+    final List<UpdateFile> updateFiles = getUpdateFiles();
+    assertEquals(EXISTING_FILES, updateFiles.size());
+    for (int i = 0; i < EXISTING_FILES; i++) {
+      assertTrue(updateFiles.get(i).undo());
+      assertEquals("old " + i, FileUtils.readFileToString(existingFiles.get(i)));
+    }
+  }
+}
@@ -143,13 +143,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     Validate.notNull(pom, "The pom is not available, so plugin addition cannot be performed");
 
 
-    final Document parentDocument =
-        XmlUtils.readXml(fileManager.getInputStream(parentPom.getPath()));
+    final Document parentDocument = pomManagementService.getPomDocument(parentPom.getPath());
     Document document = null;
     if (isSamePom) {
       document = parentDocument;
     } else {
-      document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+      document = pomManagementService.getPomDocument(pom.getPath());
     }
 
     writePluginInPom(newPlugins, parentPom, pom, parentDocument, document,
@@ -180,13 +179,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
     Validate.notNull(pom, "The pom is not available, so dependencies cannot be added");
 
-    final Document parentDocument =
-        XmlUtils.readXml(fileManager.getInputStream(parentPom.getPath()));
+    final Document parentDocument = pomManagementService.getPomDocument(parentPom.getPath());
     Document document = null;
     if (isSamePom) {
       document = parentDocument;
     } else {
-      document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+      document = pomManagementService.getPomDocument(pom.getPath());
     }
     return writeDependencyInPom(newDependencies, parentPom, pom, parentDocument, document,
         parentDocument.getDocumentElement(), document.getDocumentElement(),
@@ -273,7 +271,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final String descriptionOfChange;
     final Element buildElement = XmlUtils.findFirstElement("/project/build", root);
@@ -290,8 +288,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       descriptionOfChange = highlight(UPDATED + " filter") + " '" + filter.getValue() + "'";
     }
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
   }
 
   @Override
@@ -361,13 +358,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     Validate.notNull(pom, "The pom is not available, so plugin addition cannot be performed");
 
 
-    final Document parentDocument =
-        XmlUtils.readXml(fileManager.getInputStream(parentPom.getPath()));
+    final Document parentDocument = pomManagementService.getPomDocument(parentPom.getPath());
     Document document = null;
     if (isSamePom) {
       document = parentDocument;
     } else {
-      document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+      document = pomManagementService.getPomDocument(pom.getPath());
     }
 
     final Element parentRoot = parentDocument.getDocumentElement();
@@ -432,13 +428,13 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
                 if (!isSamePom && addToPluginManagement) {
                   elementsElement.appendChild(XmlUtils.createTextElement(parentDocument,
                       elementName, element.getValue()));
-                  fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-                      XmlUtils.nodeToString(parentDocument), descriptionOfChange, false);
+                  pomManagementService.updatePomDocument(parentPom.getPath(),
+                      parentDocument, descriptionOfChange);
                 } else {
                   elementsElement.appendChild(XmlUtils.createTextElement(document, elementName,
                       element.getValue()));
-                  fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                      XmlUtils.nodeToString(document), descriptionOfChange, false);
+                  pomManagementService.updatePomDocument(pom.getPath(),
+                      document, descriptionOfChange);
                 }
               } else {
                 if (!isSamePom && addToPluginManagement) {
@@ -450,8 +446,8 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
                   }
                   newParentElement.appendChild(XmlUtils.createTextElement(parentDocument,
                       element.getKey(), element.getValue()));
-                  fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-                      XmlUtils.nodeToString(parentDocument), descriptionOfChange, false);
+                  pomManagementService.updatePomDocument(parentPom.getPath(),
+                      parentDocument, descriptionOfChange);
                 } else {
                   if (newParentElement == null) {
                     newParentElement =
@@ -461,8 +457,8 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
                   }
                   newParentElement.appendChild(XmlUtils.createTextElement(document,
                       element.getKey(), element.getValue()));
-                  fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                      XmlUtils.nodeToString(document), descriptionOfChange, false);
+                  pomManagementService.updatePomDocument(pom.getPath(),
+                      document, descriptionOfChange);
                 }
               }
             }
@@ -526,7 +522,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final String descriptionOfChange;
     final Element existing =
@@ -548,8 +544,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
               + property.getValue() + "'";
     }
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
   }
 
   public void addRepositories(final String moduleName,
@@ -569,7 +564,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
     final Pom pom = getPomFromModuleName(moduleName);
     Validate.notNull(pom, "The pom is not available, so repository addition cannot be performed");
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element repositoriesElement =
         DomUtils.createChildIfNotExists(containingPath, document.getDocumentElement(), document);
 
@@ -608,8 +603,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
     final String message = getDescriptionOfChange(ADDED, addedRepositories, path, containingPath);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        message, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, message);
   }
 
   public void addRepository(final String moduleName, final Repository repository) {
@@ -634,7 +628,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element buildElement =
         XmlUtils.findFirstElement("/project/build", document.getDocumentElement());
     final Element resourcesElement =
@@ -643,8 +637,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final String descriptionOfChange =
         highlight(ADDED + " resource") + " " + resource.getSimpleDescription();
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
   }
 
   protected void bindFeature(final Feature feature) {
@@ -845,7 +838,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element pluginsElement = XmlUtils.findFirstElement("/project/build/plugins", root);
     if (pluginsElement == null) {
@@ -876,8 +869,12 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     DomUtils.removeTextNodes(pluginsElement);
     final String message = getDescriptionOfChange(REMOVED, removedPlugins, "plugin", "plugins");
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        message, writeImmediately);
+    if (writeImmediately) {
+      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
+          XmlUtils.nodeToString(document), message, true);
+    } else {
+      pomManagementService.updatePomDocument(pom.getPath(), document, message);
+    }
   }
 
   public void removeDependencies(final String moduleName,
@@ -894,7 +891,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element dependenciesElement = XmlUtils.findFirstElement("/project/dependencies", root);
     if (dependenciesElement == null) {
@@ -928,8 +925,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final String message =
         getDescriptionOfChange(REMOVED, removedDependencies, "dependency", "dependencies");
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        message, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, message);
   }
 
   public void removeDependency(final String moduleName, final Dependency dependency) {
@@ -957,7 +953,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
 
     String descriptionOfChange = "";
@@ -974,8 +970,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(dependenciesElement);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
   }
 
   public final void removeDependency(final String moduleName, final String groupId,
@@ -1085,7 +1080,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
 
     final Element filtersElement = XmlUtils.findFirstElement("/project/build/filters", root);
@@ -1110,8 +1105,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(root);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
   }
 
   public void removePluginRepository(final String moduleName, final Repository repository) {
@@ -1131,7 +1125,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element propertiesElement = XmlUtils.findFirstElement("/project/properties", root);
     String descriptionOfChange = "";
@@ -1147,8 +1141,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(propertiesElement);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
   }
 
   public void removeRepository(final String moduleName, final Repository repository) {
@@ -1172,7 +1165,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       }
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
 
     String descriptionOfChange = "";
@@ -1185,8 +1178,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       }
     }
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
   }
 
   public void removeResource(final String moduleName, final Resource resource) {
@@ -1199,7 +1191,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element resourcesElement = XmlUtils.findFirstElement("/project/build/resources", root);
     if (resourcesElement == null) {
@@ -1224,8 +1216,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     DomUtils.removeTextNodes(root);
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
   }
 
   public void setModule(final Pom module) {
@@ -1270,7 +1261,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       return;
     }
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element root = document.getDocumentElement();
     final Element dependencyElement =
         XmlUtils.findFirstElement(
@@ -1307,8 +1298,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     }
 
     if (descriptionOfChange != null) {
-      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-          descriptionOfChange, false);
+      pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
     }
   }
 
@@ -1317,7 +1307,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final Pom pom = getPomFromModuleName(moduleName);
     Validate.notNull(pom, "The pom is not available, so the project type cannot be changed");
 
-    final Document document = XmlUtils.readXml(fileManager.getInputStream(pom.getPath()));
+    final Document document = pomManagementService.getPomDocument(pom.getPath());
     final Element packaging =
         DomUtils.createChildIfNotExists("packaging", document.getDocumentElement(), document);
     if (packaging.getTextContent().equals(projectType.getType())) {
@@ -1328,8 +1318,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     final String descriptionOfChange =
         highlight(UPDATED + " project type") + " to " + projectType.getType();
 
-    fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-        descriptionOfChange, false);
+    pomManagementService.updatePomDocument(pom.getPath(), document, descriptionOfChange);
   }
 
   /**
@@ -1483,12 +1472,10 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
       final String message =
           getPomDependenciesUpdateMessage(addedDependencies, removedDependencies,
               skippedDependencies);
-      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-          message, false);
+      pomManagementService.updatePomDocument(pom.getPath(), document, message);
       // If parent pom is different, is necessary to add dependencies to dependencyManagement
       if (!isSamePom && addToDependencyManagement) {
-        fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-            XmlUtils.nodeToString(parentDocument), message, false);
+        pomManagementService.updatePomDocument(parentPom.getPath(), parentDocument, message);
       }
     }
 
@@ -1625,12 +1612,10 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
     if (!newPlugins.isEmpty()) {
       final String message = getPomPluginsUpdateMessage(addedPlugins, removedPlugins);
-      fileManager.createOrUpdateTextFileIfRequired(pom.getPath(), XmlUtils.nodeToString(document),
-          message, false);
+      pomManagementService.updatePomDocument(pom.getPath(), document, message);
       // If parent pom is different, is necessary to add plugins to pluginManagement
       if (!isSamePom && addToPluginManagement) {
-        fileManager.createOrUpdateTextFileIfRequired(parentPom.getPath(),
-            XmlUtils.nodeToString(parentDocument), message, false);
+        pomManagementService.updatePomDocument(parentPom.getPath(), parentDocument, message);
       }
     }
   }
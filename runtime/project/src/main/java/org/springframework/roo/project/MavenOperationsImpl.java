@@ -597,15 +597,15 @@ public class MavenOperationsImpl extends AbstractProjectOperations implements Ma
 
   private void updateParentModulePom(final String moduleName) {
     final String parentPomPath = pomManagementService.getFocusedModule().getPath();
-    final Document parentPomDocument = XmlUtils.readXml(fileManager.getInputStream(parentPomPath));
+    final Document parentPomDocument = pomManagementService.getPomDocument(parentPomPath);
     final Element parentPomRoot = parentPomDocument.getDocumentElement();
     DomUtils.createChildIfNotExists("packaging", parentPomRoot, parentPomDocument).setTextContent(
         "pom");
     addModuleDeclaration(moduleName, parentPomDocument, parentPomRoot);
     final String addModuleMessage =
         getDescriptionOfChange(ADDED, Collections.singleton(moduleName), "module", "modules");
-    fileManager.createOrUpdateTextFileIfRequired(getFocusedModule().getPath(),
-        XmlUtils.nodeToString(parentPomDocument), addModuleMessage, false);
+    pomManagementService.updatePomDocument(getFocusedModule().getPath(), parentPomDocument,
+        addModuleMessage);
   }
 
   public PackagingProviderRegistry getPackagingProviderRegistry() {
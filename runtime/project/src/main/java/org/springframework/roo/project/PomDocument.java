@@ -0,0 +1,72 @@
+package org.springframework.roo.project;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.process.manager.DeferredTextFile;
+import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Document;
+
+/**
+ * The working copy of one POM's DOM, whose write is deferred by the
+ * {@link org.springframework.roo.process.manager.FileManager} until the end of
+ * the current command. It is only serialized when written to disk (or read
+ * back in the meantime), however many times it was changed.
+ *
+ * @since 2.0
+ */
+final class PomDocument implements DeferredTextFile {
+
+  private String contents;
+  private Document document;
+
+  /**
+   * Constructor
+   *
+   * @param document the POM's DOM as last written (required)
+   */
+  PomDocument(final Document document) {
+    Validate.notNull(document, "Document required");
+    this.document = document;
+  }
+
+  /**
+   * Returns a copy of the current DOM for a caller to change. Any changes
+   * are discarded unless the copy is passed back to {@link #update(Document)}.
+   *
+   * @return a new copy of the DOM
+   */
+  synchronized Document checkOut() {
+    return (Document) document.cloneNode(true);
+  }
+
+  public synchronized String getContents() {
+    if (contents == null) {
+      contents = XmlUtils.nodeToString(document);
+    }
+    return contents;
+  }
+
+  /**
+   * Returns the DOM that produced the given contents, if they are those that
+   * were last rendered from this POM.
+   *
+   * @param contents the contents of the POM (can be <code>null</code>)
+   * @return <code>null</code> if the given contents are not the current ones
+   */
+  synchronized Document getDocumentRenderedAs(final String contents) {
+    if (this.contents != null && this.contents.equals(contents)) {
+      return document;
+    }
+    return null;
+  }
+
+  /**
+   * Makes the given DOM the current one.
+   *
+   * @param document the DOM to write (required)
+   */
+  synchronized void update(final Document document) {
+    Validate.notNull(document, "Document required");
+    this.document = document;
+    contents = null;
+  }
+}
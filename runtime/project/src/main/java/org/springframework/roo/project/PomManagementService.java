@@ -3,6 +3,7 @@ package org.springframework.roo.project;
 import java.util.Collection;
 
 import org.springframework.roo.project.maven.Pom;
+import org.w3c.dom.Document;
 
 /**
  * Provides {@link Pom}-related methods to the "project" package. Code outside
@@ -42,6 +43,18 @@ interface PomManagementService {
    */
   Collection<String> getModuleNames();
 
+  /**
+   * Returns a copy of the DOM of the POM at the given path, including any
+   * changes made to it so far by the current command. The POM is only parsed
+   * once per command; changes made to the copy are kept if it is passed to
+   * {@link #updatePomDocument(String, Document, String)}.
+   * 
+   * @param pomPath the canonical path of an existing POM (required)
+   * @return a non-<code>null</code> DOM
+   * @since 2.0
+   */
+  Document getPomDocument(String pomPath);
+
   /**
    * Returns the {@link ProjectDescriptor} for the module with the given name.
    * 
@@ -79,4 +92,17 @@ interface PomManagementService {
    * @param module the module to focus upon (required)
    */
   void setFocusedModule(Pom module);
+
+  /**
+   * Makes the given DOM the new contents of the POM at the given path. It is
+   * serialized and written when the current command's file changes are
+   * committed, however many times it is updated in the meantime.
+   * 
+   * @param pomPath the canonical path of the POM (required)
+   * @param document a DOM obtained from {@link #getPomDocument(String)}
+   *            (required)
+   * @param descriptionOfChange a description of the change (can be blank)
+   * @since 2.0
+   */
+  void updatePomDocument(String pomPath, Document document, String descriptionOfChange);
 }
@@ -1,5 +1,6 @@
 package org.springframework.roo.project;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -13,6 +14,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -28,6 +30,7 @@ import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.process.manager.DeferredTextFile;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.maven.Pom;
 import org.springframework.roo.project.maven.PomFactory;
@@ -55,20 +58,10 @@ public class PomManagementServiceImpl implements PomManagementService {
   }
 
   private static class PomComparator implements Comparator<String> {
-    private final Map<String, Pom> pomMap;
-
-    /**
-     * Constructor
-     * 
-     * @param pomMap
-     */
-    private PomComparator(final Map<String, Pom> pomMap) {
-      this.pomMap = pomMap;
-    }
 
     public int compare(final String s1, final String s2) {
-      final String p1 = pomMap.get(s1).getRoot() + SEPARATOR;
-      final String p2 = pomMap.get(s2).getRoot() + SEPARATOR;
+      final String p1 = FileUtils.getFirstDirectory(s1) + SEPARATOR;
+      final String p2 = FileUtils.getFirstDirectory(s2) + SEPARATOR;
       if (p1.startsWith(p2)) {
         return -1;
       } else if (p2.startsWith(p1)) {
@@ -90,9 +83,16 @@ public class PomManagementServiceImpl implements PomManagementService {
   Shell shell;
 
   private String focusedModulePath;
-  private final Map<String, Pom> pomMap = new LinkedHashMap<String, Pom>();
+  /** key: POM path, value: the working copy last written to that POM */
+  private final Map<String, PomDocument> pomDocuments = new HashMap<String, PomDocument>();
+  /** key: POM path, value: module name; all known POMs, parents first */
+  private final Map<String, String> moduleMap = new LinkedHashMap<String, String>();
+  /** key: POM path, value: the model built from it */
+  private final Map<String, Pom> pomMap = new HashMap<String, Pom>();
   private String projectRootDirectory;
   private final Set<String> toBeParsed = new HashSet<String>();
+  /** key: POM path, value: the contents from which to build its model */
+  private final Map<String, String> unbuiltPoms = new HashMap<String, String>();
 
   /**
    * For test cases to set up the state of this service
@@ -100,9 +100,30 @@ public class PomManagementServiceImpl implements PomManagementService {
    * @param pom the POM to add (required)
    */
   void addPom(final Pom pom) {
+    moduleMap.put(pom.getPath(), pom.getModuleName());
     pomMap.put(pom.getPath(), pom);
   }
 
+  /**
+   * Returns the model of the given POM, building it if it hasn't been built
+   * since the POM was last changed.
+   * 
+   * @param pomPath the canonical path of the POM (can be <code>null</code>)
+   * @return <code>null</code> if there's no such POM
+   */
+  private Pom getPom(final String pomPath) {
+    final String pomContents = unbuiltPoms.get(pomPath);
+    if (pomContents != null) {
+      final String moduleName = moduleMap.get(pomPath);
+      final Pom pom =
+          getPomFactory().getInstance(parsePom(pomPath, pomContents), pomPath, moduleName);
+      Validate.notNull(pom, "POM is null for module '%s' and path '%s'", moduleName, pomPath);
+      pomMap.put(pomPath, pom);
+      unbuiltPoms.remove(pomPath);
+    }
+    return pomMap.get(pomPath);
+  }
+
   private void findUnparsedPoms() {
     for (final String change : getFileMonitorService().getDirtyFiles(getClass().getName())) {
       if (change.endsWith(DEFAULT_POM_NAME)) {
@@ -158,17 +179,23 @@ public class PomManagementServiceImpl implements PomManagementService {
   }
 
   public Collection<String> getModuleNames() {
-    final Set<String> moduleNames = new HashSet<String>();
-    for (final Pom module : pomMap.values()) {
-      moduleNames.add(module.getModuleName());
+    return new HashSet<String>(moduleMap.values());
+  }
+
+  public Document getPomDocument(final String pomPath) {
+    Validate.notBlank(pomPath, "POM path required");
+    final DeferredTextFile deferredTextFile = getFileManager().getDeferredTextFile(pomPath);
+    if (deferredTextFile instanceof PomDocument) {
+      return ((PomDocument) deferredTextFile).checkOut();
     }
-    return moduleNames;
+    return XmlUtils.readXml(getFileManager().getInputStream(pomPath));
   }
 
   public Pom getPomFromModuleName(final String moduleName) {
-    for (final Pom pom : getPoms()) {
-      if (pom.getModuleName().equals(moduleName)) {
-        return pom;
+    updatePomCache();
+    for (final Entry<String, String> module : moduleMap.entrySet()) {
+      if (module.getValue().equals(moduleName)) {
+        return getPom(module.getKey());
       }
     }
     return null;
@@ -176,22 +203,62 @@ public class PomManagementServiceImpl implements PomManagementService {
 
   public Pom getPomFromPath(final String pomPath) {
     updatePomCache();
-    return pomMap.get(pomPath);
+    return getPom(pomPath);
   }
 
   public Collection<Pom> getPoms() {
     updatePomCache();
-    return new ArrayList<Pom>(pomMap.values());
+    final Collection<Pom> poms = new ArrayList<Pom>();
+    for (final String pomPath : moduleMap.keySet()) {
+      poms.add(getPom(pomPath));
+    }
+    return poms;
   }
 
   public Pom getRootPom() {
     updatePomCache();
-    return pomMap.get(projectRootDirectory + SEPARATOR + DEFAULT_POM_NAME);
+    return getPom(projectRootDirectory + SEPARATOR + DEFAULT_POM_NAME);
   }
 
-  private Set<Pom> parseUnparsedPoms() {
-    final Map<String, String> pomModuleMap = new HashMap<String, String>();
-    final Set<Pom> newPoms = new HashSet<Pom>();
+  /**
+   * Parses the given POM, unless it was last written from a working copy
+   * whose DOM can be reused.
+   */
+  private Element parsePom(final String pomPath, final String pomContents) {
+    final PomDocument pomDocument = pomDocuments.remove(pomPath);
+    if (pomDocument != null) {
+      final Document document = pomDocument.getDocumentRenderedAs(pomContents);
+      if (document != null) {
+        return document.getDocumentElement();
+      }
+    }
+    return XmlUtils.stringToElement(pomContents);
+  }
+
+  /**
+   * Returns the outline of the given POM, reading it if it's not one of those
+   * already read.
+   */
+  private PomOutline getPomOutline(final String pomPath, final Map<String, PomOutline> outlines) {
+    PomOutline outline = outlines.get(pomPath);
+    if (outline == null) {
+      outline = PomOutline.read(getFileManager().getInputStream(pomPath));
+      outlines.put(pomPath, outline);
+    }
+    return outline;
+  }
+
+  /**
+   * Registers the changed POMs as known modules whose models are yet to be
+   * built. Only their outlines are read at this point, to discover the
+   * modules and parents they refer to; their DOMs are parsed and their
+   * models built when first asked for.
+   * 
+   * @return the names of the modules whose POMs changed
+   */
+  private Set<String> discoverChangedPoms() {
+    final Map<String, PomOutline> outlines = new HashMap<String, PomOutline>();
+    final Map<String, String> changedPoms = new LinkedHashMap<String, String>();
     for (final Iterator<String> iter = toBeParsed.iterator(); iter.hasNext();) {
       final String pathToChangedPom = iter.next();
       if (new File(pathToChangedPom).exists()) {
@@ -202,66 +269,62 @@ public class PomManagementServiceImpl implements PomManagementService {
         } catch (IOException ignored) {
         }
         if (StringUtils.isNotBlank(pomContents)) {
-          final Element rootElement = XmlUtils.stringToElement(pomContents);
-          resolvePoms(rootElement, pathToChangedPom, pomModuleMap);
-          final String moduleName = getModuleName(FileUtils.getFirstDirectory(pathToChangedPom));
-          final Pom pom = getPomFactory().getInstance(rootElement, pathToChangedPom, moduleName);
-          Validate.notNull(pom, "POM is null for module '%s' and path '%s'", moduleName,
-              pathToChangedPom);
-          pomMap.put(pathToChangedPom, pom);
-          newPoms.add(pom);
+          outlines.put(pathToChangedPom,
+              PomOutline.read(new ByteArrayInputStream(pomContents.getBytes())));
+          changedPoms.put(pathToChangedPom, pomContents);
           iter.remove();
         }
       }
     }
-    return newPoms;
-  }
-
-  private void resolveChildModulePoms(final Element pomRoot, final String pomPath,
-      final Map<String, String> pomSet) {
-    for (final Element module : XmlUtils.findElements("/project/modules/module", pomRoot)) {
-      final String moduleName = module.getTextContent();
-      if (StringUtils.isNotBlank(moduleName)) {
-        final String modulePath = resolveRelativePath(pomPath, moduleName);
-        final boolean alreadyDiscovered = pomSet.containsKey(modulePath);
-        pomSet.put(modulePath, moduleName);
-        if (!alreadyDiscovered) {
-          final Document pomDocument =
-              XmlUtils.readXml(getFileManager().getInputStream(modulePath));
-          final Element root = pomDocument.getDocumentElement();
-          resolvePoms(root, modulePath, pomSet);
-        }
+
+    final Map<String, String> pomModuleMap = new HashMap<String, String>();
+    final Set<String> changedModules = new HashSet<String>();
+    for (final Entry<String, String> changedPom : changedPoms.entrySet()) {
+      final String pomPath = changedPom.getKey();
+      resolvePoms(outlines.get(pomPath), pomPath, pomModuleMap, outlines);
+      final String moduleName = getModuleName(FileUtils.getFirstDirectory(pomPath));
+      moduleMap.put(pomPath, moduleName);
+      pomMap.remove(pomPath);
+      unbuiltPoms.put(pomPath, changedPom.getValue());
+      changedModules.add(moduleName);
+    }
+    return changedModules;
+  }
+
+  private void resolveChildModulePoms(final PomOutline outline, final String pomPath,
+      final Map<String, String> pomSet, final Map<String, PomOutline> outlines) {
+    for (final String moduleName : outline.getModules()) {
+      final String modulePath = resolveRelativePath(pomPath, moduleName);
+      final boolean alreadyDiscovered = pomSet.containsKey(modulePath);
+      pomSet.put(modulePath, moduleName);
+      if (!alreadyDiscovered) {
+        resolvePoms(getPomOutline(modulePath, outlines), modulePath, pomSet, outlines);
       }
     }
   }
 
-  private void resolveParentPom(final String pomPath, final Map<String, String> pomSet,
-      final Element parentElement) {
-    final String relativePath =
-        XmlUtils.getTextContent("/relativePath", parentElement, DEFAULT_RELATIVE_PATH);
+  private void resolveParentPom(final PomOutline outline, final String pomPath,
+      final Map<String, String> pomSet, final Map<String, PomOutline> outlines) {
+    final String relativePath = outline.getParentRelativePath(DEFAULT_RELATIVE_PATH);
     final String parentPomPath = resolveRelativePath(pomPath, relativePath);
     final boolean alreadyDiscovered = pomSet.containsKey(parentPomPath);
     if (!alreadyDiscovered) {
       pomSet.put(parentPomPath, pomSet.get(parentPomPath));
       if (new File(parentPomPath).isFile()) {
-        final Document pomDocument =
-            XmlUtils.readXml(getFileManager().getInputStream(parentPomPath));
-        final Element root = pomDocument.getDocumentElement();
-        resolvePoms(root, parentPomPath, pomSet);
+        resolvePoms(getPomOutline(parentPomPath, outlines), parentPomPath, pomSet, outlines);
       }
     }
   }
 
-  private void resolvePoms(final Element pomRoot, final String pomPath,
-      final Map<String, String> pomSet) {
+  private void resolvePoms(final PomOutline outline, final String pomPath,
+      final Map<String, String> pomSet, final Map<String, PomOutline> outlines) {
     pomSet.put(pomPath, pomSet.get(pomPath)); // ensures this key exists
 
-    final Element parentElement = XmlUtils.findFirstElement("/project/parent", pomRoot);
-    if (parentElement != null) {
-      resolveParentPom(pomPath, pomSet, parentElement);
+    if (outline.hasParent()) {
+      resolveParentPom(outline, pomPath, pomSet, outlines);
     }
 
-    resolveChildModulePoms(pomRoot, pomPath, pomSet);
+    resolveChildModulePoms(outline, pomPath, pomSet, outlines);
   }
 
   private String resolveRelativePath(String relativeTo, final String relativePath) {
@@ -310,30 +373,47 @@ public class PomManagementServiceImpl implements PomManagementService {
     getShell().setPromptPath(focusedModule.getModuleName());
   }
 
-  private void sortPomMap() {
-    final List<String> sortedPomPaths = new ArrayList<String>(pomMap.keySet());
-    Collections.sort(sortedPomPaths, new PomComparator(pomMap));
-    final Map<String, Pom> sortedPomMap = new LinkedHashMap<String, Pom>();
+  private void sortModuleMap() {
+    final List<String> sortedPomPaths = new ArrayList<String>(moduleMap.keySet());
+    Collections.sort(sortedPomPaths, new PomComparator());
+    final Map<String, String> sortedModuleMap = new LinkedHashMap<String, String>();
     for (final String pomPath : sortedPomPaths) {
-      sortedPomMap.put(pomPath, pomMap.get(pomPath));
+      sortedModuleMap.put(pomPath, moduleMap.get(pomPath));
     }
-    pomMap.clear();
-    pomMap.putAll(sortedPomMap);
+    moduleMap.clear();
+    moduleMap.putAll(sortedModuleMap);
   }
 
   private void updatePomCache() {
     findUnparsedPoms();
-    final Collection<Pom> newPoms = parseUnparsedPoms();
-    if (!newPoms.isEmpty()) {
-      sortPomMap();
+    final Collection<String> changedModules = discoverChangedPoms();
+    if (!changedModules.isEmpty()) {
+      sortModuleMap();
+    }
+    updateProjectMetadataForModules(changedModules);
+  }
+
+  public void updatePomDocument(final String pomPath, final Document document,
+      final String descriptionOfChange) {
+    Validate.notBlank(pomPath, "POM path required");
+    Validate.notNull(document, "Document required");
+    final DeferredTextFile deferredTextFile = getFileManager().getDeferredTextFile(pomPath);
+    final PomDocument pomDocument;
+    if (deferredTextFile instanceof PomDocument) {
+      pomDocument = (PomDocument) deferredTextFile;
+      pomDocument.update(document);
+    } else {
+      pomDocument = new PomDocument(document);
+      pomDocuments.put(pomPath, pomDocument);
     }
-    updateProjectMetadataForModules(newPoms);
+    getFileManager().createOrUpdateTextFileIfRequired(pomPath, pomDocument, descriptionOfChange);
   }
 
-  private void updateProjectMetadataForModules(final Iterable<Pom> newPoms) {
-    for (final Pom pom : newPoms) {
-      final String projectMetadataId = ProjectMetadata.getProjectIdentifier(pom.getModuleName());
-      getMetadataService().evictAndGet(projectMetadataId);
+  private void updateProjectMetadataForModules(final Iterable<String> moduleNames) {
+    for (final String moduleName : moduleNames) {
+      final String projectMetadataId = ProjectMetadata.getProjectIdentifier(moduleName);
+      // Downstream metadata gets it again if need be, building the POM then
+      getMetadataService().evict(projectMetadataId);
       getMetadataDependencyRegistry().notifyDownstream(projectMetadataId);
     }
   }
@@ -0,0 +1,128 @@
+package org.springframework.roo.project;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The parts of a POM that locate it within a multi-module project: its parent
+ * and its modules. Read by streaming through the POM, which is much cheaper
+ * than building its DOM.
+ *
+ * @since 2.0
+ */
+final class PomOutline {
+
+  private static final XMLInputFactory INPUT_FACTORY;
+
+  static {
+    INPUT_FACTORY = XMLInputFactory.newInstance();
+    INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+  }
+
+  /**
+   * Reads the outline of the given POM.
+   *
+   * @param inputStream the POM's contents (required; closed upon completion)
+   * @return a non-<code>null</code> outline
+   * @throws IllegalStateException if the stream could not be read or parsed
+   */
+  static PomOutline read(final InputStream inputStream) {
+    Validate.notNull(inputStream, "InputStream required");
+    final PomOutline outline = new PomOutline();
+    XMLStreamReader reader = null;
+    try {
+      reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+      // The local names of the currently open elements, e.g. /project/parent
+      final StringBuilder path = new StringBuilder();
+      final StringBuilder text = new StringBuilder();
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            path.append('/').append(reader.getLocalName());
+            text.setLength(0);
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+            text.append(reader.getText());
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            outline.setValue(path.toString(), text.toString());
+            path.setLength(path.lastIndexOf("/"));
+            text.setLength(0);
+            break;
+          default:
+            break;
+        }
+      }
+    } catch (final XMLStreamException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (final XMLStreamException ignored) {
+        }
+      }
+      IOUtils.closeQuietly(inputStream);
+    }
+    return outline;
+  }
+
+  private final List<String> modules = new ArrayList<String>();
+  private boolean parentDeclared;
+  private String parentRelativePath;
+
+  /**
+   * Constructor is private to force use of {@link #read(InputStream)}
+   */
+  private PomOutline() {}
+
+  /**
+   * Returns the non-blank entries of this POM's <code>modules</code> element
+   *
+   * @return a non-<code>null</code> list, in the order they're declared
+   */
+  List<String> getModules() {
+    return Collections.unmodifiableList(modules);
+  }
+
+  /**
+   * Returns the relative path of the parent POM, if this POM has a parent
+   *
+   * @param defaultRelativePath the path to return if the parent doesn't
+   *            declare one
+   * @return <code>null</code> if this POM has no parent
+   */
+  String getParentRelativePath(final String defaultRelativePath) {
+    if (!parentDeclared) {
+      return null;
+    }
+    return StringUtils.defaultIfBlank(parentRelativePath, defaultRelativePath);
+  }
+
+  boolean hasParent() {
+    return parentDeclared;
+  }
+
+  private void setValue(final String path, final String value) {
+    if ("/project/parent".equals(path)) {
+      parentDeclared = true;
+    } else if ("/project/parent/relativePath".equals(path)) {
+      parentRelativePath = value.trim();
+    } else if ("/project/modules/module".equals(path) && StringUtils.isNotBlank(value)) {
+      modules.add(value);
+    }
+  }
+}
@@ -189,6 +189,11 @@ public class ProjectCommands implements CommandMarker {
     } else {
       sb.append("scanning frequency has a minimum interval of ").append(minimum).append(" ms");
     }
+    if (minimum != 0) {
+      sb.append("; current interval is ").append(processManager.getScanInterval()).append(" ms");
+    }
+    sb.append(String.format("; %.1f%% of the time spent scanning",
+        processManager.getScanPercentage()));
     return sb.toString();
   }
 
@@ -0,0 +1,154 @@
+package org.springframework.roo.project;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.springframework.roo.project.maven.Pom;
+import org.springframework.roo.project.maven.PomFactoryImpl;
+import org.springframework.roo.project.packaging.JarPackaging;
+import org.springframework.roo.project.packaging.PackagingProvider;
+import org.springframework.roo.project.packaging.PackagingProviderRegistry;
+import org.springframework.roo.support.util.XmlUtils;
+
+/**
+ * Stand-alone benchmark of discovering the POMs of a generated multi-module
+ * reactor, comparing building every module's {@link Pom} as
+ * {@link PomManagementServiceImpl} used to with reading every module's
+ * {@link PomOutline} and building only the root's {@link Pom}, as it now does
+ * until the modules are asked for. Reports the average time per pass over the
+ * whole reactor.
+ * <p>
+ * Not run as part of the build; run the main method, optionally giving the
+ * number of modules to generate (100 by default) and the number of passes to
+ * time (50 by default).
+ */
+public class PomDiscoveryBenchmark {
+
+  private interface Discovery {
+    int run(List<File> pomFiles) throws Exception;
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final int moduleCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    final int passes = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+    final File reactor = createReactor(moduleCount);
+    try {
+      final List<File> pomFiles = new ArrayList<File>();
+      pomFiles.add(new File(reactor, "pom.xml"));
+      for (int i = 0; i < moduleCount; i++) {
+        pomFiles.add(new File(new File(reactor, "module-" + i), "pom.xml"));
+      }
+      System.out.println("Discovering a reactor of " + moduleCount + " modules " + passes
+          + " times");
+
+      final PomFactoryImpl pomFactory = createPomFactory();
+      final int before = report("Every Pom (before)", pomFiles, passes, new Discovery() {
+        public int run(final List<File> pomFiles) throws Exception {
+          int modules = 0;
+          for (final File pomFile : pomFiles) {
+            modules += buildPom(pomFactory, pomFile, pomFiles.get(0)).getModules().size();
+          }
+          return modules;
+        }
+      });
+      final int after = report("Outlines, root Pom (after)", pomFiles, passes, new Discovery() {
+        public int run(final List<File> pomFiles) throws Exception {
+          int modules = 0;
+          for (final File pomFile : pomFiles) {
+            modules += PomOutline.read(new FileInputStream(pomFile)).getModules().size();
+          }
+          buildPom(pomFactory, pomFiles.get(0), pomFiles.get(0));
+          return modules;
+        }
+      });
+      if (before != after) {
+        throw new IllegalStateException("Found " + before + " modules before but " + after
+            + " after");
+      }
+    } finally {
+      FileUtils.deleteQuietly(reactor);
+    }
+  }
+
+  private static Pom buildPom(final PomFactoryImpl pomFactory, final File pomFile,
+      final File rootPomFile) throws Exception {
+    final String moduleName =
+        pomFile.equals(rootPomFile) ? "" : pomFile.getParentFile().getName();
+    return pomFactory.getInstance(XmlUtils.readXml(new FileInputStream(pomFile))
+        .getDocumentElement(), pomFile.getCanonicalPath(), moduleName);
+  }
+
+  private static PomFactoryImpl createPomFactory() throws IllegalAccessException {
+    final PackagingProvider packagingProvider = new JarPackaging();
+    final PomFactoryImpl pomFactory = new PomFactoryImpl();
+    // Normally injected by the OSGi container
+    FieldUtils.writeField(pomFactory, "packagingProviderRegistry",
+        new PackagingProviderRegistry() {
+          public Collection<PackagingProvider> getAllPackagingProviders() {
+            return Collections.singleton(packagingProvider);
+          }
+
+          public PackagingProvider getDefaultPackagingProvider() {
+            return packagingProvider;
+          }
+
+          public PackagingProvider getPackagingProvider(final String id) {
+            // Only the paths are needed, which don't matter here
+            return packagingProvider;
+          }
+        }, true);
+    return pomFactory;
+  }
+
+  private static File createReactor(final int moduleCount) throws Exception {
+    final File reactor = File.createTempFile(PomDiscoveryBenchmark.class.getSimpleName(), "");
+    FileUtils.forceDelete(reactor);
+    final StringBuilder modules = new StringBuilder();
+    for (int i = 0; i < moduleCount; i++) {
+      final String moduleName = "module-" + i;
+      modules.append("<module>").append(moduleName).append("</module>");
+      FileUtils.writeStringToFile(new File(new File(reactor, moduleName), "pom.xml"),
+          "<project><modelVersion>4.0.0</modelVersion>"
+              + "<parent><groupId>com.foo</groupId><artifactId>reactor</artifactId>"
+              + "<version>1.0</version></parent><artifactId>" + moduleName + "</artifactId>"
+              + "<dependencies><dependency><groupId>junit</groupId>"
+              + "<artifactId>junit</artifactId><version>4.11</version></dependency>"
+              + "</dependencies><build><plugins><plugin>"
+              + "<artifactId>maven-compiler-plugin</artifactId><version>3.1</version>"
+              + "<configuration><source>1.7</source><target>1.7</target></configuration>"
+              + "</plugin></plugins></build></project>", "UTF-8");
+    }
+    FileUtils.writeStringToFile(new File(reactor, "pom.xml"),
+        "<project><modelVersion>4.0.0</modelVersion><groupId>com.foo</groupId>"
+            + "<artifactId>reactor</artifactId><version>1.0</version>"
+            + "<packaging>pom</packaging><modules>" + modules + "</modules></project>",
+        "UTF-8");
+    return reactor;
+  }
+
+  private static int report(final String name, final List<File> pomFiles, final int passes,
+      final Discovery discovery) throws Exception {
+    // Warm up the JIT
+    int found = discovery.run(pomFiles);
+    for (int i = 0; i < passes / 10; i++) {
+      discovery.run(pomFiles);
+    }
+
+    final long start = System.nanoTime();
+    for (int i = 0; i < passes; i++) {
+      found = discovery.run(pomFiles);
+    }
+    final long elapsed = System.nanoTime() - start;
+
+    System.out.println(String.format("%-28s %8.3f ms/pass %8d modules/pass", name, elapsed
+        / 1e6 / passes, found));
+    return found;
+  }
+}
@@ -0,0 +1,75 @@
+package org.springframework.roo.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Document;
+
+/**
+ * Unit test of {@link PomDocument}
+ */
+public class PomDocumentTest {
+
+  private static final String POM =
+      "<project><modelVersion>4.0.0</modelVersion><artifactId>foo</artifactId></project>";
+
+  // Fixture
+  private Document document;
+  private PomDocument pomDocument;
+
+  @Before
+  public void setUp() {
+    document = XmlUtils.readXml(new ByteArrayInputStream(POM.getBytes()));
+    pomDocument = new PomDocument(document);
+  }
+
+  @Test
+  public void testChangesToCheckedOutCopyAreDiscardedUnlessUpdated() {
+    final String contents = pomDocument.getContents();
+    final Document copy = pomDocument.checkOut();
+    assertNotSame(document, copy);
+
+    copy.getDocumentElement().appendChild(
+        XmlUtils.createTextElement(copy, "packaging", "pom"));
+
+    assertSame(contents, pomDocument.getContents());
+  }
+
+  @Test
+  public void testContentsAreRenderedOncePerUpdate() {
+    final String contents = pomDocument.getContents();
+    assertSame(contents, pomDocument.getContents());
+
+    final Document copy = pomDocument.checkOut();
+    copy.getDocumentElement().appendChild(
+        XmlUtils.createTextElement(copy, "packaging", "pom"));
+    pomDocument.update(copy);
+
+    final String updatedContents = pomDocument.getContents();
+    assertTrue(updatedContents.contains("<packaging>pom</packaging>"));
+    assertSame(updatedContents, pomDocument.getContents());
+  }
+
+  @Test
+  public void testDocumentIsOnlyReusedForTheContentsLastRendered() {
+    assertNull(pomDocument.getDocumentRenderedAs(XmlUtils.nodeToString(document)));
+
+    final String contents = pomDocument.getContents();
+    assertSame(document, pomDocument.getDocumentRenderedAs(contents));
+    assertNull(pomDocument.getDocumentRenderedAs(contents + " "));
+    assertNull(pomDocument.getDocumentRenderedAs(null));
+  }
+
+  @Test
+  public void testCheckedOutCopyHasSameContents() {
+    assertEquals(pomDocument.getContents(), XmlUtils.nodeToString(pomDocument.checkOut()));
+  }
+}
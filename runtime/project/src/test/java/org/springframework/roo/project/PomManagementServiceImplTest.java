@@ -4,16 +4,23 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 
 import junit.framework.AssertionFailedError;
 
@@ -21,6 +28,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.file.monitor.FileMonitorService;
@@ -59,6 +68,33 @@ public class PomManagementServiceImplTest {
   // Fixture
   private PomManagementServiceImpl service;
 
+  /**
+   * Writes a reactor of the given number of modules to a new temporary
+   * directory, each module's POM declaring the reactor's POM as its parent.
+   * 
+   * @return the reactor's directory
+   */
+  private File createReactor(final int moduleCount) throws IOException {
+    final File reactor = File.createTempFile(getClass().getSimpleName(), "");
+    org.apache.commons.io.FileUtils.forceDelete(reactor);
+    final StringBuilder modules = new StringBuilder();
+    for (int i = 0; i < moduleCount; i++) {
+      final String moduleName = "module-" + i;
+      modules.append("<module>").append(moduleName).append("</module>");
+      org.apache.commons.io.FileUtils.writeStringToFile(new File(new File(reactor, moduleName),
+          "pom.xml"), "<project><modelVersion>4.0.0</modelVersion>"
+          + "<parent><groupId>com.foo</groupId><artifactId>reactor</artifactId>"
+          + "<version>1.0</version></parent><artifactId>" + moduleName + "</artifactId>"
+          + "<dependencies><dependency><groupId>junit</groupId><artifactId>junit</artifactId>"
+          + "<version>4.11</version></dependency></dependencies></project>");
+    }
+    org.apache.commons.io.FileUtils.writeStringToFile(new File(reactor, "pom.xml"),
+        "<project><modelVersion>4.0.0</modelVersion><groupId>com.foo</groupId>"
+            + "<artifactId>reactor</artifactId><version>1.0</version>"
+            + "<packaging>pom</packaging><modules>" + modules + "</modules></project>");
+    return reactor;
+  }
+
   private String getCanonicalPath(final String relativePath) {
     final String systemDependentPath = relativePath.replace("/", File.separator);
     final URL resource = getClass().getResource(systemDependentPath);
@@ -100,11 +136,14 @@ public class PomManagementServiceImplTest {
    * @throws IOException
    */
   private void setUpWorkingDirectory(final String relativePath) throws IOException {
+    setUpWorkingDirectory(new File("target/test-classes/org/springframework/roo/project",
+        relativePath));
+  }
+
+  private void setUpWorkingDirectory(final File workingDirectory) throws IOException {
     final ComponentContext mockComponentContext = mock(ComponentContext.class);
     final BundleContext mockBundleContext = mock(BundleContext.class);
     when(mockComponentContext.getBundleContext()).thenReturn(mockBundleContext);
-    final File workingDirectory =
-        new File("target/test-classes/org/springframework/roo/project", relativePath);
     when(mockBundleContext.getProperty(OSGiUtils.ROO_WORKING_DIRECTORY_PROPERTY)).thenReturn(
         workingDirectory.getCanonicalPath());
     service.activate(mockComponentContext);
@@ -193,6 +232,81 @@ public class PomManagementServiceImplTest {
     verifyProjectMetadataNotification(ROOT_MODULE_NAME, childModuleName);
   }
 
+  @Test
+  public void testGetRootPomOfLargeReactorOnlyBuildsTheRootPom() throws Exception {
+    // Set up
+    final int moduleCount = 100;
+    final File reactor = createReactor(moduleCount);
+    try {
+      setUpWorkingDirectory(reactor);
+      final List<String> dirtyFiles = new ArrayList<String>();
+      dirtyFiles.add(new File(reactor, "pom.xml").getCanonicalPath());
+      for (int i = 0; i < moduleCount; i++) {
+        dirtyFiles.add(new File(reactor, "module-" + i + File.separator + "pom.xml")
+            .getCanonicalPath());
+      }
+      when(mockFileMonitorService.getDirtyFiles(PomManagementServiceImpl.class.getName()))
+          .thenReturn(dirtyFiles);
+      when(mockFileManager.getInputStream(anyString())).thenAnswer(new Answer<InputStream>() {
+        public InputStream answer(final InvocationOnMock invocation) throws IOException {
+          return new FileInputStream((String) invocation.getArguments()[0]);
+        }
+      });
+      when(mockPomFactory.getInstance(any(Element.class), anyString(), anyString())).thenAnswer(
+          new Answer<Pom>() {
+            public Pom answer(final InvocationOnMock invocation) {
+              return mock(Pom.class);
+            }
+          });
+
+      // Invoke
+      final Pom rootPom = service.getRootPom();
+
+      // Check that only the root POM has been built so far
+      assertNotNull(rootPom);
+      verify(mockPomFactory, times(1)).getInstance(any(Element.class), anyString(), anyString());
+      verify(mockPomFactory).getInstance(any(Element.class), eq(dirtyFiles.get(0)),
+          eq(ROOT_MODULE_NAME));
+
+      // Invoke
+      final Collection<Pom> poms = service.getPoms();
+
+      // Check
+      assertEquals(moduleCount + 1, poms.size());
+      verify(mockPomFactory, times(moduleCount + 1)).getInstance(any(Element.class),
+          anyString(), anyString());
+      assertEquals(moduleCount + 1, service.getModuleNames().size());
+      verifyProjectMetadataNotification(ROOT_MODULE_NAME, "module-0", "module-99");
+    } finally {
+      org.apache.commons.io.FileUtils.deleteQuietly(reactor);
+    }
+  }
+
+  @Test
+  public void testGetPomFromModuleNameOnlyBuildsThatModulesPom() throws Exception {
+    // Set up
+    setUpWorkingDirectory("multi");
+    final String rootPom = "multi/pom.xml";
+    final String rootPomCanonicalPath = getCanonicalPath(rootPom);
+    final String childPom = "multi/foo-child/pom.xml";
+    final String childPomCanonicalPath = getCanonicalPath(childPom);
+    when(mockFileMonitorService.getDirtyFiles(PomManagementServiceImpl.class.getName()))
+        .thenReturn(Arrays.asList(rootPomCanonicalPath, childPomCanonicalPath));
+
+    getMockPom(ROOT_MODULE_NAME, rootPomCanonicalPath);
+    final String childModuleName = "foo-child";
+    final Pom mockChildPom = getMockPom(childModuleName, childPomCanonicalPath);
+
+    // Invoke
+    final Pom pom = service.getPomFromModuleName(childModuleName);
+
+    // Check
+    assertEquals(mockChildPom, pom);
+    verify(mockPomFactory, times(1)).getInstance(any(Element.class), anyString(), anyString());
+    assertEquals(new HashSet<String>(Arrays.asList(ROOT_MODULE_NAME, childModuleName)),
+        service.getModuleNames());
+  }
+
   @Test
   public void testGetPomsWhenNoPomsAreDirty() {
     // Set up
@@ -238,7 +352,7 @@ public class PomManagementServiceImplTest {
   private void verifyProjectMetadataNotification(final String... moduleNames) {
     for (final String moduleName : moduleNames) {
       final String projectMetadataId = ProjectMetadata.getProjectIdentifier(moduleName);
-      verify(mockMetadataService).evictAndGet(projectMetadataId);
+      verify(mockMetadataService).evict(projectMetadataId);
       verify(mockMetadataDependencyRegistry).notifyDownstream(projectMetadataId);
     }
   }
@@ -0,0 +1,66 @@
+package org.springframework.roo.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link PomOutline}
+ */
+public class PomOutlineTest {
+
+  private static final String DEFAULT_RELATIVE_PATH = "../pom.xml";
+
+  private static PomOutline read(final String pom) {
+    return PomOutline.read(new ByteArrayInputStream(pom.getBytes()));
+  }
+
+  @Test
+  public void testReadPomWithModules() {
+    final PomOutline outline =
+        read("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">"
+            + "<groupId>com.foo</groupId><artifactId>foo-parent</artifactId>"
+            + "<modules><module>foo-child</module><module> </module><module>bar</module>"
+            + "</modules><build><plugins><plugin><artifactId>ignored</artifactId>"
+            + "</plugin></plugins></build></project>");
+
+    assertEquals(Arrays.asList("foo-child", "bar"), outline.getModules());
+    assertFalse(outline.hasParent());
+    assertNull(outline.getParentRelativePath(DEFAULT_RELATIVE_PATH));
+  }
+
+  @Test
+  public void testReadPomWithParent() {
+    final PomOutline outline =
+        read("<project><parent><groupId>com.foo</groupId><artifactId>foo-parent</artifactId>"
+            + "<relativePath>../parent/pom.xml</relativePath></parent>"
+            + "<artifactId>foo-child</artifactId></project>");
+
+    assertEquals(Collections.emptyList(), outline.getModules());
+    assertTrue(outline.hasParent());
+    assertEquals("../parent/pom.xml", outline.getParentRelativePath(DEFAULT_RELATIVE_PATH));
+  }
+
+  @Test
+  public void testReadPomWithParentAtDefaultPath() {
+    final PomOutline outline =
+        read("<project><groupId>com.bar</groupId><parent><groupId>com.foo</groupId>"
+            + "<artifactId>foo-parent</artifactId></parent>"
+            + "<artifactId>bar</artifactId></project>");
+
+    assertEquals(DEFAULT_RELATIVE_PATH, outline.getParentRelativePath(DEFAULT_RELATIVE_PATH));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReadMalformedPom() {
+    read("<project><artifactId>foo</project>");
+  }
+}
@@ -35,6 +35,10 @@ public class SimpleParserComponent extends SimpleParser implements CommandMarker
     context = cContext.getBundleContext();
   }
 
+  protected void deactivate(final ComponentContext cContext) {
+    unloadConvertersAndCommands();
+  }
+
   protected void bindAddOnSearch(final AddOnSearch s) {
     addOnSearch = s;
   }
@@ -13,11 +13,15 @@ import java.net.URL;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.logging.Level;
@@ -56,6 +60,31 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
   public static String completionKeys = "TAB";
   public static String shellPrompt = ROO_PROMPT;
 
+  /** How many of the slowest commands a batch script's timing summary lists */
+  private static final int SLOWEST_COMMANDS = 10;
+
+  /**
+   * The number of times a script ran a command, and the time they took.
+   */
+  private static class CommandTime implements Comparable<CommandTime> {
+
+    private final String command;
+    private int count;
+    private long nanoseconds;
+
+    private CommandTime(final String command) {
+      this.command = command;
+    }
+
+    public int compareTo(final CommandTime other) {
+      // Slowest first
+      if (nanoseconds != other.nanoseconds) {
+        return nanoseconds > other.nanoseconds ? -1 : 1;
+      }
+      return command.compareTo(other.command);
+    }
+  }
+
   public static String versionInfo() {
     // Try to determine the bundle version
     String bundleVersion = null;
@@ -190,6 +219,43 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
     return true;
   }
 
+  /**
+   * Removes any comments from the given line of input, opening and closing
+   * block comments as it goes
+   *
+   * @param line the line to process (required)
+   * @return the rest of the line, or <code>null</code> if it's all within a
+   *         block comment
+   */
+  private String removeComments(String line) {
+    // We support simple block comments; ie a single pair per line
+    if (!inBlockComment && line.contains("/*") && line.contains("*/")) {
+      blockCommentBegin();
+      final String lhs = line.substring(0, line.lastIndexOf("/*"));
+      if (line.contains("*/")) {
+        line = lhs + line.substring(line.lastIndexOf("*/") + 2);
+        blockCommentFinish();
+      } else {
+        line = lhs;
+      }
+    }
+    if (inBlockComment) {
+      if (!line.contains("*/")) {
+        return null;
+      }
+      blockCommentFinish();
+      line = line.substring(line.lastIndexOf("*/") + 2);
+    }
+    // We also support inline comments (but only at start of line,
+    // otherwise valid
+    // command options like http://www.helloworld.com will fail as per
+    // ROO-517)
+    if (!inBlockComment && (line.trim().startsWith("//") || line.trim().startsWith("#"))) { // # support in ROO-1116
+      line = "";
+    }
+    return line;
+  }
+
   /**
    * Runs the specified command. Control will return to the caller after the
    * command is run.
@@ -217,30 +283,9 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
 
     ParseResult parseResult = null;
     try {
-      // We support simple block comments; ie a single pair per line
-      if (!inBlockComment && line.contains("/*") && line.contains("*/")) {
-        blockCommentBegin();
-        final String lhs = line.substring(0, line.lastIndexOf("/*"));
-        if (line.contains("*/")) {
-          line = lhs + line.substring(line.lastIndexOf("*/") + 2);
-          blockCommentFinish();
-        } else {
-          line = lhs;
-        }
-      }
-      if (inBlockComment) {
-        if (!line.contains("*/")) {
-          return true;
-        }
-        blockCommentFinish();
-        line = line.substring(line.lastIndexOf("*/") + 2);
-      }
-      // We also support inline comments (but only at start of line,
-      // otherwise valid
-      // command options like http://www.helloworld.com will fail as per
-      // ROO-517)
-      if (!inBlockComment && (line.trim().startsWith("//") || line.trim().startsWith("#"))) { // # support in ROO-1116
-        line = "";
+      line = removeComments(line);
+      if (line == null) {
+        return true;
       }
       // Convert any TAB characters to whitespace (ROO-527)
       line = line.replace('\t', ' ');
@@ -480,30 +525,28 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
       help = "The file to locate and execute (mandatory)", mandatory = true) final File script,
       @CliOption(key = "lineNumbers", mandatory = false, specifiedDefaultValue = "true",
           unspecifiedDefaultValue = "false",
-          help = "Display line numbers when executing the script") final boolean lineNumbers) {
+          help = "Display line numbers when executing the script") final boolean lineNumbers,
+      @CliOption(key = "batch", mandatory = false, specifiedDefaultValue = "true",
+          unspecifiedDefaultValue = "false",
+          help = "Execute the commands in batches, writing their changes and updating the "
+              + "project only at the end of each batch; a failing command undoes its whole "
+              + "batch. Commands don't see the metadata of earlier commands in their batch")
+      final boolean batch,
+      @CliOption(key = "batchSize", mandatory = false, unspecifiedDefaultValue = "0",
+          help = "The number of commands in each batch when executing with --batch "
+              + "(by default, the whole script is one batch)") final int batchSize) {
 
     Validate.notNull(script, "Script file to parse is required");
+    Validate.isTrue(batchSize >= 0, "Batch size cannot be negative");
     final double startedNanoseconds = System.nanoTime();
 
     final InputStream inputStream = openScript(script);
     try {
-      int i = 0;
-      for (final String line : IOUtils.readLines(inputStream)) {
-        i++;
-        if (lineNumbers) {
-          logger.fine("Line " + i + ": " + line);
-        } else {
-          logger.fine(line);
-        }
-        if (!"".equals(line.trim())) {
-          final boolean success = executeScriptLine(line);
-          if (success && (line.trim().startsWith("q") || line.trim().startsWith("ex"))) {
-            break;
-          } else if (!success) {
-            // Abort script processing, given something went wrong
-            throw new IllegalStateException("Script execution aborted");
-          }
-        }
+      final List<String> lines = IOUtils.readLines(inputStream);
+      if (batch) {
+        executeScriptInBatches(lines, lineNumbers, batchSize);
+      } else {
+        executeScriptLines(lines, 0, lines.size(), lineNumbers, null, null);
       }
     } catch (final IOException e) {
       throw new IllegalStateException(e);
@@ -516,6 +559,168 @@ public abstract class AbstractShell extends AbstractShellStatusPublisher impleme
     }
   }
 
+  /**
+   * Executes the given lines of a script
+   *
+   * @param lines the script's lines (required)
+   * @param from the index of the first line to execute
+   * @param to the index after the last line to execute
+   * @param lineNumbers whether to log the line numbers
+   * @param scriptCommands which of the script's lines are commands (required
+   *            if timing the commands)
+   * @param commandTimes the time taken by each command so far, to which
+   *            those of these lines are added (can be <code>null</code>)
+   * @return <code>false</code> if a line asked for the script to stop, e.g.
+   *         by quitting the shell
+   * @throws IllegalStateException if a line could not be executed
+   */
+  private boolean executeScriptLines(final List<String> lines, final int from, final int to,
+      final boolean lineNumbers, final boolean[] scriptCommands,
+      final Map<String, CommandTime> commandTimes) {
+    for (int i = from; i < to; i++) {
+      final String line = lines.get(i);
+      if (lineNumbers) {
+        logger.fine("Line " + (i + 1) + ": " + line);
+      } else {
+        logger.fine(line);
+      }
+      if (!"".equals(line.trim())) {
+        final long started = System.nanoTime();
+        final boolean success = executeScriptLine(line);
+        if (commandTimes != null && scriptCommands[i]) {
+          addCommandTime(commandTimes, line, System.nanoTime() - started);
+        }
+        if (success && (line.trim().startsWith("q") || line.trim().startsWith("ex"))) {
+          return false;
+        } else if (!success) {
+          // Abort script processing, given something went wrong
+          throw new IllegalStateException("Script execution aborted at line " + (i + 1));
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Executes the given lines of a script via
+   * {@link ExecutionStrategy#executeBatch(Callable)}, then logs a summary of
+   * where the time went.
+   *
+   * @param lines the script's lines (required)
+   * @param lineNumbers whether to log the line numbers
+   * @param batchSize the maximum number of commands in each batch (0 = no
+   *            limit)
+   */
+  private void executeScriptInBatches(final List<String> lines, final boolean lineNumbers,
+      final int batchSize) {
+    final boolean[] scriptCommands = findScriptCommands(lines);
+    final Map<String, CommandTime> commandTimes = new HashMap<String, CommandTime>();
+    long commitNanoseconds = 0;
+    int batches = 0;
+    int from = 0;
+    boolean carryOn = true;
+    while (carryOn && from < lines.size()) {
+      // Find the end of this batch
+      int to = from;
+      int commands = 0;
+      while (to < lines.size() && (batchSize == 0 || commands < batchSize)) {
+        if (scriptCommands[to++]) {
+          commands++;
+        }
+      }
+
+      final int batchFrom = from;
+      final int batchTo = to;
+      final long commandNanoseconds = getTotalNanoseconds(commandTimes.values());
+      final long started = System.nanoTime();
+      carryOn = getExecutionStrategy().executeBatch(new Callable<Boolean>() {
+        public Boolean call() {
+          return executeScriptLines(lines, batchFrom, batchTo, lineNumbers, scriptCommands,
+              commandTimes);
+        }
+      });
+      // Whatever the commands didn't take was spent committing and scanning
+      commitNanoseconds +=
+          System.nanoTime() - started - getTotalNanoseconds(commandTimes.values())
+              + commandNanoseconds;
+      batches++;
+      from = to;
+    }
+    logScriptTimes(commandTimes, batches, commitNanoseconds);
+  }
+
+  /**
+   * Finds which of the given lines of a script are commands, as opposed to
+   * blank lines and comments that executing them would skip
+   *
+   * @param lines the script's lines (required)
+   * @return whether each line is a command
+   */
+  private boolean[] findScriptCommands(final List<String> lines) {
+    final boolean[] scriptCommands = new boolean[lines.size()];
+    // The lines are only looked at here, so restore the block comment state
+    final boolean blockCommentOpen = inBlockComment;
+    try {
+      for (int i = 0; i < scriptCommands.length; i++) {
+        final String line = StringUtils.trimToEmpty(removeComments(lines.get(i)));
+        // The block comment commands only open and close a block comment
+        if ("/*".equals(line)) {
+          inBlockComment = true;
+        } else if ("*/".equals(line)) {
+          inBlockComment = false;
+        } else {
+          scriptCommands[i] = !line.isEmpty();
+        }
+      }
+    } finally {
+      inBlockComment = blockCommentOpen;
+    }
+    return scriptCommands;
+  }
+
+  private void addCommandTime(final Map<String, CommandTime> commandTimes, final String line,
+      final long nanoseconds) {
+    final String command = StringUtils.substringBefore(line, "--").trim();
+    CommandTime commandTime = commandTimes.get(command);
+    if (commandTime == null) {
+      commandTime = new CommandTime(command);
+      commandTimes.put(command, commandTime);
+    }
+    commandTime.count++;
+    commandTime.nanoseconds += nanoseconds;
+  }
+
+  private long getTotalNanoseconds(final Collection<CommandTime> commandTimes) {
+    long total = 0;
+    for (final CommandTime commandTime : commandTimes) {
+      total += commandTime.nanoseconds;
+    }
+    return total;
+  }
+
+  private void logScriptTimes(final Map<String, CommandTime> commandTimes, final int batches,
+      final long commitNanoseconds) {
+    final List<CommandTime> slowest = new ArrayList<CommandTime>(commandTimes.values());
+    Collections.sort(slowest);
+    int commands = 0;
+    for (final CommandTime commandTime : slowest) {
+      commands += commandTime.count;
+    }
+    logger.info("Executed " + commands + " commands in " + batches + " batch"
+        + (batches == 1 ? "" : "es") + ": " + toSeconds(getTotalNanoseconds(slowest))
+        + " seconds running commands, " + toSeconds(commitNanoseconds)
+        + " seconds writing changes and updating the project");
+    for (final CommandTime commandTime : slowest.subList(0,
+        Math.min(SLOWEST_COMMANDS, slowest.size()))) {
+      logger.info("  " + commandTime.command + ": " + commandTime.count + " x, "
+          + toSeconds(commandTime.nanoseconds) + " seconds");
+    }
+  }
+
+  private double toSeconds(final long nanoseconds) {
+    return round(nanoseconds / 1000000000D, 3);
+  }
+
   /**
    * Base implementation of the {@link Shell#setPromptPath(String)} method,
    * designed for simple shell implementations. Advanced implementations (eg
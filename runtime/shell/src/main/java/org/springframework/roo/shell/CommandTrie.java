@@ -0,0 +1,243 @@
+package org.springframework.roo.shell;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The shell commands known to the {@link SimpleParser}, indexed word by word,
+ * so that the commands a buffer could match are found without looking at
+ * every command. The annotations of each command method are read once, when
+ * its {@link CommandMarker} is added.
+ *
+ * @since 2.0
+ */
+final class CommandTrie {
+
+  /**
+   * A method annotated with {@link CliCommand}, along with the metadata the
+   * parser needs about it.
+   */
+  static final class CommandMethod {
+
+    private final CliCommand cliCommand;
+    private final List<CliOption> cliOptions;
+    private final Method method;
+    /** the option of each parameter, if any */
+    private final CliOption[] parameterOptions;
+    private final Class<?>[] parameterTypes;
+    private final CommandMarker target;
+
+    private CommandMethod(final Method method, final CommandMarker target) {
+      this.method = method;
+      this.target = target;
+      cliCommand = method.getAnnotation(CliCommand.class);
+      parameterTypes = method.getParameterTypes();
+      parameterOptions = new CliOption[parameterTypes.length];
+      final List<CliOption> cliOptions = new ArrayList<CliOption>();
+      final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+      for (int i = 0; i < parameterAnnotations.length; i++) {
+        for (final Annotation annotation : parameterAnnotations[i]) {
+          if (annotation instanceof CliOption) {
+            parameterOptions[i] = (CliOption) annotation;
+            cliOptions.add((CliOption) annotation);
+          }
+        }
+      }
+      this.cliOptions = Collections.unmodifiableList(cliOptions);
+    }
+
+    CliCommand getCliCommand() {
+      return cliCommand;
+    }
+
+    /**
+     * Returns the {@link CliOption}s of this method's parameters
+     *
+     * @return a non-<code>null</code> list, in parameter order
+     */
+    List<CliOption> getCliOptions() {
+      return cliOptions;
+    }
+
+    Method getMethod() {
+      return method;
+    }
+
+    /**
+     * Returns the type of the parameter with the given option
+     *
+     * @param cliOption one of this method's options (required)
+     * @return <code>null</code> if no parameter has that option
+     */
+    Class<?> getParameterType(final CliOption cliOption) {
+      for (int i = 0; i < parameterOptions.length; i++) {
+        if (cliOption.equals(parameterOptions[i])) {
+          return parameterTypes[i];
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return a copy of this method's parameter types
+     */
+    Class<?>[] getParameterTypes() {
+      return parameterTypes.clone();
+    }
+
+    CommandMarker getTarget() {
+      return target;
+    }
+  }
+
+  private static class Node {
+
+    /** key: the next word of a command */
+    private final SortedMap<String, Node> children = new TreeMap<String, Node>();
+    /** the methods of the commands ending with this node's word */
+    private final Set<CommandMethod> commandMethods = new LinkedHashSet<CommandMethod>();
+
+    private void addAll(final Collection<CommandMethod> result) {
+      result.addAll(commandMethods);
+      for (final Node child : children.values()) {
+        child.addAll(result);
+      }
+    }
+
+    private boolean isEmpty() {
+      return commandMethods.isEmpty() && children.isEmpty();
+    }
+  }
+
+  private final Map<Method, CommandMethod> commandMethods = new HashMap<Method, CommandMethod>();
+  private final Node root = new Node();
+
+  /**
+   * Adds the commands of the given {@link CommandMarker}
+   *
+   * @param command the command to add (required)
+   */
+  void add(final CommandMarker command) {
+    Validate.notNull(command, "Command required");
+    for (final Method method : command.getClass().getMethods()) {
+      if (method.isAnnotationPresent(CliCommand.class)) {
+        final CommandMethod commandMethod = new CommandMethod(method, command);
+        commandMethods.put(method, commandMethod);
+        for (final String value : commandMethod.getCliCommand().value()) {
+          Node node = root;
+          for (final String word : StringUtils.split(value, ' ')) {
+            Node child = node.children.get(word);
+            if (child == null) {
+              child = new Node();
+              node.children.put(word, child);
+            }
+            node = child;
+          }
+          node.commandMethods.add(commandMethod);
+        }
+      }
+    }
+  }
+
+  void clear() {
+    commandMethods.clear();
+    root.children.clear();
+    root.commandMethods.clear();
+  }
+
+  /**
+   * Returns the command methods that could match the given buffer, i.e.
+   * those whose command words begin with the buffer's words, in the same
+   * order, or whose command is followed by further words (i.e. options) in
+   * the buffer. Callers still need to check for an actual match.
+   *
+   * @param buffer the buffer to match (required)
+   * @return a non-<code>null</code> collection
+   */
+  Collection<CommandMethod> getCandidates(final String buffer) {
+    Validate.notNull(buffer, "Buffer required");
+    final Collection<CommandMethod> candidates = new LinkedHashSet<CommandMethod>();
+    addCandidates(root, StringUtils.split(buffer, ' '), 0, candidates);
+    return candidates;
+  }
+
+  private void addCandidates(final Node node, final String[] words, final int index,
+      final Collection<CommandMethod> candidates) {
+    if (index == words.length) {
+      node.addAll(candidates);
+      return;
+    }
+    candidates.addAll(node.commandMethods);
+    final String word = words[index];
+    for (final Node child : node.children.subMap(word, word + Character.MAX_VALUE).values()) {
+      addCandidates(child, words, index + 1, candidates);
+    }
+  }
+
+  /**
+   * Returns the metadata of the given command method
+   *
+   * @param method the method to look up
+   * @return <code>null</code> if it's not the method of a known command
+   */
+  CommandMethod getCommandMethod(final Method method) {
+    return commandMethods.get(method);
+  }
+
+  /**
+   * Returns every known command
+   *
+   * @return a non-<code>null</code> set
+   */
+  Set<String> getCommands() {
+    final Set<String> commands = new LinkedHashSet<String>();
+    for (final CommandMethod commandMethod : commandMethods.values()) {
+      Collections.addAll(commands, commandMethod.getCliCommand().value());
+    }
+    return commands;
+  }
+
+  /**
+   * Removes the commands of the given {@link CommandMarker}
+   *
+   * @param command the command to remove (required)
+   */
+  void remove(final CommandMarker command) {
+    Validate.notNull(command, "Command required");
+    for (final Iterator<CommandMethod> iter = commandMethods.values().iterator(); iter.hasNext();) {
+      if (iter.next().getTarget() == command) {
+        iter.remove();
+      }
+    }
+    remove(root, command);
+  }
+
+  private void remove(final Node node, final CommandMarker command) {
+    for (final Iterator<CommandMethod> iter = node.commandMethods.iterator(); iter.hasNext();) {
+      if (iter.next().getTarget() == command) {
+        iter.remove();
+      }
+    }
+    for (final Iterator<Node> iter = node.children.values().iterator(); iter.hasNext();) {
+      final Node child = iter.next();
+      remove(child, command);
+      if (child.isEmpty()) {
+        iter.remove();
+      }
+    }
+  }
+}
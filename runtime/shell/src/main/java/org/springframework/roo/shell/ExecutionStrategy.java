@@ -1,5 +1,7 @@
 package org.springframework.roo.shell;
 
+import java.util.concurrent.Callable;
+
 /**
  * Strategy interface to permit the controlled execution of methods.
  * <p>
@@ -24,6 +26,19 @@ public interface ExecutionStrategy {
    */
   Object execute(ParseResult parseResult) throws RuntimeException;
 
+  /**
+   * Executes the commands run by the given task as a single batch, whose
+   * changes are committed and whose consequences are processed once the task
+   * has finished, rather than after each command.
+   * 
+   * @param task the task that executes the commands (required)
+   * @return the task's result
+   * @throws RuntimeException if the task fails, in which case none of the
+   *             batch's changes are kept
+   * @since 2.0
+   */
+  <T> T executeBatch(Callable<T> task) throws RuntimeException;
+
   /**
    * Indicates commands are able to be presented. This generally means all
    * important system startup activities have completed.
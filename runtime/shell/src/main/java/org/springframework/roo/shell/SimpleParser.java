@@ -9,7 +9,6 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -36,8 +35,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
+import org.springframework.roo.shell.CommandTrie.CommandMethod;
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.util.AnsiEscapeCode;
 import org.springframework.roo.support.util.CollectionUtils;
@@ -63,6 +66,9 @@ public class SimpleParser implements Parser {
 
   private static final Comparator<Object> COMPARATOR = new NaturalOrderComparator<Object>();
   private static final Logger LOGGER = HandlerUtils.getLogger(SimpleParser.class);
+  private static final String SERVICE_FILTER = "(|(" + Constants.OBJECTCLASS + "="
+      + CommandMarker.class.getName() + ")(" + Constants.OBJECTCLASS + "="
+      + Converter.class.getName() + "))";
 
   static String isMatch(final String buffer, final String command, final boolean strictMatching) {
     if ("".equals(buffer.trim())) {
@@ -154,16 +160,23 @@ public class SimpleParser implements Parser {
   private final Map<String, MethodTarget> optionAutocompleteIndicators =
       new HashMap<String, MethodTarget>();
   private final Set<CommandMarker> commands = new HashSet<CommandMarker>();
+  private final CommandTrie commandTrie = new CommandTrie();
+  /** key: required type and option context, value: the converter to use */
+  private final Map<String, Converter<?>> converterBindings = new HashMap<String, Converter<?>>();
   private final Set<Converter<?>> converters = new HashSet<Converter<?>>();
 
   // ROO-3697: Include global parameters in all Spring Roo commands.
-  private final List<String> globalParameters = new ArrayList<String>();
+  private final Set<String> globalParameters = new LinkedHashSet<String>();
 
   private final Object mutex = new Object();
+  private ServiceListener serviceListener;
 
   public final void add(final CommandMarker command) {
     synchronized (mutex) {
-      commands.add(command);
+      if (!commands.add(command)) {
+        return;
+      }
+      commandTrie.add(command);
       for (final Method method : command.getClass().getMethods()) {
 
         // Getting method availability indicators
@@ -258,17 +271,18 @@ public class SimpleParser implements Parser {
               .concat(optionAutocompleteIndicator.param()), new MethodTarget(method, command));
 
         }
-
-        // ROO-3697: Including global parameters.
-        globalParameters.add("force");
-        globalParameters.add("profile");
       }
+
+      // ROO-3697: Including global parameters.
+      globalParameters.add("force");
+      globalParameters.add("profile");
     }
   }
 
   public final void add(final Converter<?> converter) {
     synchronized (mutex) {
       converters.add(converter);
+      converterBindings.clear();
     }
   }
 
@@ -357,11 +371,10 @@ public class SimpleParser implements Parser {
       // There is a single target of this method, so provide completion
       // services for it
       final MethodTarget methodTarget = targets.iterator().next();
+      final CommandMethod commandMethod = getCommandMethod(methodTarget);
 
       // Identify the command we're working with
-      final CliCommand cmd = methodTarget.getMethod().getAnnotation(CliCommand.class);
-      Validate.notNull(cmd, "CliCommand unavailable for '%s'", methodTarget.getMethod()
-          .toGenericString());
+      final CliCommand cmd = commandMethod.getCliCommand();
 
       // Make a reasonable attempt at parsing the remainingBuffer
       Map<String, String> options;
@@ -380,12 +393,11 @@ public class SimpleParser implements Parser {
       }
 
       // Lookup arguments for this target
-      final Annotation[][] parameterAnnotations =
-          methodTarget.getMethod().getParameterAnnotations();
+      final Class<?>[] parameterTypes = commandMethod.getParameterTypes();
 
       // If there aren't any parameters for the method, at least ensure
       // they have typed the command properly
-      if (parameterAnnotations.length == 0) {
+      if (parameterTypes.length == 0) {
         for (final String value : cmd.value()) {
           if (buffer.startsWith(value) || value.startsWith(buffer)) {
             // No space at the end, as there's no need to continue
@@ -424,23 +436,11 @@ public class SimpleParser implements Parser {
       // CliCommand, and they specified a valid command name
 
       // Record all the CliOptions applicable to this command
-      final List<CliOption> cliOptions = new ArrayList<CliOption>();
-      for (final Annotation[] annotations : parameterAnnotations) {
-        CliOption cliOption = null;
-        for (final Annotation a : annotations) {
-          if (a instanceof CliOption) {
-            cliOption = (CliOption) a;
-          }
-        }
-
-        // ROO-3697: Since Spring Roo 2.0, you could define a parameter
-        // in methods without @CliOption annotation. This parameter will
-        // not be
-        // included on cliOptions list
-        if (cliOption != null) {
-          cliOptions.add(cliOption);
-        }
-      }
+      // ROO-3697: Since Spring Roo 2.0, you could define a parameter
+      // in methods without @CliOption annotation. This parameter will
+      // not be
+      // included on cliOptions list
+      final List<CliOption> cliOptions = commandMethod.getCliOptions();
 
       // Make a list of all CliOptions they've already included or are
       // system-provided
@@ -511,37 +511,21 @@ public class SimpleParser implements Parser {
               if (!isMandatoryParam(methodTarget.getKey(), include, shellContext)
                   && "*".equals(include.unspecifiedDefaultValue()) && !"".equals(value)) {
                 try {
-                  for (final Converter<?> candidate : converters) {
-                    // Find the target parameter
-                    Class<?> paramType = null;
-                    int index = -1;
-                    for (final Annotation[] a : methodTarget.getMethod().getParameterAnnotations()) {
-                      index++;
-                      for (final Annotation an : a) {
-                        if (an instanceof CliOption) {
-                          if (an.equals(include)) {
-                            // Found the parameter,
-                            // so
-                            // store it
-                            paramType = methodTarget.getMethod().getParameterTypes()[index];
-                            break;
-                          }
-                        }
-                      }
-                    }
-                    if (paramType != null && candidate.supports(paramType, include.optionContext())) {
-                      // Try to invoke this usable
-                      // converter
-                      candidate.convertFromText("*", paramType, include.optionContext());
-                      // If we got this far, the converter
-                      // is
-                      // happy with "*" so we need not
-                      // bother
-                      // the user with entering the data
-                      // in
-                      // themselves
-                      break;
-                    }
+                  // Find the target parameter
+                  final Class<?> paramType = commandMethod.getParameterType(include);
+                  final Converter<?> converter =
+                      paramType == null ? null : getConverter(paramType, include.optionContext());
+                  if (converter != null) {
+                    // Try to invoke this usable
+                    // converter
+                    converter.convertFromText("*", paramType, include.optionContext());
+                    // If we got this far, the converter
+                    // is
+                    // happy with "*" so we need not
+                    // bother
+                    // the user with entering the data
+                    // in
+                    // themselves
                   }
                 } catch (final RuntimeException notYetReady) {
                   if (translated.endsWith(" ")) {
@@ -655,7 +639,7 @@ public class SimpleParser implements Parser {
 
           // ROO-3697: check if current key completion is a
           // globalParameter
-          if (hasShellContextParameter(methodTarget.getMethod())) {
+          if (hasShellContextParameter(commandMethod)) {
             for (final String parameter : globalParameters) {
               if (parameter != null && lastOptionKey != null
                   && parameter.regionMatches(true, 0, lastOptionKey, 0, lastOptionKey.length())) {
@@ -680,7 +664,6 @@ public class SimpleParser implements Parser {
         // Lookup the relevant CliOption that applies to this
         // lastOptionKey
         // We do this via the parameter type
-        final Class<?>[] parameterTypes = methodTarget.getMethod().getParameterTypes();
         for (int i = 0; i < parameterTypes.length; i++) {
           final Class<?> parameterType = parameterTypes[i];
 
@@ -725,16 +708,13 @@ public class SimpleParser implements Parser {
               } else {
 
                 // Use a Converter if one is available
-                for (final Converter<?> candidate : converters) {
-                  if (candidate.supports(parameterType, option.optionContext())) {
-                    // Found a usable converter
-                    final boolean addSpace =
-                        candidate.getAllPossibleValues(allValues, parameterType, lastOptionValue,
-                            option.optionContext(), methodTarget);
-                    if (!addSpace) {
-                      suffix = "";
-                    }
-                    break;
+                final Converter<?> converter = getConverter(parameterType, option.optionContext());
+                if (converter != null) {
+                  final boolean addSpace =
+                      converter.getAllPossibleValues(allValues, parameterType, lastOptionValue,
+                          option.optionContext(), methodTarget);
+                  if (!addSpace) {
+                    suffix = "";
                   }
                 }
               }
@@ -978,7 +958,7 @@ public class SimpleParser implements Parser {
       // if all mandatory parameters have been defined and exists
       // a ShellContext
       // parameter defined on last position of current method.
-      if (hasShellContextParameter(methodTarget.getMethod())) {
+      if (hasShellContextParameter(getCommandMethod(methodTarget))) {
         for (String parameter : globalParameters) {
 
           // Check if this global parameter is already defined
@@ -1007,74 +987,132 @@ public class SimpleParser implements Parser {
     return availabilityIndicators.get(command);
   }
 
-  private Set<CliOption> getCliOptions(final Annotation[][] parameterAnnotations) {
-    final Set<CliOption> cliOptions = new LinkedHashSet<CliOption>();
-    for (final Annotation[] annotations : parameterAnnotations) {
-      for (final Annotation annotation : annotations) {
-        if (annotation instanceof CliOption) {
-          final CliOption cliOption = (CliOption) annotation;
-          cliOptions.add(cliOption);
-        }
+  private CommandMethod getCommandMethod(final MethodTarget methodTarget) {
+    final CommandMethod commandMethod = commandTrie.getCommandMethod(methodTarget.getMethod());
+    Validate.notNull(commandMethod, "CliCommand unavailable for '%s'", methodTarget.getMethod()
+        .toGenericString());
+    return commandMethod;
+  }
+
+  /**
+   * Returns the converter to use for the given type and option context,
+   * remembering it until it no longer supports them or the converters change
+   * 
+   * @param requiredType the type to convert to (required)
+   * @param optionContext the option context (can be <code>null</code>)
+   * @return <code>null</code> if no converter supports them
+   */
+  private Converter<?> getConverter(final Class<?> requiredType, final String optionContext) {
+    final String binding = requiredType.getName() + "|" + optionContext;
+    final Converter<?> boundConverter = converterBindings.get(binding);
+    if (boundConverter != null && boundConverter.supports(requiredType, optionContext)) {
+      return boundConverter;
+    }
+    for (final Converter<?> candidate : converters) {
+      if (candidate.supports(requiredType, optionContext)) {
+        // Found a usable converter
+        converterBindings.put(binding, candidate);
+        return candidate;
       }
     }
-    return cliOptions;
+    return null;
   }
 
   /**
-   * This method loads converters and commands if needed
+   * This method loads converters and commands if needed, i.e. the first time
+   * it's called; from then on, converters and commands are added and removed
+   * as their services are registered and unregistered.
    */
   public void loadConvertersAndCommands() {
     synchronized (mutex) {
+      if (serviceListener != null) {
+        return;
+      }
 
-      boolean someComponentChanges = false;
-
-      if (commands.isEmpty() || hasToReloadComponents()) {
-        // Cleaning commands and indicators
-        commands.clear();
-        availabilityIndicators.clear();
-        // Get all Services implement CommandMarker interface
-        try {
-          ServiceReference<?>[] references =
-              this.context.getAllServiceReferences(CommandMarker.class.getName(), null);
-
-          for (ServiceReference<?> ref : references) {
-            CommandMarker command = (CommandMarker) this.context.getService(ref);
-            add(command);
+      // Start listening before looking services up, so none are missed
+      serviceListener = new ServiceListener() {
+        public void serviceChanged(final ServiceEvent event) {
+          synchronized (mutex) {
+            if (event.getType() == ServiceEvent.REGISTERED) {
+              addService(event.getServiceReference());
+            } else if (event.getType() == ServiceEvent.UNREGISTERING) {
+              removeService(event.getServiceReference());
+            }
           }
-
-        } catch (InvalidSyntaxException e) {
-          LOGGER.warning("Cannot load CommandMarker on SimpleParser.");
         }
-
-        someComponentChanges = true;
+      };
+      try {
+        this.context.addServiceListener(serviceListener, SERVICE_FILTER);
+      } catch (InvalidSyntaxException e) {
+        LOGGER.warning("Cannot listen for CommandMarker and Converter services on SimpleParser.");
       }
 
-      if (converters.isEmpty() || hasToReloadComponents()) {
-        // Cleaning converters
-        converters.clear();
-        // Get all Services implement Converter interface
-        try {
-          ServiceReference<?>[] references =
-              this.context.getAllServiceReferences(Converter.class.getName(), null);
+      // Cleaning commands, indicators and converters
+      commands.clear();
+      commandTrie.clear();
+      availabilityIndicators.clear();
+      converters.clear();
+      converterBindings.clear();
 
+      // Get all Services implement CommandMarker or Converter interfaces
+      try {
+        ServiceReference<?>[] references =
+            this.context.getAllServiceReferences(null, SERVICE_FILTER);
+        if (references != null) {
           for (ServiceReference<?> ref : references) {
-            Converter<?> converter = (Converter<?>) this.context.getService(ref);
-            add(converter);
+            addService(ref);
           }
-
-        } catch (InvalidSyntaxException e) {
-          LOGGER.warning("Cannot load Converter on SimpleParser.");
         }
-
-        someComponentChanges = true;
-
+      } catch (InvalidSyntaxException e) {
+        LOGGER.warning("Cannot load CommandMarker and Converter on SimpleParser.");
       }
+    }
+  }
 
-      if (someComponentChanges) {
-        setLasTimeUpdateComponents(System.currentTimeMillis());
+  /**
+   * Stops tracking the converters and commands loaded by
+   * {@link #loadConvertersAndCommands()}, e.g. when this parser is no longer
+   * in use
+   */
+  public void unloadConvertersAndCommands() {
+    synchronized (mutex) {
+      if (serviceListener != null) {
+        this.context.removeServiceListener(serviceListener);
+        serviceListener = null;
       }
+    }
+  }
+
+  private void addService(final ServiceReference<?> reference) {
+    final List<String> objectClasses =
+        Arrays.asList((String[]) reference.getProperty(Constants.OBJECTCLASS));
+    final Object service = this.context.getService(reference);
+    if (service == null) {
+      return;
+    }
+    if (objectClasses.contains(CommandMarker.class.getName())) {
+      add((CommandMarker) service);
+    }
+    if (objectClasses.contains(Converter.class.getName())) {
+      add((Converter<?>) service);
+    }
+    setLasTimeUpdateComponents(System.currentTimeMillis());
+  }
 
+  private void removeService(final ServiceReference<?> reference) {
+    final List<String> objectClasses =
+        Arrays.asList((String[]) reference.getProperty(Constants.OBJECTCLASS));
+    final Object service = this.context.getService(reference);
+    if (service == null) {
+      return;
     }
+    if (objectClasses.contains(CommandMarker.class.getName())) {
+      remove((CommandMarker) service);
+    }
+    if (objectClasses.contains(Converter.class.getName())) {
+      remove((Converter<?>) service);
+    }
+    setLasTimeUpdateComponents(System.currentTimeMillis());
   }
 
   public Set<String> getEveryCommand() {
@@ -1084,22 +1122,12 @@ public class SimpleParser implements Parser {
 
       // Return commands list
       final SortedSet<String> result = new TreeSet<String>(COMPARATOR);
-      for (final Object o : commands) {
-        final Method[] methods = o.getClass().getMethods();
-        for (final Method m : methods) {
-          final CliCommand cmd = m.getAnnotation(CliCommand.class);
-          if (cmd != null) {
-            result.addAll(Arrays.asList(cmd.value()));
-          }
-        }
-      }
+      result.addAll(commandTrie.getCommands());
       return result;
     }
   }
 
-
-
-  private Set<String> getSpecifiedUnavailableOptions(final Set<CliOption> cliOptions,
+  private Set<String> getSpecifiedUnavailableOptions(final Collection<CliOption> cliOptions,
       final Map<String, String> options) {
     final Set<String> cliOptionKeySet = new LinkedHashSet<String>();
     for (final CliOption cliOption : cliOptions) {
@@ -1123,71 +1151,45 @@ public class SimpleParser implements Parser {
   private Collection<MethodTarget> locateTargets(final String buffer, final boolean strictMatching,
       final boolean checkAvailabilityIndicators) {
 
-    if (commands.isEmpty() || hasToReloadComponents()) {
-      // Cleaning commands
-      commands.clear();
-      availabilityIndicators.clear();
-      // Get all Services implement CommandMarker interface
-      try {
-        ServiceReference<?>[] references =
-            this.context.getAllServiceReferences(CommandMarker.class.getName(), null);
-
-        for (ServiceReference<?> ref : references) {
-          CommandMarker command = (CommandMarker) this.context.getService(ref);
-          add(command);
-        }
-
-      } catch (InvalidSyntaxException e) {
-        LOGGER.warning("Cannot load CommandMarker on SimpleParser.");
-      }
-
-      setLasTimeUpdateComponents(System.currentTimeMillis());
-    }
+    loadConvertersAndCommands();
 
     Validate.notNull(buffer, "Buffer required");
     final Collection<MethodTarget> result = new HashSet<MethodTarget>();
 
-    // The reflection could certainly be optimised, but it's good enough for
-    // now (and cached reflection
-    // is unlikely to be noticeable to a human being using the CLI)
-    for (final CommandMarker command : commands) {
-      for (final Method method : command.getClass().getMethods()) {
-        final CliCommand cmd = method.getAnnotation(CliCommand.class);
-        if (cmd != null) {
-          // We have a @CliCommand.
-          if (checkAvailabilityIndicators) {
-            // Decide if this @CliCommand is available at this
-            // moment
-            Boolean available = null;
-            for (final String value : cmd.value()) {
-              final MethodTarget mt = getAvailabilityIndicator(value);
-              if (mt != null) {
-                Validate.isTrue(
-                    available == null,
-                    "More than one availability indicator is defined for '"
-                        + method.toGenericString() + "'");
-                try {
-                  available = (Boolean) mt.getMethod().invoke(mt.getTarget());
-                  // We should "break" here, but we loop over
-                  // all to ensure no conflicting availability
-                  // indicators are defined
-                } catch (final Exception e) {
-                  available = false;
-                }
-              }
-            }
-            // Skip this @CliCommand if it's not available
-            if (available != null && !available) {
-              continue;
+    // Only the commands indexed under the buffer's words can match it
+    for (final CommandMethod commandMethod : commandTrie.getCandidates(buffer)) {
+      final Method method = commandMethod.getMethod();
+      final CliCommand cmd = commandMethod.getCliCommand();
+      if (checkAvailabilityIndicators) {
+        // Decide if this @CliCommand is available at this
+        // moment
+        Boolean available = null;
+        for (final String value : cmd.value()) {
+          final MethodTarget mt = getAvailabilityIndicator(value);
+          if (mt != null) {
+            Validate.isTrue(available == null,
+                "More than one availability indicator is defined for '" + method.toGenericString()
+                    + "'");
+            try {
+              available = (Boolean) mt.getMethod().invoke(mt.getTarget());
+              // We should "break" here, but we loop over
+              // all to ensure no conflicting availability
+              // indicators are defined
+            } catch (final Exception e) {
+              available = false;
             }
           }
+        }
+        // Skip this @CliCommand if it's not available
+        if (available != null && !available) {
+          continue;
+        }
+      }
 
-          for (final String value : cmd.value()) {
-            final String remainingBuffer = isMatch(buffer, value, strictMatching);
-            if (remainingBuffer != null) {
-              result.add(new MethodTarget(method, command, remainingBuffer, value));
-            }
-          }
+      for (final String value : cmd.value()) {
+        final String remainingBuffer = isMatch(buffer, value, strictMatching);
+        if (remainingBuffer != null) {
+          result.add(new MethodTarget(method, commandMethod.getTarget(), remainingBuffer, value));
         }
       }
     }
@@ -1240,16 +1242,15 @@ public class SimpleParser implements Parser {
       final MethodTarget methodTarget = matchingTargets.iterator().next();
 
       // Argument conversion time
-      final Annotation[][] parameterAnnotations =
-          methodTarget.getMethod().getParameterAnnotations();
-      if (parameterAnnotations.length == 0) {
+      final CommandMethod commandMethod = getCommandMethod(methodTarget);
+      final Class<?>[] parameterTypes = commandMethod.getParameterTypes();
+      if (parameterTypes.length == 0) {
         // No args
         return new ParseResult(methodTarget.getMethod(), methodTarget.getTarget(), null);
       }
 
       // Oh well, we need to convert some arguments
-      final List<Object> arguments =
-          new ArrayList<Object>(methodTarget.getMethod().getParameterTypes().length);
+      final List<Object> arguments = new ArrayList<Object>(parameterTypes.length);
 
       // Attempt to parse
       Map<String, String> options = null;
@@ -1272,10 +1273,9 @@ public class SimpleParser implements Parser {
         shellContext.setParameter(parameter, value);
       }
 
-      final Set<CliOption> cliOptions = getCliOptions(parameterAnnotations);
+      final List<CliOption> cliOptions = commandMethod.getCliOptions();
       for (final CliOption cliOption : cliOptions) {
-        final Class<?> requiredType =
-            methodTarget.getMethod().getParameterTypes()[arguments.size()];
+        final Class<?> requiredType = parameterTypes[arguments.size()];
 
         // Validate visibility and values
         if (options.keySet().contains(cliOption.key()[0])) {
@@ -1366,14 +1366,7 @@ public class SimpleParser implements Parser {
           CliOptionContext.setOptionContext(cliOption.optionContext());
           CliSimpleParserContext.setSimpleParserContext(this);
           Object result;
-          Converter<?> c = null;
-          for (final Converter<?> candidate : converters) {
-            if (candidate.supports(requiredType, cliOption.optionContext())) {
-              // Found a usable converter
-              c = candidate;
-              break;
-            }
-          }
+          final Converter<?> c = getConverter(requiredType, cliOption.optionContext());
           if (c == null) {
             throw new IllegalStateException("TODO: Add basic type conversion");
             // TODO Fall back to a normal SimpleTypeConverter and
@@ -1428,7 +1421,7 @@ public class SimpleParser implements Parser {
 
       // ROO-3697: Use shellContext to save current shell parameters if
       // method contains ShellContext parameter
-      if (hasShellContextParameter(methodTarget.getMethod())) {
+      if (hasShellContextParameter(commandMethod)) {
 
         // Save executed command
         shellContext.setExecutedCommand(input);
@@ -1504,13 +1497,14 @@ public class SimpleParser implements Parser {
   /**
    * Checks if some method has the ShellContext parameter
    * 
-   * @param method
+   * @param commandMethod
    * @return
    */
-  private boolean hasShellContextParameter(Method method) {
-    int paramNumbers = method.getParameterTypes().length;
+  private boolean hasShellContextParameter(CommandMethod commandMethod) {
+    final Class<?>[] parameterTypes = commandMethod.getParameterTypes();
+    int paramNumbers = parameterTypes.length;
     int shellContextPosition = 1;
-    for (Class<?> methodParameters : method.getParameterTypes()) {
+    for (Class<?> methodParameters : parameterTypes) {
       if (methodParameters.isAssignableFrom(ShellContext.class)) {
         if (shellContextPosition != paramNumbers) {
           String msg =
@@ -1705,6 +1699,7 @@ public class SimpleParser implements Parser {
   public final void remove(final CommandMarker command) {
     synchronized (mutex) {
       commands.remove(command);
+      commandTrie.remove(command);
       for (final Method m : command.getClass().getMethods()) {
         final CliAvailabilityIndicator availability =
             m.getAnnotation(CliAvailabilityIndicator.class);
@@ -1720,22 +1715,10 @@ public class SimpleParser implements Parser {
   public final void remove(final Converter<?> converter) {
     synchronized (mutex) {
       converters.remove(converter);
+      converterBindings.clear();
     }
   }
 
-  /**
-   * This method compares RooBundleActivator lastTimeBundleChange with
-   * SimpleParser lasTimeUpdateCommands
-   * 
-   * @return
-   */
-  private boolean hasToReloadComponents() {
-    if (getRooBundleActivator() != null) {
-      return getRooBundleActivator().getLastTimeBundleChange() > getLasTimeUpdateComponents();
-    }
-    return true;
-  }
-
   /**
    * @return the lasTimeUpdateCommands
    */
@@ -1,9 +1,22 @@
 package org.springframework.roo.shell;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
 /**
@@ -27,4 +40,134 @@ public class AbstractShellTest {
     // Check
     assertNotNull(props);
   }
+
+  /**
+   * A shell that records the script lines it executes, and the batch each
+   * was executed in, failing those starting with "fail".
+   */
+  private static class ScriptShell extends AbstractShell {
+
+    private int batch;
+    private final List<String> executedLines = new ArrayList<String>();
+
+    private final ExecutionStrategy executionStrategy = new ExecutionStrategy() {
+
+      public Object execute(final ParseResult parseResult) {
+        throw new UnsupportedOperationException();
+      }
+
+      public <T> T executeBatch(final Callable<T> task) {
+        batch++;
+        try {
+          return task.call();
+        } catch (final RuntimeException e) {
+          throw e;
+        } catch (final Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+
+      public boolean isReadyForCommands() {
+        return true;
+      }
+
+      public void terminate() {}
+    };
+
+    @Override
+    protected boolean executeScriptLine(final String line) {
+      executedLines.add(batch + ": " + line);
+      return !line.startsWith("fail");
+    }
+
+    @Override
+    protected Collection<URL> findResources(final String path) {
+      return null;
+    }
+
+    @Override
+    protected ExecutionStrategy getExecutionStrategy() {
+      return executionStrategy;
+    }
+
+    @Override
+    protected String getHomeAsString() {
+      return null;
+    }
+
+    @Override
+    protected Parser getParser() {
+      return null;
+    }
+
+    public boolean isDevelopmentMode() {
+      return false;
+    }
+
+    public void promptLoop() {}
+
+    public void setDevelopmentMode(final boolean developmentMode) {}
+  }
+
+  private File createScript(final String... lines) throws IOException {
+    final File script = File.createTempFile("test", ".roo");
+    script.deleteOnExit();
+    FileUtils.writeLines(script, Arrays.asList(lines));
+    return script;
+  }
+
+  @Test
+  public void testBatchScriptExecutesCommandsInBatchesOfTheGivenSize() throws Exception {
+    // Set up
+    final ScriptShell shell = new ScriptShell();
+    final File script =
+        createScript("entity jpa --class ~.Foo", "", "field string --fieldName bar",
+            "entity jpa --class ~.Bar", "// comment", "field string --fieldName baz");
+
+    // Invoke
+    shell.script(script, false, true, 2);
+
+    // Check
+    assertEquals(Arrays.asList("1: entity jpa --class ~.Foo", "1: field string --fieldName bar",
+        "2: entity jpa --class ~.Bar", "2: // comment", "2: field string --fieldName baz"),
+        shell.executedLines);
+  }
+
+  @Test
+  public void testBatchScriptDoesNotCountCommentsAsCommands() throws Exception {
+    // Set up
+    final ScriptShell shell = new ScriptShell();
+    final File script =
+        createScript("/*", "entity jpa --class ~.Foo", "*/", "# comment",
+            "entity jpa --class ~.Bar", "/* comment */", "field string --fieldName baz",
+            "field string --fieldName qux /* comment */", "// comment", "hint");
+
+    // Invoke
+    shell.script(script, false, true, 2);
+
+    // Check
+    assertEquals(Arrays.asList("1: /*", "1: entity jpa --class ~.Foo", "1: */", "1: # comment",
+        "1: entity jpa --class ~.Bar", "1: /* comment */", "1: field string --fieldName baz",
+        "2: field string --fieldName qux /* comment */", "2: // comment", "2: hint"),
+        shell.executedLines);
+    assertFalse(shell.inBlockComment);
+  }
+
+  @Test
+  public void testBatchScriptReportsTheLineOfAFailedCommand() throws Exception {
+    // Set up
+    final ScriptShell shell = new ScriptShell();
+    final File script = createScript("entity jpa --class ~.Foo", "", "fail --now", "hint");
+
+    // Invoke
+    try {
+      shell.script(script, false, true, 0);
+      fail("Expected an IllegalStateException");
+    } catch (final IllegalStateException expected) {
+      // Check
+      assertEquals("Script execution aborted at line 3", expected.getMessage());
+    }
+    assertEquals(Arrays.asList("1: entity jpa --class ~.Foo", "1: fail --now"),
+        shell.executedLines);
+  }
 }
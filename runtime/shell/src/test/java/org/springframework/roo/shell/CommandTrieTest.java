@@ -0,0 +1,140 @@
+package org.springframework.roo.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.shell.CommandTrie.CommandMethod;
+
+/**
+ * Unit test of {@link CommandTrie}
+ */
+public class CommandTrieTest {
+
+  public static class SampleCommands implements CommandMarker {
+
+    @CliCommand("entity jpa")
+    public void entity(@CliOption(key = "class") final String name,
+        @CliOption(key = "table") final String table) {}
+
+    @CliCommand({"field string", "field text"})
+    public void fieldString(@CliOption(key = "fieldName") final String fieldName) {}
+
+    @CliCommand("field number")
+    public void fieldNumber(@CliOption(key = "fieldName") final String fieldName) {}
+
+    @CliCommand("hint")
+    public void hint(@CliOption(key = "") final String topic) {}
+
+    @CliCommand("project setup")
+    public void projectSetup(@CliOption(key = "topLevelPackage") final String topLevelPackage) {}
+
+    @CliCommand("web mvc setup")
+    public void webMvcSetup() {}
+
+    @CliCommand("web mvc view setup")
+    public void webMvcViewSetup(@CliOption(key = "type") final String type) {}
+  }
+
+  public static class OtherCommands implements CommandMarker {
+
+    @CliCommand("project scan")
+    public void projectScan() {}
+  }
+
+  private static final String[] BUFFERS = {"", " ", "p", "project", "project ", "project s",
+      "project setup", "project setup ", "project setup --topLevelPackage com.foo", "proj set",
+      "projectsetup", "field", "field ", "field s", "field t", "field string --fieldName name",
+      "field strings", "web", "web m", "web mvc", "web mvc s", "web mvc v",
+      "web mvc view setup --type THYMELEAF", "mvc setup", "entity jpa --class ~.Foo", "x",
+      "hint", "hint controllers", "setup"};
+
+  // Fixture
+  private CommandMarker commands;
+  private CommandTrie commandTrie;
+  private CommandMarker otherCommands;
+
+  @Before
+  public void setUp() {
+    commands = new SampleCommands();
+    otherCommands = new OtherCommands();
+    commandTrie = new CommandTrie();
+    commandTrie.add(commands);
+    commandTrie.add(otherCommands);
+  }
+
+  /**
+   * Asserts that the candidates for each buffer include every command method
+   * that matches it, as found by checking every command
+   */
+  private void assertCandidatesIncludeAllMatches(final CommandMarker... commandMarkers) {
+    for (final String buffer : BUFFERS) {
+      final Set<Method> candidates = new HashSet<Method>();
+      for (final CommandMethod commandMethod : commandTrie.getCandidates(buffer)) {
+        candidates.add(commandMethod.getMethod());
+      }
+      for (final CommandMarker commandMarker : commandMarkers) {
+        for (final Method method : commandMarker.getClass().getMethods()) {
+          final CliCommand cliCommand = method.getAnnotation(CliCommand.class);
+          if (cliCommand != null) {
+            for (final String value : cliCommand.value()) {
+              if (SimpleParser.isMatch(buffer, value, false) != null) {
+                assertTrue("'" + buffer + "' matches '" + value + "'",
+                    candidates.contains(method));
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCandidatesIncludeAllMatches() {
+    assertCandidatesIncludeAllMatches(commands, otherCommands);
+  }
+
+  @Test
+  public void testCandidatesAreNarrowedByCommandWords() throws Exception {
+    final Set<CommandMethod> candidates =
+        new HashSet<CommandMethod>(commandTrie.getCandidates("web mvc v"));
+    assertEquals(new HashSet<CommandMethod>(Arrays.asList(commandTrie
+        .getCommandMethod(SampleCommands.class.getMethod("webMvcViewSetup", String.class)))),
+        candidates);
+    assertTrue(commandTrie.getCandidates("x").isEmpty());
+  }
+
+  @Test
+  public void testCommandMethodMetadata() throws Exception {
+    final Method method = SampleCommands.class.getMethod("entity", String.class, String.class);
+    final CommandMethod commandMethod = commandTrie.getCommandMethod(method);
+
+    assertEquals(commands, commandMethod.getTarget());
+    assertEquals("entity jpa", commandMethod.getCliCommand().value()[0]);
+    assertEquals(2, commandMethod.getCliOptions().size());
+    assertEquals("table", commandMethod.getCliOptions().get(1).key()[0]);
+    assertEquals(String.class,
+        commandMethod.getParameterType(commandMethod.getCliOptions().get(1)));
+  }
+
+  @Test
+  public void testRemovedCommandsAreNoLongerCandidates() throws Exception {
+    commandTrie.remove(otherCommands);
+
+    assertNull(commandTrie.getCommandMethod(OtherCommands.class.getMethod("projectScan")));
+    for (final CommandMethod commandMethod : commandTrie.getCandidates("project")) {
+      assertEquals(commands, commandMethod.getTarget());
+    }
+    assertEquals(new HashSet<String>(Arrays.asList("entity jpa", "field string", "field text",
+        "field number", "hint", "project setup", "web mvc setup", "web mvc view setup")),
+        commandTrie.getCommands());
+    assertCandidatesIncludeAllMatches(commands);
+  }
+}
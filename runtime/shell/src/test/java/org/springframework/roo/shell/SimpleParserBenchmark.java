@@ -0,0 +1,242 @@
+package org.springframework.roo.shell;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.roo.shell.CommandTrie.CommandMethod;
+
+/**
+ * Stand-alone benchmark of parsing a long script, comparing the reflective
+ * scan of every command that {@link SimpleParser} used to make for each line
+ * with its {@link CommandTrie} lookup, and timing a full parse of the script.
+ * Reports the time taken for the whole script.
+ * <p>
+ * Not run as part of the build; run the main method, optionally giving a
+ * script to parse (by default, a 5,000 line script of the sample commands
+ * below) and the number of passes to time (20 by default). Lines for other
+ * commands than the sample ones are skipped.
+ */
+public class SimpleParserBenchmark {
+
+  public static class SampleCommands implements CommandMarker {
+
+    @CliCommand("project setup")
+    public void projectSetup(@CliOption(key = "topLevelPackage") final String topLevelPackage) {}
+
+    @CliCommand("jpa setup")
+    public void jpaSetup(@CliOption(key = "provider") final String provider,
+        @CliOption(key = "database") final String database) {}
+
+    @CliCommand("entity jpa")
+    public void entity(@CliOption(key = "class") final String name) {}
+
+    @CliCommand("enum type")
+    public void enumType(@CliOption(key = "class") final String name) {}
+
+    @CliCommand("enum constant")
+    public void enumConstant(@CliOption(key = "name") final String name) {}
+
+    @CliCommand("field boolean")
+    public void fieldBoolean(@CliOption(key = "fieldName") final String name,
+        @CliOption(key = "class") final String type) {}
+
+    @CliCommand("field date")
+    public void fieldDate(@CliOption(key = "fieldName") final String name,
+        @CliOption(key = "class") final String type) {}
+
+    @CliCommand("field enum")
+    public void fieldEnum(@CliOption(key = "fieldName") final String name,
+        @CliOption(key = "type") final String type) {}
+
+    @CliCommand("field list")
+    public void fieldList(@CliOption(key = "fieldName") final String name,
+        @CliOption(key = "type") final String type) {}
+
+    @CliCommand("field number")
+    public void fieldNumber(@CliOption(key = "fieldName") final String name,
+        @CliOption(key = "type") final String type) {}
+
+    @CliCommand("field reference")
+    public void fieldReference(@CliOption(key = "fieldName") final String name,
+        @CliOption(key = "type") final String type) {}
+
+    @CliCommand("field set")
+    public void fieldSet(@CliOption(key = "fieldName") final String name,
+        @CliOption(key = "type") final String type) {}
+
+    @CliCommand("field string")
+    public void fieldString(@CliOption(key = "fieldName") final String name,
+        @CliOption(key = "class") final String type) {}
+
+    @CliCommand("finder add")
+    public void finderAdd(@CliOption(key = "entity") final String entity,
+        @CliOption(key = "name") final String name) {}
+
+    @CliCommand("repository jpa")
+    public void repository(@CliOption(key = "entity") final String entity) {}
+
+    @CliCommand("service")
+    public void service(@CliOption(key = "entity") final String entity) {}
+
+    @CliCommand("web mvc setup")
+    public void webMvcSetup() {}
+
+    @CliCommand("web mvc controller")
+    public void webMvcController(@CliOption(key = "entity") final String entity) {}
+
+    @CliCommand("web mvc language")
+    public void webMvcLanguage(@CliOption(key = "code") final String code) {}
+
+    @CliCommand("web mvc templates setup")
+    public void webMvcTemplatesSetup(@CliOption(key = "type") final String type) {}
+
+    @CliCommand("web mvc view setup")
+    public void webMvcViewSetup(@CliOption(key = "type") final String type) {}
+
+    @CliCommand("security setup")
+    public void securitySetup() {}
+
+    @CliCommand("test unit")
+    public void testUnit(@CliOption(key = "class") final String type) {}
+
+    @CliCommand("test integration")
+    public void testIntegration(@CliOption(key = "class") final String type) {}
+  }
+
+  private static class StringConverter implements Converter<String> {
+
+    public String convertFromText(final String value, final Class<?> targetType,
+        final String optionContext) {
+      return value;
+    }
+
+    public boolean getAllPossibleValues(final List<Completion> completions,
+        final Class<?> targetType, final String existingData, final String optionContext,
+        final MethodTarget target) {
+      return false;
+    }
+
+    public boolean supports(final Class<?> type, final String optionContext) {
+      return String.class.equals(type);
+    }
+  }
+
+  private static final String[] SCRIPT_LINES = {"entity jpa --class ~.domain.Entity%d",
+      "field string --fieldName name%d --class ~.domain.Entity%d",
+      "field number --fieldName quantity%d --type java.lang.Integer",
+      "field date --fieldName created%d --class java.util.Date",
+      "field boolean --fieldName active%d --class boolean",
+      "field reference --fieldName owner%d --type ~.domain.Entity%d",
+      "field set --fieldName items%d --type ~.domain.Entity%d",
+      "field enum --fieldName status%d --type ~.domain.Status",
+      "finder add --entity ~.domain.Entity%d --name findByName%d",
+      "repository jpa --entity ~.domain.Entity%d", "service --entity ~.domain.Entity%d",
+      "web mvc controller --entity ~.domain.Entity%d", "test unit --class ~.domain.Entity%d",
+      "test integration --class ~.domain.Entity%d"};
+  private static final int SCRIPT_LENGTH = 5000;
+
+  private interface Lookup {
+    int run(String line) throws Exception;
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final int passes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    final CommandMarker commands = new SampleCommands();
+    final CommandTrie commandTrie = new CommandTrie();
+    commandTrie.add(commands);
+    final SimpleParser parser = new SimpleParser() {
+      @Override
+      public void loadConvertersAndCommands() {
+        // The commands and converters are added below
+      }
+    };
+    parser.add(commands);
+    parser.add(new StringConverter());
+
+    final List<String> script = new ArrayList<String>();
+    if (args.length > 0) {
+      for (final String line : FileUtils.readLines(new File(args[0]), "UTF-8")) {
+        final String input = parser.normalise(line);
+        if (StringUtils.isNotBlank(input) && !input.startsWith("//")
+            && !commandTrie.getCandidates(input).isEmpty()) {
+          script.add(input);
+        }
+      }
+    } else {
+      for (int i = 0; i < SCRIPT_LENGTH; i++) {
+        script.add(String.format(SCRIPT_LINES[i % SCRIPT_LINES.length], i, i));
+      }
+    }
+    System.out.println("Parsing " + script.size() + " script lines " + passes + " times");
+
+    final int before = report("Reflective scan (before)", script, passes, new Lookup() {
+      public int run(final String line) {
+        int found = 0;
+        for (final Method method : commands.getClass().getMethods()) {
+          final CliCommand cliCommand = method.getAnnotation(CliCommand.class);
+          if (cliCommand != null) {
+            for (final String value : cliCommand.value()) {
+              if (SimpleParser.isMatch(line, value, true) != null) {
+                found++;
+              }
+            }
+          }
+        }
+        return found;
+      }
+    });
+    final int after = report("CommandTrie (after)", script, passes, new Lookup() {
+      public int run(final String line) {
+        int found = 0;
+        for (final CommandMethod commandMethod : commandTrie.getCandidates(line)) {
+          for (final String value : commandMethod.getCliCommand().value()) {
+            if (SimpleParser.isMatch(line, value, true) != null) {
+              found++;
+            }
+          }
+        }
+        return found;
+      }
+    });
+    if (before != after) {
+      throw new IllegalStateException("Found " + before + " commands before but " + after
+          + " after");
+    }
+    report("SimpleParser.parse", script, passes, new Lookup() {
+      public int run(final String line) {
+        return parser.parse(line) == null ? 0 : 1;
+      }
+    });
+  }
+
+  private static int report(final String name, final List<String> script, final int passes,
+      final Lookup lookup) throws Exception {
+    // Warm up the JIT
+    int found = pass(script, lookup);
+    for (int i = 0; i < passes / 10; i++) {
+      pass(script, lookup);
+    }
+
+    final long start = System.nanoTime();
+    for (int i = 0; i < passes; i++) {
+      found = pass(script, lookup);
+    }
+    final long elapsed = System.nanoTime() - start;
+
+    System.out.println(String.format("%-26s %8.3f ms/script %6d commands found", name, elapsed
+        / 1e6 / passes, found));
+    return found;
+  }
+
+  private static int pass(final List<String> script, final Lookup lookup) throws Exception {
+    int found = 0;
+    for (final String line : script) {
+      found += lookup.run(line);
+    }
+    return found;
+  }
+}
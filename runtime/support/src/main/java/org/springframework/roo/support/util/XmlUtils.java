@@ -11,9 +11,10 @@ import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -57,11 +58,135 @@ import org.xml.sax.SAXException;
  */
 public final class XmlUtils {
 
-  private static final Map<String, XPathExpression> COMPILED_EXPRESSION_CACHE =
-      new HashMap<String, XPathExpression>();
+  /**
+   * The most recently used expressions of one thread, compiled by that
+   * thread's own {@link XPath}, as neither it nor the expressions it compiles
+   * are thread safe. Each value is either an {@link ElementPath} or an
+   * {@link XPathExpression}.
+   */
+  private static class CompiledExpressions extends LinkedHashMap<String, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final XPath xPath = XPathFactory.newInstance().newXPath();
+
+    CompiledExpressions() {
+      super(16, 0.75f, true);
+    }
+
+    Object compile(final String xPathExpression) throws XPathExpressionException {
+      Object compiled = get(xPathExpression);
+      if (compiled == null) {
+        if (ELEMENT_PATH.matcher(xPathExpression).matches()) {
+          compiled = new ElementPath(xPathExpression);
+        } else {
+          compiled = xPath.compile(xPathExpression);
+        }
+        put(xPathExpression, compiled);
+      }
+      return compiled;
+    }
+
+    XPathExpression compileUncached(final String xPathExpression)
+        throws XPathExpressionException {
+      return xPath.compile(xPathExpression);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+      return size() > COMPILED_EXPRESSION_CACHE_SIZE;
+    }
+  }
+
+  /**
+   * An XPath expression consisting only of element names separated by
+   * slashes, such as <code>/project/dependencies/dependency</code>, which is
+   * evaluated by walking the DOM instead of by the XPath engine. Like the
+   * latter, it matches elements without a namespace by their local name.
+   */
+  private static class ElementPath {
+
+    private final boolean absolute;
+    private final String[] names;
+
+    ElementPath(final String path) {
+      absolute = path.startsWith("/");
+      names = StringUtils.split(path, '/');
+    }
+
+    /**
+     * Adds the matching elements to the given list, in document order.
+     * 
+     * @return <code>false</code> if the XPath engine has to be used instead,
+     *         e.g. for an absolute path from a node not in a document
+     */
+    boolean find(final Node context, final List<Element> matches, final boolean firstOnly) {
+      if (context == null || context.getNodeType() != Node.ELEMENT_NODE
+          && context.getNodeType() != Node.DOCUMENT_NODE) {
+        return false;
+      }
+      Node start = context;
+      if (absolute) {
+        while (start.getParentNode() != null) {
+          start = start.getParentNode();
+        }
+        if (start.getNodeType() != Node.DOCUMENT_NODE) {
+          return false;
+        }
+      }
+      find(start, 0, matches, firstOnly);
+      return true;
+    }
+
+    /**
+     * @return whether to stop looking
+     */
+    private boolean find(final Node parent, final int depth, final List<Element> matches,
+        final boolean firstOnly) {
+      for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() == Node.ELEMENT_NODE && child.getNamespaceURI() == null
+            && names[depth].equals(getLocalName(child))) {
+          if (depth < names.length - 1) {
+            if (find(child, depth + 1, matches, firstOnly)) {
+              return true;
+            }
+          } else {
+            matches.add((Element) child);
+            if (firstOnly) {
+              return true;
+            }
+          }
+        }
+      }
+      return false;
+    }
+
+    private String getLocalName(final Node element) {
+      if (element.getLocalName() != null) {
+        return element.getLocalName();
+      }
+      // A DOM that isn't namespace aware keeps any prefix in the node name
+      final String nodeName = element.getNodeName();
+      return nodeName.substring(nodeName.indexOf(':') + 1);
+    }
+  }
+
+  /**
+   * The number of compiled XPath expressions that each thread keeps.
+   */
+  static final int COMPILED_EXPRESSION_CACHE_SIZE = 256;
+
+  private static final ThreadLocal<CompiledExpressions> COMPILED_EXPRESSION_CACHE =
+      new ThreadLocal<CompiledExpressions>() {
+        @Override
+        protected CompiledExpressions initialValue() {
+          return new CompiledExpressions();
+        }
+      };
+  private static final Pattern ELEMENT_PATH = Pattern
+      .compile("/?[A-Za-z_][\\w.-]*(/[A-Za-z_][\\w.-]*)*");
   private static final DocumentBuilderFactory FACTORY = DocumentBuilderFactory.newInstance();
   private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
-  private static final XPath XPATH = XPathFactory.newInstance().newXPath();
 
   /**
    * Checks the presented element for illegal characters that could cause
@@ -224,10 +349,16 @@ public final class XmlUtils {
     NodeList nodes = null;
 
     try {
-      XPathExpression expr = COMPILED_EXPRESSION_CACHE.get(xPathExpression);
-      if (expr == null) {
-        expr = XPATH.compile(xPathExpression);
-        COMPILED_EXPRESSION_CACHE.put(xPathExpression, expr);
+      final CompiledExpressions compiledExpressions = COMPILED_EXPRESSION_CACHE.get();
+      final Object compiled = compiledExpressions.compile(xPathExpression);
+      XPathExpression expr;
+      if (compiled instanceof ElementPath) {
+        if (((ElementPath) compiled).find(root, elements, false)) {
+          return elements;
+        }
+        expr = compiledExpressions.compileUncached(xPathExpression);
+      } else {
+        expr = (XPathExpression) compiled;
       }
       nodes = (NodeList) expr.evaluate(root, XPathConstants.NODESET);
     } catch (final XPathExpressionException e) {
@@ -251,12 +382,7 @@ public final class XmlUtils {
   public static Node findFirstAttribute(final String xPathExpression, final Element element) {
     Node attr = null;
     try {
-      XPathExpression expr = COMPILED_EXPRESSION_CACHE.get(xPathExpression);
-      if (expr == null) {
-        expr = XPATH.compile(xPathExpression);
-        COMPILED_EXPRESSION_CACHE.put(xPathExpression, expr);
-      }
-      attr = (Node) expr.evaluate(element, XPathConstants.NODE);
+      attr = findFirstNode(xPathExpression, element);
     } catch (final XPathExpressionException e) {
       throw new IllegalArgumentException("Unable evaluate xpath expression", e);
     }
@@ -297,6 +423,21 @@ public final class XmlUtils {
     return DomUtils.findFirstElementByName(name, root);
   }
 
+  private static Node findFirstNode(final String xPathExpression, final Node context)
+      throws XPathExpressionException {
+    final CompiledExpressions compiledExpressions = COMPILED_EXPRESSION_CACHE.get();
+    final Object compiled = compiledExpressions.compile(xPathExpression);
+    if (compiled instanceof ElementPath) {
+      final List<Element> matches = new ArrayList<Element>(1);
+      if (((ElementPath) compiled).find(context, matches, true)) {
+        return matches.isEmpty() ? null : matches.get(0);
+      }
+      return (Node) compiledExpressions.compileUncached(xPathExpression).evaluate(context,
+          XPathConstants.NODE);
+    }
+    return (Node) ((XPathExpression) compiled).evaluate(context, XPathConstants.NODE);
+  }
+
   /**
    * Checks in under a given root element whether it can find a child node
    * which matches the XPath expression supplied. Returns {@link Node} if
@@ -313,12 +454,7 @@ public final class XmlUtils {
     Validate.notNull(root, "Root element required");
     Node node = null;
     try {
-      XPathExpression expr = COMPILED_EXPRESSION_CACHE.get(xPathExpression);
-      if (expr == null) {
-        expr = XPATH.compile(xPathExpression);
-        COMPILED_EXPRESSION_CACHE.put(xPathExpression, expr);
-      }
-      node = (Node) expr.evaluate(root, XPathConstants.NODE);
+      node = findFirstNode(xPathExpression, root);
     } catch (final XPathExpressionException e) {
       throw new IllegalArgumentException("Unable evaluate XPath expression '" + xPathExpression
           + "'", e);
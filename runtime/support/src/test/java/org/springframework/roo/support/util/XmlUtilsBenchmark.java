@@ -0,0 +1,116 @@
+package org.springframework.roo.support.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.FileFilterUtils;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Stand-alone benchmark of the lookups that are made over and over again in
+ * POMs, comparing the shared {@link XPath} that {@link XmlUtils} used to
+ * evaluate every expression with its current evaluation. Reports the
+ * average time per pass over all the POMs found.
+ * <p>
+ * Not run as part of the build; run the main method, optionally giving the
+ * directory to search for POMs (the current directory by default, e.g. the
+ * root of this repository) and the number of passes to time (200 by
+ * default).
+ */
+public class XmlUtilsBenchmark {
+
+  private static final String[] EXPRESSIONS = {"/project/dependencies/dependency",
+      "/project/dependencyManagement/dependencies/dependency", "/project/build/plugins/plugin",
+      "/project/build/pluginManagement/plugins/plugin", "/project/properties",
+      "/project/repositories/repository", "/project/pluginRepositories/pluginRepository",
+      "/project/modules/module", "/project/parent", "/project/build/resources/resource",
+      "/project/artifactId", "/project/groupId", "/project/version", "/project/packaging",
+      "/project/build/plugins/plugin[artifactId = 'maven-compiler-plugin']"};
+
+  private interface Lookup {
+    int run(String expression, Element root) throws Exception;
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final File directory = new File(args.length > 0 ? args[0] : ".");
+    final int passes = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+    final Collection<File> pomFiles =
+        FileUtils.listFiles(directory, FileFilterUtils.nameFileFilter("pom.xml"),
+            FileFilterUtils.notFileFilter(FileFilterUtils.nameFileFilter("target")));
+    final List<Element> poms = new ArrayList<Element>();
+    for (final File pomFile : pomFiles) {
+      // Skip the empty POMs used by tests
+      if (pomFile.length() == 0) {
+        continue;
+      }
+      poms.add(XmlUtils.readXml(new FileInputStream(pomFile)).getDocumentElement());
+    }
+    System.out.println("Looking up " + EXPRESSIONS.length + " expressions in " + poms.size()
+        + " POMs " + passes + " times");
+
+    final XPath xPath = XPathFactory.newInstance().newXPath();
+    final Map<String, XPathExpression> compiledExpressions =
+        new HashMap<String, XPathExpression>();
+    final int before = report("Shared XPath (before)", poms, passes, new Lookup() {
+      public int run(final String expression, final Element root) throws Exception {
+        XPathExpression expr = compiledExpressions.get(expression);
+        if (expr == null) {
+          expr = xPath.compile(expression);
+          compiledExpressions.put(expression, expr);
+        }
+        return ((NodeList) expr.evaluate(root, XPathConstants.NODESET)).getLength();
+      }
+    });
+    final int after = report("XmlUtils (after)", poms, passes, new Lookup() {
+      public int run(final String expression, final Element root) {
+        return XmlUtils.findElements(expression, root).size();
+      }
+    });
+    if (before != after) {
+      throw new IllegalStateException("Found " + before + " elements before but " + after
+          + " after");
+    }
+  }
+
+  private static int report(final String name, final List<Element> poms, final int passes,
+      final Lookup lookup) throws Exception {
+    // Warm up the JIT
+    int found = pass(poms, lookup);
+    for (int i = 0; i < passes / 10; i++) {
+      pass(poms, lookup);
+    }
+
+    final long start = System.nanoTime();
+    for (int i = 0; i < passes; i++) {
+      found = pass(poms, lookup);
+    }
+    final long elapsed = System.nanoTime() - start;
+
+    System.out.println(String.format("%-24s %8.3f ms/pass %8d elements/pass", name, elapsed
+        / 1e6 / passes, found));
+    return found;
+  }
+
+  private static int pass(final List<Element> poms, final Lookup lookup) throws Exception {
+    int found = 0;
+    for (final Element pom : poms) {
+      for (final String expression : EXPRESSIONS) {
+        found += lookup.run(expression, pom);
+      }
+    }
+    return found;
+  }
+}
@@ -0,0 +1,115 @@
+package org.springframework.roo.support.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Unit test of {@link XmlUtils}
+ */
+public class XmlUtilsTest {
+
+  private static final String POM = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">"
+      + "<dependencies>" + "<dependency><artifactId>a</artifactId></dependency>"
+      + "<dependency><artifactId>b</artifactId></dependency>" + "</dependencies>"
+      + "<build><plugins><plugin><artifactId>c</artifactId></plugin></plugins></build>"
+      + "<profiles><profile><dependencies>"
+      + "<dependency><artifactId>d</artifactId></dependency>"
+      + "</dependencies></profile><profile><dependencies>"
+      + "<dependency><artifactId>e</artifactId></dependency>"
+      + "</dependencies></profile></profiles>" + "</project>";
+
+  private static final String SECURITY_CONFIG =
+      "<beans xmlns=\"http://www.springframework.org/schema/beans\""
+          + " xmlns:sec=\"http://www.springframework.org/schema/security\">"
+          + "<sec:http><sec:intercept-url pattern=\"/**\"/></sec:http></beans>";
+
+  private static final String[] PATHS = {"/project/dependencies/dependency",
+      "/project/dependencies/dependency/artifactId", "/project/profiles/profile/dependencies",
+      "dependencies/dependency", "profiles/profile/dependencies/dependency", "/project/missing",
+      "missing/dependency", "/dependencies", "project", "/beans/http", "http/intercept-url"};
+
+  private static List<Node> evaluate(final String path, final Node context) throws Exception {
+    final NodeList nodes =
+        (NodeList) XPathFactory.newInstance().newXPath().compile(path)
+            .evaluate(context, XPathConstants.NODESET);
+    final List<Node> result = new ArrayList<Node>();
+    for (int i = 0; i < nodes.getLength(); i++) {
+      result.add(nodes.item(i));
+    }
+    return result;
+  }
+
+  private static Document parse(final String xml, final boolean namespaceAware) throws Exception {
+    final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(namespaceAware);
+    return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes()));
+  }
+
+  private void assertSameAsXPathEngine(final Node context) throws Exception {
+    for (final String path : PATHS) {
+      final List<Node> expected = evaluate(path, context);
+      if (context instanceof Element) {
+        assertEquals(path, expected, XmlUtils.findElements(path, (Element) context));
+      }
+      assertEquals(path, expected.isEmpty() ? null : expected.get(0),
+          XmlUtils.findNode(path, context));
+    }
+  }
+
+  @Test
+  public void testElementPathsMatchXPathEngineForDetachedElement() throws Exception {
+    final Element detached = (Element) parse(POM, false).getDocumentElement().cloneNode(true);
+    assertSameAsXPathEngine(detached);
+  }
+
+  @Test
+  public void testElementPathsMatchXPathEngineForNamespaceAwareDocument() throws Exception {
+    final Document pom = parse(POM, true);
+    assertSameAsXPathEngine(pom);
+    assertSameAsXPathEngine(pom.getDocumentElement());
+  }
+
+  @Test
+  public void testElementPathsMatchXPathEngineForPom() throws Exception {
+    final Document pom = parse(POM, false);
+    assertSameAsXPathEngine(pom);
+    assertSameAsXPathEngine(pom.getDocumentElement());
+    assertSameAsXPathEngine(XmlUtils.findFirstElement("/project/profiles", pom));
+  }
+
+  @Test
+  public void testElementPathsMatchPrefixedElementsByLocalName() throws Exception {
+    final Document config = parse(SECURITY_CONFIG, false);
+    assertSameAsXPathEngine(config);
+    assertSameAsXPathEngine(config.getDocumentElement());
+    assertEquals("sec:http", XmlUtils.findFirstElement("/beans/http", config).getNodeName());
+  }
+
+  @Test
+  public void testEvictedExpressionIsRecompiled() {
+    final Element root = XmlUtils.stringToElement(POM);
+    final String path = "/project/dependencies/dependency[2]";
+    final Element second = XmlUtils.findFirstElement(path, root);
+    for (int i = 0; i < XmlUtils.COMPILED_EXPRESSION_CACHE_SIZE; i++) {
+      assertNull(XmlUtils.findFirstElement("/project/dependencies/dependency[" + (i + 3) + "]",
+          root));
+    }
+    assertSame(second, XmlUtils.findFirstElement(path, root));
+    assertSame(XmlUtils.findElements("/project/dependencies/dependency", root).get(1), second);
+  }
+}